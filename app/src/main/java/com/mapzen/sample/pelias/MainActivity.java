@@ -10,6 +10,7 @@ import com.mapzen.pelias.widget.AutoCompleteListView;
 import com.mapzen.pelias.widget.PeliasSearchView;
 import com.mapzen.pelias.widget.SearchSubmitListener;
 
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
@@ -57,6 +58,7 @@ public class MainActivity extends AppCompatActivity {
     pelias = new Pelias();
     pelias.setDebug(true);
     pelias.setLocationProvider(peliasLocationProvider);
+    pelias.warmUp(AsyncTask.THREAD_POOL_EXECUTOR);
   }
 
   private void setupListView() {
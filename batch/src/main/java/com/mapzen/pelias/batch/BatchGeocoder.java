@@ -0,0 +1,243 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Streams {@link BatchRecord}s from a {@link RecordReader} through {@link Pelias} and writes each
+ * outcome to a {@link ResultWriter} as soon as it arrives. Records with the same normalized query
+ * are only requested once; duplicates are answered from the in-flight request or from a bounded
+ * cache of recent results. At most {@link #setParallelism(int)} requests are outstanding at any
+ * time and reading blocks until a slot frees up, so memory use does not grow with input size.
+ *
+ * <p>Concurrency is also limited by the {@link okhttp3.Dispatcher} of the client backing
+ * {@link Pelias}, which should allow at least as many requests per host as the parallelism.
+ */
+public class BatchGeocoder {
+  public static final int DEFAULT_PARALLELISM = 8;
+  public static final int DEFAULT_CACHE_SIZE = 1024;
+
+  private final Pelias pelias;
+  private int parallelism = DEFAULT_PARALLELISM;
+  private int cacheSize = DEFAULT_CACHE_SIZE;
+
+  /**
+   * Constructs a new batch geocoder which issues requests through the given {@link Pelias}.
+   */
+  public BatchGeocoder(Pelias pelias) {
+    this.pelias = pelias;
+  }
+
+  /**
+   * Sets the maximum number of outstanding requests.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1");
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets the number of recent results kept to answer duplicate queries without a request.
+   */
+  public void setCacheSize(int cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * Geocodes every record from the reader and writes the outcomes to the writer. Blocks until all
+   * requests have completed. Outcomes are written in completion order, not input order.
+   */
+  public Summary run(RecordReader reader, ResultWriter writer)
+      throws IOException, InterruptedException {
+    final Run run = new Run(writer);
+    try {
+      BatchRecord record = reader.read();
+      while (record != null) {
+        run.submit(record);
+        run.checkWriteError();
+        record = reader.read();
+      }
+    } finally {
+      run.awaitCompletion();
+    }
+    run.checkWriteError();
+    writer.flush();
+    return run.summary;
+  }
+
+  /**
+   * Counts of the work done by {@link #run(RecordReader, ResultWriter)}.
+   */
+  public static class Summary {
+    private final AtomicLong records = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Returns the number of records read.
+     */
+    public long getRecords() {
+      return records.get();
+    }
+
+    /**
+     * Returns the number of http requests issued.
+     */
+    public long getRequests() {
+      return requests.get();
+    }
+
+    /**
+     * Returns the number of records answered without their own request.
+     */
+    public long getDeduplicated() {
+      return deduplicated.get();
+    }
+
+    /**
+     * Returns the number of records whose request failed.
+     */
+    public long getFailed() {
+      return failed.get();
+    }
+
+    @Override public String toString() {
+      return "records=" + getRecords() + " requests=" + getRequests() + " deduplicated="
+          + getDeduplicated() + " failed=" + getFailed();
+    }
+  }
+
+  /**
+   * State for a single invocation of {@link #run(RecordReader, ResultWriter)}.
+   */
+  private class Run {
+    private final ResultWriter writer;
+    private final Semaphore permits = new Semaphore(parallelism);
+    private final Summary summary = new Summary();
+    private final Map<String, List<BatchRecord>> inFlight = new HashMap<>();
+    private final Map<String, Result> recent = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+        return size() > cacheSize;
+      }
+    };
+    private volatile IOException writeError;
+
+    Run(ResultWriter writer) {
+      this.writer = writer;
+    }
+
+    void submit(BatchRecord record) throws IOException, InterruptedException {
+      summary.records.incrementAndGet();
+      final String key = record.getKey();
+      final Result cached;
+      synchronized (this) {
+        final List<BatchRecord> waiting = inFlight.get(key);
+        if (waiting != null) {
+          waiting.add(record);
+          summary.deduplicated.incrementAndGet();
+          return;
+        }
+        cached = recent.get(key);
+      }
+
+      if (cached != null) {
+        summary.deduplicated.incrementAndGet();
+        writer.write(record, cached);
+        return;
+      }
+
+      permits.acquire();
+      final List<BatchRecord> waiting = new ArrayList<>(1);
+      waiting.add(record);
+      synchronized (this) {
+        inFlight.put(key, waiting);
+      }
+
+      summary.requests.incrementAndGet();
+      try {
+        if (record.isReverse()) {
+          pelias.reverse(record.getLat(), record.getLon(), new RecordCallback(key));
+        } else {
+          pelias.search(record.getText(), new RecordCallback(key));
+        }
+      } catch (RuntimeException e) {
+        complete(key, null, e.toString());
+      }
+    }
+
+    void complete(String key, Result result, String error) {
+      final List<BatchRecord> waiting;
+      synchronized (this) {
+        waiting = inFlight.remove(key);
+        if (error == null && cacheSize > 0) {
+          recent.put(key, result);
+        }
+      }
+
+      try {
+        for (BatchRecord record : waiting) {
+          if (error == null) {
+            writer.write(record, result);
+          } else {
+            summary.failed.incrementAndGet();
+            writer.writeError(record, error);
+          }
+        }
+      } catch (IOException e) {
+        writeError = e;
+      } finally {
+        permits.release();
+      }
+    }
+
+    void awaitCompletion() throws InterruptedException {
+      permits.acquire(parallelism);
+      permits.release(parallelism);
+    }
+
+    void checkWriteError() throws IOException {
+      if (writeError != null) {
+        throw writeError;
+      }
+    }
+
+    /**
+     * Completes the in-flight entry for a key when its request finishes.
+     */
+    private class RecordCallback implements Callback<Result> {
+      private final String key;
+
+      RecordCallback(String key) {
+        this.key = key;
+      }
+
+      @Override public void onResponse(Call<Result> call, Response<Result> response) {
+        if (response.isSuccessful()) {
+          complete(key, response.body(), null);
+        } else {
+          complete(key, null, "HTTP " + response.code());
+        }
+      }
+
+      @Override public void onFailure(Call<Result> call, Throwable t) {
+        complete(key, null, String.valueOf(t.getMessage()));
+      }
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.QueryNormalizer;
+
+/**
+ * Represents a single input row for the {@link BatchGeocoder}. A record either carries query text
+ * (for search) or a lat/lon (for reverse geocoding).
+ */
+public final class BatchRecord {
+  private final long index;
+  private final String id;
+  private final String text;
+  private final double lat;
+  private final double lon;
+
+  private BatchRecord(long index, String id, String text, double lat, double lon) {
+    this.index = index;
+    this.id = id;
+    this.text = text;
+    this.lat = lat;
+    this.lon = lon;
+  }
+
+  /**
+   * Creates a record to be geocoded with a search request.
+   */
+  public static BatchRecord forSearch(long index, String id, String text) {
+    return new BatchRecord(index, id, text, Double.NaN, Double.NaN);
+  }
+
+  /**
+   * Creates a record to be geocoded with a reverse request.
+   */
+  public static BatchRecord forReverse(long index, String id, double lat, double lon) {
+    return new BatchRecord(index, id, null, lat, lon);
+  }
+
+  /**
+   * Returns the zero-based position of the record in its input.
+   */
+  public long getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the caller supplied identifier, or the record index when none was given.
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the query text, or null for reverse records.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the latitude for reverse records.
+   */
+  public double getLat() {
+    return lat;
+  }
+
+  /**
+   * Returns the longitude for reverse records.
+   */
+  public double getLon() {
+    return lon;
+  }
+
+  /**
+   * Returns whether this record should be reverse geocoded.
+   */
+  public boolean isReverse() {
+    return text == null;
+  }
+
+  /**
+   * Returns the key used to deduplicate records. Search records with the same
+   * {@link QueryNormalizer#DEFAULT} key share a key, as do reverse records with the same
+   * coordinates.
+   */
+  public String getKey() {
+    if (isReverse()) {
+      return "r:" + lat + "," + lon;
+    }
+    return "s:" + QueryNormalizer.DEFAULT.normalize(text);
+  }
+}
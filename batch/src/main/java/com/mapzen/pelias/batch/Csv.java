@@ -0,0 +1,60 @@
+package com.mapzen.pelias.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 helpers shared by the csv reader and writer. Quoted fields may contain commas
+ * and escaped quotes but not line breaks.
+ */
+final class Csv {
+  private Csv() {
+  }
+
+  /**
+   * Splits a single csv line into its fields.
+   */
+  static List<String> parseLine(String line) {
+    final List<String> fields = new ArrayList<>();
+    final StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      final char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"') {
+          if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+            field.append('"');
+            i++;
+          } else {
+            quoted = false;
+          }
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+
+  /**
+   * Quotes the value if it contains characters with special meaning in csv.
+   */
+  static String escape(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1
+        && value.indexOf('\r') == -1) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
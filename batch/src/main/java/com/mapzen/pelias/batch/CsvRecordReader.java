@@ -0,0 +1,96 @@
+package com.mapzen.pelias.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads {@link BatchRecord}s from csv input with a header row. A {@code text} column produces
+ * search records, otherwise {@code lat} and {@code lon} columns produce reverse records. An
+ * optional {@code id} column is carried through to the output.
+ */
+public class CsvRecordReader implements RecordReader {
+  public static final String COLUMN_ID = "id";
+  public static final String COLUMN_TEXT = "text";
+  public static final String COLUMN_LAT = "lat";
+  public static final String COLUMN_LON = "lon";
+
+  private final BufferedReader reader;
+  private int idColumn = -1;
+  private int textColumn = -1;
+  private int latColumn = -1;
+  private int lonColumn = -1;
+  private boolean headerRead = false;
+  private long index = 0;
+
+  /**
+   * Constructs a new reader for the given csv input.
+   */
+  public CsvRecordReader(Reader reader) {
+    this.reader = reader instanceof BufferedReader
+        ? (BufferedReader) reader : new BufferedReader(reader);
+  }
+
+  @Override public BatchRecord read() throws IOException {
+    if (!headerRead) {
+      readHeader();
+    }
+
+    String line;
+    do {
+      line = reader.readLine();
+      if (line == null) {
+        return null;
+      }
+    } while (line.trim().isEmpty());
+
+    final List<String> fields = Csv.parseLine(line);
+    final long recordIndex = index++;
+    final String id = idColumn != -1 ? field(fields, idColumn) : String.valueOf(recordIndex);
+    if (textColumn != -1) {
+      return BatchRecord.forSearch(recordIndex, id, field(fields, textColumn));
+    }
+
+    try {
+      return BatchRecord.forReverse(recordIndex, id, Double.parseDouble(field(fields, latColumn)),
+          Double.parseDouble(field(fields, lonColumn)));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid coordinates on record " + recordIndex, e);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    headerRead = true;
+    final String header = reader.readLine();
+    if (header == null) {
+      throw new IOException("Missing csv header");
+    }
+
+    final List<String> columns = Csv.parseLine(header);
+    for (int i = 0; i < columns.size(); i++) {
+      final String column = columns.get(i).trim();
+      if (COLUMN_ID.equalsIgnoreCase(column)) {
+        idColumn = i;
+      } else if (COLUMN_TEXT.equalsIgnoreCase(column)) {
+        textColumn = i;
+      } else if (COLUMN_LAT.equalsIgnoreCase(column)) {
+        latColumn = i;
+      } else if (COLUMN_LON.equalsIgnoreCase(column)) {
+        lonColumn = i;
+      }
+    }
+
+    if (textColumn == -1 && (latColumn == -1 || lonColumn == -1)) {
+      throw new IOException("Csv header must contain a text column or lat and lon columns");
+    }
+  }
+
+  private static String field(List<String> fields, int column) {
+    return column < fields.size() ? fields.get(column) : "";
+  }
+
+  @Override public void close() throws IOException {
+    reader.close();
+  }
+}
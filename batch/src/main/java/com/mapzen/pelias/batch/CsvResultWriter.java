@@ -0,0 +1,91 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Writes the best matching feature for each record as a csv row.
+ */
+public class CsvResultWriter implements ResultWriter {
+  public static final String HEADER = "id,status,label,lat,lon,confidence,gid,layer,error";
+
+  public static final String STATUS_OK = "ok";
+  public static final String STATUS_EMPTY = "empty";
+  public static final String STATUS_ERROR = "error";
+
+  private final BufferedWriter writer;
+  private boolean headerWritten = false;
+
+  /**
+   * Constructs a new writer for the given csv output.
+   */
+  public CsvResultWriter(Writer writer) {
+    this(writer, true);
+  }
+
+  /**
+   * Constructs a new writer for the given csv output, optionally omitting the header row when
+   * appending to existing output.
+   */
+  public CsvResultWriter(Writer writer, boolean writeHeader) {
+    this.writer = writer instanceof BufferedWriter
+        ? (BufferedWriter) writer : new BufferedWriter(writer);
+    headerWritten = !writeHeader;
+  }
+
+  @Override public synchronized void write(BatchRecord record, Result result) throws IOException {
+    final List<Feature> features = result != null ? result.getFeatures() : null;
+    if (features == null || features.isEmpty()) {
+      writeRow(record, STATUS_EMPTY, null, null);
+      return;
+    }
+    writeRow(record, STATUS_OK, features.get(0), null);
+  }
+
+  @Override public synchronized void writeError(BatchRecord record, String message)
+      throws IOException {
+    writeRow(record, STATUS_ERROR, null, message);
+  }
+
+  private void writeRow(BatchRecord record, String status, Feature feature, String error)
+      throws IOException {
+    if (!headerWritten) {
+      writer.write(HEADER);
+      writer.newLine();
+      headerWritten = true;
+    }
+
+    final StringBuilder row = new StringBuilder();
+    row.append(Csv.escape(record.getId())).append(',').append(status).append(',');
+    if (feature != null && feature.properties != null) {
+      row.append(Csv.escape(feature.properties.label)).append(',');
+      if (feature.geometry != null && feature.geometry.coordinates.size() >= 2) {
+        row.append(feature.geometry.coordinates.get(1)).append(',')
+            .append(feature.geometry.coordinates.get(0)).append(',');
+      } else {
+        row.append(",,");
+      }
+      row.append(feature.properties.confidence).append(',')
+          .append(Csv.escape(feature.properties.gid)).append(',')
+          .append(Csv.escape(feature.properties.layer)).append(',');
+    } else {
+      row.append(",,,,,,");
+    }
+    row.append(Csv.escape(error));
+    writer.write(row.toString());
+    writer.newLine();
+  }
+
+  @Override public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,253 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Resumable bulk geocoding job on top of {@link BatchGeocoder}. Progress is persisted to a
+ * {@link JobCheckpoint} file at intervals so that a job interrupted by a crash, network outage or
+ * app restart continues where it left off instead of starting over. Records which fail are not
+ * written to the output straight away but retried in additional passes over the input; only the
+ * final attempt writes error rows. The checkpoint file is deleted once the job finishes.
+ *
+ * <p>The output is flushed before every checkpoint so that each record marked settled in the
+ * checkpoint is durable. Records settled after the last checkpoint are issued again on resume, so
+ * output may contain duplicate rows for them.
+ */
+public class GeocodeJob {
+  public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 5000;
+  public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+  private final BatchGeocoder geocoder;
+  private final File checkpointFile;
+  private final Object lock = new Object();
+  private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+  private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+  private long totalRecords = -1;
+  private ProgressListener progressListener;
+
+  private JobCheckpoint checkpoint;
+  private ResultWriter output;
+  private long startMillis;
+  private long lastCheckpointMillis;
+  private long settledThisSession;
+
+  /**
+   * Constructs a new job which geocodes through the given geocoder and persists progress to the
+   * given file.
+   */
+  public GeocodeJob(BatchGeocoder geocoder, File checkpointFile) {
+    this.geocoder = geocoder;
+    this.checkpointFile = checkpointFile;
+  }
+
+  /**
+   * Sets the minimum time between checkpoints.
+   */
+  public void setCheckpointInterval(long millis) {
+    checkpointIntervalMillis = millis;
+  }
+
+  /**
+   * Sets how many times a failing record is attempted before an error row is written.
+   */
+  public void setMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("maxAttempts must be at least 1");
+    }
+    this.maxAttempts = maxAttempts;
+  }
+
+  /**
+   * Sets the number of input records, used to estimate the time remaining.
+   */
+  public void setTotalRecords(long totalRecords) {
+    this.totalRecords = totalRecords;
+  }
+
+  /**
+   * Sets a listener to be notified of progress every time a checkpoint is written.
+   */
+  public void setProgressListener(ProgressListener listener) {
+    progressListener = listener;
+  }
+
+  /**
+   * Returns whether a checkpoint from a previous run exists and will be resumed.
+   */
+  public boolean isResuming() {
+    return checkpointFile.exists();
+  }
+
+  /**
+   * Runs the job to completion, resuming from the checkpoint file if present.
+   */
+  public JobProgress run(InputSource input, ResultWriter writer)
+      throws IOException, InterruptedException {
+    checkpoint = isResuming() ? JobCheckpoint.load(checkpointFile) : new JobCheckpoint();
+    startMillis = System.currentTimeMillis();
+    lastCheckpointMillis = startMillis;
+    settledThisSession = 0;
+    output = writer;
+
+    final TrackingWriter trackingWriter = new TrackingWriter(writer);
+    try {
+      while (true) {
+        final RecordReader reader = new PendingRecordReader(input.open());
+        try {
+          geocoder.run(reader, trackingWriter);
+        } finally {
+          reader.close();
+        }
+
+        synchronized (lock) {
+          if (checkpoint.getFailedCount() == 0 || checkpoint.getAttempt() + 1 >= maxAttempts) {
+            break;
+          }
+          checkpoint.nextAttempt();
+          saveCheckpoint();
+        }
+      }
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      synchronized (lock) {
+        try {
+          saveCheckpoint();
+        } catch (IOException saveError) {
+          // Keep the original failure, the previous checkpoint is still valid.
+        }
+      }
+      throw e;
+    }
+
+    writer.flush();
+    final JobProgress progress = progress();
+    if (!checkpointFile.delete() && checkpointFile.exists()) {
+      throw new IOException("Unable to delete checkpoint " + checkpointFile);
+    }
+    notifyProgress(progress);
+    return progress;
+  }
+
+  private void maybeSaveCheckpoint() throws IOException {
+    final long now = System.currentTimeMillis();
+    if (now - lastCheckpointMillis >= checkpointIntervalMillis) {
+      saveCheckpoint();
+    }
+  }
+
+  private void saveCheckpoint() throws IOException {
+    lastCheckpointMillis = System.currentTimeMillis();
+    output.flush();
+    checkpoint.save(checkpointFile);
+    notifyProgress(progress());
+  }
+
+  private JobProgress progress() {
+    return new JobProgress(checkpoint.getAttempt(), checkpoint.getCompleted(),
+        checkpoint.getFailedCount(), totalRecords, settledThisSession,
+        System.currentTimeMillis() - startMillis);
+  }
+
+  private void notifyProgress(JobProgress progress) {
+    if (progressListener != null) {
+      progressListener.onProgress(progress);
+    }
+  }
+
+  private boolean isFinalAttempt() {
+    return checkpoint.getAttempt() + 1 >= maxAttempts;
+  }
+
+  /**
+   * Opens the job input. Called once per pass since retries re-read the input.
+   */
+  public interface InputSource {
+
+    /**
+     * Returns a new reader positioned at the start of the input.
+     */
+    RecordReader open() throws IOException;
+  }
+
+  /**
+   * Receives {@link JobProgress} updates.
+   */
+  public interface ProgressListener {
+
+    /**
+     * Invoked after each checkpoint and when the job finishes.
+     */
+    void onProgress(JobProgress progress);
+  }
+
+  /**
+   * Skips records which do not need to be issued in the current pass.
+   */
+  private class PendingRecordReader implements RecordReader {
+    private final RecordReader reader;
+
+    PendingRecordReader(RecordReader reader) {
+      this.reader = reader;
+    }
+
+    @Override public BatchRecord read() throws IOException {
+      BatchRecord record = reader.read();
+      while (record != null) {
+        if (checkpoint.isPending(record.getIndex())) {
+          checkpoint.markIssued(record.getIndex());
+          return record;
+        }
+        if (checkpoint.isExhaustedAfter(record.getIndex())) {
+          return null;
+        }
+        record = reader.read();
+      }
+      return null;
+    }
+
+    @Override public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+  /**
+   * Records settled records in the checkpoint and holds back error rows until the final attempt.
+   */
+  private class TrackingWriter implements ResultWriter {
+    private final ResultWriter writer;
+
+    TrackingWriter(ResultWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override public void write(BatchRecord record, Result result) throws IOException {
+      synchronized (lock) {
+        writer.write(record, result);
+        checkpoint.markCompleted(record.getIndex());
+        settledThisSession++;
+        maybeSaveCheckpoint();
+      }
+    }
+
+    @Override public void writeError(BatchRecord record, String message) throws IOException {
+      synchronized (lock) {
+        if (isFinalAttempt()) {
+          writer.writeError(record, message);
+        }
+        checkpoint.markFailed(record.getIndex());
+        settledThisSession++;
+        maybeSaveCheckpoint();
+      }
+    }
+
+    @Override public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
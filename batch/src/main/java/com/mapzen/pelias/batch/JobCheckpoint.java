@@ -0,0 +1,220 @@
+package com.mapzen.pelias.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Progress of a {@link GeocodeJob} which can be persisted and restored. Records are identified by
+ * their input index. Every record below the watermark has been settled (completed or failed);
+ * records above it that settled out of order are kept individually so the set stays as small as
+ * the in-flight window.
+ *
+ * <p>The file format is a small binary header followed by delta encoded variable length indexes.
+ */
+public final class JobCheckpoint {
+  private static final int MAGIC = 0x504c434b;
+  private static final int VERSION = 1;
+
+  private int attempt;
+  private long watermark;
+  private long completed;
+  private final TreeSet<Long> settled = new TreeSet<>();
+  private final TreeSet<Long> failed = new TreeSet<>();
+  private final TreeSet<Long> inFlight = new TreeSet<>();
+
+  /**
+   * Returns the zero-based pass the job is in. Pass 0 reads all records, later passes only retry
+   * failed records.
+   */
+  public synchronized int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * Returns the number of leading input records which have all been settled.
+   */
+  public synchronized long getWatermark() {
+    return watermark;
+  }
+
+  /**
+   * Returns the number of successfully geocoded records.
+   */
+  public synchronized long getCompleted() {
+    return completed;
+  }
+
+  /**
+   * Returns the number of records whose latest attempt failed.
+   */
+  public synchronized int getFailedCount() {
+    return failed.size();
+  }
+
+  /**
+   * Returns the indexes of records which have been issued but not yet settled.
+   */
+  public synchronized SortedSet<Long> getInFlight() {
+    return new TreeSet<>(inFlight);
+  }
+
+  /**
+   * Returns whether the record still needs to be issued in the current pass.
+   */
+  synchronized boolean isPending(long index) {
+    if (attempt > 0) {
+      return failed.contains(index);
+    }
+    return index >= watermark && !settled.contains(index) && !failed.contains(index);
+  }
+
+  /**
+   * Returns whether no record after the given index can be pending in the current pass.
+   */
+  synchronized boolean isExhaustedAfter(long index) {
+    return attempt > 0 && (failed.isEmpty() || index >= failed.last());
+  }
+
+  /**
+   * Marks the record at {@code index} as sent.
+   */
+  synchronized void markIssued(long index) {
+    inFlight.add(index);
+  }
+
+  /**
+   * Marks the record at {@code index} as written successfully.
+   */
+  synchronized void markCompleted(long index) {
+    completed++;
+    failed.remove(index);
+    settle(index);
+  }
+
+  /**
+   * Marks the record at {@code index} as failed so a later attempt retries it.
+   */
+  synchronized void markFailed(long index) {
+    failed.add(index);
+    settle(index);
+  }
+
+  /**
+   * Starts a new attempt, forgetting requests that were in flight.
+   */
+  synchronized void nextAttempt() {
+    attempt++;
+    inFlight.clear();
+  }
+
+  private void settle(long index) {
+    inFlight.remove(index);
+    if (index < watermark) {
+      return;
+    }
+    if (index != watermark) {
+      settled.add(index);
+      return;
+    }
+    watermark++;
+    while (settled.remove(watermark)) {
+      watermark++;
+    }
+  }
+
+  /**
+   * Atomically replaces the file with the current state.
+   */
+  public synchronized void save(File file) throws IOException {
+    final File tmp = new File(file.getPath() + ".tmp");
+    final DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(tmp)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(attempt);
+      writeVarLong(out, watermark);
+      writeVarLong(out, completed);
+      writeIndexes(out, settled);
+      writeIndexes(out, failed);
+      writeIndexes(out, inFlight);
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Unable to replace checkpoint " + file);
+    }
+  }
+
+  /**
+   * Reads a checkpoint previously written by {@link #save(File)}.
+   */
+  public static JobCheckpoint load(File file) throws IOException {
+    final DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Unsupported checkpoint " + file);
+      }
+      final JobCheckpoint checkpoint = new JobCheckpoint();
+      checkpoint.attempt = in.readInt();
+      checkpoint.watermark = readVarLong(in);
+      checkpoint.completed = readVarLong(in);
+      readIndexes(in, checkpoint.settled);
+      readIndexes(in, checkpoint.failed);
+      readIndexes(in, checkpoint.inFlight);
+      return checkpoint;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeIndexes(DataOutputStream out, Collection<Long> indexes)
+      throws IOException {
+    writeVarLong(out, indexes.size());
+    long previous = 0;
+    for (long index : indexes) {
+      writeVarLong(out, index - previous);
+      previous = index;
+    }
+  }
+
+  private static void readIndexes(DataInputStream in, Collection<Long> indexes)
+      throws IOException {
+    final long size = readVarLong(in);
+    long previous = 0;
+    for (long i = 0; i < size; i++) {
+      previous += readVarLong(in);
+      indexes.add(previous);
+    }
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.writeByte((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
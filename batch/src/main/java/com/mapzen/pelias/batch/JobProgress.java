@@ -0,0 +1,102 @@
+package com.mapzen.pelias.batch;
+
+import java.util.Locale;
+
+/**
+ * Snapshot of a running {@link GeocodeJob} used for throughput and ETA reporting.
+ */
+public final class JobProgress {
+  private final int attempt;
+  private final long completed;
+  private final long failed;
+  private final long total;
+  private final long settledThisSession;
+  private final long elapsedMillis;
+
+  /**
+   * Creates a progress snapshot.
+   */
+  JobProgress(int attempt, long completed, long failed, long total, long settledThisSession,
+      long elapsedMillis) {
+    this.attempt = attempt;
+    this.completed = completed;
+    this.failed = failed;
+    this.total = total;
+    this.settledThisSession = settledThisSession;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Returns the zero-based pass of the job.
+   */
+  public int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * Returns the number of successfully geocoded records, including previous sessions.
+   */
+  public long getCompleted() {
+    return completed;
+  }
+
+  /**
+   * Returns the number of records whose latest attempt failed.
+   */
+  public long getFailed() {
+    return failed;
+  }
+
+  /**
+   * Returns the total number of input records or -1 if unknown.
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  /**
+   * Returns the time spent in the current session.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  /**
+   * Returns the number of records settled per second in the current session.
+   */
+  public double getRecordsPerSecond() {
+    if (elapsedMillis <= 0) {
+      return 0;
+    }
+    return settledThisSession * 1000.0 / elapsedMillis;
+  }
+
+  /**
+   * Returns the estimated time until all records are settled, or -1 if the total is unknown or no
+   * records have been settled yet.
+   */
+  public long getEtaMillis() {
+    final double rate = getRecordsPerSecond();
+    if (total < 0 || rate <= 0) {
+      return -1;
+    }
+    final long remaining = attempt == 0 ? total - completed - failed : failed;
+    return (long) (Math.max(0, remaining) * 1000 / rate);
+  }
+
+  @Override public String toString() {
+    final StringBuilder builder = new StringBuilder()
+        .append("attempt=").append(attempt)
+        .append(" completed=").append(completed);
+    if (total >= 0) {
+      builder.append('/').append(total);
+    }
+    builder.append(" failed=").append(failed)
+        .append(String.format(Locale.ROOT, " rate=%.1f/s", getRecordsPerSecond()));
+    final long eta = getEtaMillis();
+    if (eta >= 0) {
+      builder.append(" eta=").append(eta / 1000).append('s');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,247 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PeliasRequestHandler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Command line entry point for {@link BatchGeocoder}.
+ *
+ * <pre>
+ * pelias-batch [--endpoint url] [--api-key key] [--format csv|ndjson] [--parallelism n]
+ *     [--cache-size n] [--input file] [--output file] [--checkpoint file] [--max-attempts n]
+ * </pre>
+ *
+ * <p>Input and output default to stdin and stdout. The output uses the same format as the input.
+ * With {@code --checkpoint} the run becomes a resumable {@link GeocodeJob}; this requires file
+ * input and output, and output is appended to when resuming.
+ */
+public class Main {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String USAGE = "usage: pelias-batch [--endpoint url] [--api-key key] "
+      + "[--format csv|ndjson] [--parallelism n] [--cache-size n] [--input file] "
+      + "[--output file] [--checkpoint file] [--max-attempts n]";
+
+  private String endpoint = Pelias.DEFAULT_SEARCH_ENDPOINT;
+  private String apiKey;
+  private String format = "csv";
+  private int parallelism = BatchGeocoder.DEFAULT_PARALLELISM;
+  private int cacheSize = BatchGeocoder.DEFAULT_CACHE_SIZE;
+  private String input;
+  private String output;
+  private String checkpoint;
+  private int maxAttempts = GeocodeJob.DEFAULT_MAX_ATTEMPTS;
+
+  /**
+   * Runs a batch job as described by the command line arguments.
+   */
+  public static void main(String[] args) throws Exception {
+    final Main main = new Main();
+    try {
+      main.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    if (main.checkpoint != null) {
+      final JobProgress progress = main.runJob();
+      System.exit(progress.getFailed() == 0 ? 0 : 1);
+    } else {
+      final BatchGeocoder.Summary summary = main.run();
+      System.err.println(summary);
+      System.exit(summary.getFailed() == 0 ? 0 : 1);
+    }
+  }
+
+  /**
+   * Parses command line arguments.
+   */
+  void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      final String arg = args[i];
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      final String value = args[++i];
+      switch (arg) {
+        case "--endpoint":
+          endpoint = value.endsWith("/") ? value : value + "/";
+          break;
+        case "--api-key":
+          apiKey = value;
+          break;
+        case "--format":
+          if (!"csv".equals(value) && !"ndjson".equals(value)) {
+            throw new IllegalArgumentException("Unknown format " + value);
+          }
+          format = value;
+          break;
+        case "--parallelism":
+          parallelism = Integer.parseInt(value);
+          break;
+        case "--cache-size":
+          cacheSize = Integer.parseInt(value);
+          break;
+        case "--input":
+          input = value;
+          break;
+        case "--output":
+          output = value;
+          break;
+        case "--checkpoint":
+          checkpoint = value;
+          break;
+        case "--max-attempts":
+          maxAttempts = Integer.parseInt(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    if (checkpoint != null && (input == null || output == null)) {
+      throw new IllegalArgumentException("--checkpoint requires --input and --output");
+    }
+  }
+
+  /**
+   * Runs a one shot batch without a checkpoint.
+   */
+  BatchGeocoder.Summary run() throws IOException, InterruptedException {
+    final OkHttpClient client = newClient();
+    final RecordReader recordReader = newRecordReader(
+        input != null ? new FileInputStream(input) : System.in);
+    final ResultWriter resultWriter = newResultWriter(
+        output != null ? new FileOutputStream(output) : System.out, true);
+    try {
+      return newGeocoder(client).run(recordReader, resultWriter);
+    } finally {
+      recordReader.close();
+      if (output != null) {
+        resultWriter.close();
+      } else {
+        resultWriter.flush();
+      }
+      shutdown(client);
+    }
+  }
+
+  /**
+   * Runs a resumable job backed by a checkpoint file.
+   */
+  JobProgress runJob() throws IOException, InterruptedException {
+    final OkHttpClient client = newClient();
+    final GeocodeJob job = new GeocodeJob(newGeocoder(client), new File(checkpoint));
+    job.setMaxAttempts(maxAttempts);
+    job.setTotalRecords(countRecords());
+    job.setProgressListener(new GeocodeJob.ProgressListener() {
+      @Override public void onProgress(JobProgress progress) {
+        System.err.println(progress);
+      }
+    });
+
+    final boolean resuming = job.isResuming();
+    final ResultWriter resultWriter = newResultWriter(
+        new FileOutputStream(output, resuming), !resuming);
+    try {
+      return job.run(new GeocodeJob.InputSource() {
+        @Override public RecordReader open() throws IOException {
+          return newRecordReader(new FileInputStream(input));
+        }
+      }, resultWriter);
+    } finally {
+      resultWriter.close();
+      shutdown(client);
+    }
+  }
+
+  private OkHttpClient newClient() {
+    final Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(parallelism);
+    dispatcher.setMaxRequestsPerHost(parallelism);
+    return new OkHttpClient.Builder().dispatcher(dispatcher).build();
+  }
+
+  private static void shutdown(OkHttpClient client) {
+    client.dispatcher().executorService().shutdown();
+    client.connectionPool().evictAll();
+  }
+
+  private BatchGeocoder newGeocoder(OkHttpClient client) {
+    final Pelias pelias = new Pelias(endpoint, client);
+    if (apiKey != null) {
+      pelias.setRequestHandler(new ApiKeyRequestHandler(apiKey));
+    }
+
+    final BatchGeocoder geocoder = new BatchGeocoder(pelias);
+    geocoder.setParallelism(parallelism);
+    geocoder.setCacheSize(cacheSize);
+    return geocoder;
+  }
+
+  private RecordReader newRecordReader(InputStream in) {
+    final InputStreamReader reader = new InputStreamReader(in, UTF_8);
+    if ("ndjson".equals(format)) {
+      return new NdjsonRecordReader(reader);
+    }
+    return new CsvRecordReader(reader);
+  }
+
+  private ResultWriter newResultWriter(OutputStream out, boolean writeHeader) {
+    final OutputStreamWriter writer = new OutputStreamWriter(out, UTF_8);
+    if ("ndjson".equals(format)) {
+      return new NdjsonResultWriter(writer);
+    }
+    return new CsvResultWriter(writer, writeHeader);
+  }
+
+  /**
+   * Counts the records in the input file so progress can include an ETA.
+   */
+  private long countRecords() throws IOException {
+    final RecordReader reader = newRecordReader(new FileInputStream(input));
+    try {
+      long count = 0;
+      while (reader.read() != null) {
+        count++;
+      }
+      return count;
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Adds the api key query param to every request.
+   */
+  private static class ApiKeyRequestHandler implements PeliasRequestHandler {
+    private final String apiKey;
+
+    ApiKeyRequestHandler(String apiKey) {
+      this.apiKey = apiKey;
+    }
+
+    @Override public Map<String, String> headersForRequest() {
+      return null;
+    }
+
+    @Override public Map<String, String> queryParamsForRequest() {
+      return Collections.singletonMap("api_key", apiKey);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.mapzen.pelias.batch;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads {@link BatchRecord}s from newline delimited json. Each line is an object with either a
+ * {@code text} member (search) or {@code lat} and {@code lon} members (reverse), and an optional
+ * {@code id}.
+ */
+public class NdjsonRecordReader implements RecordReader {
+  private final BufferedReader reader;
+  private final JsonParser parser = new JsonParser();
+  private long index = 0;
+
+  /**
+   * Constructs a new reader for the given ndjson input.
+   */
+  public NdjsonRecordReader(Reader reader) {
+    this.reader = reader instanceof BufferedReader
+        ? (BufferedReader) reader : new BufferedReader(reader);
+  }
+
+  @Override public BatchRecord read() throws IOException {
+    String line;
+    do {
+      line = reader.readLine();
+      if (line == null) {
+        return null;
+      }
+    } while (line.trim().isEmpty());
+
+    final long recordIndex = index++;
+    final JsonObject json;
+    try {
+      json = parser.parse(line).getAsJsonObject();
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new IOException("Invalid json on record " + recordIndex, e);
+    }
+
+    final JsonElement idElement = json.get(CsvRecordReader.COLUMN_ID);
+    final String id = idElement != null && !idElement.isJsonNull()
+        ? idElement.getAsString() : String.valueOf(recordIndex);
+    final JsonElement text = json.get(CsvRecordReader.COLUMN_TEXT);
+    if (text != null && !text.isJsonNull()) {
+      return BatchRecord.forSearch(recordIndex, id, text.getAsString());
+    }
+
+    final JsonElement lat = json.get(CsvRecordReader.COLUMN_LAT);
+    final JsonElement lon = json.get(CsvRecordReader.COLUMN_LON);
+    if (lat == null || lon == null) {
+      throw new IOException("Record " + recordIndex + " needs text or lat and lon");
+    }
+    return BatchRecord.forReverse(recordIndex, id, lat.getAsDouble(), lon.getAsDouble());
+  }
+
+  @Override public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,65 @@
+package com.mapzen.pelias.batch;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one json object per record containing the record id, a status and the full
+ * {@link Result} or error message.
+ */
+public class NdjsonResultWriter implements ResultWriter {
+  private final BufferedWriter writer;
+  private final Gson gson = PeliasGson.get();
+
+  /**
+   * Constructs a new writer for the given ndjson output.
+   */
+  public NdjsonResultWriter(Writer writer) {
+    this.writer = writer instanceof BufferedWriter
+        ? (BufferedWriter) writer : new BufferedWriter(writer);
+  }
+
+  @Override public synchronized void write(BatchRecord record, Result result) throws IOException {
+    final JsonObject json = newRow(record);
+    final boolean empty = result == null || result.getFeatures() == null
+        || result.getFeatures().isEmpty();
+    json.addProperty("status", empty ? CsvResultWriter.STATUS_EMPTY : CsvResultWriter.STATUS_OK);
+    if (result != null) {
+      json.add("result", gson.toJsonTree(result));
+    }
+    writeRow(json);
+  }
+
+  @Override public synchronized void writeError(BatchRecord record, String message)
+      throws IOException {
+    final JsonObject json = newRow(record);
+    json.addProperty("status", CsvResultWriter.STATUS_ERROR);
+    json.addProperty("error", message);
+    writeRow(json);
+  }
+
+  private static JsonObject newRow(BatchRecord record) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("id", record.getId());
+    return json;
+  }
+
+  private void writeRow(JsonObject json) throws IOException {
+    writer.write(gson.toJson(json));
+    writer.newLine();
+  }
+
+  @Override public synchronized void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
@@ -0,0 +1,15 @@
+package com.mapzen.pelias.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams {@link BatchRecord}s from an input source one at a time.
+ */
+public interface RecordReader extends Closeable {
+
+  /**
+   * Returns the next record or null when the input is exhausted.
+   */
+  BatchRecord read() throws IOException;
+}
@@ -0,0 +1,24 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Streams geocoding outcomes for {@link BatchRecord}s to an output. Implementations are invoked
+ * from http threads and must be thread safe.
+ */
+public interface ResultWriter extends Closeable, Flushable {
+
+  /**
+   * Writes a successful result for the record.
+   */
+  void write(BatchRecord record, Result result) throws IOException;
+
+  /**
+   * Writes a failure for the record.
+   */
+  void writeError(BatchRecord record, String message) throws IOException;
+}
@@ -0,0 +1,145 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.testserver.PeliasStandInServer;
+import com.mapzen.pelias.testserver.SyntheticGazetteer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BatchGeocoderTest {
+  private MockWebServer server;
+  private Pelias pelias;
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger maxActive = new AtomicInteger();
+
+  @Before public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final int now = active.incrementAndGet();
+        maxActive.set(Math.max(maxActive.get(), now));
+        Thread.sleep(20);
+        active.decrementAndGet();
+        final HttpUrl url = request.getRequestUrl();
+        if ("fail".equals(url.queryParameter("text"))) {
+          return new MockResponse().setResponseCode(500);
+        }
+        if ("nothing".equals(url.queryParameter("text"))) {
+          return new MockResponse().setBody("{\"type\":\"FeatureCollection\",\"features\":[]}");
+        }
+        return new MockResponse().setBody(featureCollection(url.encodedPath()));
+      }
+    });
+    server.start();
+
+    final Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequestsPerHost(16);
+    pelias = new Pelias(server.url("/").toString(),
+        new OkHttpClient.Builder().dispatcher(dispatcher).build());
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void run_shouldWriteOneRowPerRecord() throws Exception {
+    final StringWriter out = new StringWriter();
+    final BatchGeocoder.Summary summary = new BatchGeocoder(pelias).run(
+        new CsvRecordReader(new StringReader("id,text\n1,Main St\n2,Broadway\n3,nothing\n")),
+        new CsvResultWriter(out));
+    assertThat(summary.getRecords()).isEqualTo(3);
+    assertThat(out.toString()).startsWith(CsvResultWriter.HEADER + "\n");
+    assertThat(out.toString()).contains("1,ok,Label /v1/search,40.0,-73.0,0.9,gid,address,\n");
+    assertThat(out.toString()).contains("3,empty,,,,,,,\n");
+    assertThat(out.toString().split("\n")).hasSize(4);
+  }
+
+  @Test public void run_shouldDeduplicateNormalizedQueries() throws Exception {
+    final StringWriter out = new StringWriter();
+    final BatchGeocoder geocoder = new BatchGeocoder(pelias);
+    geocoder.setParallelism(1);
+    final BatchGeocoder.Summary summary = geocoder.run(new CsvRecordReader(
+        new StringReader("id,text\n1,Main St\n2,main  st \n3,MAIN ST\n4,Broadway\n")),
+        new CsvResultWriter(out));
+    assertThat(summary.getRequests()).isEqualTo(2);
+    assertThat(summary.getDeduplicated()).isEqualTo(2);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    assertThat(out.toString().split("\n")).hasSize(5);
+  }
+
+  @Test public void run_shouldNotExceedParallelism() throws Exception {
+    final StringBuilder input = new StringBuilder("text\n");
+    for (int i = 0; i < 40; i++) {
+      input.append("query ").append(i).append('\n');
+    }
+    final BatchGeocoder geocoder = new BatchGeocoder(pelias);
+    geocoder.setParallelism(3);
+    final BatchGeocoder.Summary summary = geocoder.run(
+        new CsvRecordReader(new StringReader(input.toString())),
+        new CsvResultWriter(new StringWriter()));
+    assertThat(summary.getRequests()).isEqualTo(40);
+    assertThat(maxActive.get()).isLessThanOrEqualTo(3);
+  }
+
+  @Test public void run_shouldReportFailures() throws Exception {
+    final StringWriter out = new StringWriter();
+    final BatchGeocoder.Summary summary = new BatchGeocoder(pelias).run(
+        new NdjsonRecordReader(new StringReader("{\"id\":\"a\",\"text\":\"fail\"}\n")),
+        new NdjsonResultWriter(out));
+    assertThat(summary.getFailed()).isEqualTo(1);
+    assertThat(out.toString()).isEqualTo(
+        "{\"id\":\"a\",\"status\":\"error\",\"error\":\"HTTP 500\"}\n");
+  }
+
+  @Test public void run_shouldReverseGeocodeCoordinates() throws Exception {
+    final StringWriter out = new StringWriter();
+    new BatchGeocoder(pelias).run(
+        new CsvRecordReader(new StringReader("id,lat,lon\n7,40.0,-73.0\n")),
+        new CsvResultWriter(out));
+    assertThat(server.takeRequest().getPath()).startsWith("/v1/reverse?point.lat=40.0");
+    assertThat(out.toString()).contains("7,ok,Label /v1/reverse");
+  }
+
+  @Test public void run_shouldGeocodeAgainstStandInServer() throws Exception {
+    final PeliasStandInServer standIn = new PeliasStandInServer(
+        SyntheticGazetteer.generate(11, 3000, 40.7, -74.0, 0.2));
+    standIn.start();
+    try {
+      final StringBuilder input = new StringBuilder("id,text\n");
+      for (int i = 0; i < 50; i++) {
+        input.append(i).append(',').append(standIn.getGazetteer().get(i * 7).getName())
+            .append('\n');
+      }
+      final StringWriter out = new StringWriter();
+      final BatchGeocoder.Summary summary = new BatchGeocoder(new Pelias(standIn.url())).run(
+          new CsvRecordReader(new StringReader(input.toString())), new CsvResultWriter(out));
+      assertThat(summary.getFailed()).isEqualTo(0);
+      assertThat(standIn.getRequestCount(PeliasStandInServer.SEARCH))
+          .isEqualTo((int) summary.getRequests());
+      assertThat(out.toString()).doesNotContain(",empty,");
+    } finally {
+      standIn.shutdown();
+    }
+  }
+
+  static String featureCollection(String label) {
+    return "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\","
+        + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[-73.0,40.0]},"
+        + "\"properties\":{\"gid\":\"gid\",\"layer\":\"address\",\"confidence\":0.9,"
+        + "\"label\":\"Label " + label + "\"}}]}";
+  }
+}
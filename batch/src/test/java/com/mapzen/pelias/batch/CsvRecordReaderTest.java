@@ -0,0 +1,48 @@
+package com.mapzen.pelias.batch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CsvRecordReaderTest {
+
+  @Test public void read_shouldReturnSearchRecords() throws Exception {
+    final CsvRecordReader reader = new CsvRecordReader(
+        new StringReader("id,text\nabc,\"30 W 26th St, New York\"\n\nxyz,\"say \"\"hi\"\"\"\n"));
+    final BatchRecord first = reader.read();
+    assertThat(first.getId()).isEqualTo("abc");
+    assertThat(first.getText()).isEqualTo("30 W 26th St, New York");
+    assertThat(first.isReverse()).isFalse();
+    final BatchRecord second = reader.read();
+    assertThat(second.getIndex()).isEqualTo(1);
+    assertThat(second.getText()).isEqualTo("say \"hi\"");
+    assertThat(reader.read()).isNull();
+  }
+
+  @Test public void read_shouldReturnReverseRecords() throws Exception {
+    final CsvRecordReader reader = new CsvRecordReader(new StringReader("lon,lat\n-73.5,40.25\n"));
+    final BatchRecord record = reader.read();
+    assertThat(record.isReverse()).isTrue();
+    assertThat(record.getId()).isEqualTo("0");
+    assertThat(record.getLat()).isEqualTo(40.25);
+    assertThat(record.getLon()).isEqualTo(-73.5);
+  }
+
+  @Test(expected = IOException.class) public void read_shouldRequireQueryColumns()
+      throws Exception {
+    new CsvRecordReader(new StringReader("id,name\n1,foo\n")).read();
+  }
+
+  @Test public void getKey_shouldIgnoreCaseAndWhitespace() throws Exception {
+    assertThat(BatchRecord.forSearch(0, "a", " Main   St").getKey())
+        .isEqualTo(BatchRecord.forSearch(1, "b", "main st ").getKey());
+  }
+
+  @Test public void getKey_shouldNormalizeUnicode() throws Exception {
+    assertThat(BatchRecord.forSearch(0, "a", "\uff2d\uff41\uff49\uff4e Stra\u00dfe").getKey())
+        .isEqualTo(BatchRecord.forSearch(1, "b", "main strasse").getKey());
+  }
+}
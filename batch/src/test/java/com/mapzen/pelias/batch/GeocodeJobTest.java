@@ -0,0 +1,146 @@
+package com.mapzen.pelias.batch;
+
+import com.mapzen.pelias.Pelias;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class GeocodeJobTest {
+  private static final String INPUT = "id,text\n0,zero\n1,one\n2,flaky\n3,three\n";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private MockWebServer server;
+  private BatchGeocoder geocoder;
+  private File checkpointFile;
+  private final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+  private int flakyFailures;
+
+  @Before public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) {
+        final String text = request.getRequestUrl().queryParameter("text");
+        queries.add(text);
+        synchronized (GeocodeJobTest.this) {
+          if ("flaky".equals(text) && flakyFailures > 0) {
+            flakyFailures--;
+            return new MockResponse().setResponseCode(503);
+          }
+        }
+        return new MockResponse().setBody(BatchGeocoderTest.featureCollection(text));
+      }
+    });
+    server.start();
+    geocoder = new BatchGeocoder(new Pelias(server.url("/").toString()));
+    geocoder.setParallelism(1);
+    checkpointFile = new File(folder.getRoot(), "job.checkpoint");
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void run_shouldRetryOnlyFailedRecords() throws Exception {
+    flakyFailures = 1;
+    final StringWriter out = new StringWriter();
+    final JobProgress progress = new GeocodeJob(geocoder, checkpointFile).run(input(),
+        new CsvResultWriter(out));
+    assertThat(queries).containsExactly("zero", "one", "flaky", "three", "flaky");
+    assertThat(progress.getCompleted()).isEqualTo(4);
+    assertThat(progress.getFailed()).isEqualTo(0);
+    assertThat(out.toString()).doesNotContain(",error,");
+    assertThat(checkpointFile.exists()).isFalse();
+  }
+
+  @Test public void run_shouldWriteErrorsAfterFinalAttempt() throws Exception {
+    flakyFailures = 5;
+    final StringWriter out = new StringWriter();
+    final GeocodeJob job = new GeocodeJob(geocoder, checkpointFile);
+    job.setMaxAttempts(2);
+    final JobProgress progress = job.run(input(), new CsvResultWriter(out));
+    assertThat(progress.getFailed()).isEqualTo(1);
+    assertThat(out.toString()).contains("2,error,,,,,,,HTTP 503\n");
+  }
+
+  @Test public void run_shouldResumeFromCheckpoint() throws Exception {
+    final JobCheckpoint checkpoint = new JobCheckpoint();
+    checkpoint.markCompleted(0);
+    checkpoint.markCompleted(2);
+    checkpoint.markIssued(1);
+    checkpoint.save(checkpointFile);
+
+    final GeocodeJob job = new GeocodeJob(geocoder, checkpointFile);
+    assertThat(job.isResuming()).isTrue();
+    final JobProgress progress = job.run(input(), new CsvResultWriter(new StringWriter()));
+    assertThat(queries).containsExactly("one", "three");
+    assertThat(progress.getCompleted()).isEqualTo(4);
+  }
+
+  @Test public void run_shouldSaveCheckpointWhenInterrupted() throws Exception {
+    final GeocodeJob job = new GeocodeJob(geocoder, checkpointFile);
+    try {
+      job.run(new GeocodeJob.InputSource() {
+        @Override public RecordReader open() {
+          return new FailingReader(new CsvRecordReader(new StringReader(INPUT)), 2);
+        }
+      }, new CsvResultWriter(new StringWriter()));
+    } catch (IOException expected) {
+      // Simulated crash after two records.
+    }
+    assertThat(checkpointFile.exists()).isTrue();
+    assertThat(JobCheckpoint.load(checkpointFile).getCompleted()).isEqualTo(2);
+  }
+
+  @Test public void progress_shouldEstimateRemainingTime() throws Exception {
+    final JobProgress progress = new JobProgress(0, 40, 10, 100, 50, 5000);
+    assertThat(progress.getRecordsPerSecond()).isEqualTo(10.0);
+    assertThat(progress.getEtaMillis()).isEqualTo(5000);
+  }
+
+  private static GeocodeJob.InputSource input() {
+    return new GeocodeJob.InputSource() {
+      @Override public RecordReader open() {
+        return new CsvRecordReader(new StringReader(INPUT));
+      }
+    };
+  }
+
+  private static class FailingReader implements RecordReader {
+    private final RecordReader reader;
+    private int remaining;
+
+    FailingReader(RecordReader reader, int records) {
+      this.reader = reader;
+      this.remaining = records;
+    }
+
+    @Override public BatchRecord read() throws IOException {
+      if (remaining-- == 0) {
+        throw new IOException("disk gone");
+      }
+      return reader.read();
+    }
+
+    @Override public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
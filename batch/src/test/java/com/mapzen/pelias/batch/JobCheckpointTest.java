@@ -0,0 +1,58 @@
+package com.mapzen.pelias.batch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class JobCheckpointTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test public void markCompleted_shouldAdvanceWatermarkOverContiguousRecords() throws Exception {
+    final JobCheckpoint checkpoint = new JobCheckpoint();
+    checkpoint.markCompleted(1);
+    checkpoint.markCompleted(2);
+    assertThat(checkpoint.getWatermark()).isEqualTo(0);
+    checkpoint.markFailed(0);
+    assertThat(checkpoint.getWatermark()).isEqualTo(3);
+    assertThat(checkpoint.getCompleted()).isEqualTo(2);
+    assertThat(checkpoint.getFailedCount()).isEqualTo(1);
+  }
+
+  @Test public void isPending_shouldOnlyIncludeFailedRecordsOnRetry() throws Exception {
+    final JobCheckpoint checkpoint = new JobCheckpoint();
+    checkpoint.markCompleted(0);
+    checkpoint.markFailed(1);
+    checkpoint.markCompleted(3);
+    assertThat(checkpoint.isPending(0)).isFalse();
+    assertThat(checkpoint.isPending(1)).isFalse();
+    assertThat(checkpoint.isPending(2)).isTrue();
+    assertThat(checkpoint.isPending(3)).isFalse();
+    checkpoint.nextAttempt();
+    assertThat(checkpoint.isPending(1)).isTrue();
+    assertThat(checkpoint.isPending(2)).isFalse();
+    assertThat(checkpoint.isExhaustedAfter(1)).isTrue();
+  }
+
+  @Test public void save_shouldRoundTrip() throws Exception {
+    final JobCheckpoint checkpoint = new JobCheckpoint();
+    checkpoint.markCompleted(0);
+    checkpoint.markFailed(1);
+    checkpoint.markIssued(2);
+    checkpoint.markIssued(300000);
+    checkpoint.markCompleted(200000);
+    final File file = new File(folder.getRoot(), "job.checkpoint");
+    checkpoint.save(file);
+
+    final JobCheckpoint loaded = JobCheckpoint.load(file);
+    assertThat(loaded.getWatermark()).isEqualTo(2);
+    assertThat(loaded.getCompleted()).isEqualTo(2);
+    assertThat(loaded.getFailedCount()).isEqualTo(1);
+    assertThat(loaded.getInFlight()).containsOnly(2L, 300000L);
+    assertThat(loaded.isPending(200000)).isFalse();
+    assertThat(file.length()).isLessThan(64);
+  }
+}
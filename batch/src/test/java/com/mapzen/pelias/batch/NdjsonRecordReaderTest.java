@@ -0,0 +1,28 @@
+package com.mapzen.pelias.batch;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class NdjsonRecordReaderTest {
+
+  @Test public void read_shouldReturnSearchAndReverseRecords() throws Exception {
+    final NdjsonRecordReader reader = new NdjsonRecordReader(new StringReader(
+        "{\"id\":\"a\",\"text\":\"Main St\"}\n{\"lat\":40.5,\"lon\":-73.25}\n"));
+    final BatchRecord search = reader.read();
+    assertThat(search.getId()).isEqualTo("a");
+    assertThat(search.getText()).isEqualTo("Main St");
+    final BatchRecord reverse = reader.read();
+    assertThat(reverse.getId()).isEqualTo("1");
+    assertThat(reverse.isReverse()).isTrue();
+    assertThat(reverse.getLat()).isEqualTo(40.5);
+    assertThat(reader.read()).isNull();
+  }
+
+  @Test(expected = IOException.class) public void read_shouldRejectInvalidJson() throws Exception {
+    new NdjsonRecordReader(new StringReader("not json\n")).read();
+  }
+}
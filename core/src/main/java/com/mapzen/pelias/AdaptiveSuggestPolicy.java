@@ -0,0 +1,169 @@
+package com.mapzen.pelias;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapts autocomplete to the measured {@link NetworkQuality}, so that slow networks get fewer,
+ * smaller requests instead of a pile of late ones. The 95th percentile round-trip time is compared
+ * with a latency budget:
+ *
+ * <ul>
+ * <li>{@link Level#FAST} up to a quarter of the budget: requests for every change with the
+ * default minimum length and size.</li>
+ * <li>{@link Level#MODERATE} up to half of the budget: changes are debounced and fewer results
+ * requested.</li>
+ * <li>{@link Level#SLOW} up to the budget, or when throughput is low: longer debounce, longer
+ * minimum text and fewer results still.</li>
+ * <li>{@link Level#LOCAL_ONLY} beyond the budget: no requests; suggestions come from local
+ * refinement and saved searches. One probe request per probe interval is still allowed through
+ * so that recovery is noticed.</li>
+ * </ul>
+ *
+ * <p>Until enough requests have been measured the network is assumed to be fast.
+ */
+public class AdaptiveSuggestPolicy {
+  public static final long DEFAULT_LATENCY_BUDGET_MILLIS = 1500;
+  public static final long DEFAULT_PROBE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+  public static final double DEFAULT_SLOW_THROUGHPUT = 16 * 1024;
+  public static final int MIN_SAMPLES = 5;
+
+  /**
+   * Network quality levels, from best to worst.
+   */
+  public enum Level {
+    FAST(0, SuggestController.DEFAULT_MIN_QUERY_LENGTH, 0),
+    MODERATE(150, SuggestController.DEFAULT_MIN_QUERY_LENGTH, 10),
+    SLOW(300, SuggestController.DEFAULT_MIN_QUERY_LENGTH + 1, 5),
+    LOCAL_ONLY(0, SuggestController.DEFAULT_MIN_QUERY_LENGTH + 1, 5);
+
+    final long debounceMillis;
+    final int minQueryLength;
+    final int resultSize;
+
+    /**
+     * Creates a level with the request settings used at it.
+     */
+    Level(long debounceMillis, int minQueryLength, int resultSize) {
+      this.debounceMillis = debounceMillis;
+      this.minQueryLength = minQueryLength;
+      this.resultSize = resultSize;
+    }
+  }
+
+  private final NetworkQuality quality;
+  private long latencyBudgetMillis = DEFAULT_LATENCY_BUDGET_MILLIS;
+  private long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+  private double slowThroughput = DEFAULT_SLOW_THROUGHPUT;
+  private long lastProbeMillis = Long.MIN_VALUE;
+
+  /**
+   * Constructs a policy adapting to the requests of the given {@link Pelias}.
+   */
+  public AdaptiveSuggestPolicy(Pelias pelias) {
+    this(pelias.getNetworkQuality());
+  }
+
+  /**
+   * Constructs a policy adapting to the given measurements.
+   */
+  public AdaptiveSuggestPolicy(NetworkQuality quality) {
+    this.quality = quality;
+  }
+
+  /**
+   * Set the 95th percentile round-trip time beyond which no requests are sent. Defaults to
+   * {@link #DEFAULT_LATENCY_BUDGET_MILLIS}.
+   */
+  public synchronized void setLatencyBudget(long duration, TimeUnit unit) {
+    latencyBudgetMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set how often a request is let through while {@link Level#LOCAL_ONLY} to measure the network
+   * again. Defaults to {@link #DEFAULT_PROBE_INTERVAL_MILLIS}.
+   */
+  public synchronized void setProbeInterval(long duration, TimeUnit unit) {
+    probeIntervalMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set the throughput in bytes per second below which the network counts as
+   * {@link Level#SLOW} regardless of latency. Defaults to {@link #DEFAULT_SLOW_THROUGHPUT}.
+   */
+  public synchronized void setSlowThroughput(double bytesPerSecond) {
+    slowThroughput = bytesPerSecond;
+  }
+
+  /**
+   * Returns the current network quality level.
+   */
+  public synchronized Level getLevel() {
+    if (quality.getSampleCount() < MIN_SAMPLES) {
+      return Level.FAST;
+    }
+    final long p95 = quality.getRoundTripPercentile(0.95);
+    if (p95 > latencyBudgetMillis) {
+      return Level.LOCAL_ONLY;
+    }
+    final double throughput = quality.getThroughput();
+    if (p95 > latencyBudgetMillis / 2 || (throughput >= 0 && throughput < slowThroughput)) {
+      return Level.SLOW;
+    }
+    return p95 > latencyBudgetMillis / 4 ? Level.MODERATE : Level.FAST;
+  }
+
+  /**
+   * Returns how long text must be unchanged before a request is issued.
+   */
+  public long getDebounceMillis() {
+    return getLevel().debounceMillis;
+  }
+
+  /**
+   * Returns the shortest text for which requests are issued.
+   */
+  public int getMinQueryLength() {
+    return getLevel().minQueryLength;
+  }
+
+  /**
+   * Returns how many results to request, or 0 for the server default.
+   */
+  public int getResultSize() {
+    return getLevel().resultSize;
+  }
+
+  /**
+   * Returns true if the next text change should be answered locally. Returns false once per probe
+   * interval while {@link Level#LOCAL_ONLY}, so that the caller sends a request measuring the
+   * network again.
+   */
+  public boolean isLocalOnly() {
+    if (getLevel() != Level.LOCAL_ONLY) {
+      synchronized (this) {
+        lastProbeMillis = Long.MIN_VALUE;
+      }
+      return false;
+    }
+    final long now = nowMillis();
+    synchronized (this) {
+      if (lastProbeMillis == Long.MIN_VALUE) {
+        // The request which exceeded the budget just completed, the interval starts now.
+        lastProbeMillis = now;
+        return true;
+      }
+      if (now - lastProbeMillis < probeIntervalMillis) {
+        return true;
+      }
+      lastProbeMillis = now;
+      return false;
+    }
+  }
+
+  /**
+   * Returns the current time in milliseconds on a monotonic clock.
+   */
+  long nowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+}
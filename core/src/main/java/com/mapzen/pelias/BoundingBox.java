@@ -0,0 +1,133 @@
+package com.mapzen.pelias;
+
+/**
+ * Represents a rectangular area on the map.
+ */
+public class BoundingBox {
+  private final double minLat;
+  private final double minLon;
+  private final double maxLat;
+  private final double maxLon;
+
+  /**
+   * Constructs a new {@link BoundingBox}.
+   */
+  public BoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+    if (((maxLat - minLat) > 0.0) && ((maxLon - minLon) > 0.0)) {
+      this.minLat = minLat;
+      this.minLon = minLon;
+      this.maxLat = maxLat;
+      this.maxLon = maxLon;
+    } else {
+      this.minLat = maxLat;
+      this.minLon = maxLon;
+      this.maxLat = minLat;
+      this.maxLon = minLon;
+    }
+  }
+
+  /**
+   * Returns min lat.
+   */
+  public double getMinLat() {
+    return minLat;
+  }
+
+  /**
+   * Returns min lon.
+   */
+  public double getMinLon() {
+    return minLon;
+  }
+
+  /**
+   * Returns max lat.
+   */
+  public double getMaxLat() {
+    return maxLat;
+  }
+
+  /**
+   * Returns max lon.
+   */
+  public double getMaxLon() {
+    return maxLon;
+  }
+
+  /**
+   * Returns true if the point lies inside the box or on its edge.
+   */
+  public boolean contains(double lat, double lon) {
+    return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
+  }
+
+  /**
+   * Returns true if the other box lies entirely inside this one.
+   */
+  public boolean contains(BoundingBox other) {
+    return other.minLat >= minLat && other.maxLat <= maxLat && other.minLon >= minLon
+        && other.maxLon <= maxLon;
+  }
+
+  /**
+   * Returns true if the boxes overlap in an area larger than zero.
+   */
+  public boolean intersects(BoundingBox other) {
+    return other.minLat < maxLat && other.maxLat > minLat && other.minLon < maxLon
+        && other.maxLon > minLon;
+  }
+
+  /**
+   * Returns the area both boxes cover, or null if they do not intersect.
+   */
+  public BoundingBox intersection(BoundingBox other) {
+    if (!intersects(other)) {
+      return null;
+    }
+    return new BoundingBox(Math.max(minLat, other.minLat), Math.max(minLon, other.minLon),
+        Math.min(maxLat, other.maxLat), Math.min(maxLon, other.maxLon));
+  }
+
+  /**
+   * Returns the area of the box in square degrees, for comparing boxes with each other.
+   */
+  public double area() {
+    return (maxLat - minLat) * (maxLon - minLon);
+  }
+
+  /**
+   * Returns a box with the same center, grown on every side by {@code fraction} of its height and
+   * width. A negative fraction shrinks it.
+   */
+  public BoundingBox expand(double fraction) {
+    final double lat = (maxLat - minLat) * fraction;
+    final double lon = (maxLon - minLon) * fraction;
+    return new BoundingBox(minLat - lat, minLon - lon, maxLat + lat, maxLon + lon);
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    final BoundingBox other = (BoundingBox) o;
+    return Double.compare(minLat, other.minLat) == 0 && Double.compare(minLon, other.minLon) == 0
+        && Double.compare(maxLat, other.maxLat) == 0 && Double.compare(maxLon, other.maxLon) == 0;
+  }
+
+  @Override public int hashCode() {
+    int result = Double.valueOf(minLat).hashCode();
+    result = 31 * result + Double.valueOf(minLon).hashCode();
+    result = 31 * result + Double.valueOf(maxLat).hashCode();
+    result = 31 * result + Double.valueOf(maxLon).hashCode();
+    return result;
+  }
+
+  @Override public String toString() {
+    return "BoundingBox[" + minLat + "," + minLon + "," + maxLat + "," + maxLon + "]";
+  }
+}
@@ -0,0 +1,43 @@
+package com.mapzen.pelias;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which a request must complete, for example the moment the user stops looking
+ * at the suggestions of the text they typed. Pass it to {@link Pelias#deadline(Deadline,
+ * retrofit2.Callback)}; a request still running at the deadline is canceled and fails with an
+ * {@link java.io.InterruptedIOException}. One deadline may be shared by several requests, which
+ * then split the remaining budget between their steps.
+ */
+public final class Deadline {
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * Returns a deadline the given duration from now.
+   */
+  public static Deadline after(long duration, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(duration));
+  }
+
+  /**
+   * Returns the time left until the deadline, or 0 if it has passed.
+   */
+  public long remaining(TimeUnit unit) {
+    return unit.convert(Math.max(deadlineNanos - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns true if the deadline has passed.
+   */
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  @Override public String toString() {
+    return "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms remaining]";
+  }
+}
@@ -0,0 +1,145 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Enforces {@link Deadline}s on enqueued calls. OkHttp 3.8 has no per-call timeouts, so calls are
+ * created on clients derived with connect, read and write timeouts cut to the remaining budget,
+ * and a timer on a shared daemon thread cancels calls still running when the deadline passes.
+ */
+final class Deadlines {
+  private static ScheduledExecutorService scheduler;
+
+  private Deadlines() {
+  }
+
+  /**
+   * Returns the exception calls which missed their deadline fail with.
+   */
+  static InterruptedIOException exceeded() {
+    return new InterruptedIOException("Deadline exceeded");
+  }
+
+  private static synchronized ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "Pelias deadlines");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return scheduler;
+  }
+
+  /**
+   * Marks a callback to be delivered to by a call which must complete by the deadline. Unwrapped
+   * by {@link Pelias} when the call is enqueued.
+   */
+  static final class DeadlineCallback implements Callback<Result> {
+    final Deadline deadline;
+    final Callback<Result> delegate;
+
+    /**
+     * Creates a callback for a call which must complete by {@code deadline}.
+     */
+    DeadlineCallback(Deadline deadline, Callback<Result> delegate) {
+      this.deadline = deadline;
+      this.delegate = delegate;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      delegate.onResponse(call, response);
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      delegate.onFailure(call, t);
+    }
+  }
+
+  /**
+   * Creates calls limited to a deadline on the clients of an {@link EndpointCallFactory}. The
+   * budget is measured when a call starts, so time spent waiting in a scheduler is not given to
+   * the http timeouts.
+   */
+  static final class LimitedCallFactory implements okhttp3.Call.Factory {
+    private final EndpointCallFactory endpoints;
+    private final Deadline deadline;
+
+    /**
+     * Creates a factory for calls which must complete by {@code deadline}.
+     */
+    LimitedCallFactory(EndpointCallFactory endpoints, Deadline deadline) {
+      this.endpoints = endpoints;
+      this.deadline = deadline;
+    }
+
+    @Override public okhttp3.Call newCall(Request request) {
+      return endpoints.newCall(request, deadline);
+    }
+  }
+
+  /**
+   * Cancels its call when the deadline passes and reports it as having missed the deadline,
+   * whichever of the timer and the response comes first. Bounds the call as a whole, which the
+   * http timeouts only do for each connect, read or write.
+   */
+  static final class TimerCallback implements Callback<Result>, Runnable {
+    private static final int PENDING = 0;
+    private static final int COMPLETED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Call<Result> call;
+    private final Callback<Result> delegate;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private final ScheduledFuture<?> timer;
+
+    /**
+     * Creates a callback for {@code call}, which is canceled once {@code deadline} passes.
+     */
+    TimerCallback(Call<Result> call, Deadline deadline, Callback<Result> delegate) {
+      this.call = call;
+      this.delegate = delegate;
+      this.timer = scheduler().schedule(this, deadline.remaining(TimeUnit.NANOSECONDS),
+          TimeUnit.NANOSECONDS);
+    }
+
+    @Override public void run() {
+      if (state.compareAndSet(PENDING, EXPIRED)) {
+        call.cancel();
+      }
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      if (state.compareAndSet(PENDING, COMPLETED)) {
+        timer.cancel(false);
+        delegate.onResponse(call, response);
+      } else {
+        delegate.onFailure(call, exceeded());
+      }
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      if (state.compareAndSet(PENDING, COMPLETED)) {
+        timer.cancel(false);
+        delegate.onFailure(call, t);
+      } else {
+        delegate.onFailure(call, exceeded());
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.mapzen.pelias;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+
+/**
+ * Creates each call on a client with the timeouts configured for its endpoint. The clients are
+ * derived from one base client, so they share its connection pool and dispatcher. Calls with a
+ * {@link Deadline} get their own client whose timeouts are cut to the budget left when they start.
+ */
+final class EndpointCallFactory implements Call.Factory {
+  private final OkHttpClient defaultClient;
+  private final Map<PeliasEndpoint, OkHttpClient> clients = new EnumMap<>(PeliasEndpoint.class);
+
+  /**
+   * Creates a factory using {@code client} for endpoints without timeouts of their own.
+   */
+  EndpointCallFactory(OkHttpClient client, Map<PeliasEndpoint, PeliasConfig.Timeouts> timeouts) {
+    this.defaultClient = client;
+    for (Map.Entry<PeliasEndpoint, PeliasConfig.Timeouts> entry : timeouts.entrySet()) {
+      final PeliasConfig.Timeouts endpointTimeouts = entry.getValue();
+      clients.put(entry.getKey(), client.newBuilder()
+          .connectTimeout(endpointTimeouts.connectMillis, TimeUnit.MILLISECONDS)
+          .readTimeout(endpointTimeouts.readMillis, TimeUnit.MILLISECONDS)
+          .writeTimeout(endpointTimeouts.readMillis, TimeUnit.MILLISECONDS)
+          .build());
+    }
+  }
+
+  @Override public Call newCall(Request request) {
+    return client(request).newCall(request);
+  }
+
+  /**
+   * Creates a call whose connect, read and write timeouts are at most the time left until the
+   * deadline, so that a stalled connect or read fails inside OkHttp.
+   */
+  Call newCall(Request request, Deadline deadline) {
+    final OkHttpClient client = client(request);
+    final long remaining = Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS));
+    return client.newBuilder()
+        .connectTimeout(limit(client.connectTimeoutMillis(), remaining), TimeUnit.MILLISECONDS)
+        .readTimeout(limit(client.readTimeoutMillis(), remaining), TimeUnit.MILLISECONDS)
+        .writeTimeout(limit(client.writeTimeoutMillis(), remaining), TimeUnit.MILLISECONDS)
+        .build()
+        .newCall(request);
+  }
+
+  /**
+   * Returns the timeout capped by the remaining budget. A timeout of 0 means none.
+   */
+  private static long limit(long timeoutMillis, long remainingMillis) {
+    return timeoutMillis == 0 ? remainingMillis : Math.min(timeoutMillis, remainingMillis);
+  }
+
+  private OkHttpClient client(Request request) {
+    final PeliasEndpoint endpoint = PeliasEndpoint.forPath(request.url().encodedPath());
+    final OkHttpClient client = endpoint != null ? clients.get(endpoint) : null;
+    return client != null ? client : defaultClient;
+  }
+
+  /**
+   * Returns the client calls to the endpoint are created on.
+   */
+  OkHttpClient client(PeliasEndpoint endpoint) {
+    final OkHttpClient client = clients.get(endpoint);
+    return client != null ? client : defaultClient;
+  }
+}
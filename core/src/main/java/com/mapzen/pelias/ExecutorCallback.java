@@ -0,0 +1,47 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Posts responses to a {@link Callback} on an executor, reporting calls canceled in the meantime
+ * as failures, the same way Retrofit delivers on its callback executor.
+ */
+final class ExecutorCallback implements Callback<Result> {
+  private final Executor executor;
+  private final Callback<Result> delegate;
+
+  /**
+   * Creates a callback posting to {@code delegate} on {@code executor}.
+   */
+  ExecutorCallback(Executor executor, Callback<Result> delegate) {
+    this.executor = executor;
+    this.delegate = delegate;
+  }
+
+  @Override public void onResponse(final Call<Result> call, final Response<Result> response) {
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        if (call.isCanceled()) {
+          delegate.onFailure(call, new IOException("Canceled"));
+        } else {
+          delegate.onResponse(call, response);
+        }
+      }
+    });
+  }
+
+  @Override public void onFailure(final Call<Result> call, final Throwable t) {
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        delegate.onFailure(call, t);
+      }
+    });
+  }
+}
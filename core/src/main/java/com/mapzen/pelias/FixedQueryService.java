@@ -0,0 +1,102 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import retrofit2.Call;
+
+/**
+ * Sends query specs through the fixed overloads of a {@link PeliasService} which does not
+ * implement {@link PeliasQueryService}, such as a custom service written before query specs
+ * existed. Specs with parameters none of the overloads take fail with an
+ * {@link UnsupportedOperationException}.
+ */
+final class FixedQueryService implements PeliasQueryService {
+  private final PeliasService service;
+
+  /**
+   * Creates an adapter sending specs through the given service.
+   */
+  FixedQueryService(PeliasService service) {
+    this.service = service;
+  }
+
+  @Override public Call<Result> autocomplete(Map<String, String> parameters) {
+    final Map<String, String> rest = new HashMap<>(parameters);
+    final String text = rest.remove("text");
+    final Double lat = number(rest.remove("focus.point.lat"));
+    final Double lon = number(rest.remove("focus.point.lon"));
+    if (lat != null && lon != null) {
+      if (rest.isEmpty()) {
+        return service.getSuggest(text, lat, lon);
+      }
+      final String layers = rest.remove("layers");
+      final String country = rest.remove("boundary.country");
+      final String sources = rest.remove("sources");
+      if (rest.isEmpty()) {
+        return service.getSuggest(text, lat, lon, layers, country, sources);
+      }
+    }
+    throw unsupported(PeliasEndpoint.AUTOCOMPLETE, parameters);
+  }
+
+  @Override public Call<Result> search(Map<String, String> parameters) {
+    final Map<String, String> rest = new HashMap<>(parameters);
+    final String text = rest.remove("text");
+    final Double lat = number(rest.remove("focus.point.lat"));
+    final Double lon = number(rest.remove("focus.point.lon"));
+    final Double minLat = number(rest.remove("focus.viewport.min_lat"));
+    final Double minLon = number(rest.remove("focus.viewport.min_lon"));
+    final Double maxLat = number(rest.remove("focus.viewport.max_lat"));
+    final Double maxLon = number(rest.remove("focus.viewport.max_lon"));
+    final boolean point = lat != null && lon != null;
+    final boolean viewport = minLat != null && minLon != null && maxLat != null && maxLon != null;
+    if (rest.isEmpty() && point && minLat == null && minLon == null && maxLat == null
+        && maxLon == null) {
+      return service.getSearch(text, lat, lon);
+    }
+    if (rest.isEmpty() && viewport && lat == null && lon == null) {
+      return service.getSearch(text, minLat, minLon, maxLat, maxLon);
+    }
+    throw unsupported(PeliasEndpoint.SEARCH, parameters);
+  }
+
+  @Override public Call<Result> reverse(Map<String, String> parameters) {
+    final Map<String, String> rest = new HashMap<>(parameters);
+    final Double lat = number(rest.remove("point.lat"));
+    final Double lon = number(rest.remove("point.lon"));
+    if (lat != null && lon != null) {
+      if (rest.isEmpty()) {
+        return service.getReverse(lat, lon);
+      }
+      final String sources = rest.remove("sources");
+      if (rest.isEmpty()) {
+        return service.getReverse(lat, lon, sources);
+      }
+    }
+    throw unsupported(PeliasEndpoint.REVERSE, parameters);
+  }
+
+  /**
+   * Returns the number a parameter holds, or null if it is missing or not a number.
+   */
+  private static Double number(String value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Double.valueOf(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private UnsupportedOperationException unsupported(PeliasEndpoint endpoint,
+      Map<String, String> parameters) {
+    return new UnsupportedOperationException(service.getClass().getName()
+        + " does not implement PeliasQueryService and has no " + endpoint.getPath()
+        + " overload taking " + parameters.keySet());
+  }
+}
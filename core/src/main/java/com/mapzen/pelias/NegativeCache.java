@@ -0,0 +1,141 @@
+package com.mapzen.pelias;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers autocomplete queries which returned no features. A query extending a query known to
+ * be empty, for the same filters and coarse focus area, is almost certainly empty too, so
+ * {@link SuggestController} does not send it. Queries are identified by their
+ * {@link QueryNormalizer} key.
+ *
+ * <p>Entries are kept in least recently used order up to a maximum count and expire after the
+ * re-check interval, after which the server is asked again. Safe to share between threads.
+ */
+public class NegativeCache {
+  public static final int DEFAULT_MAX_ENTRIES = 128;
+  public static final long DEFAULT_RECHECK_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  public static final double DEFAULT_CELL_DEGREES = 0.5;
+
+  private final int maxEntries;
+  private final Map<String, Long> entries;
+  private long recheckMillis = DEFAULT_RECHECK_MILLIS;
+  private double cellDegrees = DEFAULT_CELL_DEGREES;
+
+  /**
+   * Constructs a cache holding up to {@link #DEFAULT_MAX_ENTRIES} empty queries.
+   */
+  public NegativeCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * Constructs a cache holding up to {@code maxEntries} empty queries.
+   */
+  public NegativeCache(final int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Set how long a query is known to be empty before the server is asked again. Defaults to
+   * {@link #DEFAULT_RECHECK_MILLIS}.
+   */
+  public synchronized void setRecheckInterval(long duration, TimeUnit unit) {
+    recheckMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set the size in degrees of the cells focus points are grouped into. Queries focused anywhere
+   * in the same cell share entries. Defaults to {@link #DEFAULT_CELL_DEGREES}.
+   */
+  public synchronized void setCellDegrees(double cellDegrees) {
+    this.cellDegrees = cellDegrees;
+  }
+
+  /**
+   * Returns the scope entries are recorded under for requests with the given filter and focus.
+   * Either may be null.
+   */
+  public synchronized String scope(SuggestFilter filter, PeliasLocationProvider focus) {
+    final StringBuilder scope = new StringBuilder();
+    if (filter != null) {
+      scope.append(filter.getLayersFilter()).append('|')
+          .append(filter.getCountryFilter()).append('|')
+          .append(filter.getSources());
+    }
+    scope.append('@');
+    if (focus != null) {
+      scope.append((long) Math.floor(focus.getLat() / cellDegrees)).append(',')
+          .append((long) Math.floor(focus.getLon() / cellDegrees));
+    }
+    return scope.toString();
+  }
+
+  /**
+   * Records that the query with the given normalized key returned no features.
+   */
+  public void putEmpty(String scope, String key) {
+    if (key.isEmpty() || maxEntries <= 0) {
+      return;
+    }
+    final long now = nowMillis();
+    synchronized (this) {
+      entries.put(scope + '\n' + key, now);
+    }
+  }
+
+  /**
+   * Returns true if the query with the given normalized key, or a query it extends, is known to
+   * return no features.
+   */
+  public boolean isKnownEmpty(String scope, String key) {
+    final long now = nowMillis();
+    synchronized (this) {
+      if (entries.isEmpty()) {
+        return false;
+      }
+      final String prefix = scope + '\n';
+      final StringBuilder entry = new StringBuilder(prefix.length() + key.length());
+      entry.append(prefix);
+      for (int i = 0; i < key.length(); i++) {
+        entry.append(key.charAt(i));
+        final Long recorded = entries.get(entry.toString());
+        if (recorded == null) {
+          continue;
+        }
+        if (now - recorded < recheckMillis) {
+          return true;
+        }
+        entries.remove(entry.toString());
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Forgets every recorded query, for example after the data set changed.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of recorded queries, including expired ones not evicted yet.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the current time in milliseconds on a monotonic clock.
+   */
+  long nowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+}
@@ -0,0 +1,168 @@
+package com.mapzen.pelias;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recent round-trip times and response sizes of the requests issued through {@link Pelias}, for
+ * adapting request policy to the network, see {@link AdaptiveSuggestPolicy}. Only the latest
+ * samples within the maximum age are considered, so that the measurements follow the network the
+ * device is on now.
+ *
+ * <p>Round-trip times are measured from enqueueing a call until its response has been read, which
+ * is the delay users see. Failures count with the time they took; canceled calls and calls
+ * answered from a local cache are not recorded. Requests which timed out or missed their
+ * {@link Deadline} are also counted, see {@link #getTimeoutCount()}. Safe to share between
+ * threads.
+ */
+public class NetworkQuality {
+  public static final int DEFAULT_MAX_SAMPLES = 20;
+  public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  public static final long DEFAULT_MIN_THROUGHPUT_BYTES = 32 * 1024;
+
+  private final long[] roundTrips;
+  private final long[] sizes;
+  private final long[] times;
+  private long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+  private long minThroughputBytes = DEFAULT_MIN_THROUGHPUT_BYTES;
+  private int next;
+  private int count;
+  private int timeouts;
+
+  /**
+   * Constructs a tracker keeping the latest {@link #DEFAULT_MAX_SAMPLES} samples.
+   */
+  public NetworkQuality() {
+    this(DEFAULT_MAX_SAMPLES);
+  }
+
+  /**
+   * Constructs a tracker keeping the latest {@code maxSamples} samples.
+   */
+  public NetworkQuality(int maxSamples) {
+    roundTrips = new long[maxSamples];
+    sizes = new long[maxSamples];
+    times = new long[maxSamples];
+  }
+
+  /**
+   * Set how long samples are considered. Defaults to {@link #DEFAULT_MAX_AGE_MILLIS}.
+   */
+  public synchronized void setMaxAge(long duration, TimeUnit unit) {
+    maxAgeMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set the smallest response counted towards throughput. Defaults to
+   * {@link #DEFAULT_MIN_THROUGHPUT_BYTES}.
+   */
+  public synchronized void setMinThroughputBytes(long bytes) {
+    minThroughputBytes = bytes;
+  }
+
+  /**
+   * Records a request which took {@code roundTripMillis} and returned {@code bytes} bytes, or a
+   * negative size if unknown.
+   */
+  public void record(long roundTripMillis, long bytes) {
+    final long now = nowMillis();
+    synchronized (this) {
+      if (roundTrips.length == 0) {
+        return;
+      }
+      roundTrips[next] = roundTripMillis;
+      sizes[next] = bytes;
+      times[next] = now;
+      next = (next + 1) % roundTrips.length;
+      count = Math.min(count + 1, roundTrips.length);
+    }
+  }
+
+  /**
+   * Records a request which timed out or missed its deadline.
+   */
+  public synchronized void recordTimeout() {
+    timeouts++;
+  }
+
+  /**
+   * Returns the number of requests which timed out or missed their deadline since construction or
+   * the last {@link #reset()}.
+   */
+  public synchronized int getTimeoutCount() {
+    return timeouts;
+  }
+
+  /**
+   * Returns the number of samples within the maximum age.
+   */
+  public int getSampleCount() {
+    return recentRoundTrips().length;
+  }
+
+  /**
+   * Returns the round-trip time in milliseconds which the given fraction of recent requests did
+   * not exceed, for example 0.95 for the 95th percentile, or 0 without recent samples.
+   */
+  public long getRoundTripPercentile(double fraction) {
+    final long[] sorted = recentRoundTrips();
+    if (sorted.length == 0) {
+      return 0;
+    }
+    Arrays.sort(sorted);
+    final int rank = (int) Math.ceil(fraction * sorted.length);
+    return sorted[Math.min(Math.max(rank, 1), sorted.length) - 1];
+  }
+
+  /**
+   * Returns the recent throughput in bytes per second over the requests whose size is known and at
+   * least the minimum, or a negative value if there are none. Round trips include the latency, so
+   * small responses such as autocomplete suggestions would make any network look slow; they are
+   * left out.
+   */
+  public synchronized double getThroughput() {
+    final long oldest = nowMillis() - maxAgeMillis;
+    long bytes = 0;
+    long millis = 0;
+    boolean known = false;
+    for (int i = 0; i < count; i++) {
+      if (times[i] > oldest && sizes[i] >= 0 && sizes[i] >= minThroughputBytes) {
+        bytes += sizes[i];
+        millis += roundTrips[i];
+        known = true;
+      }
+    }
+    if (!known) {
+      return -1;
+    }
+    return millis > 0 ? bytes * 1000.0 / millis : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Forgets every sample, for example after the device switched networks.
+   */
+  public synchronized void reset() {
+    next = 0;
+    count = 0;
+    timeouts = 0;
+  }
+
+  private synchronized long[] recentRoundTrips() {
+    final long oldest = nowMillis() - maxAgeMillis;
+    final long[] recent = new long[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      if (times[i] > oldest) {
+        recent[size++] = roundTrips[i];
+      }
+    }
+    return Arrays.copyOf(recent, size);
+  }
+
+  /**
+   * Returns the current time in milliseconds on a monotonic clock.
+   */
+  long nowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+}
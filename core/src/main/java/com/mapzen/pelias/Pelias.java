@@ -0,0 +1,721 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.codec.GsonResponseCodec;
+import com.mapzen.pelias.codec.ResponseCodec;
+import com.mapzen.pelias.codec.ResponseCodecs;
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.gson.Result;
+import com.mapzen.pelias.http.DirectPeliasService;
+import com.mapzen.pelias.http.Tls12OkHttpClientFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Retrofit;
+
+/**
+ * Main class for interaction with Pelias. Construction is cheap: the http client, TLS setup, Gson
+ * and Retrofit service are built on first request, or ahead of time on a background thread with
+ * {@link #warmUp(Executor)}.
+ *
+ * <p>Responses are read on a background thread and callbacks invoked on the callback executor,
+ * the main thread on Android. Use {@link #process(ResultProcessor, ProcessedCallback)} to turn
+ * results into display items before they are posted.
+ *
+ * <p>One instance can be shared by any number of threads. Settings are kept in an immutable
+ * snapshot which setters replace as a whole; requests read the current snapshot without locking
+ * and calls already issued complete with the settings they were issued with.
+ */
+public class Pelias {
+  public static final String DEFAULT_SEARCH_ENDPOINT = "https://search.mapzen.com/";
+
+  private final Object lock = new Object();
+  private final RequestGroups requestGroups = new RequestGroups();
+  private final NetworkQuality networkQuality = new NetworkQuality();
+  private final PeliasService service;
+  private final OkHttpClient httpClient;
+  private volatile PeliasConfig config;
+  private volatile Client client;
+  private volatile PeliasLocationProvider locationProvider;
+  private volatile Executor callbackExecutor;
+  private volatile ViewportCache viewportCache;
+  private volatile RequestScheduler requestScheduler;
+  private OkHttpClient defaultHttpClient;
+
+  /**
+   * Constructs a {@link Pelias} object configured to use the default search endpoint for requests.
+   */
+  public Pelias() {
+    this(DEFAULT_SEARCH_ENDPOINT);
+  }
+
+  /**
+   * Constructs a {@link Pelias} object configured to use the default provided
+   * {@link PeliasService} for requests. The service is kept for the lifetime of this object;
+   * settings which configure the http client, such as the endpoint, request handler, debug
+   * logging, response codecs and timeouts, have no effect on it. {@link QuerySpec Query specs}
+   * are sent through it if it also implements {@link PeliasQueryService}, otherwise through its
+   * fixed overloads; see {@link #supportsQuerySpecs()}.
+   */
+  public Pelias(PeliasService service) {
+    this(DEFAULT_SEARCH_ENDPOINT, service, null);
+  }
+
+  /**
+   * Constructs a {@link Pelias} object configured to use the provided url for requests.
+   */
+  public Pelias(String url) {
+    this(url, null, null);
+  }
+
+  /**
+   * Constructs a {@link Pelias} object configured to use the provided url and http client for
+   * requests. The client's connection pool and dispatcher are shared, which allows callers to
+   * control request concurrency and timeouts.
+   */
+  public Pelias(String url, OkHttpClient httpClient) {
+    this(url, null, httpClient);
+  }
+
+  private Pelias(String url, PeliasService service, OkHttpClient httpClient) {
+    this.config = new PeliasConfig(url, false, null, null);
+    this.service = service;
+    this.httpClient = httpClient;
+  }
+
+  /**
+   * Builds the http client and service on the given executor so that the first request does not
+   * pay for it. Does nothing if the service has already been built.
+   */
+  public void warmUp(Executor executor) {
+    if (isCurrent(client)) {
+      return;
+    }
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        getService();
+      }
+    });
+  }
+
+  /**
+   * Builds the http client and service on a new low priority background thread.
+   */
+  public void warmUp() {
+    warmUp(new Executor() {
+      @Override public void execute(Runnable command) {
+        final Thread thread = new Thread(command, "Pelias warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+      }
+    });
+  }
+
+  /**
+   * Returns the service requests are issued through, building it on first use and after the
+   * configuration changed. Calls created directly on the service are not enqueued yet, and deliver
+   * their callbacks on the http thread instead of the callback executor.
+   */
+  public PeliasService getService() {
+    return client().service;
+  }
+
+  /**
+   * Returns the service {@link QuerySpec query specs} are sent through. For an injected service
+   * which does not implement {@link PeliasQueryService} this sends each spec through the fixed
+   * overload taking its parameters, and throws an {@link UnsupportedOperationException} for specs
+   * none of them takes.
+   */
+  public PeliasQueryService getQueryService() {
+    return client().queryService;
+  }
+
+  /**
+   * Returns true if query specs with any parameters can be sent, which is the case unless an
+   * injected service does not implement {@link PeliasQueryService}.
+   */
+  public boolean supportsQuerySpecs() {
+    return !(client().queryService instanceof FixedQueryService);
+  }
+
+  /**
+   * Returns the client for the current configuration. Reads are lock free once it is built; it is
+   * rebuilt at most once per configuration change.
+   */
+  private Client client() {
+    final Client current = client;
+    if (isCurrent(current)) {
+      return current;
+    }
+    synchronized (lock) {
+      if (!isCurrent(client)) {
+        client = newClient(config);
+      }
+      return client;
+    }
+  }
+
+  private boolean isCurrent(Client current) {
+    return current != null && current.config == config;
+  }
+
+  private Client newClient(PeliasConfig config) {
+    if (service != null) {
+      final PeliasQueryService queryService = service instanceof PeliasQueryService
+          ? (PeliasQueryService) service : new FixedQueryService(service);
+      return new Client(config, service, queryService, null, null, null, null);
+    }
+
+    final RequestInterceptor requestInterceptor = new RequestInterceptor();
+    requestInterceptor.setRequestHandler(config.requestHandler);
+
+    final OkHttpClient.Builder clientBuilder = Tls12OkHttpClientFactory.enableTls12OnPreLollipop(
+        baseHttpClient().newBuilder().addNetworkInterceptor(requestInterceptor));
+
+    if (config.debug) {
+      final HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+      logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+      clientBuilder.addNetworkInterceptor(logging);
+    }
+
+    // Retrofit validates the endpoint and supplies the platform callback executor, the service
+    // itself is built without reflection.
+    final OkHttpClient client = clientBuilder.build();
+    final Retrofit retrofit = new Retrofit.Builder()
+        .baseUrl(config.endpoint)
+        .client(client)
+        .build();
+    final ResponseCodecs codecs = config.codecs != null
+        ? config.codecs : ResponseCodecs.of(new GsonResponseCodec(PeliasGson.get()));
+    // Responses are delivered on the http thread and posted to the callback executor here, so
+    // that processed requests can do their work before leaving the background thread.
+    final EndpointCallFactory endpoints = new EndpointCallFactory(client, config.timeouts);
+    final okhttp3.Call.Factory callFactory = config.timeouts.isEmpty() ? client : endpoints;
+    final DirectPeliasService service =
+        new DirectPeliasService(retrofit.baseUrl(), callFactory, codecs, null);
+    return new Client(config, service, service, retrofit.callbackExecutor(), retrofit.baseUrl(),
+        endpoints, codecs);
+  }
+
+  /**
+   * Returns the client every configuration derives its own from, so that they share one
+   * connection pool and dispatcher. Must hold the lock.
+   */
+  private OkHttpClient baseHttpClient() {
+    if (httpClient != null) {
+      return httpClient;
+    }
+    if (defaultHttpClient == null) {
+      defaultHttpClient = new OkHttpClient();
+    }
+    return defaultHttpClient;
+  }
+
+  /**
+   * Sets a request handler for the object. Set a custom handler to provide extra query params or
+   * headers such as api keys. Requests already issued keep the previous handler.
+   */
+  public void setRequestHandler(PeliasRequestHandler handler) {
+    synchronized (lock) {
+      config = config.withRequestHandler(handler);
+    }
+  }
+
+  /**
+   * Sets endpoint for all http requests. Requests already issued complete against the previous
+   * endpoint.
+   * @param endpoint
+   */
+  public void setEndpoint(String endpoint) {
+    synchronized (lock) {
+      config = config.withEndpoint(endpoint);
+    }
+  }
+
+  /**
+   * Sets the codecs used to decode responses, in order of preference. When more than one is given
+   * they are advertised in the {@code Accept} header and each response is decoded by the codec
+   * matching its content type. Defaults to a {@link GsonResponseCodec}.
+   */
+  public void setResponseCodecs(ResponseCodec... codecs) {
+    final ResponseCodecs responseCodecs = ResponseCodecs.of(codecs);
+    synchronized (lock) {
+      config = config.withCodecs(responseCodecs);
+    }
+  }
+
+  /**
+   * Sets the connect and read timeouts of requests to the endpoint, so that for example a stuck
+   * autocomplete request gives up long before a search would. Endpoints without timeouts of their
+   * own use the http client's. Requests already issued are not affected.
+   */
+  public void setTimeouts(PeliasEndpoint endpoint, long connectTimeout, long readTimeout,
+      TimeUnit unit) {
+    final PeliasConfig.Timeouts timeouts =
+        new PeliasConfig.Timeouts(unit.toMillis(connectTimeout), unit.toMillis(readTimeout));
+    synchronized (lock) {
+      config = config.withTimeouts(endpoint, timeouts);
+    }
+  }
+
+  /**
+   * Restores the http client's timeouts for requests to the endpoint.
+   */
+  public void clearTimeouts(PeliasEndpoint endpoint) {
+    synchronized (lock) {
+      config = config.withTimeouts(endpoint, null);
+    }
+  }
+
+  /**
+   * Sets the executor on which callbacks are invoked. Defaults to the platform executor, which is
+   * the main thread on Android. Set to null to restore the default.
+   */
+  public void setCallbackExecutor(Executor executor) {
+    callbackExecutor = executor;
+  }
+
+  /**
+   * Returns the executor on which callbacks are invoked, or null if they are invoked on the thread
+   * the response was read on.
+   */
+  public Executor getCallbackExecutor() {
+    final Executor executor = callbackExecutor;
+    if (executor != null) {
+      return executor;
+    }
+    final Client current = client;
+    return current != null ? current.platformExecutor : null;
+  }
+
+  /**
+   * Returns a callback which runs {@code processor} on the background thread the response is read
+   * on and posts only the processed value to {@code callback} on the callback executor. Pass it to
+   * any request method to keep conversion of results off the main thread:
+   *
+   * <pre>
+   * pelias.suggest(text, lat, lon, pelias.process(toItems, showItems));
+   * </pre>
+   */
+  public <T> Callback<Result> process(ResultProcessor<T> processor,
+      ProcessedCallback<T> callback) {
+    return new ProcessingCallback<>(this, processor, callback);
+  }
+
+  /**
+   * When debugging, http requests are logged. Requests already issued are not affected.
+   * @param debug
+   */
+  public void setDebug(boolean debug) {
+    synchronized (lock) {
+      config = config.withDebug(debug);
+    }
+  }
+
+  /**
+   * Returns autocomplete suggestions given a query string. The query will use the
+   * {@link PeliasLocationProvider} to retrieve a lat/lon to use as a focus point for the request.
+   * The callback will be notified upon success or failure of query.
+   */
+  public Call<Result> suggest(String query, Callback<Result> callback) {
+    final PeliasLocationProvider provider = locationProvider;
+    return suggest(query, provider.getLat(), provider.getLon(), callback);
+  }
+
+  /**
+   * Returns autocomplete suggestions given a query string. The query will use the
+   * {@link PeliasLocationProvider} to retrieve a lat/lon to use as a focus point for the request.
+   * Results will be limited by the layers, country, and sources strings. The callback will be
+   * notified upon success or failure of query.
+   */
+  public Call<Result> suggest(String query, String layers, String country, String sources,
+      Callback<Result> callback) {
+    final PeliasLocationProvider provider = locationProvider;
+    Call<Result> call = service(callback).getSuggest(query, provider.getLat(), provider.getLon(),
+        layers, country, sources);
+    return enqueue(call, callback, RequestPriority.INTERACTIVE);
+  }
+
+  /**
+   * Requests autocomplete suggestions given a query and lat/lon. The lat/lon is used as a focus
+   * point for results The callback will be notified upon success or failure of the query.
+   */
+  public Call<Result> suggest(String query, double lat, double lon, Callback<Result> callback) {
+    Call<Result> call = service(callback).getSuggest(query, lat, lon);
+    return enqueue(call, callback, RequestPriority.INTERACTIVE);
+  }
+
+  /**
+   * Requests autocomplete suggestions with the parameters of the spec, without adding the
+   * location provider's focus point. The callback will be notified upon success or failure of the
+   * query.
+   */
+  public Call<Result> suggest(QuerySpec spec, Callback<Result> callback) {
+    Call<Result> call = queryService(callback).autocomplete(spec.getParameters());
+    return enqueue(call, callback, RequestPriority.INTERACTIVE);
+  }
+
+  /**
+   * Requests search results given a query. The {@link PeliasLocationProvider} will be used to
+   * generate a bounding box for results. If no location provider is set the query is sent without
+   * a focus, which an injected service must implement {@link PeliasQueryService} for. The callback
+   * will be notified upon success or failure of the query.
+   */
+  public Call<Result> search(String query, Callback<Result> callback) {
+    final PeliasLocationProvider provider = locationProvider;
+    if (provider == null) {
+      Call<Result> call =
+          queryService(callback).search(QuerySpec.builder().text(query).build().getParameters());
+      return enqueue(call, callback);
+    }
+    return search(query, provider.getBoundingBox(), callback);
+  }
+
+  /**
+   * Requests search results given a query. The {@link BoundingBox} will be used to
+   * generate relevant results. If a {@link ViewportCache} is set and covers the box, the callback
+   * is answered from it without a request. The callback will be notified upon success or failure
+   * of the query.
+   */
+  public Call<Result> search(String query, BoundingBox box, Callback<Result> callback) {
+    final Client current = client();
+    final ViewportCache cache = viewportCache;
+    // Results are kept per configuration, so that a changed endpoint or request handler is not
+    // answered with results fetched before.
+    final Result cached = cache != null ? cache.get(current.config, query, box) : null;
+    if (cached != null) {
+      final QuerySpec spec = QuerySpec.builder().text(query).focusViewport(box).build();
+      return enqueue(new ViewportCache.CachedCall(current.config.endpoint, PeliasEndpoint.SEARCH,
+          spec.getParameters(), cached), callback);
+    }
+    Call<Result> call = service(callback).getSearch(query, box.getMinLat(), box.getMinLon(),
+        box.getMaxLat(), box.getMaxLon());
+    if (cache == null) {
+      return enqueue(call, callback);
+    }
+    return enqueue(new ViewportCache.StoringCall(cache, current.config, query, box, call),
+        callback);
+  }
+
+  /**
+   * Requests search results given a query. The lat/lon will be used as a focus point to
+   * generate relevant results. The callback will be notified upon success or failure of
+   * the query.
+   */
+  public Call<Result> search(String query, double lat, double lon, Callback<Result> callback) {
+    Call<Result> call = service(callback).getSearch(query, lat, lon);
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Requests search results with the parameters of the spec, without adding the location
+   * provider's bounding box. The callback will be notified upon success or failure of the query.
+   */
+  public Call<Result> search(QuerySpec spec, Callback<Result> callback) {
+    Call<Result> call = queryService(callback).search(spec.getParameters());
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Issues a reverse geocode request given the lat/lon. The callback will be notified upon success
+   * or failure of the query.
+   */
+  public Call<Result> reverse(double lat, double lon, Callback<Result> callback) {
+    Call<Result> call = service(callback).getReverse(lat, lon);
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Issues a reverse geocode request given the lat/lon and limited to the sources. The callback
+   * will be notified upon success or failure of the query.
+   */
+  public Call<Result> reverse(double lat, double lon, String sources, Callback<Result> callback) {
+    Call<Result> call = service(callback).getReverse(lat, lon, sources);
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Issues a reverse geocode request with the parameters of the spec, which should include a
+   * {@link QuerySpec.Builder#point(double, double) point}. The callback will be notified upon
+   * success or failure of the query.
+   */
+  public Call<Result> reverse(QuerySpec spec, Callback<Result> callback) {
+    Call<Result> call = queryService(callback).reverse(spec.getParameters());
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Issues a place request for a given global identifier. The callback will be notified upon
+   * success or failure of the query.
+   */
+  public Call<Result> place(String gid, Callback<Result> callback) {
+    Call<Result> call = service(callback).getPlace(gid);
+    return enqueue(call, callback);
+  }
+
+  /**
+   * Returns a callback which registers the call it is passed with under {@code tag}, so that it
+   * can be canceled with {@link #cancelAll(Object)} together with every other call of the tag.
+   * Pass it to any request method:
+   *
+   * <pre>
+   * pelias.search(text, lat, lon, pelias.tag(activity, callback));
+   * </pre>
+   */
+  public Callback<Result> tag(Object tag, Callback<Result> callback) {
+    return new RequestGroups.TaggedCallback(tag, callback);
+  }
+
+  /**
+   * Returns a callback which limits the call it is passed with to the deadline: its connect, read
+   * and write timeouts are cut to the budget left when it starts, a call still running when the
+   * deadline passes is canceled and fails with an {@link java.io.InterruptedIOException}, and a
+   * call issued after it fails without being sent.
+   * Can be combined with {@link #tag(Object, Callback)}:
+   *
+   * <pre>
+   * pelias.suggest(text, pelias.deadline(Deadline.after(2, SECONDS), callback));
+   * </pre>
+   */
+  public Callback<Result> deadline(Deadline deadline, Callback<Result> callback) {
+    return new Deadlines.DeadlineCallback(deadline, callback);
+  }
+
+  /**
+   * Returns a callback which gives the call it is passed with the given priority when a
+   * {@link RequestScheduler} is set. Can be combined with {@link #tag(Object, Callback)} and
+   * {@link #deadline(Deadline, Callback)}.
+   */
+  public Callback<Result> priority(RequestPriority priority, Callback<Result> callback) {
+    return new RequestScheduler.PriorityCallback(priority, callback);
+  }
+
+  /**
+   * Cancels every outstanding call issued with the given tag and returns how many there were. The
+   * callbacks of canceled calls are not invoked, except for a response which was already on its
+   * way to the callback executor, which is reported as a failure.
+   */
+  public int cancelAll(Object tag) {
+    return requestGroups.cancelAll(tag);
+  }
+
+  /**
+   * Returns the round-trip times and response sizes of recent requests.
+   */
+  public NetworkQuality getNetworkQuality() {
+    return networkQuality;
+  }
+
+  /**
+   * Returns the number of calls issued with the given tag which have not completed yet.
+   */
+  public int getOutstanding(Object tag) {
+    return requestGroups.outstanding(tag);
+  }
+
+  /**
+   * Returns the number of tagged calls which have not completed yet.
+   */
+  public int getOutstanding() {
+    return requestGroups.outstanding();
+  }
+
+  /**
+   * Returns the service to create the call for the callback on. Calls with a deadline are created
+   * on a service whose http timeouts are cut to the remaining budget.
+   */
+  private PeliasService service(Callback<Result> callback) {
+    final Client current = client();
+    final DirectPeliasService limited = current.limitedTo(deadlineOf(callback));
+    return limited != null ? limited : current.service;
+  }
+
+  /**
+   * Returns the query service to create the call for the callback on, see
+   * {@link #service(Callback)}.
+   */
+  private PeliasQueryService queryService(Callback<Result> callback) {
+    final Client current = client();
+    final DirectPeliasService limited = current.limitedTo(deadlineOf(callback));
+    return limited != null ? limited : current.queryService;
+  }
+
+  /**
+   * Returns the deadline the callback was wrapped with, or null if it has none.
+   */
+  private static Deadline deadlineOf(Callback<Result> callback) {
+    while (true) {
+      if (callback instanceof Deadlines.DeadlineCallback) {
+        return ((Deadlines.DeadlineCallback) callback).deadline;
+      } else if (callback instanceof RequestGroups.TaggedCallback) {
+        callback = ((RequestGroups.TaggedCallback) callback).delegate;
+      } else if (callback instanceof RequestScheduler.PriorityCallback) {
+        callback = ((RequestScheduler.PriorityCallback) callback).delegate;
+      } else {
+        return null;
+      }
+    }
+  }
+
+  private Call<Result> enqueue(Call<Result> call, Callback<Result> callback) {
+    return enqueue(call, callback, RequestPriority.USER_SUBMITTED);
+  }
+
+  private Call<Result> enqueue(Call<Result> call, Callback<Result> callback,
+      RequestPriority priority) {
+    // Tags, deadlines and priorities may wrap each other in any order.
+    Object tag = null;
+    Deadline deadline = null;
+    while (true) {
+      if (callback instanceof RequestGroups.TaggedCallback) {
+        final RequestGroups.TaggedCallback tagged = (RequestGroups.TaggedCallback) callback;
+        tag = tagged.tag;
+        callback = tagged.delegate;
+      } else if (callback instanceof Deadlines.DeadlineCallback) {
+        final Deadlines.DeadlineCallback limited = (Deadlines.DeadlineCallback) callback;
+        deadline = limited.deadline;
+        callback = limited.delegate;
+      } else if (callback instanceof RequestScheduler.PriorityCallback) {
+        final RequestScheduler.PriorityCallback prioritized =
+            (RequestScheduler.PriorityCallback) callback;
+        priority = prioritized.priority;
+        callback = prioritized.delegate;
+      } else {
+        break;
+      }
+    }
+
+    Callback<Result> delivery = onCallbackExecutor(callback);
+    if (tag != null) {
+      requestGroups.add(tag, call);
+      delivery = new RequestGroups.GroupCallback(requestGroups, tag, call, delivery);
+    }
+    TimingCallback timing = null;
+    if (!(call instanceof ViewportCache.CachedCall)) {
+      if (deadline != null && deadline.isExpired()) {
+        networkQuality.recordTimeout();
+        call.cancel();
+        delivery.onFailure(call, Deadlines.exceeded());
+        return call;
+      }
+      timing = new TimingCallback(networkQuality, delivery);
+      delivery = timing;
+      if (deadline != null) {
+        delivery = new Deadlines.TimerCallback(call, deadline, delivery);
+      }
+    }
+    final RequestScheduler scheduler = requestScheduler;
+    if (scheduler != null && !(call instanceof ViewportCache.CachedCall)) {
+      scheduler.enqueue(call, priority, delivery, timing);
+    } else {
+      call.enqueue(delivery);
+    }
+    return call;
+  }
+
+  /**
+   * Wraps callbacks to be invoked on the callback executor. Processing callbacks post to it
+   * themselves once they have processed the response.
+   */
+  private Callback<Result> onCallbackExecutor(Callback<Result> callback) {
+    final Executor executor = getCallbackExecutor();
+    if (executor == null || callback instanceof ProcessingCallback) {
+      return callback;
+    }
+    return new ExecutorCallback(executor, callback);
+  }
+
+  /**
+   * Set a location provider to be used in search and suggest requests. This will be used to return
+   * more relevant results for given positions and areas
+   */
+  public void setLocationProvider(PeliasLocationProvider locationProvider) {
+    this.locationProvider = locationProvider;
+  }
+
+  /**
+   * Set a cache answering bounding box searches for areas covered by earlier results, or null to
+   * always send them.
+   */
+  public void setViewportCache(ViewportCache cache) {
+    viewportCache = cache;
+  }
+
+  /**
+   * Set a scheduler limiting how many requests of each priority run at once, or null to send
+   * every request immediately. See {@link #priority(RequestPriority, Callback)}.
+   */
+  public void setRequestScheduler(RequestScheduler scheduler) {
+    requestScheduler = scheduler;
+  }
+
+  /**
+   * Returns the location provider used in search and suggest requests, or null if none is set.
+   */
+  public PeliasLocationProvider getLocationProvider() {
+    return locationProvider;
+  }
+
+  /**
+   * Returns the http endpoint.
+   * @return
+   */
+  public String getEndpoint() {
+    return config.endpoint;
+  }
+
+  /**
+   * Returns whether or not debug is enabled.
+   * @return
+   */
+  public boolean getDebug() {
+    return config.debug;
+  }
+
+  /**
+   * Services built from one configuration snapshot, published as a whole.
+   */
+  private static final class Client {
+    final PeliasConfig config;
+    final PeliasService service;
+    final PeliasQueryService queryService;
+    final Executor platformExecutor;
+    final HttpUrl baseUrl;
+    final EndpointCallFactory endpoints;
+    final ResponseCodecs codecs;
+
+    /**
+     * Creates a client. The url, endpoints and codecs calls limited to a deadline are created with
+     * are null for an injected service.
+     */
+    Client(PeliasConfig config, PeliasService service, PeliasQueryService queryService,
+        Executor platformExecutor, HttpUrl baseUrl, EndpointCallFactory endpoints,
+        ResponseCodecs codecs) {
+      this.config = config;
+      this.service = service;
+      this.queryService = queryService;
+      this.platformExecutor = platformExecutor;
+      this.baseUrl = baseUrl;
+      this.endpoints = endpoints;
+      this.codecs = codecs;
+    }
+
+    /**
+     * Returns a service creating calls limited to the deadline, or null if there is no deadline
+     * or the service was injected.
+     */
+    DirectPeliasService limitedTo(Deadline deadline) {
+      if (deadline == null || endpoints == null) {
+        return null;
+      }
+      return new DirectPeliasService(baseUrl, new Deadlines.LimitedCallFactory(endpoints, deadline),
+          codecs, null);
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.codec.ResponseCodecs;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the settings a {@link Pelias} service is built from. Every setter on
+ * {@link Pelias} publishes a new snapshot, so requests always see a consistent set of values.
+ */
+final class PeliasConfig {
+  final String endpoint;
+  final boolean debug;
+  final PeliasRequestHandler requestHandler;
+  final ResponseCodecs codecs;
+  final Map<PeliasEndpoint, Timeouts> timeouts;
+
+  /**
+   * Constructs a new snapshot. A null {@code codecs} selects the default Gson codec.
+   */
+  PeliasConfig(String endpoint, boolean debug, PeliasRequestHandler requestHandler,
+      ResponseCodecs codecs) {
+    this(endpoint, debug, requestHandler, codecs,
+        Collections.<PeliasEndpoint, Timeouts>emptyMap());
+  }
+
+  private PeliasConfig(String endpoint, boolean debug, PeliasRequestHandler requestHandler,
+      ResponseCodecs codecs, Map<PeliasEndpoint, Timeouts> timeouts) {
+    this.endpoint = endpoint;
+    this.debug = debug;
+    this.requestHandler = requestHandler;
+    this.codecs = codecs;
+    this.timeouts = timeouts;
+  }
+
+  /**
+   * Returns a copy using the given endpoint.
+   */
+  PeliasConfig withEndpoint(String endpoint) {
+    return new PeliasConfig(endpoint, debug, requestHandler, codecs, timeouts);
+  }
+
+  /**
+   * Returns a copy with debug logging enabled or disabled.
+   */
+  PeliasConfig withDebug(boolean debug) {
+    return new PeliasConfig(endpoint, debug, requestHandler, codecs, timeouts);
+  }
+
+  /**
+   * Returns a copy using the given request handler.
+   */
+  PeliasConfig withRequestHandler(PeliasRequestHandler requestHandler) {
+    return new PeliasConfig(endpoint, debug, requestHandler, codecs, timeouts);
+  }
+
+  /**
+   * Returns a copy using the given codecs.
+   */
+  PeliasConfig withCodecs(ResponseCodecs codecs) {
+    return new PeliasConfig(endpoint, debug, requestHandler, codecs, timeouts);
+  }
+
+  /**
+   * Returns a copy using the given timeouts for requests to {@code api}, or the http client's
+   * timeouts if {@code endpointTimeouts} is null.
+   */
+  PeliasConfig withTimeouts(PeliasEndpoint api, Timeouts endpointTimeouts) {
+    final Map<PeliasEndpoint, Timeouts> copy = new EnumMap<>(PeliasEndpoint.class);
+    copy.putAll(timeouts);
+    if (endpointTimeouts == null) {
+      copy.remove(api);
+    } else {
+      copy.put(api, endpointTimeouts);
+    }
+    return new PeliasConfig(endpoint, debug, requestHandler, codecs,
+        Collections.unmodifiableMap(copy));
+  }
+
+  /**
+   * Connect and read timeouts of an endpoint, in milliseconds. The read timeout also applies to
+   * writes.
+   */
+  static final class Timeouts {
+    final long connectMillis;
+    final long readMillis;
+
+    /**
+     * Creates timeouts with the given values in milliseconds.
+     */
+    Timeouts(long connectMillis, long readMillis) {
+      this.connectMillis = connectMillis;
+      this.readMillis = readMillis;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.mapzen.pelias;
+
+/**
+ * Pelias API endpoints, for settings which differ between them such as
+ * {@link Pelias#setTimeouts(PeliasEndpoint, long, long, java.util.concurrent.TimeUnit)}.
+ */
+public enum PeliasEndpoint {
+  AUTOCOMPLETE("/v1/autocomplete"),
+  SEARCH("/v1/search"),
+  REVERSE("/v1/reverse"),
+  PLACE("/v1/place");
+
+  private final String path;
+
+  /**
+   * Creates an endpoint served at the given path.
+   */
+  PeliasEndpoint(String path) {
+    this.path = path;
+  }
+
+  /**
+   * Returns the path the endpoint is served at.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * Returns the endpoint serving the given url path, or null if none does.
+   */
+  static PeliasEndpoint forPath(String urlPath) {
+    for (PeliasEndpoint endpoint : values()) {
+      if (urlPath.endsWith(endpoint.path)) {
+        return endpoint;
+      }
+    }
+    return null;
+  }
+}
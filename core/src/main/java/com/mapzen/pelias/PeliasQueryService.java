@@ -0,0 +1,33 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.util.Map;
+
+import retrofit2.Call;
+import retrofit2.http.GET;
+import retrofit2.http.QueryMap;
+
+/**
+ * HTTP interface sending the parameters of a {@link QuerySpec}. Implemented by the service
+ * {@link Pelias} builds. A custom {@link PeliasService} passed to
+ * {@link Pelias#Pelias(PeliasService)} may implement it as well; otherwise specs are sent through
+ * its fixed overloads where they can express them.
+ */
+public interface PeliasQueryService {
+
+  /**
+   * Asynchronously request autocomplete results given the parameters of a {@link QuerySpec}.
+   */
+  @GET("/v1/autocomplete") Call<Result> autocomplete(@QueryMap Map<String, String> parameters);
+
+  /**
+   * Asynchronously request search results given the parameters of a {@link QuerySpec}.
+   */
+  @GET("/v1/search") Call<Result> search(@QueryMap Map<String, String> parameters);
+
+  /**
+   * Asynchronously issue reverse geocode request given the parameters of a {@link QuerySpec}.
+   */
+  @GET("/v1/reverse") Call<Result> reverse(@QueryMap Map<String, String> parameters);
+}
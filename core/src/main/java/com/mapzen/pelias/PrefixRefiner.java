@@ -0,0 +1,169 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.Result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Refines the autocomplete results of a query locally for a longer query that extends it, so that
+ * typing "brookl" into "brookly" shows the likely answers immediately instead of waiting for the
+ * next round trip.
+ *
+ * <p>Queries are given as {@link QueryNormalizer} keys and names and labels are normalized the
+ * same way. A feature is kept when every word of the query is a prefix of a word of its name or
+ * label. Kept features are re-ranked so that names starting with the query come first, followed
+ * by names matching all words and then features matching through their label; the server's order
+ * is preserved within each rank.
+ */
+public class PrefixRefiner {
+  private static final int RANK_NAME_PREFIX = 0;
+  private static final int RANK_NAME = 1;
+  private static final int RANK_LABEL = 2;
+  private static final int NO_MATCH = -1;
+
+  private final QueryNormalizer normalizer;
+
+  /**
+   * Constructs a refiner normalizing names and labels with {@link QueryNormalizer#DEFAULT}.
+   */
+  public PrefixRefiner() {
+    this(QueryNormalizer.DEFAULT);
+  }
+
+  /**
+   * Constructs a refiner normalizing names and labels with the normalizer the query keys are
+   * produced with.
+   */
+  public PrefixRefiner(QueryNormalizer normalizer) {
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * Returns true if the query key {@code key} extends {@code previousKey}, so that the results of
+   * the previous query can be refined for it.
+   */
+  public boolean canRefine(String previousKey, String key) {
+    if (previousKey == null || key == null || key.length() <= previousKey.length()) {
+      return false;
+    }
+    return key.startsWith(previousKey);
+  }
+
+  /**
+   * Returns a new result holding the features of {@code previous} which match the query key,
+   * re-ranked. The result has no features if none match.
+   */
+  public Result refine(Result previous, String key) {
+    final List<String> words = words(key);
+    final List<Ranked> ranked = new ArrayList<>();
+    final List<Feature> features = previous.getFeatures();
+    if (features != null) {
+      for (Feature feature : features) {
+        final int rank = rank(feature, words);
+        if (rank != NO_MATCH) {
+          ranked.add(new Ranked(feature, rank));
+        }
+      }
+    }
+    Collections.sort(ranked, new Comparator<Ranked>() {
+      @Override public int compare(Ranked lhs, Ranked rhs) {
+        return lhs.rank < rhs.rank ? -1 : (lhs.rank == rhs.rank ? 0 : 1);
+      }
+    });
+
+    final List<Feature> refined = new ArrayList<>(ranked.size());
+    for (Ranked entry : ranked) {
+      refined.add(entry.feature);
+    }
+    final Result result = new Result();
+    result.setType(previous.getType());
+    result.setFeatures(refined);
+    return result;
+  }
+
+  private int rank(Feature feature, List<String> query) {
+    if (feature == null || feature.properties == null || query.isEmpty()) {
+      return NO_MATCH;
+    }
+    final List<String> name = words(normalizer.normalize(feature.properties.name));
+    if (matchesInOrder(name, query)) {
+      return RANK_NAME_PREFIX;
+    }
+    if (matchesAll(name, query)) {
+      return RANK_NAME;
+    }
+    final List<String> all = new ArrayList<>(name);
+    all.addAll(words(normalizer.normalize(feature.properties.label)));
+    return matchesAll(all, query) ? RANK_LABEL : NO_MATCH;
+  }
+
+  /**
+   * Returns true if the text starts with the query: every query word equals the word at the same
+   * position, except for the last which may be a prefix.
+   */
+  private static boolean matchesInOrder(List<String> text, List<String> query) {
+    if (text.size() < query.size()) {
+      return false;
+    }
+    final int last = query.size() - 1;
+    for (int i = 0; i < last; i++) {
+      if (!text.get(i).equals(query.get(i))) {
+        return false;
+      }
+    }
+    return text.get(last).startsWith(query.get(last));
+  }
+
+  private static boolean matchesAll(List<String> text, List<String> query) {
+    for (String word : query) {
+      if (!hasWordWithPrefix(text, word)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasWordWithPrefix(List<String> text, String prefix) {
+    for (String word : text) {
+      if (word.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<String> words(String key) {
+    final List<String> words = new ArrayList<>();
+    int start = -1;
+    for (int i = 0; i < key.length(); i++) {
+      final boolean letterOrDigit = Character.isLetterOrDigit(key.charAt(i));
+      if (letterOrDigit && start < 0) {
+        start = i;
+      } else if (!letterOrDigit && start >= 0) {
+        words.add(key.substring(start, i));
+        start = -1;
+      }
+    }
+    if (start >= 0) {
+      words.add(key.substring(start));
+    }
+    return words;
+  }
+
+  /**
+   * Feature with the rank it was given for the query.
+   */
+  private static final class Ranked {
+    final Feature feature;
+    final int rank;
+
+    Ranked(Feature feature, int rank) {
+      this.feature = feature;
+      this.rank = rank;
+    }
+  }
+}
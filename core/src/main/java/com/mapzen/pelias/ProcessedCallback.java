@@ -0,0 +1,21 @@
+package com.mapzen.pelias;
+
+/**
+ * Receives the value produced by a {@link ResultProcessor}, on the {@link Pelias} callback
+ * executor.
+ *
+ * @param <T> Type of the processed value.
+ */
+public interface ProcessedCallback<T> {
+
+  /**
+   * Called with the processed value of a successful response.
+   */
+  void onResult(T value);
+
+  /**
+   * Called when the request failed, was canceled, returned an unsuccessful status code as a
+   * {@code retrofit2.HttpException}, or when processing threw.
+   */
+  void onFailure(Throwable t);
+}
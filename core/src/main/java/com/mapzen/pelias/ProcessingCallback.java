@@ -0,0 +1,83 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * Runs a {@link ResultProcessor} on the thread the response arrives on, then posts the processed
+ * value to a {@link ProcessedCallback} on the {@link Pelias} callback executor.
+ *
+ * @param <T> Type of the processed value.
+ */
+final class ProcessingCallback<T> implements Callback<Result> {
+  private final Pelias pelias;
+  private final ResultProcessor<T> processor;
+  private final ProcessedCallback<T> callback;
+
+  /**
+   * Creates a callback delivering on the callback executor of {@code pelias}.
+   */
+  ProcessingCallback(Pelias pelias, ResultProcessor<T> processor, ProcessedCallback<T> callback) {
+    this.pelias = pelias;
+    this.processor = processor;
+    this.callback = callback;
+  }
+
+  @Override public void onResponse(final Call<Result> call, Response<Result> response) {
+    if (isCanceled(call)) {
+      onFailure(call, new IOException("Canceled"));
+      return;
+    }
+    if (response != null && !response.isSuccessful()) {
+      onFailure(call, new HttpException(response));
+      return;
+    }
+    final T value;
+    try {
+      value = processor.process(response != null ? response.body() : null);
+    } catch (RuntimeException e) {
+      onFailure(call, e);
+      return;
+    }
+    deliver(new Runnable() {
+      @Override public void run() {
+        if (isCanceled(call)) {
+          callback.onFailure(new IOException("Canceled"));
+        } else {
+          callback.onResult(value);
+        }
+      }
+    });
+  }
+
+  @Override public void onFailure(Call<Result> call, final Throwable t) {
+    deliver(new Runnable() {
+      @Override public void run() {
+        callback.onFailure(t);
+      }
+    });
+  }
+
+  /**
+   * Returns whether the call was canceled. Custom {@link PeliasService}s may not supply a call.
+   */
+  private static boolean isCanceled(Call<Result> call) {
+    return call != null && call.isCanceled();
+  }
+
+  private void deliver(Runnable runnable) {
+    final Executor executor = pelias.getCallbackExecutor();
+    if (executor == null) {
+      runnable.run();
+    } else {
+      executor.execute(runnable);
+    }
+  }
+}
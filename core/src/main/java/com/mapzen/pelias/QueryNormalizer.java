@@ -0,0 +1,114 @@
+package com.mapzen.pelias;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Turns query text into the canonical key used by caches and local indexes, so that
+ * "Main St", "main st " and "Main  St" share one entry. Keys are only used for lookups; requests
+ * are sent with the text as typed.
+ *
+ * <p>The key is the text after Unicode NFKC normalization, case folding, optional diacritic
+ * folding, trimming and collapsing whitespace runs to a single space. ASCII text, by far the most
+ * common input, is handled in a single pass and returned as is when it is already canonical.
+ */
+public final class QueryNormalizer {
+
+  /**
+   * Normalizer keeping diacritics, so that "caf&eacute;" and "cafe" have different keys.
+   */
+  public static final QueryNormalizer DEFAULT = new QueryNormalizer(false);
+
+  /**
+   * Normalizer removing diacritics, so that "caf&eacute;" and "cafe" have the same key.
+   */
+  public static final QueryNormalizer FOLD_DIACRITICS = new QueryNormalizer(true);
+
+  private final boolean foldDiacritics;
+
+  /**
+   * Constructs a normalizer, removing diacritics if {@code foldDiacritics} is true.
+   */
+  public QueryNormalizer(boolean foldDiacritics) {
+    this.foldDiacritics = foldDiacritics;
+  }
+
+  /**
+   * Returns the canonical key for the text, or an empty string for null.
+   */
+  public String normalize(String text) {
+    if (text == null) {
+      return "";
+    }
+    return collapse(isAscii(text) ? text : fold(text));
+  }
+
+  private String fold(String text) {
+    String folded = Normalizer.normalize(text, Normalizer.Form.NFKC);
+    if (foldDiacritics) {
+      folded = removeMarks(Normalizer.normalize(folded, Normalizer.Form.NFD));
+    }
+    // Upper then lower case approximates full case folding, for example a sharp s becomes "ss".
+    return folded.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+  }
+
+  private static String removeMarks(String decomposed) {
+    final StringBuilder builder = new StringBuilder(decomposed.length());
+    for (int i = 0; i < decomposed.length(); i++) {
+      final char c = decomposed.charAt(i);
+      if (Character.getType(c) != Character.NON_SPACING_MARK) {
+        builder.append(c);
+      }
+    }
+    return Normalizer.normalize(builder, Normalizer.Form.NFC);
+  }
+
+  private static boolean isAscii(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) > 0x7f) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lower cases ASCII letters, trims and collapses whitespace. Returns {@code text} itself when
+   * nothing changes.
+   */
+  private static String collapse(String text) {
+    if (isCanonical(text)) {
+      return text;
+    }
+    final StringBuilder builder = new StringBuilder(text.length());
+    boolean pendingSpace = false;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (Character.isWhitespace(c)) {
+        pendingSpace = builder.length() > 0;
+        continue;
+      }
+      if (pendingSpace) {
+        builder.append(' ');
+        pendingSpace = false;
+      }
+      builder.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+    }
+    return builder.toString();
+  }
+
+  private static boolean isCanonical(String text) {
+    final int length = text.length();
+    for (int i = 0; i < length; i++) {
+      final char c = text.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        return false;
+      }
+      if (Character.isWhitespace(c)
+          && (c != ' ' || i == 0 || i == length - 1 || text.charAt(i - 1) == ' ')) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
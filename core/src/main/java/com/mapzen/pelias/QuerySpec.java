@@ -0,0 +1,278 @@
+package com.mapzen.pelias;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable set of Pelias query parameters, covering what the fixed {@link PeliasService}
+ * overloads cannot express: result size, rectangle and circle boundaries, language and any
+ * combination of focus and filters. Send it with {@link Pelias#search(QuerySpec,
+ * retrofit2.Callback)}, {@link Pelias#suggest(QuerySpec, retrofit2.Callback)} or
+ * {@link Pelias#reverse(QuerySpec, retrofit2.Callback)}.
+ *
+ * <p>Build the parameters once and derive a spec per keystroke with {@link #withText(String)},
+ * which only replaces the text:
+ *
+ * <pre>
+ * QuerySpec base = QuerySpec.builder()
+ *     .size(5)
+ *     .focusPoint(lat, lon)
+ *     .boundaryCountry("USA")
+ *     .build();
+ * pelias.suggest(base.withText(text), callback);
+ * </pre>
+ *
+ * <p>Parameters are kept sorted by name, so equal specs always produce the same request. The
+ * {@link #getCacheKey() cache key} is computed once and identifies the request with its text
+ * reduced to its {@link QueryNormalizer#DEFAULT} key.
+ */
+public final class QuerySpec {
+  private static final String TEXT = "text";
+
+  /**
+   * Parameters other than the text, sorted by name.
+   */
+  private final Map<String, String> base;
+  private final String text;
+  private final Map<String, String> parameters;
+  private final String cacheKey;
+  private final int hash;
+
+  private QuerySpec(Map<String, String> base, String text) {
+    this.base = base;
+    this.text = text;
+
+    final String normalized = text != null ? QueryNormalizer.DEFAULT.normalize(text) : null;
+    final Map<String, String> parameters = new LinkedHashMap<>(base.size() + 1);
+    final StringBuilder key = new StringBuilder();
+    boolean textAdded = text == null;
+    for (Map.Entry<String, String> parameter : base.entrySet()) {
+      if (!textAdded && parameter.getKey().compareTo(TEXT) > 0) {
+        add(parameters, key, TEXT, text, normalized);
+        textAdded = true;
+      }
+      add(parameters, key, parameter.getKey(), parameter.getValue(), parameter.getValue());
+    }
+    if (!textAdded) {
+      add(parameters, key, TEXT, text, normalized);
+    }
+    this.parameters = Collections.unmodifiableMap(parameters);
+    this.cacheKey = key.toString();
+    this.hash = cacheKey.hashCode();
+  }
+
+  private static void add(Map<String, String> parameters, StringBuilder key, String name,
+      String value, String keyValue) {
+    parameters.put(name, value);
+    if (key.length() > 0) {
+      key.append('&');
+    }
+    key.append(name).append('=').append(keyValue);
+  }
+
+  /**
+   * Returns a new builder without any parameters.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a builder holding the parameters of this spec.
+   */
+  public Builder toBuilder() {
+    return new Builder(base, text);
+  }
+
+  /**
+   * Returns a spec with the same parameters and the given text. Cheap enough to call on every
+   * keystroke; returns this spec if the text is unchanged.
+   */
+  public QuerySpec withText(String text) {
+    if (text == null ? this.text == null : text.equals(this.text)) {
+      return this;
+    }
+    return new QuerySpec(base, text);
+  }
+
+  /**
+   * Returns the query text, or null if none is set.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the request parameters, sorted by name. The map is unmodifiable.
+   */
+  public Map<String, String> getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Returns a key identifying the request, with the text normalized, for use by caches.
+   */
+  public String getCacheKey() {
+    return cacheKey;
+  }
+
+  @Override public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    final QuerySpec other = (QuerySpec) o;
+    return hash == other.hash && parameters.equals(other.parameters);
+  }
+
+  @Override public int hashCode() {
+    return hash;
+  }
+
+  @Override public String toString() {
+    return "QuerySpec" + parameters;
+  }
+
+  /**
+   * Builder for {@link QuerySpec}. Setting a parameter to null removes it.
+   */
+  public static final class Builder {
+    private final Map<String, String> parameters;
+    private String text;
+
+    private Builder() {
+      this.parameters = new TreeMap<>();
+    }
+
+    private Builder(Map<String, String> parameters, String text) {
+      this.parameters = new TreeMap<>(parameters);
+      this.text = text;
+    }
+
+    /**
+     * Sets the query text and returns the Builder object.
+     */
+    public Builder text(String text) {
+      this.text = text;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of results and returns the Builder object.
+     */
+    public Builder size(int size) {
+      if (size <= 0) {
+        throw new IllegalArgumentException("Size must be positive: " + size);
+      }
+      return set("size", String.valueOf(size));
+    }
+
+    /**
+     * Sets the point results near which are preferred and returns the Builder object.
+     */
+    public Builder focusPoint(double lat, double lon) {
+      return set("focus.point.lat", String.valueOf(lat))
+          .set("focus.point.lon", String.valueOf(lon));
+    }
+
+    /**
+     * Sets the area results within which are preferred and returns the Builder object.
+     */
+    public Builder focusViewport(BoundingBox box) {
+      return setBox("focus.viewport.", box);
+    }
+
+    /**
+     * Sets the area results must lie within and returns the Builder object.
+     */
+    public Builder boundaryRect(BoundingBox box) {
+      return setBox("boundary.rect.", box);
+    }
+
+    /**
+     * Sets the circle results must lie within, with its radius in kilometers, and returns the
+     * Builder object.
+     */
+    public Builder boundaryCircle(double lat, double lon, double radiusKilometers) {
+      return set("boundary.circle.lat", String.valueOf(lat))
+          .set("boundary.circle.lon", String.valueOf(lon))
+          .set("boundary.circle.radius", String.valueOf(radiusKilometers));
+    }
+
+    /**
+     * Sets the country results must lie within, as an ISO 3166 code, and returns the Builder
+     * object.
+     */
+    public Builder boundaryCountry(String country) {
+      return set("boundary.country", country);
+    }
+
+    /**
+     * Sets the comma separated layers results must belong to and returns the Builder object.
+     */
+    public Builder layers(String layers) {
+      return set("layers", layers);
+    }
+
+    /**
+     * Sets the comma separated sources results must come from and returns the Builder object.
+     */
+    public Builder sources(String sources) {
+      return set("sources", sources);
+    }
+
+    /**
+     * Sets the preferred language of result labels, as a BCP 47 tag, and returns the Builder
+     * object.
+     */
+    public Builder lang(String lang) {
+      return set("lang", lang);
+    }
+
+    /**
+     * Sets the point to reverse geocode and returns the Builder object.
+     */
+    public Builder point(double lat, double lon) {
+      return set("point.lat", String.valueOf(lat)).set("point.lon", String.valueOf(lon));
+    }
+
+    /**
+     * Sets a parameter this builder has no method for and returns the Builder object.
+     */
+    public Builder set(String name, String value) {
+      if (TEXT.equals(name)) {
+        return text(value);
+      }
+      if (value == null) {
+        parameters.remove(name);
+      } else {
+        parameters.put(name, value);
+      }
+      return this;
+    }
+
+    private Builder setBox(String prefix, BoundingBox box) {
+      if (box == null) {
+        return set(prefix + "min_lat", null).set(prefix + "min_lon", null)
+            .set(prefix + "max_lat", null).set(prefix + "max_lon", null);
+      }
+      return set(prefix + "min_lat", String.valueOf(box.getMinLat()))
+          .set(prefix + "min_lon", String.valueOf(box.getMinLon()))
+          .set(prefix + "max_lat", String.valueOf(box.getMaxLat()))
+          .set(prefix + "max_lon", String.valueOf(box.getMaxLon()));
+    }
+
+    /**
+     * Returns a new {@link QuerySpec} with the parameters set.
+     */
+    public QuerySpec build() {
+      return new QuerySpec(Collections.unmodifiableMap(new LinkedHashMap<>(parameters)), text);
+    }
+  }
+}
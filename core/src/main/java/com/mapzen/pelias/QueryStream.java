@@ -0,0 +1,288 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+
+/**
+ * Turns a stream of query texts into a stream of autocomplete results. Push each text with
+ * {@link #onNext(String)} and receive results on a {@link Listener}, with the following semantics
+ * built in:
+ *
+ * <ul>
+ * <li>Debounce: a request is only issued once the text has not changed for the debounce
+ * interval.</li>
+ * <li>Distinct until changed: text with the same {@link QueryNormalizer} key as the current query
+ * issues no new request.</li>
+ * <li>Switch to latest: a new query cancels the pending and in flight request of the previous
+ * one, including its underlying {@link Call}, and only the latest query's results are
+ * emitted.</li>
+ * </ul>
+ *
+ * <p>Results are processed on the background thread by the {@link ResultProcessor} and emitted on
+ * the {@link Pelias} callback executor. {@link #close()} cancels everything outstanding.
+ *
+ * <pre>
+ * QueryStream&lt;List&lt;Item&gt;&gt; stream = new QueryStream&lt;&gt;(pelias, toItems, listener);
+ * // From a text watcher:
+ * stream.onNext(text.toString());
+ * </pre>
+ *
+ * @param <T> Type of the processed results.
+ */
+public class QueryStream<T> implements Closeable {
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 150;
+
+  private static ScheduledExecutorService defaultScheduler;
+
+  private final Pelias pelias;
+  private final ResultProcessor<T> processor;
+  private final Listener<T> listener;
+  private final SuggestStats stats;
+  private ScheduledExecutorService scheduler;
+  private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+  private int minQueryLength = SuggestController.DEFAULT_MIN_QUERY_LENGTH;
+  private SuggestFilter suggestFilter;
+  private QueryNormalizer normalizer = QueryNormalizer.DEFAULT;
+
+  private String queryKey;
+  private long sequence;
+  private ScheduledFuture<?> pending;
+  private Call<Result> inFlight;
+  private boolean closed;
+
+  /**
+   * Receives the results of a {@link QueryStream} on the {@link Pelias} callback executor.
+   *
+   * @param <T> Type of the processed results.
+   */
+  public interface Listener<T> {
+
+    /**
+     * Called with the processed results for the latest query.
+     */
+    void onResults(String query, T results);
+
+    /**
+     * Called when the request for the latest query failed.
+     */
+    void onError(String query, Throwable t);
+  }
+
+  /**
+   * Constructs a new stream issuing autocomplete requests with the given {@link Pelias}.
+   */
+  public QueryStream(Pelias pelias, ResultProcessor<T> processor, Listener<T> listener) {
+    this(pelias, processor, listener, new SuggestStats());
+  }
+
+  /**
+   * Constructs a new stream recording into the given, possibly shared, stats.
+   */
+  public QueryStream(Pelias pelias, ResultProcessor<T> processor, Listener<T> listener,
+      SuggestStats stats) {
+    this.pelias = pelias;
+    this.processor = processor;
+    this.listener = listener;
+    this.stats = stats;
+  }
+
+  /**
+   * Set how long the text must be unchanged before a request is issued, or 0 to issue requests
+   * immediately on the calling thread. Defaults to {@link #DEFAULT_DEBOUNCE_MILLIS}.
+   */
+  public synchronized void setDebounce(long duration, TimeUnit unit) {
+    debounceMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set the scheduler debounced requests are issued from. Defaults to a shared daemon thread.
+   */
+  public synchronized void setScheduler(ScheduledExecutorService scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Set the shortest text for which requests are issued. Shorter text cancels the current query
+   * without emitting anything.
+   */
+  public synchronized void setMinQueryLength(int minQueryLength) {
+    this.minQueryLength = minQueryLength;
+  }
+
+  /**
+   * Set a filter to use when querying for autocomplete results.
+   */
+  public synchronized void setSuggestFilter(SuggestFilter suggestFilter) {
+    this.suggestFilter = suggestFilter;
+  }
+
+  /**
+   * Set the normalizer deciding whether new text differs from the current query. Requests are
+   * always sent with the text as typed. Defaults to {@link QueryNormalizer#DEFAULT}.
+   */
+  public synchronized void setQueryNormalizer(QueryNormalizer normalizer) {
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * Returns the stats this stream records into.
+   */
+  public SuggestStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Pushes the next query text. Does nothing once the stream is closed.
+   */
+  public void onNext(final String text) {
+    stats.onTextChange();
+    final long current;
+    synchronized (this) {
+      final String key = text != null ? normalizer.normalize(text) : null;
+      if (closed || (key != null && key.equals(queryKey))) {
+        return;
+      }
+      supersede();
+      if (text == null || text.length() < minQueryLength) {
+        return;
+      }
+      queryKey = key;
+      current = sequence;
+      if (debounceMillis > 0) {
+        pending = scheduler().schedule(new Runnable() {
+          @Override public void run() {
+            issue(current, text);
+          }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+        return;
+      }
+    }
+    issue(current, text);
+  }
+
+  /**
+   * Cancels the pending and in flight requests and stops emitting results.
+   */
+  @Override public synchronized void close() {
+    closed = true;
+    supersede();
+  }
+
+  /**
+   * Cancels the pending and in flight requests of the current query. Must hold the lock.
+   */
+  private void supersede() {
+    sequence++;
+    queryKey = null;
+    if (pending != null) {
+      pending.cancel(false);
+      pending = null;
+    }
+    if (inFlight != null) {
+      inFlight.cancel();
+      inFlight = null;
+    }
+  }
+
+  private void issue(long current, String text) {
+    final SuggestFilter filter;
+    synchronized (this) {
+      if (current != sequence) {
+        return;
+      }
+      pending = null;
+      filter = suggestFilter;
+    }
+
+    stats.onRequest();
+    final Callback<Result> callback = newCallback(current, text);
+    final Call<Result> call;
+    if (filter == null) {
+      call = pelias.suggest(text, callback);
+    } else {
+      call = pelias.suggest(text, filter.getLayersFilter(), filter.getCountryFilter(),
+          filter.getSources(), callback);
+    }
+    synchronized (this) {
+      if (current == sequence) {
+        inFlight = call;
+        return;
+      }
+    }
+    // Superseded while being enqueued.
+    call.cancel();
+  }
+
+  private Callback<Result> newCallback(final long current, final String text) {
+    return pelias.process(new ResultProcessor<T>() {
+      @Override public T process(Result result) {
+        return isLatest(current) ? processor.process(result) : null;
+      }
+    }, new ProcessedCallback<T>() {
+      @Override public void onResult(T value) {
+        if (settle(current, false)) {
+          stats.onDelivered();
+          listener.onResults(text, value);
+        }
+      }
+
+      @Override public void onFailure(Throwable t) {
+        if (settle(current, true)) {
+          stats.onFailure();
+          listener.onError(text, t);
+        }
+      }
+    });
+  }
+
+  private synchronized boolean isLatest(long current) {
+    return current == sequence && !closed;
+  }
+
+  /**
+   * Marks the request as complete if it is still the latest, otherwise records it as superseded.
+   * After a failure the same text may be requested again.
+   */
+  private boolean settle(long current, boolean failed) {
+    synchronized (this) {
+      if (isLatest(current)) {
+        inFlight = null;
+        if (failed) {
+          queryKey = null;
+        }
+        return true;
+      }
+    }
+    stats.onSuperseded();
+    return false;
+  }
+
+  private synchronized ScheduledExecutorService scheduler() {
+    if (scheduler == null) {
+      scheduler = defaultScheduler();
+    }
+    return scheduler;
+  }
+
+  private static synchronized ScheduledExecutorService defaultScheduler() {
+    if (defaultScheduler == null) {
+      defaultScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(Runnable runnable) {
+          final Thread thread = new Thread(runnable, "Pelias query stream");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return defaultScheduler;
+  }
+}
@@ -0,0 +1,146 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Registry of the calls enqueued under each tag, so that everything a screen started can be
+ * canceled at once. Calls leave their group when their response or failure is read.
+ */
+final class RequestGroups {
+  private final Map<Object, Set<Call<Result>>> groups = new HashMap<>();
+
+  /**
+   * Adds an enqueued call to the group of the given tag.
+   */
+  synchronized void add(Object tag, Call<Result> call) {
+    Set<Call<Result>> group = groups.get(tag);
+    if (group == null) {
+      group = Collections.newSetFromMap(new IdentityHashMap<Call<Result>, Boolean>());
+      groups.put(tag, group);
+    }
+    group.add(call);
+  }
+
+  /**
+   * Removes a call from its group. Returns false if it was not outstanding, because the group was
+   * canceled.
+   */
+  synchronized boolean remove(Object tag, Call<Result> call) {
+    final Set<Call<Result>> group = groups.get(tag);
+    if (group == null || !group.remove(call)) {
+      return false;
+    }
+    if (group.isEmpty()) {
+      groups.remove(tag);
+    }
+    return true;
+  }
+
+  /**
+   * Cancels and removes every outstanding call of the given tag. Returns the number canceled.
+   */
+  int cancelAll(Object tag) {
+    final List<Call<Result>> canceled;
+    synchronized (this) {
+      final Set<Call<Result>> group = groups.remove(tag);
+      if (group == null) {
+        return 0;
+      }
+      canceled = new ArrayList<>(group);
+    }
+    for (Call<Result> call : canceled) {
+      call.cancel();
+    }
+    return canceled.size();
+  }
+
+  /**
+   * Returns the number of outstanding calls of the given tag.
+   */
+  synchronized int outstanding(Object tag) {
+    final Set<Call<Result>> group = groups.get(tag);
+    return group != null ? group.size() : 0;
+  }
+
+  /**
+   * Returns the number of outstanding calls of all tags.
+   */
+  synchronized int outstanding() {
+    int count = 0;
+    for (Set<Call<Result>> group : groups.values()) {
+      count += group.size();
+    }
+    return count;
+  }
+
+  /**
+   * Marks a callback so that the call it is passed with is registered under the tag.
+   */
+  static final class TaggedCallback implements Callback<Result> {
+    final Object tag;
+    final Callback<Result> delegate;
+
+    /**
+     * Creates a callback registering its call under {@code tag} and forwarding to
+     * {@code delegate}.
+     */
+    TaggedCallback(Object tag, Callback<Result> delegate) {
+      this.tag = tag;
+      this.delegate = delegate;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      delegate.onResponse(call, response);
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      delegate.onFailure(call, t);
+    }
+  }
+
+  /**
+   * Removes a call from its group when it completes, and drops the outcome of calls whose group
+   * was canceled.
+   */
+  static final class GroupCallback implements Callback<Result> {
+    private final RequestGroups groups;
+    private final Object tag;
+    private final Call<Result> call;
+    private final Callback<Result> delegate;
+
+    /**
+     * Creates a callback for {@code call}, registered under {@code tag}.
+     */
+    GroupCallback(RequestGroups groups, Object tag, Call<Result> call,
+        Callback<Result> delegate) {
+      this.groups = groups;
+      this.tag = tag;
+      this.call = call;
+      this.delegate = delegate;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      if (groups.remove(tag, this.call)) {
+        delegate.onResponse(call, response);
+      }
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      if (groups.remove(tag, this.call)) {
+        delegate.onFailure(call, t);
+      }
+    }
+  }
+}
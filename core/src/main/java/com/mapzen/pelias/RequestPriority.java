@@ -0,0 +1,25 @@
+package com.mapzen.pelias;
+
+/**
+ * Priority classes of requests, from most to least urgent, used by a {@link RequestScheduler} to
+ * decide which waiting request is sent next. Autocomplete requests are {@link #INTERACTIVE} and
+ * all others {@link #USER_SUBMITTED} unless set with
+ * {@link Pelias#priority(RequestPriority, retrofit2.Callback)}.
+ */
+public enum RequestPriority {
+  /**
+   * Requests the user is waiting on while typing, such as autocomplete.
+   */
+  INTERACTIVE,
+
+  /**
+   * Requests the user explicitly asked for, such as a submitted search.
+   */
+  USER_SUBMITTED,
+
+  /**
+   * Work nobody is waiting on, such as prefetching or bulk reverse geocoding. Canceled when an
+   * interactive request would otherwise have to wait.
+   */
+  BACKGROUND
+}
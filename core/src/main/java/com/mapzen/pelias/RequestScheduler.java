@@ -0,0 +1,288 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Limits how many requests of each {@link RequestPriority} run at once, so that background work
+ * cannot starve autocomplete. Set on a {@link Pelias} with
+ * {@link Pelias#setRequestScheduler(RequestScheduler)}.
+ *
+ * <p>Requests beyond the limits wait in a queue per priority. Whenever a request completes, the
+ * most urgent waiting request whose class is below its limit is sent next, so interactive
+ * requests always go first. When an interactive request has to wait because every slot is taken,
+ * the most recently started background request is canceled to make room; its callback fails with
+ * a {@link PreemptedException}, and it may be issued again later.
+ *
+ * <p>Waiting requests canceled by their caller, for example with
+ * {@link Pelias#cancelAll(Object)} or because their {@link Deadline} passed, are dropped without
+ * taking a slot the next time requests are started, and fail then.
+ *
+ * <p>The total defaults to {@link #DEFAULT_MAX_REQUESTS}, the number of requests OkHttp's
+ * dispatcher runs per host, so requests this scheduler sends are not queued again there. Safe to
+ * share between threads.
+ */
+public class RequestScheduler {
+  public static final int DEFAULT_MAX_REQUESTS = 5;
+  public static final int DEFAULT_MAX_BACKGROUND_REQUESTS = 2;
+
+  private static final RequestPriority[] PRIORITIES = RequestPriority.values();
+
+  private final int[] limits = new int[PRIORITIES.length];
+  private final int[] running = new int[PRIORITIES.length];
+  private final List<ArrayDeque<Task>> queues = new ArrayList<>(PRIORITIES.length);
+  private final List<Task> started = new ArrayList<>();
+  private int maxRequests;
+  private int preempting;
+
+  /**
+   * Constructs a scheduler running at most {@link #DEFAULT_MAX_REQUESTS} requests.
+   */
+  public RequestScheduler() {
+    this(DEFAULT_MAX_REQUESTS);
+  }
+
+  /**
+   * Constructs a scheduler running at most {@code maxRequests} requests. Interactive requests may
+   * use all of them, user submitted requests all but one, and background requests at most
+   * {@link #DEFAULT_MAX_BACKGROUND_REQUESTS}.
+   */
+  public RequestScheduler(int maxRequests) {
+    if (maxRequests <= 0) {
+      throw new IllegalArgumentException("Max requests must be positive: " + maxRequests);
+    }
+    this.maxRequests = maxRequests;
+    limits[RequestPriority.INTERACTIVE.ordinal()] = maxRequests;
+    limits[RequestPriority.USER_SUBMITTED.ordinal()] = Math.max(maxRequests - 1, 1);
+    limits[RequestPriority.BACKGROUND.ordinal()] =
+        Math.min(DEFAULT_MAX_BACKGROUND_REQUESTS, maxRequests);
+    for (int i = 0; i < PRIORITIES.length; i++) {
+      queues.add(new ArrayDeque<Task>());
+    }
+  }
+
+  /**
+   * Set how many requests of the given priority may run at once. Lowering a limit does not cancel
+   * running requests.
+   */
+  public void setMaxRequests(RequestPriority priority, int max) {
+    if (max <= 0) {
+      throw new IllegalArgumentException("Max requests must be positive: " + max);
+    }
+    final List<Task> ready = new ArrayList<>();
+    final List<Task> dropped = new ArrayList<>();
+    synchronized (this) {
+      limits[priority.ordinal()] = max;
+      promote(ready, dropped);
+    }
+    start(ready, dropped);
+  }
+
+  /**
+   * Returns how many requests of the given priority may run at once.
+   */
+  public synchronized int getMaxRequests(RequestPriority priority) {
+    return limits[priority.ordinal()];
+  }
+
+  /**
+   * Returns the number of running requests of the given priority.
+   */
+  public synchronized int getRunning(RequestPriority priority) {
+    return running[priority.ordinal()];
+  }
+
+  /**
+   * Returns the number of waiting requests of the given priority, not counting canceled ones.
+   */
+  public synchronized int getQueued(RequestPriority priority) {
+    int queued = 0;
+    for (Task task : queues.get(priority.ordinal())) {
+      if (!task.call.isCanceled()) {
+        queued++;
+      }
+    }
+    return queued;
+  }
+
+  /**
+   * Sends the call once its priority allows, delivering its outcome to {@code callback}. The clock
+   * of {@code timing}, if not null, is restarted when the call is sent.
+   */
+  void enqueue(Call<Result> call, RequestPriority priority, Callback<Result> callback,
+      TimingCallback timing) {
+    final Task task = new Task(call, priority, callback, timing);
+    final List<Task> ready = new ArrayList<>();
+    final List<Task> dropped = new ArrayList<>();
+    Task victim = null;
+    synchronized (this) {
+      queues.get(priority.ordinal()).add(task);
+      promote(ready, dropped);
+      if (priority == RequestPriority.INTERACTIVE) {
+        victim = preempt();
+      }
+    }
+    if (victim != null) {
+      victim.call.cancel();
+    }
+    start(ready, dropped);
+  }
+
+  /**
+   * Moves the tasks which may start now to {@code ready}, counted as running, and the canceled
+   * waiting tasks to {@code dropped}. Must hold the lock.
+   */
+  private void promote(List<Task> ready, List<Task> dropped) {
+    for (ArrayDeque<Task> queue : queues) {
+      for (Iterator<Task> it = queue.iterator(); it.hasNext();) {
+        final Task task = it.next();
+        if (task.call.isCanceled()) {
+          it.remove();
+          dropped.add(task);
+        }
+      }
+    }
+    for (int i = 0; i < PRIORITIES.length && started.size() < maxRequests; i++) {
+      final ArrayDeque<Task> queue = queues.get(i);
+      while (!queue.isEmpty() && running[i] < limits[i] && started.size() < maxRequests) {
+        final Task task = queue.poll();
+        running[i]++;
+        started.add(task);
+        ready.add(task);
+      }
+    }
+  }
+
+  /**
+   * Picks the most recently started background task to make room for a waiting interactive
+   * request, or null if none should be canceled. Must hold the lock.
+   */
+  private Task preempt() {
+    final int interactive = RequestPriority.INTERACTIVE.ordinal();
+    if (started.size() < maxRequests || running[interactive] + preempting >= limits[interactive]
+        || preempting >= queues.get(interactive).size()) {
+      return null;
+    }
+    for (int i = started.size() - 1; i >= 0; i--) {
+      final Task task = started.get(i);
+      if (task.priority == RequestPriority.BACKGROUND && !task.preempted) {
+        task.preempted = true;
+        preempting++;
+        return task;
+      }
+    }
+    return null;
+  }
+
+  private void start(List<Task> ready, List<Task> dropped) {
+    for (Task task : dropped) {
+      if (task.timing != null) {
+        task.timing.discard();
+      }
+      task.delegate.onFailure(task.call, new IOException("Canceled"));
+    }
+    for (Task task : ready) {
+      if (task.timing != null) {
+        task.timing.restart();
+      }
+      task.call.enqueue(task);
+    }
+  }
+
+  private void finish(Task task) {
+    final List<Task> ready = new ArrayList<>();
+    final List<Task> dropped = new ArrayList<>();
+    synchronized (this) {
+      if (!started.remove(task)) {
+        return;
+      }
+      running[task.priority.ordinal()]--;
+      if (task.preempted) {
+        preempting--;
+      }
+      promote(ready, dropped);
+    }
+    start(ready, dropped);
+  }
+
+  /**
+   * Failure delivered to background requests canceled to make room for an interactive request.
+   */
+  public static class PreemptedException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs an exception for a request canceled in favor of an interactive one.
+     */
+    public PreemptedException() {
+      super("Canceled for an interactive request");
+    }
+  }
+
+  /**
+   * Marks a callback to be delivered to by a call of the given priority. Unwrapped by
+   * {@link Pelias} when the call is enqueued.
+   */
+  static final class PriorityCallback implements Callback<Result> {
+    final RequestPriority priority;
+    final Callback<Result> delegate;
+
+    /**
+     * Creates a callback for a call of the given priority.
+     */
+    PriorityCallback(RequestPriority priority, Callback<Result> delegate) {
+      this.priority = priority;
+      this.delegate = delegate;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      delegate.onResponse(call, response);
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      delegate.onFailure(call, t);
+    }
+  }
+
+  /**
+   * A scheduled call, which frees its slot when its outcome arrives.
+   */
+  private final class Task implements Callback<Result> {
+    final Call<Result> call;
+    final RequestPriority priority;
+    final Callback<Result> delegate;
+    final TimingCallback timing;
+    boolean preempted;
+
+    Task(Call<Result> call, RequestPriority priority, Callback<Result> delegate,
+        TimingCallback timing) {
+      this.call = call;
+      this.priority = priority;
+      this.delegate = delegate;
+      this.timing = timing;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      finish(this);
+      delegate.onResponse(call, response);
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      final boolean canceledHere;
+      synchronized (RequestScheduler.this) {
+        canceledHere = preempted;
+      }
+      finish(this);
+      delegate.onFailure(call, canceledHere ? new PreemptedException() : t);
+    }
+  }
+}
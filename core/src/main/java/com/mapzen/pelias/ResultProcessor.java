@@ -0,0 +1,20 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+/**
+ * Converts, filters and ranks a {@link Result} into the value the caller displays. Runs on the
+ * background thread the response was read on, so that only the finished value is posted to the
+ * callback executor. See {@link Pelias#process(ResultProcessor, ProcessedCallback)}.
+ *
+ * @param <T> Type of the processed value.
+ */
+public interface ResultProcessor<T> {
+
+  /**
+   * Returns the value to deliver for a successful response. The result is null for responses
+   * without a body. Exceptions thrown here are delivered to
+   * {@link ProcessedCallback#onFailure(Throwable)}.
+   */
+  T process(Result result);
+}
@@ -0,0 +1,165 @@
+package com.mapzen.pelias;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps a {@link PeliasLocationProvider} so that a typing session reads the device position once.
+ * Focus points are snapped to a grid, so that small movements and GPS jitter do not change the
+ * requests sent or their cache keys.
+ *
+ * <p>The wrapped provider is read when a session starts, either explicitly with
+ * {@link #newSession()} or after the provider has not been read for the session timeout. The focus
+ * point only changes when the device moved further than the refresh distance since the point was
+ * taken; all reads within a session return the same snapshot.
+ *
+ * <pre>
+ * pelias.setLocationProvider(new SampledLocationProvider(gpsLocationProvider));
+ * </pre>
+ */
+public class SampledLocationProvider implements PeliasLocationProvider {
+  public static final double DEFAULT_GRID_DEGREES = 0.01;
+  public static final double DEFAULT_REFRESH_METERS = 500;
+  public static final long DEFAULT_SESSION_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+  private static final double METERS_PER_DEGREE = 111320;
+
+  private final PeliasLocationProvider delegate;
+  private double gridDegrees = DEFAULT_GRID_DEGREES;
+  private double refreshMeters = DEFAULT_REFRESH_METERS;
+  private long sessionTimeoutMillis = DEFAULT_SESSION_TIMEOUT_MILLIS;
+
+  private Snapshot snapshot;
+  private boolean stale;
+  private long lastReadMillis;
+  private int samples;
+
+  /**
+   * Constructs a provider sampling the given provider.
+   */
+  public SampledLocationProvider(PeliasLocationProvider delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Set the size in degrees of the grid focus points are snapped to, or 0 to send them unchanged.
+   * Defaults to {@link #DEFAULT_GRID_DEGREES}, roughly a kilometer.
+   */
+  public synchronized void setGridDegrees(double gridDegrees) {
+    this.gridDegrees = gridDegrees;
+    snapshot = null;
+  }
+
+  /**
+   * Set how far in meters the device must move before the focus point changes. Defaults to
+   * {@link #DEFAULT_REFRESH_METERS}.
+   */
+  public synchronized void setRefreshDistance(double meters) {
+    refreshMeters = meters;
+  }
+
+  /**
+   * Set how long the provider may go unread before the next read starts a new session. Defaults
+   * to {@link #DEFAULT_SESSION_TIMEOUT_MILLIS}.
+   */
+  public synchronized void setSessionTimeout(long duration, TimeUnit unit) {
+    sessionTimeoutMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Starts a new session, for example when the search view gains focus, so that the next read
+   * samples the wrapped provider.
+   */
+  public synchronized void newSession() {
+    stale = true;
+  }
+
+  /**
+   * Returns the number of times the wrapped provider was read.
+   */
+  public synchronized int getSamples() {
+    return samples;
+  }
+
+  @Override public double getLat() {
+    return current().lat;
+  }
+
+  @Override public double getLon() {
+    return current().lon;
+  }
+
+  @Override public BoundingBox getBoundingBox() {
+    return current().boundingBox;
+  }
+
+  private synchronized Snapshot current() {
+    final long now = nowMillis();
+    if (snapshot == null || stale || now - lastReadMillis >= sessionTimeoutMillis) {
+      snapshot = sample();
+      stale = false;
+    }
+    lastReadMillis = now;
+    return snapshot;
+  }
+
+  /**
+   * Reads the wrapped provider, keeping the previous focus point if the device has not moved
+   * further than the refresh distance.
+   */
+  private Snapshot sample() {
+    samples++;
+    final double lat = delegate.getLat();
+    final double lon = delegate.getLon();
+    final BoundingBox boundingBox = delegate.getBoundingBox();
+    if (snapshot != null && distanceMeters(snapshot.rawLat, snapshot.rawLon, lat, lon)
+        < refreshMeters) {
+      return new Snapshot(snapshot.rawLat, snapshot.rawLon, snapshot.lat, snapshot.lon,
+          boundingBox);
+    }
+    return new Snapshot(lat, lon, quantize(lat), quantize(lon), boundingBox);
+  }
+
+  private double quantize(double degrees) {
+    if (gridDegrees <= 0) {
+      return degrees;
+    }
+    // Rounded to micro degrees so that the value prints without floating point noise.
+    return Math.round(Math.round(degrees / gridDegrees) * gridDegrees * 1e6) / 1e6;
+  }
+
+  /**
+   * Returns the approximate distance between two points, accurate enough at the scale of the
+   * refresh distance.
+   */
+  static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+    final double x = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+    final double y = lat2 - lat1;
+    return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+  }
+
+  /**
+   * Returns the current time in milliseconds on a monotonic clock.
+   */
+  long nowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  /**
+   * Position read at the start of a session together with the focus point derived from it.
+   */
+  private static final class Snapshot {
+    final double rawLat;
+    final double rawLon;
+    final double lat;
+    final double lon;
+    final BoundingBox boundingBox;
+
+    Snapshot(double rawLat, double rawLon, double lat, double lon, BoundingBox boundingBox) {
+      this.rawLat = rawLat;
+      this.rawLon = rawLon;
+      this.lat = lat;
+      this.lon = lon;
+      this.boundingBox = boundingBox;
+    }
+  }
+}
@@ -0,0 +1,546 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.util.Collections;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Turns typed text into autocomplete requests. Text shorter than the minimum query length does
+ * not hit the network. Only the response to the most recent request is forwarded to the
+ * callback; responses that arrive after newer text was typed are dropped and counted as
+ * superseded in {@link SuggestStats}.
+ *
+ * <p>With a {@link PrefixRefiner} set, text extending the text of the last delivered response
+ * immediately delivers that response refined for the new text, on the calling thread, followed by
+ * the server's response when it arrives.
+ *
+ * <p>With a {@link NegativeCache} set, empty responses are recorded and text extending text known
+ * to be empty is not sent; an empty result is delivered on the calling thread instead.
+ *
+ * <p>Results delivered without a request are passed with a call which is never sent; its
+ * {@link Call#request() request} is an autocomplete request for the text.
+ *
+ * <p>With a result size set, requests ask for only that many features, for example as many as
+ * fit on screen, and {@link #loadMore()} asks again for the same text with a larger size. The size
+ * is sent with a {@link QuerySpec} and ignored when {@link Pelias#supportsQuerySpecs()} is false.
+ *
+ * <p>This is the policy used by {@code com.mapzen.pelias.widget.PeliasSearchView} and is safe to
+ * drive from any thread.
+ */
+public class SuggestController {
+  public static final int DEFAULT_MIN_QUERY_LENGTH = 3;
+
+  /**
+   * Largest number of features the server returns for a request.
+   */
+  public static final int MAX_RESULT_SIZE = 40;
+
+  private final SuggestStats stats;
+  private Pelias pelias;
+  private SuggestFilter suggestFilter;
+  private Callback<Result> callback;
+  private Processing<?> processing;
+  private Object tag;
+  private PrefixRefiner prefixRefiner;
+  private NegativeCache negativeCache;
+  private QueryNormalizer normalizer = QueryNormalizer.DEFAULT;
+  private String lastKey;
+  private Result lastResult;
+  private Request lastRequest;
+  private int resultSize;
+  private int minQueryLength = DEFAULT_MIN_QUERY_LENGTH;
+  private long latest;
+
+  /**
+   * Constructs a new controller without a {@link Pelias} instance. Requests are not issued until
+   * one is set.
+   */
+  public SuggestController() {
+    this(null);
+  }
+
+  /**
+   * Constructs a new controller issuing requests with the given {@link Pelias}.
+   */
+  public SuggestController(Pelias pelias) {
+    this(pelias, new SuggestStats());
+  }
+
+  /**
+   * Constructs a new controller recording into the given, possibly shared, stats.
+   */
+  public SuggestController(Pelias pelias, SuggestStats stats) {
+    this.pelias = pelias;
+    this.stats = stats;
+  }
+
+  /**
+   * Set the pelias object to be used to query for results.
+   */
+  public synchronized void setPelias(Pelias pelias) {
+    this.pelias = pelias;
+  }
+
+  /**
+   * Set a filter to use when querying for autocomplete results.
+   */
+  public synchronized void setSuggestFilter(SuggestFilter suggestFilter) {
+    this.suggestFilter = suggestFilter;
+  }
+
+  /**
+   * Set the callback to receive the response to the most recent request.
+   */
+  public synchronized void setCallback(Callback<Result> callback) {
+    this.callback = callback;
+    this.processing = null;
+  }
+
+  /**
+   * Set a processor to run on the background thread for the response to the most recent request,
+   * and the callback to receive the processed value on the {@link Pelias} callback executor.
+   * Responses superseded before processing starts are not processed.
+   */
+  public synchronized <T> void setCallback(ResultProcessor<T> processor,
+      ProcessedCallback<T> callback) {
+    this.processing = new Processing<>(processor, callback);
+    this.callback = null;
+  }
+
+  /**
+   * Set a tag to issue requests with, so that they can be canceled with
+   * {@link Pelias#cancelAll(Object)}. Requests are not tagged by default.
+   */
+  public synchronized void setTag(Object tag) {
+    this.tag = tag;
+  }
+
+  /**
+   * Set the refiner used to show the last results refined for longer text while its request is in
+   * flight, or null to only show server responses. Not set by default.
+   */
+  public synchronized void setPrefixRefiner(PrefixRefiner prefixRefiner) {
+    this.prefixRefiner = prefixRefiner;
+  }
+
+  /**
+   * Set the cache recording empty responses, so that text extending text known to be empty is
+   * not sent, or null to send all text. Not set by default.
+   */
+  public synchronized void setNegativeCache(NegativeCache negativeCache) {
+    this.negativeCache = negativeCache;
+  }
+
+  /**
+   * Set the normalizer producing the keys text is looked up with in the negative cache and
+   * compared with for refinement. Requests are always sent with the text as typed. Defaults to
+   * {@link QueryNormalizer#DEFAULT}.
+   */
+  public synchronized void setQueryNormalizer(QueryNormalizer normalizer) {
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * Set how many features to request for new text, or 0 for the server default. The size also is
+   * the step by which {@link #loadMore()} grows requests. Defaults to 0.
+   */
+  public synchronized void setResultSize(int resultSize) {
+    this.resultSize = Math.min(Math.max(resultSize, 0), MAX_RESULT_SIZE);
+  }
+
+  /**
+   * Returns how many features are requested for new text, or 0 for the server default.
+   */
+  public synchronized int getResultSize() {
+    return resultSize;
+  }
+
+  /**
+   * Set the shortest text for which requests are issued.
+   */
+  public synchronized void setMinQueryLength(int minQueryLength) {
+    this.minQueryLength = minQueryLength;
+  }
+
+  /**
+   * Returns the shortest text for which requests are issued.
+   */
+  public synchronized int getMinQueryLength() {
+    return minQueryLength;
+  }
+
+  /**
+   * Returns the stats this controller records into.
+   */
+  public SuggestStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Handles a change of the typed text. Any request still in flight is superseded. Returns true
+   * if a new request was issued.
+   */
+  public boolean onTextChanged(String text) {
+    stats.onTextChange();
+    final long sequence;
+    final Pelias pelias;
+    final SuggestFilter filter;
+    final Processing<?> processing;
+    final Object requestTag;
+    final PrefixRefiner refiner;
+    final String previousKey;
+    final Result previousResult;
+    final NegativeCache cache;
+    final QueryNormalizer queryNormalizer;
+    int size;
+    synchronized (this) {
+      sequence = ++latest;
+      pelias = this.pelias;
+      filter = suggestFilter;
+      processing = this.processing;
+      requestTag = tag;
+      refiner = prefixRefiner;
+      previousKey = lastKey;
+      previousResult = lastResult;
+      cache = negativeCache;
+      queryNormalizer = normalizer;
+      size = resultSize;
+      if (pelias == null || text == null || text.length() < minQueryLength) {
+        return false;
+      }
+    }
+
+    // Normalized once per change, the key is shared by every lookup below.
+    final String key = queryNormalizer.normalize(text);
+    final String scope = cache != null ? cache.scope(filter, pelias.getLocationProvider()) : null;
+    if (cache != null && cache.isKnownEmpty(scope, key)) {
+      stats.onSuppressed();
+      deliverLocal(sequence, pelias, text, new Result(), processing);
+      return false;
+    }
+
+    // Refined results are shown first, the server's response replaces them when it arrives.
+    refine(sequence, pelias, text, refiner, previousKey, previousResult, key, processing);
+
+    // Services which cannot send a size get the server default, which also rules out loading more.
+    if (size > 0 && !pelias.supportsQuerySpecs()) {
+      size = 0;
+    }
+
+    send(pelias, new Request(sequence, text, key, size, cache, scope), filter, processing,
+        requestTag);
+    return true;
+  }
+
+  /**
+   * Handles a change of the typed text without issuing a request, for example while the network
+   * is too slow to keep up. Any request still in flight is superseded. If a {@link PrefixRefiner}
+   * is set and the text extends the text of the last delivered response, that response is
+   * delivered refined for the text on the calling thread. Returns true if refined results were
+   * delivered.
+   */
+  public boolean onTextChangedLocally(String text) {
+    stats.onTextChange();
+    stats.onLocalOnly();
+    final long sequence;
+    final Pelias pelias;
+    final PrefixRefiner refiner;
+    final String previousKey;
+    final Result previousResult;
+    final Processing<?> processing;
+    final QueryNormalizer queryNormalizer;
+    synchronized (this) {
+      sequence = ++latest;
+      pelias = this.pelias;
+      refiner = prefixRefiner;
+      previousKey = lastKey;
+      previousResult = lastResult;
+      processing = this.processing;
+      queryNormalizer = normalizer;
+    }
+    if (text == null) {
+      return false;
+    }
+    return refine(sequence, pelias, text, refiner, previousKey, previousResult,
+        queryNormalizer.normalize(text), processing);
+  }
+
+  /**
+   * Delivers the previous result refined for the key, if it can be refined and anything matches.
+   * Returns true if it was delivered.
+   */
+  private boolean refine(long sequence, Pelias pelias, String text, PrefixRefiner refiner,
+      String previousKey, Result previousResult, String key, Processing<?> processing) {
+    if (refiner == null || previousResult == null || !refiner.canRefine(previousKey, key)) {
+      return false;
+    }
+    final Result refined = refiner.refine(previousResult, key);
+    if (refined.getFeatures().isEmpty()
+        || !deliverLocal(sequence, pelias, text, refined, processing)) {
+      return false;
+    }
+    stats.onRefined();
+    return true;
+  }
+
+  /**
+   * Asks again for the text of the last delivered response with the result size grown by
+   * {@link #getResultSize()}, so that scrolling to the end of a short list shows further
+   * features. Returns true if a request was issued, false if no result size is set, the last
+   * response had fewer features than requested or a newer request is pending.
+   */
+  public boolean loadMore() {
+    final Pelias pelias;
+    final Request request;
+    final SuggestFilter filter;
+    final Processing<?> processing;
+    final Object requestTag;
+    synchronized (this) {
+      if (this.pelias == null || !hasMore()) {
+        return false;
+      }
+      pelias = this.pelias;
+      filter = suggestFilter;
+      processing = this.processing;
+      requestTag = tag;
+      final Request last = lastRequest;
+      request = new Request(++latest, last.text, last.key,
+          Math.min(last.size + resultSize, MAX_RESULT_SIZE), last.cache, last.scope);
+    }
+    stats.onLoadMore();
+    send(pelias, request, filter, processing, requestTag);
+    return true;
+  }
+
+  /**
+   * Returns true if {@link #loadMore()} would issue a request.
+   */
+  public synchronized boolean hasMore() {
+    final Request last = lastRequest;
+    return resultSize > 0 && last != null && last.sequence == latest && last.size > 0
+        && last.size < MAX_RESULT_SIZE && lastResult.getFeatures() != null
+        && lastResult.getFeatures().size() >= last.size;
+  }
+
+  private void send(Pelias pelias, Request request, SuggestFilter filter,
+      Processing<?> processing, Object requestTag) {
+    stats.onRequest();
+    Callback<Result> requestCallback = processing == null ? new RequestCallback(request)
+        : newProcessingCallback(pelias, request, processing);
+    if (requestTag != null) {
+      requestCallback = pelias.tag(requestTag, requestCallback);
+    }
+    if (request.size > 0) {
+      pelias.suggest(spec(pelias, request, filter), requestCallback);
+    } else if (filter == null) {
+      pelias.suggest(request.text, requestCallback);
+    } else {
+      pelias.suggest(request.text, filter.getLayersFilter(), filter.getCountryFilter(),
+          filter.getSources(), requestCallback);
+    }
+  }
+
+  /**
+   * Returns the spec of a sized request, with the same focus and filters as unsized ones.
+   */
+  private static QuerySpec spec(Pelias pelias, Request request, SuggestFilter filter) {
+    final QuerySpec.Builder spec = QuerySpec.builder().text(request.text).size(request.size);
+    final PeliasLocationProvider provider = pelias.getLocationProvider();
+    if (provider != null) {
+      spec.focusPoint(provider.getLat(), provider.getLon());
+    }
+    if (filter != null) {
+      spec.layers(filter.getLayersFilter())
+          .boundaryCountry(filter.getCountryFilter())
+          .sources(filter.getSources());
+    }
+    return spec.build();
+  }
+
+  /**
+   * Delivers a result produced without a request on the calling thread, unless newer text was
+   * entered meanwhile. Returns true if it was delivered.
+   */
+  private boolean deliverLocal(long sequence, Pelias pelias, String text, Result result,
+      Processing<?> processing) {
+    if (!isLatest(sequence)) {
+      return false;
+    }
+    if (processing != null) {
+      return deliverLocal(result, processing);
+    }
+    final Callback<Result> target = getCallback();
+    if (target == null) {
+      return false;
+    }
+    new ViewportCache.CachedCall(pelias != null ? pelias.getEndpoint() : null,
+        PeliasEndpoint.AUTOCOMPLETE, Collections.singletonMap("text", text), result)
+        .enqueue(target);
+    return true;
+  }
+
+  private <T> boolean deliverLocal(Result result, Processing<T> processing) {
+    final T value;
+    try {
+      value = processing.processor.process(result);
+    } catch (RuntimeException e) {
+      // Failures are reported for server responses only.
+      return false;
+    }
+    processing.callback.onResult(value);
+    return true;
+  }
+
+  /**
+   * Records an empty response in the negative cache and keeps the response to the most recent
+   * request as the base for refining longer text.
+   */
+  private void onResult(Request request, Result result) {
+    if (result == null) {
+      return;
+    }
+    if (request.cache != null && result.getFeatures() != null
+        && result.getFeatures().isEmpty()) {
+      request.cache.putEmpty(request.scope, request.key);
+    }
+    synchronized (this) {
+      if (request.sequence == latest) {
+        lastKey = request.key;
+        lastResult = result;
+        lastRequest = request;
+      }
+    }
+  }
+
+  /**
+   * Supersedes any request in flight without issuing a new one.
+   */
+  public synchronized void cancel() {
+    latest++;
+  }
+
+  /**
+   * Returns true if the request with the given sequence number is still the most recent one,
+   * otherwise records it as superseded.
+   */
+  private boolean isCurrent(long sequence) {
+    if (isLatest(sequence)) {
+      return true;
+    }
+    stats.onSuperseded();
+    return false;
+  }
+
+  private synchronized boolean isLatest(long sequence) {
+    return sequence == latest;
+  }
+
+  private <T> Callback<Result> newProcessingCallback(Pelias pelias, final Request request,
+      final Processing<T> processing) {
+    final long sequence = request.sequence;
+    return pelias.process(new ResultProcessor<T>() {
+      @Override public T process(Result result) {
+        onResult(request, result);
+        return isLatest(sequence) ? processing.processor.process(result) : null;
+      }
+    }, new ProcessedCallback<T>() {
+      @Override public void onResult(T value) {
+        if (isCurrent(sequence)) {
+          stats.onDelivered();
+          processing.callback.onResult(value);
+        }
+      }
+
+      @Override public void onFailure(Throwable t) {
+        if (isCurrent(sequence)) {
+          stats.onFailure();
+          processing.callback.onFailure(t);
+        }
+      }
+    });
+  }
+
+  private synchronized Callback<Result> getCallback() {
+    return callback;
+  }
+
+  /**
+   * Processor and callback set together so that their value types match.
+   */
+  private static final class Processing<T> {
+    final ResultProcessor<T> processor;
+    final ProcessedCallback<T> callback;
+
+    /**
+     * Pairs a processor with the callback receiving its values.
+     */
+    Processing(ResultProcessor<T> processor, ProcessedCallback<T> callback) {
+      this.processor = processor;
+      this.callback = callback;
+    }
+  }
+
+  /**
+   * Text and size a request was issued for, and where its empty response is recorded.
+   */
+  private static final class Request {
+    final long sequence;
+    final String text;
+    final String key;
+    final int size;
+    final NegativeCache cache;
+    final String scope;
+
+    Request(long sequence, String text, String key, int size, NegativeCache cache,
+        String scope) {
+      this.sequence = sequence;
+      this.text = text;
+      this.key = key;
+      this.size = size;
+      this.cache = cache;
+      this.scope = scope;
+    }
+  }
+
+  /**
+   * Forwards the response to a single request if it is still current.
+   */
+  private class RequestCallback implements Callback<Result> {
+    private final Request request;
+    private final long sequence;
+
+    RequestCallback(Request request) {
+      this.request = request;
+      this.sequence = request.sequence;
+    }
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      if (response != null && response.isSuccessful()) {
+        onResult(request, response.body());
+      }
+      if (!isCurrent(sequence)) {
+        return;
+      }
+      stats.onDelivered();
+      final Callback<Result> target = getCallback();
+      if (target != null) {
+        target.onResponse(call, response);
+      }
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      if (!isCurrent(sequence)) {
+        return;
+      }
+      stats.onFailure();
+      final Callback<Result> target = getCallback();
+      if (target != null) {
+        target.onFailure(call, t);
+      }
+    }
+  }
+}
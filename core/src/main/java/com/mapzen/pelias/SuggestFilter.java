@@ -2,7 +2,7 @@ package com.mapzen.pelias;
 
 /**
  * Interface to optionally limit autocomplete results on a
- * {@link com.mapzen.pelias.widget.PeliasSearchView}.
+ * {@code com.mapzen.pelias.widget.PeliasSearchView}.
  */
 public interface SuggestFilter {
 
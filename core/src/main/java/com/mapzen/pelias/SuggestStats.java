@@ -0,0 +1,172 @@
+package com.mapzen.pelias;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe counters describing how typed text turned into autocomplete requests. A single
+ * instance may be shared by several {@link SuggestController}s to aggregate across sessions.
+ */
+public class SuggestStats {
+  private final AtomicLong textChanges = new AtomicLong();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong delivered = new AtomicLong();
+  private final AtomicLong superseded = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong refined = new AtomicLong();
+  private final AtomicLong suppressed = new AtomicLong();
+  private final AtomicLong loadMore = new AtomicLong();
+  private final AtomicLong localOnly = new AtomicLong();
+
+  /**
+   * Records a text change.
+   */
+  void onTextChange() {
+    textChanges.incrementAndGet();
+  }
+
+  /**
+   * Records a request sent to the server.
+   */
+  void onRequest() {
+    requests.incrementAndGet();
+  }
+
+  /**
+   * Records a response delivered to the callback.
+   */
+  void onDelivered() {
+    delivered.incrementAndGet();
+  }
+
+  /**
+   * Records a response dropped because newer text was entered.
+   */
+  void onSuperseded() {
+    superseded.incrementAndGet();
+  }
+
+  /**
+   * Records a failed request.
+   */
+  void onFailure() {
+    failures.incrementAndGet();
+  }
+
+  /**
+   * Records results refined locally from a previous response.
+   */
+  void onRefined() {
+    refined.incrementAndGet();
+  }
+
+  /**
+   * Records text not sent because it extends text known to return nothing.
+   */
+  void onSuppressed() {
+    suppressed.incrementAndGet();
+  }
+
+  /**
+   * Records a request for more features of the same text.
+   */
+  void onLoadMore() {
+    loadMore.incrementAndGet();
+  }
+
+  /**
+   * Records text answered locally because the network was too slow.
+   */
+  void onLocalOnly() {
+    localOnly.incrementAndGet();
+  }
+
+  /**
+   * Returns the number of text changes seen.
+   */
+  public long getTextChanges() {
+    return textChanges.get();
+  }
+
+  /**
+   * Returns the number of autocomplete requests issued.
+   */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the number of responses handed to the callback.
+   */
+  public long getDelivered() {
+    return delivered.get();
+  }
+
+  /**
+   * Returns the number of responses dropped because newer text had been typed before they
+   * arrived. These requests were wasted.
+   */
+  public long getSuperseded() {
+    return superseded.get();
+  }
+
+  /**
+   * Returns the number of current requests that failed.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Returns the number of times results refined locally from a previous response were shown
+   * ahead of the server's response.
+   */
+  public long getRefined() {
+    return refined.get();
+  }
+
+  /**
+   * Returns the number of requests not sent because the text extended text known to return no
+   * results.
+   */
+  public long getSuppressed() {
+    return suppressed.get();
+  }
+
+  /**
+   * Returns the number of requests asking again for the same text with a larger size. These are
+   * included in {@link #getRequests()}.
+   */
+  public long getLoadMore() {
+    return loadMore.get();
+  }
+
+  /**
+   * Returns the number of text changes answered locally, without a request, because the network
+   * was too slow.
+   */
+  public long getLocalOnly() {
+    return localOnly.get();
+  }
+
+  /**
+   * Resets all counters to zero.
+   */
+  public void reset() {
+    textChanges.set(0);
+    requests.set(0);
+    delivered.set(0);
+    superseded.set(0);
+    failures.set(0);
+    refined.set(0);
+    suppressed.set(0);
+    loadMore.set(0);
+    localOnly.set(0);
+  }
+
+  @Override public String toString() {
+    return "textChanges=" + getTextChanges() + " requests=" + getRequests() + " delivered="
+        + getDelivered() + " superseded=" + getSuperseded() + " failures=" + getFailures()
+        + " refined=" + getRefined() + " suppressed=" + getSuppressed() + " loadMore="
+        + getLoadMore() + " localOnly=" + getLocalOnly();
+  }
+}
@@ -0,0 +1,77 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Records the time from its creation until the response or failure arrives, and the size of the
+ * response, into a {@link NetworkQuality} before passing it on. Canceled calls are not recorded,
+ * except for calls which timed out or missed their deadline: those are counted as timeouts and
+ * their time as a sample, which is a lower bound of the round trip they would have taken.
+ *
+ * <p>Calls which wait in a {@link RequestScheduler} are timed from when they are sent, see
+ * {@link #restart()}, and calls dropped before being sent are not recorded at all.
+ */
+final class TimingCallback implements Callback<Result> {
+  private final NetworkQuality quality;
+  private final Callback<Result> delegate;
+  private volatile long startNanos = System.nanoTime();
+  private volatile boolean discarded;
+
+  /**
+   * Creates a callback timing the call it is passed to and forwarding to {@code delegate}.
+   */
+  TimingCallback(NetworkQuality quality, Callback<Result> delegate) {
+    this.quality = quality;
+    this.delegate = delegate;
+  }
+
+  /**
+   * Restarts the clock, for calls which waited in a queue before being sent.
+   */
+  void restart() {
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Records nothing for the call, for calls which were never sent.
+   */
+  void discard() {
+    discarded = true;
+  }
+
+  @Override public void onResponse(Call<Result> call, Response<Result> response) {
+    if (!discarded && !isCanceled(call)) {
+      final ResponseBody body = response != null ? response.raw().body() : null;
+      quality.record(elapsedMillis(), body != null ? body.contentLength() : -1);
+    }
+    delegate.onResponse(call, response);
+  }
+
+  @Override public void onFailure(Call<Result> call, Throwable t) {
+    if (!discarded) {
+      if (t instanceof InterruptedIOException) {
+        quality.recordTimeout();
+        quality.record(elapsedMillis(), -1);
+      } else if (!isCanceled(call)) {
+        quality.record(elapsedMillis(), -1);
+      }
+    }
+    delegate.onFailure(call, t);
+  }
+
+  private static boolean isCanceled(Call<Result> call) {
+    return call != null && call.isCanceled();
+  }
+
+  private long elapsedMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+}
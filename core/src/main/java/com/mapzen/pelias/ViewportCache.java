@@ -0,0 +1,446 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Remembers search results together with the {@link BoundingBox} they were requested for, so that
+ * map driven apps searching again after a small pan or zoom in do not hit the server. A search
+ * whose box lies inside a remembered box, or whose box is mostly covered by one, is answered with
+ * the remembered features located inside the new box.
+ *
+ * <p>Only results with fewer features than a page are remembered. A full page is the server's top
+ * results for the whole box and may leave out features of a smaller box inside it which the
+ * server would have returned for that box.
+ *
+ * <p>Set on {@link Pelias} with {@link Pelias#setViewportCache(ViewportCache)}. Queries are keyed
+ * by their {@link QueryNormalizer} key, least recently used queries are evicted first and entries
+ * expire after their time to live. {@link Pelias} keeps the results of each of its configurations
+ * apart, so that searches sent after changing the endpoint or request handler are not answered
+ * with results fetched before. Safe to share between threads.
+ */
+public class ViewportCache {
+  public static final int DEFAULT_MAX_QUERIES = 16;
+  public static final int DEFAULT_MAX_AREAS_PER_QUERY = 4;
+  public static final double DEFAULT_MIN_OVERLAP = 0.9;
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+  public static final int DEFAULT_PAGE_SIZE = 10;
+
+  private final int maxAreasPerQuery;
+  private final Map<Key, List<Area>> entries;
+  private QueryNormalizer normalizer = QueryNormalizer.DEFAULT;
+  private double minOverlap = DEFAULT_MIN_OVERLAP;
+  private long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+  private int pageSize = DEFAULT_PAGE_SIZE;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructs a cache with the default bounds.
+   */
+  public ViewportCache() {
+    this(DEFAULT_MAX_QUERIES, DEFAULT_MAX_AREAS_PER_QUERY);
+  }
+
+  /**
+   * Constructs a cache remembering up to {@code maxAreasPerQuery} boxes for each of up to
+   * {@code maxQueries} queries.
+   */
+  public ViewportCache(final int maxQueries, int maxAreasPerQuery) {
+    this.maxAreasPerQuery = maxAreasPerQuery;
+    this.entries = new LinkedHashMap<Key, List<Area>>(16, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<Key, List<Area>> eldest) {
+        return size() > maxQueries;
+      }
+    };
+  }
+
+  /**
+   * Set the fraction of a requested box a remembered box must cover to answer it. 1 only answers
+   * boxes entirely inside a remembered one. Defaults to {@link #DEFAULT_MIN_OVERLAP}.
+   */
+  public synchronized void setMinOverlap(double minOverlap) {
+    this.minOverlap = minOverlap;
+  }
+
+  /**
+   * Set how long results are reused. Defaults to {@link #DEFAULT_TIME_TO_LIVE_MILLIS}.
+   */
+  public synchronized void setTimeToLive(long duration, TimeUnit unit) {
+    timeToLiveMillis = unit.toMillis(duration);
+  }
+
+  /**
+   * Set the number of results the searches return at most; results this large are not
+   * remembered. Defaults to {@link #DEFAULT_PAGE_SIZE}, the server's default size.
+   */
+  public synchronized void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * Set the normalizer producing the keys queries are looked up with. Defaults to
+   * {@link QueryNormalizer#DEFAULT}.
+   */
+  public synchronized void setQueryNormalizer(QueryNormalizer normalizer) {
+    this.normalizer = normalizer;
+  }
+
+  /**
+   * Returns the remembered features of the query located inside the box, or null if no remembered
+   * box covers enough of it.
+   */
+  public Result get(String query, BoundingBox box) {
+    return get(null, query, box);
+  }
+
+  /**
+   * Returns the remembered features of the query located inside the box among the results put
+   * with the same scope, or null if no remembered box covers enough of it.
+   */
+  Result get(Object scope, String query, BoundingBox box) {
+    final long now = nowMillis();
+    final Area entry;
+    synchronized (this) {
+      entry = find(new Key(scope, normalizer.normalize(query)), box, now);
+      if (entry == null) {
+        misses++;
+        return null;
+      }
+      hits++;
+    }
+    return filter(entry.result, box);
+  }
+
+  /**
+   * Remembers the result of searching the query within the box, unless it fills a page.
+   */
+  public void put(String query, BoundingBox box, Result result) {
+    put(null, query, box, result);
+  }
+
+  /**
+   * Remembers the result of searching the query within the box under the scope, unless it fills a
+   * page.
+   */
+  void put(Object scope, String query, BoundingBox box, Result result) {
+    if (result == null || maxAreasPerQuery <= 0) {
+      return;
+    }
+    final long now = nowMillis();
+    synchronized (this) {
+      if (result.getFeatures() != null && result.getFeatures().size() >= pageSize) {
+        return;
+      }
+      final Key key = new Key(scope, normalizer.normalize(query));
+      List<Area> areas = entries.get(key);
+      if (areas == null) {
+        areas = new ArrayList<>(maxAreasPerQuery);
+        entries.put(key, areas);
+      }
+      // A box covering remembered ones replaces them.
+      for (Iterator<Area> it = areas.iterator(); it.hasNext();) {
+        if (box.contains(it.next().box)) {
+          it.remove();
+        }
+      }
+      if (areas.size() >= maxAreasPerQuery) {
+        areas.remove(0);
+      }
+      areas.add(new Area(box, result, now));
+    }
+  }
+
+  /**
+   * Forgets every remembered result.
+   */
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  /**
+   * Returns the number of searches answered from the cache.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of searches the cache could not answer.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Returns the current time in milliseconds on a monotonic clock.
+   */
+  long nowMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  /**
+   * Returns the entry covering the largest part of the box, if it covers enough. Must hold the
+   * lock.
+   */
+  private Area find(Key key, BoundingBox box, long now) {
+    final List<Area> areas = entries.get(key);
+    if (areas == null) {
+      return null;
+    }
+    Area best = null;
+    double bestOverlap = 0;
+    for (Iterator<Area> it = areas.iterator(); it.hasNext();) {
+      final Area entry = it.next();
+      if (now - entry.time >= timeToLiveMillis) {
+        it.remove();
+        continue;
+      }
+      final double overlap = overlap(entry.box, box);
+      if (overlap > bestOverlap) {
+        best = entry;
+        bestOverlap = overlap;
+      }
+    }
+    if (areas.isEmpty()) {
+      entries.remove(key);
+    }
+    return bestOverlap >= minOverlap ? best : null;
+  }
+
+  /**
+   * Returns the fraction of {@code box} covered by {@code cached}.
+   */
+  private static double overlap(BoundingBox cached, BoundingBox box) {
+    if (cached.contains(box)) {
+      return 1;
+    }
+    final BoundingBox intersection = cached.intersection(box);
+    if (intersection == null || box.area() <= 0) {
+      return 0;
+    }
+    return intersection.area() / box.area();
+  }
+
+  private static Result filter(Result result, BoundingBox box) {
+    final List<Feature> inside = new ArrayList<>();
+    final List<Feature> features = result.getFeatures();
+    if (features != null) {
+      for (Feature feature : features) {
+        if (isInside(feature, box)) {
+          inside.add(feature);
+        }
+      }
+    }
+    final Result filtered = new Result();
+    filtered.setType(result.getType());
+    filtered.setFeatures(inside);
+    return filtered;
+  }
+
+  private static boolean isInside(Feature feature, BoundingBox box) {
+    if (feature == null || feature.geometry == null || feature.geometry.coordinates == null
+        || feature.geometry.coordinates.size() < 2) {
+      return false;
+    }
+    // GeoJSON orders coordinates lon, lat.
+    final Double lon = feature.geometry.coordinates.get(0);
+    final Double lat = feature.geometry.coordinates.get(1);
+    return lat != null && lon != null && box.contains(lat, lon);
+  }
+
+  /**
+   * Normalized query and the scope of the requests it was searched with.
+   */
+  private static final class Key {
+    final Object scope;
+    final String query;
+    final int hash;
+
+    Key(Object scope, String query) {
+      this.scope = scope;
+      this.query = query;
+      this.hash = 31 * (scope != null ? scope.hashCode() : 0) + query.hashCode();
+    }
+
+    @Override public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      final Key other = (Key) o;
+      return hash == other.hash && query.equals(other.query)
+          && (scope == null ? other.scope == null : scope.equals(other.scope));
+    }
+
+    @Override public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * Result remembered for a box.
+   */
+  private static final class Area {
+    final BoundingBox box;
+    final Result result;
+    final long time;
+
+    Area(BoundingBox box, Result result, long time) {
+      this.box = box;
+      this.result = result;
+      this.time = time;
+    }
+  }
+
+  /**
+   * Call answered from the cache, without touching the network. Its request is only built when
+   * asked for.
+   */
+  static final class CachedCall implements Call<Result> {
+    private final String baseUrl;
+    private final PeliasEndpoint endpoint;
+    private final Map<String, String> parameters;
+    private final Result result;
+    private volatile boolean executed;
+    private volatile boolean canceled;
+
+    /**
+     * Creates a call standing in for a request with the parameters to the endpoint, responding
+     * with {@code result}. An invalid base url is replaced with
+     * {@link Pelias#DEFAULT_SEARCH_ENDPOINT}.
+     */
+    CachedCall(String baseUrl, PeliasEndpoint endpoint, Map<String, String> parameters,
+        Result result) {
+      this.baseUrl = baseUrl;
+      this.endpoint = endpoint;
+      this.parameters = parameters;
+      this.result = result;
+    }
+
+    @Override public Response<Result> execute() throws IOException {
+      executed = true;
+      return Response.success(result);
+    }
+
+    @Override public void enqueue(Callback<Result> callback) {
+      executed = true;
+      callback.onResponse(this, Response.success(result));
+    }
+
+    @Override public boolean isExecuted() {
+      return executed;
+    }
+
+    @Override public void cancel() {
+      canceled = true;
+    }
+
+    @Override public boolean isCanceled() {
+      return canceled;
+    }
+
+    @Override public Call<Result> clone() {
+      return new CachedCall(baseUrl, endpoint, parameters, result);
+    }
+
+    @Override public Request request() {
+      HttpUrl base = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+      if (base == null) {
+        base = HttpUrl.parse(Pelias.DEFAULT_SEARCH_ENDPOINT);
+      }
+      final HttpUrl.Builder url = base.newBuilder(endpoint.getPath());
+      for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+        url.addQueryParameter(parameter.getKey(), parameter.getValue());
+      }
+      return new Request.Builder().url(url.build()).build();
+    }
+  }
+
+  /**
+   * Call remembering its successful response in the cache.
+   */
+  static final class StoringCall implements Call<Result> {
+    private final ViewportCache cache;
+    private final Object scope;
+    private final String query;
+    private final BoundingBox box;
+    private final Call<Result> delegate;
+
+    /**
+     * Creates a call remembering the response of {@code delegate} for the query and box under the
+     * scope.
+     */
+    StoringCall(ViewportCache cache, Object scope, String query, BoundingBox box,
+        Call<Result> delegate) {
+      this.cache = cache;
+      this.scope = scope;
+      this.query = query;
+      this.box = box;
+      this.delegate = delegate;
+    }
+
+    @Override public Response<Result> execute() throws IOException {
+      final Response<Result> response = delegate.execute();
+      store(response);
+      return response;
+    }
+
+    @Override public void enqueue(final Callback<Result> callback) {
+      delegate.enqueue(new Callback<Result>() {
+        @Override public void onResponse(Call<Result> call, Response<Result> response) {
+          store(response);
+          callback.onResponse(StoringCall.this, response);
+        }
+
+        @Override public void onFailure(Call<Result> call, Throwable t) {
+          callback.onFailure(StoringCall.this, t);
+        }
+      });
+    }
+
+    private void store(Response<Result> response) {
+      if (response != null && response.isSuccessful()) {
+        cache.put(scope, query, box, response.body());
+      }
+    }
+
+    @Override public boolean isExecuted() {
+      return delegate.isExecuted();
+    }
+
+    @Override public void cancel() {
+      delegate.cancel();
+    }
+
+    @Override public boolean isCanceled() {
+      return delegate.isCanceled();
+    }
+
+    @Override public Call<Result> clone() {
+      return new StoringCall(cache, scope, query, box, delegate.clone());
+    }
+
+    @Override public Request request() {
+      return delegate.request();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.mapzen.pelias.codec;
+
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * Decodes json by reading {@link Gson}'s {@link JsonReader} over a UTF-8 char stream. This is how
+ * Retrofit's Gson converter reads responses and is the default codec.
+ */
+public class GsonResponseCodec implements ResponseCodec {
+  static final MediaType JSON = MediaType.parse("application/json");
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final TypeAdapter<Result> adapter;
+
+  /**
+   * Constructs a new codec using the given {@link Gson}'s adapter for {@link Result}.
+   */
+  public GsonResponseCodec(Gson gson) {
+    this.adapter = gson.getAdapter(Result.class);
+  }
+
+  @Override public MediaType mediaType() {
+    return JSON;
+  }
+
+  @Override public Result decode(BufferedSource source) throws IOException {
+    return adapter.read(new JsonReader(new InputStreamReader(source.inputStream(), UTF_8)));
+  }
+}
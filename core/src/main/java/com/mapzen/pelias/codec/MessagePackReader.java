@@ -0,0 +1,348 @@
+package com.mapzen.pelias.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import okio.BufferedSource;
+
+/**
+ * {@link JsonReader} over a MessagePack document, so that Gson's {@code TypeAdapter}s can bind
+ * MessagePack responses the same way as json. Maps must have string keys. Binary and extension
+ * types have no json equivalent and are rejected.
+ */
+final class MessagePackReader extends JsonReader {
+  private static final int ARRAY = 1;
+  private static final int MAP = 2;
+  private static final int DOCUMENT = 3;
+
+  private final BufferedSource source;
+  private int[] kinds = new int[32];
+  /** Items left in each container. Maps count keys and values separately. */
+  private long[] remaining = new long[32];
+  private int depth;
+
+  private JsonToken peeked;
+  /** Byte length of a peeked string, or item count of a peeked container. */
+  private long peekedLength;
+  private long peekedLong;
+  private double peekedDouble;
+  private boolean peekedIsDouble;
+
+  /**
+   * Creates a reader over {@code source}. Closing the reader closes the source.
+   */
+  MessagePackReader(BufferedSource source) {
+    super(new StringReader(""));
+    this.source = source;
+    push(DOCUMENT, 1);
+  }
+
+  @Override public JsonToken peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+    final int top = depth - 1;
+    if (remaining[top] == 0) {
+      if (kinds[top] == ARRAY) {
+        return found(JsonToken.END_ARRAY);
+      } else if (kinds[top] == MAP) {
+        return found(JsonToken.END_OBJECT);
+      } else if (!source.exhausted()) {
+        throw syntaxError("Multiple top level values");
+      }
+      return found(JsonToken.END_DOCUMENT);
+    }
+    final JsonToken token = readHeader(require(1).readByte() & 0xff);
+    if (kinds[top] == MAP && remaining[top] % 2 == 0) {
+      if (token != JsonToken.STRING) {
+        throw syntaxError("Expected a string key but was " + token);
+      }
+      return found(JsonToken.NAME);
+    }
+    return found(token);
+  }
+
+  @Override public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    push(ARRAY, peekedLength);
+  }
+
+  @Override public void endArray() throws IOException {
+    expectEnd(JsonToken.END_ARRAY);
+  }
+
+  @Override public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    push(MAP, peekedLength);
+  }
+
+  @Override public void endObject() throws IOException {
+    expectEnd(JsonToken.END_OBJECT);
+  }
+
+  @Override public boolean hasNext() throws IOException {
+    final JsonToken token = peek();
+    return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    return require(peekedLength).readUtf8(peekedLength);
+  }
+
+  @Override public String nextString() throws IOException {
+    final JsonToken token = peek();
+    if (token == JsonToken.STRING) {
+      consumed();
+      return require(peekedLength).readUtf8(peekedLength);
+    } else if (token == JsonToken.NUMBER) {
+      consumed();
+      return peekedIsDouble ? Double.toString(peekedDouble) : Long.toString(peekedLong);
+    }
+    throw new IllegalStateException("Expected a string but was " + token);
+  }
+
+  @Override public boolean nextBoolean() throws IOException {
+    expect(JsonToken.BOOLEAN);
+    return peekedLong != 0;
+  }
+
+  @Override public void nextNull() throws IOException {
+    expect(JsonToken.NULL);
+  }
+
+  @Override public double nextDouble() throws IOException {
+    final JsonToken token = peek();
+    if (token == JsonToken.NUMBER) {
+      consumed();
+      return peekedIsDouble ? peekedDouble : peekedLong;
+    } else if (token == JsonToken.STRING) {
+      final String value = nextString();
+      try {
+        return Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        throw new NumberFormatException("Expected a double but was " + value);
+      }
+    }
+    throw new IllegalStateException("Expected a double but was " + token);
+  }
+
+  @Override public long nextLong() throws IOException {
+    if (peek() == JsonToken.NUMBER && !peekedIsDouble) {
+      consumed();
+      return peekedLong;
+    }
+    final double value = nextDouble();
+    final long result = (long) value;
+    if (result != value) {
+      throw new NumberFormatException("Expected a long but was " + value);
+    }
+    return result;
+  }
+
+  @Override public int nextInt() throws IOException {
+    final long value = nextLong();
+    if ((int) value != value) {
+      throw new NumberFormatException("Expected an int but was " + value);
+    }
+    return (int) value;
+  }
+
+  @Override public void skipValue() throws IOException {
+    int count = 0;
+    do {
+      final JsonToken token = peek();
+      switch (token) {
+        case BEGIN_ARRAY:
+          beginArray();
+          count++;
+          break;
+        case BEGIN_OBJECT:
+          beginObject();
+          count++;
+          break;
+        case END_ARRAY:
+          endArray();
+          count--;
+          break;
+        case END_OBJECT:
+          endObject();
+          count--;
+          break;
+        case NAME:
+        case STRING:
+          consumed();
+          source.skip(peekedLength);
+          break;
+        case NUMBER:
+        case BOOLEAN:
+        case NULL:
+          consumed();
+          break;
+        default:
+          throw new IllegalStateException("Unexpected " + token);
+      }
+    } while (count != 0);
+  }
+
+  @Override public void close() throws IOException {
+    peeked = null;
+    depth = 0;
+    source.close();
+  }
+
+  @Override public String toString() {
+    return "MessagePackReader";
+  }
+
+  /**
+   * Reads the header following a format byte, leaving any string payload unread.
+   */
+  private JsonToken readHeader(int format) throws IOException {
+    if (format <= 0x7f) {
+      return integer(format);
+    } else if (format >= 0xe0) {
+      return integer((byte) format);
+    } else if (format <= 0x8f) {
+      peekedLength = (format & 0x0f) * 2L;
+      return JsonToken.BEGIN_OBJECT;
+    } else if (format <= 0x9f) {
+      peekedLength = format & 0x0f;
+      return JsonToken.BEGIN_ARRAY;
+    } else if (format <= 0xbf) {
+      peekedLength = format & 0x1f;
+      return JsonToken.STRING;
+    }
+    switch (format) {
+      case 0xc0:
+        return JsonToken.NULL;
+      case 0xc2:
+        peekedLong = 0;
+        return JsonToken.BOOLEAN;
+      case 0xc3:
+        peekedLong = 1;
+        return JsonToken.BOOLEAN;
+      case 0xca:
+        return floating(Float.intBitsToFloat(require(4).readInt()));
+      case 0xcb:
+        return floating(Double.longBitsToDouble(require(8).readLong()));
+      case 0xcc:
+        return integer(require(1).readByte() & 0xffL);
+      case 0xcd:
+        return integer(require(2).readShort() & 0xffffL);
+      case 0xce:
+        return integer(require(4).readInt() & 0xffffffffL);
+      case 0xcf:
+        final long unsigned = require(8).readLong();
+        if (unsigned < 0) {
+          return floating((unsigned >>> 1) * 2.0 + (unsigned & 1));
+        }
+        return integer(unsigned);
+      case 0xd0:
+        return integer(require(1).readByte());
+      case 0xd1:
+        return integer(require(2).readShort());
+      case 0xd2:
+        return integer(require(4).readInt());
+      case 0xd3:
+        return integer(require(8).readLong());
+      case 0xd9:
+        peekedLength = require(1).readByte() & 0xffL;
+        return JsonToken.STRING;
+      case 0xda:
+        peekedLength = require(2).readShort() & 0xffffL;
+        return JsonToken.STRING;
+      case 0xdb:
+        peekedLength = require(4).readInt() & 0xffffffffL;
+        return JsonToken.STRING;
+      case 0xdc:
+        peekedLength = require(2).readShort() & 0xffffL;
+        return JsonToken.BEGIN_ARRAY;
+      case 0xdd:
+        peekedLength = require(4).readInt() & 0xffffffffL;
+        return JsonToken.BEGIN_ARRAY;
+      case 0xde:
+        peekedLength = (require(2).readShort() & 0xffffL) * 2;
+        return JsonToken.BEGIN_OBJECT;
+      case 0xdf:
+        peekedLength = (require(4).readInt() & 0xffffffffL) * 2;
+        return JsonToken.BEGIN_OBJECT;
+      default:
+        throw syntaxError("Unsupported MessagePack type 0x" + Integer.toHexString(format));
+    }
+  }
+
+  /**
+   * Returns the source after ensuring it buffers {@code byteCount} bytes, so that truncated input
+   * fails with an {@link java.io.EOFException} whether or not the source is itself a buffer.
+   */
+  private BufferedSource require(long byteCount) throws IOException {
+    source.require(byteCount);
+    return source;
+  }
+
+  private JsonToken integer(long value) {
+    peekedIsDouble = false;
+    peekedLong = value;
+    return JsonToken.NUMBER;
+  }
+
+  private JsonToken floating(double value) {
+    peekedIsDouble = true;
+    peekedDouble = value;
+    return JsonToken.NUMBER;
+  }
+
+  private JsonToken found(JsonToken token) {
+    peeked = token;
+    return token;
+  }
+
+  /**
+   * Consumes the peeked token as one item of the enclosing container.
+   */
+  private void consumed() {
+    peeked = null;
+    remaining[depth - 1]--;
+  }
+
+  private void expect(JsonToken expected) throws IOException {
+    final JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token);
+    }
+    consumed();
+  }
+
+  private void expectEnd(JsonToken expected) throws IOException {
+    final JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+    depth--;
+  }
+
+  private void push(int kind, long count) {
+    if (depth == kinds.length) {
+      final int[] grownKinds = new int[depth * 2];
+      final long[] grownRemaining = new long[depth * 2];
+      System.arraycopy(kinds, 0, grownKinds, 0, depth);
+      System.arraycopy(remaining, 0, grownRemaining, 0, depth);
+      kinds = grownKinds;
+      remaining = grownRemaining;
+    }
+    kinds[depth] = kind;
+    remaining[depth] = count;
+    depth++;
+  }
+
+  private MalformedJsonException syntaxError(String message) {
+    return new MalformedJsonException(message);
+  }
+}
@@ -0,0 +1,38 @@
+package com.mapzen.pelias.codec;
+
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * Decodes MessagePack encodings of the Pelias json schema, as served by a proxy in front of
+ * Pelias. Maps use the json property names, so the same {@link Gson} adapters bind the result.
+ * Pelias itself only serves json; pair this codec with a json codec in {@link ResponseCodecs} so
+ * that servers which ignore the {@code Accept} header still work.
+ */
+public class MessagePackResponseCodec implements ResponseCodec {
+  static final MediaType MESSAGE_PACK = MediaType.parse("application/x-msgpack");
+
+  private final TypeAdapter<Result> adapter;
+
+  /**
+   * Constructs a new codec using the given {@link Gson}'s adapter for {@link Result}.
+   */
+  public MessagePackResponseCodec(Gson gson) {
+    this.adapter = gson.getAdapter(Result.class);
+  }
+
+  @Override public MediaType mediaType() {
+    return MESSAGE_PACK;
+  }
+
+  @Override public Result decode(BufferedSource source) throws IOException {
+    return adapter.read(new MessagePackReader(source));
+  }
+}
@@ -0,0 +1,25 @@
+package com.mapzen.pelias.codec;
+
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * Decodes Pelias response bodies of a single media type into a {@link Result}.
+ */
+public interface ResponseCodec {
+
+  /**
+   * Returns the media type this codec decodes. It is advertised in the {@code Accept} header and
+   * matched against the {@code Content-Type} of responses.
+   */
+  MediaType mediaType();
+
+  /**
+   * Decodes a complete response body. The caller closes the source.
+   */
+  Result decode(BufferedSource source) throws IOException;
+}
@@ -0,0 +1,91 @@
+package com.mapzen.pelias.codec;
+
+import java.util.Locale;
+
+import okhttp3.MediaType;
+
+/**
+ * Ordered set of {@link ResponseCodec}s used to negotiate the response format. Requests advertise
+ * every codec in the {@code Accept} header, in order of preference, and each response is decoded
+ * by the codec matching its {@code Content-Type}.
+ */
+public final class ResponseCodecs {
+  private final ResponseCodec[] codecs;
+  private final String accept;
+
+  private ResponseCodecs(ResponseCodec[] codecs) {
+    this.codecs = codecs;
+    this.accept = codecs.length > 1 ? buildAccept(codecs) : null;
+  }
+
+  /**
+   * Returns codecs in order of preference.
+   *
+   * @throws IllegalArgumentException if no codecs are given.
+   */
+  public static ResponseCodecs of(ResponseCodec... codecs) {
+    if (codecs.length == 0) {
+      throw new IllegalArgumentException("At least one codec is required");
+    }
+    for (ResponseCodec codec : codecs) {
+      if (codec == null) {
+        throw new NullPointerException("codec == null");
+      }
+    }
+    return new ResponseCodecs(codecs.clone());
+  }
+
+  /**
+   * Returns the value of the {@code Accept} header to send, or null when there is only one codec
+   * and the server's default format is expected.
+   */
+  public String accept() {
+    return accept;
+  }
+
+  /**
+   * Returns the codec for a response with the given content type. Responses without a content
+   * type or with one no codec matches are assumed to be json, which is what Pelias serves; the
+   * most preferred codec is used if none of the codecs is json.
+   */
+  public ResponseCodec select(MediaType contentType) {
+    if (contentType != null) {
+      for (ResponseCodec codec : codecs) {
+        if (matches(codec.mediaType(), contentType)) {
+          return codec;
+        }
+      }
+    }
+    for (ResponseCodec codec : codecs) {
+      if (isJson(codec.mediaType())) {
+        return codec;
+      }
+    }
+    return codecs[0];
+  }
+
+  private static boolean matches(MediaType expected, MediaType actual) {
+    return expected.type().equalsIgnoreCase(actual.type())
+        && expected.subtype().equalsIgnoreCase(actual.subtype());
+  }
+
+  private static boolean isJson(MediaType mediaType) {
+    final String subtype = mediaType.subtype().toLowerCase(Locale.US);
+    return subtype.equals("json") || subtype.endsWith("+json");
+  }
+
+  private static String buildAccept(ResponseCodec[] codecs) {
+    final StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < codecs.length; i++) {
+      final MediaType mediaType = codecs[i].mediaType();
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append(mediaType.type()).append('/').append(mediaType.subtype());
+      if (i > 0) {
+        builder.append(String.format(Locale.US, ";q=%.1f", Math.max(0.1, 1.0 - 0.1 * i)));
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,398 @@
+package com.mapzen.pelias.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * {@link JsonReader} which tokenizes UTF-8 json directly from a {@link BufferedSource}. Strings
+ * are decoded straight from okio segments instead of through an intermediate char stream. Only
+ * strict json is accepted.
+ *
+ * <p>Extending {@link JsonReader}, as Gson's own tree reader does, lets the existing
+ * {@code TypeAdapter}s read from it unchanged.
+ */
+final class Utf8JsonReader extends JsonReader {
+  private static final ByteString STRING_TERMINALS = ByteString.encodeUtf8("\"\\");
+  private static final ByteString LITERAL_TERMINALS = ByteString.encodeUtf8(",:[]{} \t\r\n");
+
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+
+  private final BufferedSource source;
+  private final Buffer buffer;
+  private int[] stack = new int[32];
+  private int depth;
+  private JsonToken peeked;
+
+  /**
+   * Creates a reader over {@code source}. Closing the reader closes the source.
+   */
+  Utf8JsonReader(BufferedSource source) {
+    super(new StringReader(""));
+    this.source = source;
+    this.buffer = source.buffer();
+    stack[depth++] = EMPTY_DOCUMENT;
+  }
+
+  @Override public JsonToken peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+    final int scope = stack[depth - 1];
+    if (scope == EMPTY_ARRAY) {
+      stack[depth - 1] = NONEMPTY_ARRAY;
+    } else if (scope == NONEMPTY_ARRAY) {
+      final int c = nextNonWhitespace(true);
+      if (c == ']') {
+        return found(JsonToken.END_ARRAY);
+      } else if (c != ',') {
+        throw syntaxError("Unterminated array");
+      }
+      buffer.skip(1);
+    } else if (scope == EMPTY_OBJECT || scope == NONEMPTY_OBJECT) {
+      if (scope == NONEMPTY_OBJECT) {
+        final int c = nextNonWhitespace(true);
+        if (c == '}') {
+          return found(JsonToken.END_OBJECT);
+        } else if (c != ',') {
+          throw syntaxError("Unterminated object");
+        }
+        buffer.skip(1);
+      }
+      final int c = nextNonWhitespace(true);
+      if (c == '"') {
+        stack[depth - 1] = DANGLING_NAME;
+        return found(JsonToken.NAME);
+      } else if (c == '}' && scope == EMPTY_OBJECT) {
+        return found(JsonToken.END_OBJECT);
+      }
+      throw syntaxError("Expected name");
+    } else if (scope == DANGLING_NAME) {
+      stack[depth - 1] = NONEMPTY_OBJECT;
+      if (nextNonWhitespace(true) != ':') {
+        throw syntaxError("Expected ':'");
+      }
+      buffer.skip(1);
+    } else if (scope == EMPTY_DOCUMENT) {
+      stack[depth - 1] = NONEMPTY_DOCUMENT;
+    } else if (scope == NONEMPTY_DOCUMENT) {
+      if (nextNonWhitespace(false) == -1) {
+        return found(JsonToken.END_DOCUMENT);
+      }
+      throw syntaxError("Multiple top level values");
+    }
+
+    final int c = nextNonWhitespace(true);
+    switch (c) {
+      case ']':
+        if (scope == EMPTY_ARRAY) {
+          return found(JsonToken.END_ARRAY);
+        }
+        throw syntaxError("Unexpected value");
+      case '{':
+        return found(JsonToken.BEGIN_OBJECT);
+      case '[':
+        return found(JsonToken.BEGIN_ARRAY);
+      case '"':
+        return found(JsonToken.STRING);
+      case 't':
+      case 'f':
+        return found(JsonToken.BOOLEAN);
+      case 'n':
+        return found(JsonToken.NULL);
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return found(JsonToken.NUMBER);
+        }
+        throw syntaxError("Unexpected character");
+    }
+  }
+
+  @Override public void beginArray() throws IOException {
+    expect(JsonToken.BEGIN_ARRAY);
+    buffer.skip(1);
+    push(EMPTY_ARRAY);
+  }
+
+  @Override public void endArray() throws IOException {
+    expect(JsonToken.END_ARRAY);
+    buffer.skip(1);
+    depth--;
+  }
+
+  @Override public void beginObject() throws IOException {
+    expect(JsonToken.BEGIN_OBJECT);
+    buffer.skip(1);
+    push(EMPTY_OBJECT);
+  }
+
+  @Override public void endObject() throws IOException {
+    expect(JsonToken.END_OBJECT);
+    buffer.skip(1);
+    depth--;
+  }
+
+  @Override public boolean hasNext() throws IOException {
+    final JsonToken token = peek();
+    return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY
+        && token != JsonToken.END_DOCUMENT;
+  }
+
+  @Override public String nextName() throws IOException {
+    expect(JsonToken.NAME);
+    buffer.skip(1);
+    return readQuoted();
+  }
+
+  @Override public String nextString() throws IOException {
+    final JsonToken token = peek();
+    if (token == JsonToken.STRING) {
+      peeked = null;
+      buffer.skip(1);
+      return readQuoted();
+    } else if (token == JsonToken.NUMBER) {
+      peeked = null;
+      return readLiteral();
+    }
+    throw new IllegalStateException("Expected a string but was " + token);
+  }
+
+  @Override public boolean nextBoolean() throws IOException {
+    expect(JsonToken.BOOLEAN);
+    final String literal = readLiteral();
+    if ("true".equals(literal)) {
+      return true;
+    } else if ("false".equals(literal)) {
+      return false;
+    }
+    throw syntaxError("Invalid literal " + literal);
+  }
+
+  @Override public void nextNull() throws IOException {
+    expect(JsonToken.NULL);
+    final String literal = readLiteral();
+    if (!"null".equals(literal)) {
+      throw syntaxError("Invalid literal " + literal);
+    }
+  }
+
+  @Override public double nextDouble() throws IOException {
+    final JsonToken token = peek();
+    final String value;
+    if (token == JsonToken.NUMBER) {
+      peeked = null;
+      value = readLiteral();
+    } else if (token == JsonToken.STRING) {
+      peeked = null;
+      buffer.skip(1);
+      value = readQuoted();
+    } else {
+      throw new IllegalStateException("Expected a double but was " + token);
+    }
+    final double result;
+    try {
+      result = Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      throw new NumberFormatException("Expected a double but was " + value);
+    }
+    if (Double.isNaN(result) || Double.isInfinite(result)) {
+      throw new MalformedJsonException("JSON forbids NaN and infinities: " + result);
+    }
+    return result;
+  }
+
+  @Override public long nextLong() throws IOException {
+    final double value = nextDouble();
+    final long result = (long) value;
+    if (result != value) {
+      throw new NumberFormatException("Expected a long but was " + value);
+    }
+    return result;
+  }
+
+  @Override public int nextInt() throws IOException {
+    final long value = nextLong();
+    if ((int) value != value) {
+      throw new NumberFormatException("Expected an int but was " + value);
+    }
+    return (int) value;
+  }
+
+  @Override public void skipValue() throws IOException {
+    int count = 0;
+    do {
+      final JsonToken token = peek();
+      switch (token) {
+        case BEGIN_ARRAY:
+          beginArray();
+          count++;
+          break;
+        case BEGIN_OBJECT:
+          beginObject();
+          count++;
+          break;
+        case END_ARRAY:
+          endArray();
+          count--;
+          break;
+        case END_OBJECT:
+          endObject();
+          count--;
+          break;
+        case NAME:
+          nextName();
+          break;
+        case STRING:
+        case NUMBER:
+          nextString();
+          break;
+        case BOOLEAN:
+          nextBoolean();
+          break;
+        case NULL:
+          nextNull();
+          break;
+        default:
+          throw new IllegalStateException("Unexpected " + token);
+      }
+    } while (count != 0);
+  }
+
+  @Override public void close() throws IOException {
+    peeked = null;
+    depth = 0;
+    source.close();
+  }
+
+  @Override public String toString() {
+    return "Utf8JsonReader";
+  }
+
+  private JsonToken found(JsonToken token) {
+    peeked = token;
+    return token;
+  }
+
+  private void expect(JsonToken expected) throws IOException {
+    final JsonToken token = peek();
+    if (token != expected) {
+      throw new IllegalStateException("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+  }
+
+  private void push(int scope) {
+    if (depth == stack.length) {
+      final int[] grown = new int[depth * 2];
+      System.arraycopy(stack, 0, grown, 0, depth);
+      stack = grown;
+    }
+    stack[depth++] = scope;
+  }
+
+  /**
+   * Skips whitespace and returns the next byte without consuming it, or -1 at the end of input.
+   */
+  private int nextNonWhitespace(boolean required) throws IOException {
+    while (source.request(1)) {
+      final byte c = buffer.getByte(0);
+      if (c == ' ' || c == '\n' || c == '\t' || c == '\r') {
+        buffer.skip(1);
+      } else {
+        return c;
+      }
+    }
+    if (required) {
+      throw new EOFException("End of input");
+    }
+    return -1;
+  }
+
+  /**
+   * Reads the rest of a string whose opening quote has been consumed.
+   */
+  private String readQuoted() throws IOException {
+    StringBuilder builder = null;
+    while (true) {
+      final long index = source.indexOfElement(STRING_TERMINALS);
+      if (index == -1) {
+        throw syntaxError("Unterminated string");
+      }
+      if (buffer.getByte(index) == '"') {
+        final String chunk = buffer.readUtf8(index);
+        buffer.skip(1);
+        if (builder == null) {
+          return chunk;
+        }
+        return builder.append(chunk).toString();
+      }
+      if (builder == null) {
+        builder = new StringBuilder();
+      }
+      builder.append(buffer.readUtf8(index));
+      buffer.skip(1);
+      builder.append(readEscape());
+    }
+  }
+
+  private char readEscape() throws IOException {
+    if (!source.request(1)) {
+      throw syntaxError("Unterminated escape sequence");
+    }
+    final byte escaped = buffer.readByte();
+    switch (escaped) {
+      case 'u':
+        if (!source.request(4)) {
+          throw new EOFException("Unterminated escape sequence");
+        }
+        final String hex = buffer.readUtf8(4);
+        try {
+          return (char) Integer.parseInt(hex, 16);
+        } catch (NumberFormatException e) {
+          throw syntaxError("Invalid escape \\u" + hex);
+        }
+      case 't':
+        return '\t';
+      case 'b':
+        return '\b';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 'f':
+        return '\f';
+      case '"':
+      case '\\':
+      case '/':
+        return (char) escaped;
+      default:
+        throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  /**
+   * Reads an unquoted number or literal up to the next structural character or whitespace.
+   */
+  private String readLiteral() throws IOException {
+    final long index = source.indexOfElement(LITERAL_TERMINALS);
+    return index == -1 ? source.readUtf8() : buffer.readUtf8(index);
+  }
+
+  private MalformedJsonException syntaxError(String message) {
+    return new MalformedJsonException(message);
+  }
+}
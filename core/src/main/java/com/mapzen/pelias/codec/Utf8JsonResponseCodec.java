@@ -0,0 +1,36 @@
+package com.mapzen.pelias.codec;
+
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+
+import java.io.IOException;
+
+import okhttp3.MediaType;
+import okio.BufferedSource;
+
+/**
+ * Decodes json by tokenizing the UTF-8 bytes of the response directly from its
+ * {@link BufferedSource}, skipping the char stream {@link GsonResponseCodec} reads through. Values
+ * are still bound by {@link Gson}'s adapter for {@link Result}, so both codecs produce the same
+ * objects.
+ */
+public class Utf8JsonResponseCodec implements ResponseCodec {
+  private final TypeAdapter<Result> adapter;
+
+  /**
+   * Constructs a new codec using the given {@link Gson}'s adapter for {@link Result}.
+   */
+  public Utf8JsonResponseCodec(Gson gson) {
+    this.adapter = gson.getAdapter(Result.class);
+  }
+
+  @Override public MediaType mediaType() {
+    return GsonResponseCodec.JSON;
+  }
+
+  @Override public Result decode(BufferedSource source) throws IOException {
+    return adapter.read(new Utf8JsonReader(source));
+  }
+}
@@ -0,0 +1,67 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link Feature}.
+ */
+final class FeatureTypeAdapter extends TypeAdapter<Feature> {
+  private final PropertiesTypeAdapter propertiesAdapter;
+  private final GeometryTypeAdapter geometryAdapter;
+
+  /**
+   * Creates an adapter using the given properties and geometry adapters.
+   */
+  FeatureTypeAdapter(PropertiesTypeAdapter propertiesAdapter,
+      GeometryTypeAdapter geometryAdapter) {
+    this.propertiesAdapter = propertiesAdapter;
+    this.geometryAdapter = geometryAdapter;
+  }
+
+  @Override public void write(JsonWriter out, Feature value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("properties");
+    propertiesAdapter.write(out, value.properties);
+    out.name("geometry");
+    geometryAdapter.write(out, value.geometry);
+    out.endObject();
+  }
+
+  @Override public Feature read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final Feature feature = new Feature();
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "properties":
+            feature.properties = propertiesAdapter.read(in);
+            break;
+          case "geometry":
+            feature.geometry = geometryAdapter.read(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return feature;
+  }
+}
@@ -0,0 +1,79 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming adapter for {@link Geometry}.
+ */
+final class GeometryTypeAdapter extends TypeAdapter<Geometry> {
+
+  @Override public void write(JsonWriter out, Geometry value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("type").value(value.type);
+    out.name("coordinates");
+    if (value.coordinates == null) {
+      out.nullValue();
+    } else {
+      out.beginArray();
+      for (Double coordinate : value.coordinates) {
+        JsonValues.writeDouble(out, coordinate);
+      }
+      out.endArray();
+    }
+    out.endObject();
+  }
+
+  @Override public Geometry read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final Geometry geometry = new Geometry();
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "type":
+            geometry.type = JsonValues.readString(in);
+            break;
+          case "coordinates":
+            geometry.coordinates = readCoordinates(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return geometry;
+  }
+
+  private static List<Double> readCoordinates(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final List<Double> coordinates = new ArrayList<>(2);
+    in.beginArray();
+    while (in.hasNext()) {
+      coordinates.add(JsonValues.readDouble(in));
+    }
+    in.endArray();
+    return coordinates;
+  }
+}
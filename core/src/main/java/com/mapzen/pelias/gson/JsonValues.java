@@ -0,0 +1,57 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes primitive values the same way as Gson's built in adapters.
+ */
+final class JsonValues {
+
+  private JsonValues() {
+  }
+
+  /**
+   * Reads a nullable string, accepting booleans like Gson's string adapter does.
+   */
+  static String readString(JsonReader in) throws IOException {
+    final JsonToken peek = in.peek();
+    if (peek == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (peek == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  /**
+   * Reads a nullable double.
+   */
+  static Double readDouble(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextDouble();
+  }
+
+  /**
+   * Writes a nullable double.
+   */
+  static void writeDouble(JsonWriter out, Double value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException(value
+          + " is not a valid double value as per JSON specification.");
+    }
+    out.value(value);
+  }
+}
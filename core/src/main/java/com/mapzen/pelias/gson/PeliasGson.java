@@ -0,0 +1,24 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Holds the shared {@link Gson} instance used to parse Pelias responses, with
+ * {@link PeliasTypeAdapterFactory} registered.
+ */
+public final class PeliasGson {
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapterFactory(new PeliasTypeAdapterFactory())
+      .create();
+
+  private PeliasGson() {
+  }
+
+  /**
+   * Returns the shared instance. Gson instances are thread safe.
+   */
+  public static Gson get() {
+    return GSON;
+  }
+}
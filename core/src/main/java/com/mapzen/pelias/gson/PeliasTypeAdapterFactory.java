@@ -0,0 +1,37 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Provides hand written streaming adapters for {@link Result}, {@link Feature},
+ * {@link Properties} and {@link Geometry}. They produce the same objects and json as Gson's
+ * reflective adapter without field reflection on first use or per field thereafter.
+ */
+public final class PeliasTypeAdapterFactory implements TypeAdapterFactory {
+  private final GeometryTypeAdapter geometryAdapter = new GeometryTypeAdapter();
+  private final PropertiesTypeAdapter propertiesAdapter = new PropertiesTypeAdapter();
+  private final FeatureTypeAdapter featureAdapter =
+      new FeatureTypeAdapter(propertiesAdapter, geometryAdapter);
+  private final ResultTypeAdapter resultAdapter = new ResultTypeAdapter(featureAdapter);
+
+  @SuppressWarnings("unchecked")
+  @Override public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    final Class<? super T> rawType = type.getRawType();
+    if (rawType == Result.class) {
+      return (TypeAdapter<T>) resultAdapter;
+    }
+    if (rawType == Feature.class) {
+      return (TypeAdapter<T>) featureAdapter;
+    }
+    if (rawType == Properties.class) {
+      return (TypeAdapter<T>) propertiesAdapter;
+    }
+    if (rawType == Geometry.class) {
+      return (TypeAdapter<T>) geometryAdapter;
+    }
+    return null;
+  }
+}
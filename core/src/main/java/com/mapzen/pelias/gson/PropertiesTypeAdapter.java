@@ -0,0 +1,104 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streaming adapter for {@link Properties}. Fields missing from the json keep the defaults
+ * assigned by the constructor, explicit nulls replace them, as with Gson's reflective adapter.
+ */
+final class PropertiesTypeAdapter extends TypeAdapter<Properties> {
+
+  @Override public void write(JsonWriter out, Properties value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("id").value(value.id);
+    out.name("gid").value(value.gid);
+    out.name("name").value(value.name);
+    out.name("country_a").value(value.country_a);
+    out.name("country").value(value.country);
+    out.name("region").value(value.region);
+    out.name("region_a").value(value.region_a);
+    out.name("county").value(value.county);
+    out.name("localadmin").value(value.localadmin);
+    out.name("locality").value(value.locality);
+    out.name("neighbourhood").value(value.neighbourhood);
+    out.name("confidence");
+    JsonValues.writeDouble(out, value.confidence);
+    out.name("label").value(value.label);
+    out.name("layer").value(value.layer);
+    out.endObject();
+  }
+
+  @Override public Properties read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final Properties properties = new Properties();
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "id":
+            properties.id = JsonValues.readString(in);
+            break;
+          case "gid":
+            properties.gid = JsonValues.readString(in);
+            break;
+          case "name":
+            properties.name = JsonValues.readString(in);
+            break;
+          case "country_a":
+            properties.country_a = JsonValues.readString(in);
+            break;
+          case "country":
+            properties.country = JsonValues.readString(in);
+            break;
+          case "region":
+            properties.region = JsonValues.readString(in);
+            break;
+          case "region_a":
+            properties.region_a = JsonValues.readString(in);
+            break;
+          case "county":
+            properties.county = JsonValues.readString(in);
+            break;
+          case "localadmin":
+            properties.localadmin = JsonValues.readString(in);
+            break;
+          case "locality":
+            properties.locality = JsonValues.readString(in);
+            break;
+          case "neighbourhood":
+            properties.neighbourhood = JsonValues.readString(in);
+            break;
+          case "confidence":
+            properties.confidence = JsonValues.readDouble(in);
+            break;
+          case "label":
+            properties.label = JsonValues.readString(in);
+            break;
+          case "layer":
+            properties.layer = JsonValues.readString(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return properties;
+  }
+}
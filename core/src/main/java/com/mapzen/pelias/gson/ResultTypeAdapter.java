@@ -0,0 +1,88 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming adapter for {@link Result}.
+ */
+final class ResultTypeAdapter extends TypeAdapter<Result> {
+  private final FeatureTypeAdapter featureAdapter;
+
+  /**
+   * Creates an adapter that delegates features to {@code featureAdapter}.
+   */
+  ResultTypeAdapter(FeatureTypeAdapter featureAdapter) {
+    this.featureAdapter = featureAdapter;
+  }
+
+  @Override public void write(JsonWriter out, Result value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("type").value(value.getType());
+    out.name("features");
+    final List<Feature> features = value.getFeatures();
+    if (features == null) {
+      out.nullValue();
+    } else {
+      out.beginArray();
+      for (Feature feature : features) {
+        featureAdapter.write(out, feature);
+      }
+      out.endArray();
+    }
+    out.endObject();
+  }
+
+  @Override public Result read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final Result result = new Result();
+    try {
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "type":
+            result.setType(JsonValues.readString(in));
+            break;
+          case "features":
+            result.setFeatures(readFeatures(in));
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    }
+    return result;
+  }
+
+  private List<Feature> readFeatures(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    final List<Feature> features = new ArrayList<>();
+    in.beginArray();
+    while (in.hasNext()) {
+      features.add(featureAdapter.read(in));
+    }
+    in.endArray();
+    return features;
+  }
+}
@@ -0,0 +1,203 @@
+package com.mapzen.pelias.http;
+
+import com.mapzen.pelias.codec.ResponseCodecs;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link Call} backed directly by an {@link okhttp3.Call}. Mirrors Retrofit's handling of
+ * responses: non-2xx bodies are buffered into {@link Response#errorBody()}, 204 and 205 have no
+ * body, and callbacks for canceled calls are reported as failures. Successful bodies are decoded
+ * by the {@link com.mapzen.pelias.codec.ResponseCodec} matching their content type.
+ */
+final class DirectCall implements Call<Result> {
+  private final okhttp3.Call.Factory callFactory;
+  private final Request request;
+  private final ResponseCodecs codecs;
+  private final Executor callbackExecutor;
+
+  private okhttp3.Call rawCall;
+  private boolean executed;
+  private volatile boolean canceled;
+
+  /**
+   * Creates a call that has not been executed yet.
+   */
+  DirectCall(okhttp3.Call.Factory callFactory, Request request, ResponseCodecs codecs,
+      Executor callbackExecutor) {
+    this.callFactory = callFactory;
+    this.request = request;
+    this.codecs = codecs;
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  @Override public Response<Result> execute() throws IOException {
+    return parseResponse(start().execute());
+  }
+
+  @Override public void enqueue(final Callback<Result> callback) {
+    if (callback == null) {
+      throw new NullPointerException("callback == null");
+    }
+    start().enqueue(new okhttp3.Callback() {
+      @Override public void onFailure(okhttp3.Call call, IOException e) {
+        deliverFailure(callback, e);
+      }
+
+      @Override public void onResponse(okhttp3.Call call, okhttp3.Response rawResponse) {
+        final Response<Result> response;
+        try {
+          response = parseResponse(rawResponse);
+        } catch (Throwable e) {
+          deliverFailure(callback, e);
+          return;
+        }
+        deliverResponse(callback, response);
+      }
+    });
+  }
+
+  private okhttp3.Call start() {
+    final okhttp3.Call call;
+    synchronized (this) {
+      if (executed) {
+        throw new IllegalStateException("Already executed.");
+      }
+      executed = true;
+      call = callFactory.newCall(request);
+      rawCall = call;
+    }
+    if (canceled) {
+      call.cancel();
+    }
+    return call;
+  }
+
+  private void deliverResponse(final Callback<Result> callback, final Response<Result> response) {
+    if (callbackExecutor == null) {
+      callback.onResponse(this, response);
+      return;
+    }
+    callbackExecutor.execute(new Runnable() {
+      @Override public void run() {
+        if (isCanceled()) {
+          callback.onFailure(DirectCall.this, new IOException("Canceled"));
+        } else {
+          callback.onResponse(DirectCall.this, response);
+        }
+      }
+    });
+  }
+
+  private void deliverFailure(final Callback<Result> callback, final Throwable t) {
+    if (callbackExecutor == null) {
+      callback.onFailure(this, t);
+      return;
+    }
+    callbackExecutor.execute(new Runnable() {
+      @Override public void run() {
+        callback.onFailure(DirectCall.this, t);
+      }
+    });
+  }
+
+  private Response<Result> parseResponse(okhttp3.Response rawResponse) throws IOException {
+    final ResponseBody rawBody = rawResponse.body();
+    final okhttp3.Response stripped = rawResponse.newBuilder()
+        .body(new NoContentResponseBody(rawBody.contentType(), rawBody.contentLength()))
+        .build();
+
+    final int code = stripped.code();
+    if (code < 200 || code >= 300) {
+      try {
+        final Buffer buffer = new Buffer();
+        rawBody.source().readAll(buffer);
+        return Response.error(
+            ResponseBody.create(rawBody.contentType(), rawBody.contentLength(), buffer), stripped);
+      } finally {
+        rawBody.close();
+      }
+    }
+
+    if (code == 204 || code == 205) {
+      rawBody.close();
+      return Response.success(null, stripped);
+    }
+
+    try {
+      final Result result = codecs.select(rawBody.contentType()).decode(rawBody.source());
+      return Response.success(result, stripped);
+    } finally {
+      rawBody.close();
+    }
+  }
+
+  @Override public synchronized boolean isExecuted() {
+    return executed;
+  }
+
+  @Override public void cancel() {
+    canceled = true;
+    final okhttp3.Call call;
+    synchronized (this) {
+      call = rawCall;
+    }
+    if (call != null) {
+      call.cancel();
+    }
+  }
+
+  @Override public boolean isCanceled() {
+    if (canceled) {
+      return true;
+    }
+    synchronized (this) {
+      return rawCall != null && rawCall.isCanceled();
+    }
+  }
+
+  @SuppressWarnings("CloneDoesntCallSuperClone")
+  @Override public Call<Result> clone() {
+    return new DirectCall(callFactory, request, codecs, callbackExecutor);
+  }
+
+  @Override public Request request() {
+    return request;
+  }
+
+  /**
+   * Placeholder body on the raw response handed to callers, as the real body has been consumed.
+   */
+  private static final class NoContentResponseBody extends ResponseBody {
+    private final MediaType contentType;
+    private final long contentLength;
+
+    NoContentResponseBody(MediaType contentType, long contentLength) {
+      this.contentType = contentType;
+      this.contentLength = contentLength;
+    }
+
+    @Override public MediaType contentType() {
+      return contentType;
+    }
+
+    @Override public long contentLength() {
+      return contentLength;
+    }
+
+    @Override public BufferedSource source() {
+      throw new IllegalStateException("Cannot read raw response body of a converted body.");
+    }
+  }
+}
@@ -0,0 +1,173 @@
+package com.mapzen.pelias.http;
+
+import com.mapzen.pelias.PeliasQueryService;
+import com.mapzen.pelias.PeliasService;
+import com.mapzen.pelias.codec.GsonResponseCodec;
+import com.mapzen.pelias.codec.ResponseCodecs;
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import retrofit2.Call;
+
+/**
+ * Hand written {@link PeliasService} and {@link PeliasQueryService} which builds each
+ * {@link HttpUrl} directly instead of going through {@code Retrofit.create()}. This avoids the
+ * dynamic proxy and the reflective parsing of method annotations on the first call of every
+ * method, while producing the same requests and {@link Call} semantics as the Retrofit
+ * implementation.
+ */
+public class DirectPeliasService implements PeliasService, PeliasQueryService {
+  private static final String AUTOCOMPLETE = "/v1/autocomplete";
+  private static final String SEARCH = "/v1/search";
+  private static final String REVERSE = "/v1/reverse";
+  private static final String PLACE = "/v1/place";
+
+  private final HttpUrl baseUrl;
+  private final okhttp3.Call.Factory callFactory;
+  private final ResponseCodecs codecs;
+  private final Executor callbackExecutor;
+
+  /**
+   * Constructs a new service.
+   *
+   * @param baseUrl Url which endpoint paths are resolved against.
+   * @param callFactory Factory for http calls, normally an {@link okhttp3.OkHttpClient}.
+   * @param gson Gson instance used to parse response bodies.
+   * @param callbackExecutor Executor on which callbacks are invoked, or null to invoke them on
+   * the http thread. Use {@code retrofit2.Retrofit#callbackExecutor()} to match the platform
+   * default, which is the main thread on Android.
+   */
+  public DirectPeliasService(HttpUrl baseUrl, okhttp3.Call.Factory callFactory, Gson gson,
+      Executor callbackExecutor) {
+    this(baseUrl, callFactory, ResponseCodecs.of(new GsonResponseCodec(gson)), callbackExecutor);
+  }
+
+  /**
+   * Constructs a new service which negotiates the response format.
+   *
+   * @param baseUrl Url which endpoint paths are resolved against.
+   * @param callFactory Factory for http calls, normally an {@link okhttp3.OkHttpClient}.
+   * @param codecs Codecs advertised in the {@code Accept} header and used to decode responses.
+   * @param callbackExecutor Executor on which callbacks are invoked, or null to invoke them on
+   * the http thread.
+   */
+  public DirectPeliasService(HttpUrl baseUrl, okhttp3.Call.Factory callFactory,
+      ResponseCodecs codecs, Executor callbackExecutor) {
+    this.baseUrl = baseUrl;
+    this.callFactory = callFactory;
+    this.codecs = codecs;
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  @Override public Call<Result> getSuggest(String query, double lat, double lon) {
+    final HttpUrl.Builder url = url(AUTOCOMPLETE);
+    addOptional(url, "text", query);
+    return newCall(url
+        .addQueryParameter("focus.point.lat", String.valueOf(lat))
+        .addQueryParameter("focus.point.lon", String.valueOf(lon)));
+  }
+
+  @Override public Call<Result> getSuggest(String query, double lat, double lon, String layers,
+      String country, String source) {
+    final HttpUrl.Builder url = url(AUTOCOMPLETE);
+    addOptional(url, "text", query);
+    url.addQueryParameter("focus.point.lat", String.valueOf(lat))
+        .addQueryParameter("focus.point.lon", String.valueOf(lon));
+    addOptional(url, "layers", layers);
+    addOptional(url, "boundary.country", country);
+    addOptional(url, "sources", source);
+    return newCall(url);
+  }
+
+  @Override public Call<Result> getSearch(String query, double minLat, double minLon,
+      double maxLat, double maxLon) {
+    final HttpUrl.Builder url = url(SEARCH);
+    addOptional(url, "text", query);
+    return newCall(url
+        .addQueryParameter("focus.viewport.min_lat", String.valueOf(minLat))
+        .addQueryParameter("focus.viewport.min_lon", String.valueOf(minLon))
+        .addQueryParameter("focus.viewport.max_lat", String.valueOf(maxLat))
+        .addQueryParameter("focus.viewport.max_lon", String.valueOf(maxLon)));
+  }
+
+  @Override public Call<Result> getSearch(String query, double lat, double lon) {
+    final HttpUrl.Builder url = url(SEARCH);
+    addOptional(url, "text", query);
+    return newCall(url
+        .addQueryParameter("focus.point.lat", String.valueOf(lat))
+        .addQueryParameter("focus.point.lon", String.valueOf(lon)));
+  }
+
+  @Override public Call<Result> getReverse(double lat, double lon) {
+    return newCall(url(REVERSE)
+        .addQueryParameter("point.lat", String.valueOf(lat))
+        .addQueryParameter("point.lon", String.valueOf(lon)));
+  }
+
+  @Override public Call<Result> getReverse(double lat, double lon, String sources) {
+    final HttpUrl.Builder url = url(REVERSE)
+        .addQueryParameter("point.lat", String.valueOf(lat))
+        .addQueryParameter("point.lon", String.valueOf(lon));
+    addOptional(url, "sources", sources);
+    return newCall(url);
+  }
+
+  @Override public Call<Result> autocomplete(Map<String, String> parameters) {
+    return newCall(addAll(url(AUTOCOMPLETE), parameters));
+  }
+
+  @Override public Call<Result> search(Map<String, String> parameters) {
+    return newCall(addAll(url(SEARCH), parameters));
+  }
+
+  @Override public Call<Result> reverse(Map<String, String> parameters) {
+    return newCall(addAll(url(REVERSE), parameters));
+  }
+
+  @Override public Call<Result> getPlace(String ids) {
+    final HttpUrl.Builder url = url(PLACE);
+    addOptional(url, "ids", ids);
+    return newCall(url);
+  }
+
+  private HttpUrl.Builder url(String path) {
+    return baseUrl.newBuilder(path);
+  }
+
+  /**
+   * Adds a query parameter unless the value is null, matching Retrofit's {@code @Query}.
+   */
+  private static void addOptional(HttpUrl.Builder url, String name, String value) {
+    if (value != null) {
+      url.addQueryParameter(name, value);
+    }
+  }
+
+  /**
+   * Adds every parameter in iteration order, matching Retrofit's {@code @QueryMap}.
+   */
+  private static HttpUrl.Builder addAll(HttpUrl.Builder url, Map<String, String> parameters) {
+    for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+      if (parameter.getValue() == null) {
+        throw new IllegalArgumentException(
+            "Query map contained null value for key '" + parameter.getKey() + "'.");
+      }
+      url.addQueryParameter(parameter.getKey(), parameter.getValue());
+    }
+    return url;
+  }
+
+  private Call<Result> newCall(HttpUrl.Builder url) {
+    final Request.Builder request = new Request.Builder().url(url.build());
+    if (codecs.accept() != null) {
+      request.header("Accept", codecs.accept());
+    }
+    return new DirectCall(callFactory, request.build(), codecs, callbackExecutor);
+  }
+}
@@ -1,12 +1,11 @@
 package com.mapzen.pelias.http;
 
-import android.os.Build;
-import android.util.Log;
-
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
@@ -21,6 +20,7 @@ import okhttp3.TlsVersion;
  * Enables TLS 1.2 support for pre-lollipop on {@link OkHttpClient.Builder} objects.
  */
 public class Tls12OkHttpClientFactory {
+  private static final Logger LOGGER = Logger.getLogger("OkHttpTLSCompat");
 
   /**
    * Enables TLS 1.2 support for pre-lollipop on given {@link OkHttpClient.Builder}.
@@ -28,7 +28,8 @@ public class Tls12OkHttpClientFactory {
    * @return TLS enabled client.
    */
   public static OkHttpClient.Builder enableTls12OnPreLollipop(OkHttpClient.Builder client) {
-    if (Build.VERSION.SDK_INT >= 16 && Build.VERSION.SDK_INT < 22) {
+    final int sdkInt = androidSdkInt();
+    if (sdkInt >= 16 && sdkInt < 22) {
       try {
         SSLContext sc = SSLContext.getInstance("TLSv1.2");
         sc.init(null, null, null);
@@ -55,10 +56,22 @@ public class Tls12OkHttpClientFactory {
 
         client.connectionSpecs(specs);
       } catch (Exception exc) {
-        Log.e("OkHttpTLSCompat", "Error while setting TLS 1.2", exc);
+        LOGGER.log(Level.SEVERE, "Error while setting TLS 1.2", exc);
       }
     }
 
     return client;
   }
+
+  /**
+   * Returns the Android API level when running on a device, or 0 on a plain JVM. Read reflectively
+   * so that this class does not depend on the Android framework at compile time.
+   */
+  static int androidSdkInt() {
+    try {
+      return Class.forName("android.os.Build$VERSION").getField("SDK_INT").getInt(null);
+    } catch (Exception e) {
+      return 0;
+    }
+  }
 }
@@ -0,0 +1,79 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AdaptiveSuggestPolicyTest {
+  private final NetworkQualityTest.TestNetworkQuality quality =
+      new NetworkQualityTest.TestNetworkQuality(10);
+  private final TestAdaptiveSuggestPolicy policy = new TestAdaptiveSuggestPolicy(quality);
+
+  @Test public void getLevel_fewSamples_shouldBeFast() throws Exception {
+    record(5000, AdaptiveSuggestPolicy.MIN_SAMPLES - 1);
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.FAST);
+    assertThat(policy.getDebounceMillis()).isEqualTo(0);
+    assertThat(policy.getResultSize()).isEqualTo(0);
+  }
+
+  @Test public void getLevel_shouldFollowLatencyBudget() throws Exception {
+    record(200, 10);
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.FAST);
+    record(500, 10);
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.MODERATE);
+    record(1000, 10);
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.SLOW);
+    assertThat(policy.getMinQueryLength())
+        .isGreaterThan(SuggestController.DEFAULT_MIN_QUERY_LENGTH);
+    record(2000, 10);
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.LOCAL_ONLY);
+  }
+
+  @Test public void getLevel_lowThroughput_shouldBeSlow() throws Exception {
+    quality.setMinThroughputBytes(0);
+    for (int i = 0; i < 10; i++) {
+      quality.record(100, 500);
+    }
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.SLOW);
+  }
+
+  @Test public void getLevel_smallResponsesOnFastNetwork_shouldBeFast() throws Exception {
+    for (int i = 0; i < 10; i++) {
+      quality.record(150 + i * 10, 3 * 1024);
+    }
+    assertThat(policy.getLevel()).isEqualTo(AdaptiveSuggestPolicy.Level.FAST);
+  }
+
+  @Test public void isLocalOnly_shouldProbeOncePerInterval() throws Exception {
+    policy.setProbeInterval(10, TimeUnit.SECONDS);
+    record(200, 10);
+    assertThat(policy.isLocalOnly()).isFalse();
+    record(2000, 10);
+    assertThat(policy.isLocalOnly()).isTrue();
+    policy.now = 9999;
+    assertThat(policy.isLocalOnly()).isTrue();
+    policy.now = 10000;
+    assertThat(policy.isLocalOnly()).isFalse();
+    assertThat(policy.isLocalOnly()).isTrue();
+  }
+
+  private void record(long millis, int count) {
+    for (int i = 0; i < count; i++) {
+      quality.record(millis, -1);
+    }
+  }
+
+  private static class TestAdaptiveSuggestPolicy extends AdaptiveSuggestPolicy {
+    long now;
+
+    TestAdaptiveSuggestPolicy(NetworkQuality quality) {
+      super(quality);
+    }
+
+    @Override long nowMillis() {
+      return now;
+    }
+  }
+}
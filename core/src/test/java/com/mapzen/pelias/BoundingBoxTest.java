@@ -0,0 +1,27 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BoundingBoxTest {
+  private final BoundingBox box = new BoundingBox(0.0, 0.0, 2.0, 4.0);
+
+  @Test public void contains_shouldIncludeEdges() throws Exception {
+    assertThat(box.contains(2.0, 4.0)).isTrue();
+    assertThat(box.contains(2.1, 1.0)).isFalse();
+    assertThat(box.contains(new BoundingBox(0.0, 1.0, 1.0, 4.0))).isTrue();
+    assertThat(box.contains(new BoundingBox(0.0, 1.0, 1.0, 5.0))).isFalse();
+  }
+
+  @Test public void intersection_shouldReturnSharedArea() throws Exception {
+    assertThat(box.intersection(new BoundingBox(1.0, 3.0, 5.0, 5.0)))
+        .isEqualTo(new BoundingBox(1.0, 3.0, 2.0, 4.0));
+    assertThat(box.intersection(new BoundingBox(2.0, 0.0, 3.0, 4.0))).isNull();
+  }
+
+  @Test public void area_shouldMultiplySides() throws Exception {
+    assertThat(box.area()).isEqualTo(8.0);
+    assertThat(box.expand(0.5).area()).isEqualTo(32.0);
+  }
+}
@@ -0,0 +1,59 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class EndpointCallFactoryTest {
+  private final OkHttpClient client = new OkHttpClient();
+  private final EndpointCallFactory factory = new EndpointCallFactory(client,
+      Collections.singletonMap(PeliasEndpoint.AUTOCOMPLETE, new PeliasConfig.Timeouts(1000, 500)));
+
+  @Test public void client_shouldApplyEndpointTimeouts() throws Exception {
+    final OkHttpClient autocomplete = factory.client(PeliasEndpoint.AUTOCOMPLETE);
+    assertThat(autocomplete.connectTimeoutMillis()).isEqualTo(1000);
+    assertThat(autocomplete.readTimeoutMillis()).isEqualTo(500);
+    assertThat(autocomplete.connectionPool()).isSameAs(client.connectionPool());
+    assertThat(autocomplete.dispatcher()).isSameAs(client.dispatcher());
+  }
+
+  @Test public void client_otherEndpoint_shouldUseDefaultClient() throws Exception {
+    assertThat(factory.client(PeliasEndpoint.SEARCH)).isSameAs(client);
+  }
+
+  @Test public void forPath_shouldMatchEndpointBelowBasePath() throws Exception {
+    assertThat(PeliasEndpoint.forPath("/pelias/v1/autocomplete"))
+        .isEqualTo(PeliasEndpoint.AUTOCOMPLETE);
+    assertThat(PeliasEndpoint.forPath("/v1/place")).isEqualTo(PeliasEndpoint.PLACE);
+    assertThat(PeliasEndpoint.forPath("/v1/other")).isNull();
+  }
+
+  @Test public void newCall_deadline_shouldCutReadTimeout() throws Exception {
+    final MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(5, TimeUnit.SECONDS));
+    server.start();
+    final Request request = new Request.Builder().url(server.url("/v1/search")).build();
+    final long start = System.nanoTime();
+    try {
+      factory.newCall(request, Deadline.after(200, TimeUnit.MILLISECONDS)).execute().body()
+          .string();
+      throw new AssertionError("Expected the read to time out");
+    } catch (SocketTimeoutException expected) {
+    }
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(3000);
+    server.shutdown();
+  }
+
+  @Test public void newCall_shouldNotFailForUnknownPaths() throws Exception {
+    final Request request = new Request.Builder().url("http://pelias.com/v1/other").build();
+    assertThat(factory.newCall(request).request()).isSameAs(request);
+  }
+}
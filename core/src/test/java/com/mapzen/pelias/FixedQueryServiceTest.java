@@ -0,0 +1,53 @@
+package com.mapzen.pelias;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class FixedQueryServiceTest {
+  private PeliasService service;
+  private FixedQueryService queries;
+
+  @Before public void setUp() throws Exception {
+    service = mock(PeliasService.class);
+    queries = new FixedQueryService(service);
+  }
+
+  @Test public void autocomplete_filters_shouldUseFilterOverload() throws Exception {
+    queries.autocomplete(QuerySpec.builder()
+        .text("cafe")
+        .focusPoint(1.0, 2.0)
+        .boundaryCountry("USA")
+        .build()
+        .getParameters());
+    verify(service).getSuggest(eq("cafe"), eq(1.0), eq(2.0), eq((String) null), eq("USA"),
+        eq((String) null));
+  }
+
+  @Test public void search_viewport_shouldUseViewportOverload() throws Exception {
+    queries.search(QuerySpec.builder()
+        .text("cafe")
+        .focusViewport(new BoundingBox(1.0, 2.0, 3.0, 4.0))
+        .build()
+        .getParameters());
+    verify(service).getSearch(eq("cafe"), eq(1.0), eq(2.0), eq(3.0), eq(4.0));
+  }
+
+  @Test public void reverse_sources_shouldUseSourcesOverload() throws Exception {
+    queries.reverse(QuerySpec.builder().point(1.0, 2.0).sources("osm").build().getParameters());
+    verify(service).getReverse(eq(1.0), eq(2.0), eq("osm"));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void search_withoutFocus_shouldThrow() throws Exception {
+    queries.search(QuerySpec.builder().text("cafe").build().getParameters());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void reverse_lang_shouldThrow() throws Exception {
+    queries.reverse(QuerySpec.builder().point(1.0, 2.0).lang("de").build().getParameters());
+  }
+}
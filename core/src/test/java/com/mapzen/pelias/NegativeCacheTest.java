@@ -0,0 +1,86 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class NegativeCacheTest {
+  private final TestNegativeCache cache = new TestNegativeCache(4);
+
+  @Test public void isKnownEmpty_shouldMatchExtensionsOfEmptyQuery() throws Exception {
+    cache.putEmpty("", "zzqx");
+    assertThat(cache.isKnownEmpty("", "zzqx")).isTrue();
+    assertThat(cache.isKnownEmpty("", "zzqxab")).isTrue();
+    assertThat(cache.isKnownEmpty("", "zzq")).isFalse();
+    assertThat(cache.isKnownEmpty("", "zzqy")).isFalse();
+  }
+
+  @Test public void isKnownEmpty_shouldBeScoped() throws Exception {
+    cache.putEmpty("venue|US|osm@0,0", "zzqx");
+    assertThat(cache.isKnownEmpty("venue|US|osm@0,0", "zzqxa")).isTrue();
+    assertThat(cache.isKnownEmpty("@0,0", "zzqxa")).isFalse();
+  }
+
+  @Test public void isKnownEmpty_afterRecheckInterval_shouldAskAgain() throws Exception {
+    cache.setRecheckInterval(1, TimeUnit.SECONDS);
+    cache.putEmpty("", "zzqx");
+    cache.now = 999;
+    assertThat(cache.isKnownEmpty("", "zzqxa")).isTrue();
+    cache.now = 1000;
+    assertThat(cache.isKnownEmpty("", "zzqxa")).isFalse();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test public void putEmpty_shouldEvictLeastRecentlyUsed() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      cache.putEmpty("", "query" + i);
+    }
+    assertThat(cache.size()).isEqualTo(4);
+    assertThat(cache.isKnownEmpty("", "query0")).isFalse();
+    assertThat(cache.isKnownEmpty("", "query4")).isTrue();
+  }
+
+  @Test public void scope_shouldGroupNearbyFocusPoints() throws Exception {
+    cache.setCellDegrees(1);
+    final String scope = cache.scope(null, new TestLocation(40.2, -73.9));
+    assertThat(cache.scope(null, new TestLocation(40.7, -73.1))).isEqualTo(scope);
+    assertThat(cache.scope(null, new TestLocation(41.1, -73.9))).isNotEqualTo(scope);
+    assertThat(cache.scope(null, null)).isNotEqualTo(scope);
+  }
+
+  private static class TestNegativeCache extends NegativeCache {
+    private long now;
+
+    TestNegativeCache(int maxEntries) {
+      super(maxEntries);
+    }
+
+    @Override long nowMillis() {
+      return now;
+    }
+  }
+
+  private static class TestLocation implements PeliasLocationProvider {
+    private final double lat;
+    private final double lon;
+
+    TestLocation(double lat, double lon) {
+      this.lat = lat;
+      this.lon = lon;
+    }
+
+    @Override public double getLat() {
+      return lat;
+    }
+
+    @Override public double getLon() {
+      return lon;
+    }
+
+    @Override public BoundingBox getBoundingBox() {
+      return null;
+    }
+  }
+}
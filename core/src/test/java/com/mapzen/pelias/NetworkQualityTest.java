@@ -0,0 +1,75 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class NetworkQualityTest {
+  private final TestNetworkQuality quality = new TestNetworkQuality(4);
+
+  @Test public void getRoundTripPercentile_shouldUseNearestRank() throws Exception {
+    assertThat(quality.getRoundTripPercentile(0.95)).isEqualTo(0);
+    quality.record(400, -1);
+    quality.record(100, -1);
+    quality.record(300, -1);
+    quality.record(200, -1);
+    assertThat(quality.getRoundTripPercentile(0.5)).isEqualTo(200);
+    assertThat(quality.getRoundTripPercentile(0.95)).isEqualTo(400);
+  }
+
+  @Test public void record_shouldKeepLatestSamples() throws Exception {
+    for (int i = 1; i <= 6; i++) {
+      quality.record(i * 100, -1);
+    }
+    assertThat(quality.getSampleCount()).isEqualTo(4);
+    assertThat(quality.getRoundTripPercentile(0)).isEqualTo(300);
+  }
+
+  @Test public void getSampleCount_shouldIgnoreOldSamples() throws Exception {
+    quality.setMaxAge(1, TimeUnit.SECONDS);
+    quality.record(100, -1);
+    quality.now = 500;
+    quality.record(100, -1);
+    quality.now = 1000;
+    assertThat(quality.getSampleCount()).isEqualTo(1);
+  }
+
+  @Test public void getThroughput_shouldOnlyCountKnownSizes() throws Exception {
+    assertThat(quality.getThroughput()).isLessThan(0);
+    quality.setMinThroughputBytes(0);
+    quality.record(500, 1000);
+    quality.record(1500, 3000);
+    quality.record(10000, -1);
+    assertThat(quality.getThroughput()).isEqualTo(2000.0);
+  }
+
+  @Test public void getThroughput_shouldIgnoreSmallResponses() throws Exception {
+    quality.record(200, 3000);
+    quality.record(150, 2000);
+    assertThat(quality.getThroughput()).isLessThan(0);
+    quality.record(1000, 64 * 1024);
+    assertThat(quality.getThroughput()).isEqualTo(64 * 1024.0);
+  }
+
+  @Test public void reset_shouldClearTimeouts() throws Exception {
+    quality.recordTimeout();
+    quality.recordTimeout();
+    assertThat(quality.getTimeoutCount()).isEqualTo(2);
+    quality.reset();
+    assertThat(quality.getTimeoutCount()).isEqualTo(0);
+  }
+
+  static class TestNetworkQuality extends NetworkQuality {
+    long now;
+
+    TestNetworkQuality(int maxSamples) {
+      super(maxSamples);
+    }
+
+    @Override long nowMillis() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,653 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+public class PeliasTest {
+  Pelias peliasWithMock;
+  TestCallback callback;
+  TestService mock;
+
+  @Captor private ArgumentCaptor<Callback<Result>> cb;
+
+  @Before public void setup() throws Exception {
+    MockitoAnnotations.initMocks(this);
+    callback = new TestCallback();
+    mock = Mockito.mock(TestService.class);
+    peliasWithMock = new Pelias(mock);
+  }
+
+  @Test public void search_getSearch() throws Exception {
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall());
+    BoundingBox boundingBox = new BoundingBox(1.0, 2.0, 3.0, 4.0);
+    peliasWithMock.search("test", boundingBox, callback);
+    verify(mock).getSearch(eq("test"), eq(1.0), eq(2.0), eq(3.0), eq(4.0));
+  }
+
+  @Test public void search_withViewportCache_shouldAnswerCoveredBoxes() throws Exception {
+    final Result result = ViewportCacheTest.result(ViewportCacheTest.feature("cafe", 2.0, 3.0));
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall(Response.success(result)), new TestCall());
+    final ViewportCache cache = new ViewportCache();
+    peliasWithMock.setViewportCache(cache);
+    peliasWithMock.search("test", new BoundingBox(1.0, 2.0, 3.0, 4.0), callback);
+    peliasWithMock.search("test", new BoundingBox(1.5, 2.5, 2.5, 3.5), callback);
+    assertThat(callback.responses).isEqualTo(2);
+    assertThat(callback.last.getFeatures()).hasSize(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    verify(mock).getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble());
+  }
+
+  @Test public void search_withViewportCache_shouldNotAnswerFromEarlierConfiguration()
+      throws Exception {
+    final Result result = ViewportCacheTest.result(ViewportCacheTest.feature("cafe", 2.0, 3.0));
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall(Response.success(result)), new TestCall());
+    final ViewportCache cache = new ViewportCache();
+    peliasWithMock.setViewportCache(cache);
+    peliasWithMock.search("test", new BoundingBox(1.0, 2.0, 3.0, 4.0), callback);
+    peliasWithMock.setEndpoint("https://other.pelias.com/");
+    peliasWithMock.search("test", new BoundingBox(1.5, 2.5, 2.5, 3.5), callback);
+    assertThat(cache.getHits()).isEqualTo(0);
+    verify(mock, times(2)).getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(),
+        anyDouble());
+  }
+
+  @Test public void search_querySpec_shouldSendParameters() throws Exception {
+    when(mock.search(Mockito.<Map<String, String>>any())).thenReturn(new TestCall());
+    final QuerySpec spec = QuerySpec.builder().text("test").size(3).lang("de").build();
+    peliasWithMock.search(spec, callback);
+    verify(mock).search(eq(spec.getParameters()));
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test public void enqueue_shouldRecordNetworkQuality() throws Exception {
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall(), new TestCall());
+    peliasWithMock.setViewportCache(new ViewportCache());
+    peliasWithMock.search("test", new BoundingBox(1.0, 2.0, 3.0, 4.0), callback);
+    peliasWithMock.search("test", new BoundingBox(1.0, 2.0, 3.0, 4.0), callback);
+    assertThat(callback.responses).isEqualTo(2);
+    assertThat(peliasWithMock.getNetworkQuality().getSampleCount()).isEqualTo(1);
+  }
+
+  @Test public void search_getSearchWithLocationProvider() throws Exception {
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall());
+    peliasWithMock.setLocationProvider(new TestLocationProvider());
+    peliasWithMock.search("test", callback);
+    verify(mock).getSearch(eq("test"), eq(3.0), eq(4.0), eq(5.0), eq(6.0));
+  }
+
+  @Test public void search_getSearchWithoutLocationProvider() throws Exception {
+    when(mock.search(Mockito.<Map<String, String>>any())).thenReturn(new TestCall());
+    peliasWithMock.search("test", callback);
+    verify(mock).search(eq(Collections.singletonMap("text", "test")));
+  }
+
+  @Test public void suggest_querySpecWithoutQueryService_shouldUseFixedOverload()
+      throws Exception {
+    final PeliasService service = Mockito.mock(PeliasService.class);
+    when(service.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    final Pelias pelias = new Pelias(service);
+    assertThat(pelias.supportsQuerySpecs()).isFalse();
+    pelias.suggest(QuerySpec.builder().text("test").focusPoint(1.0, 2.0).build(), callback);
+    verify(service).getSuggest(eq("test"), eq(1.0), eq(2.0));
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void suggest_querySpecWithoutQueryService_unsupportedParameters_shouldThrow()
+      throws Exception {
+    new Pelias(Mockito.mock(PeliasService.class))
+        .suggest(QuerySpec.builder().text("test").focusPoint(1.0, 2.0).size(5).build(), callback);
+  }
+
+  @Test public void supportsQuerySpecs_shouldBeTrueForQueryServices() throws Exception {
+    assertThat(peliasWithMock.supportsQuerySpecs()).isTrue();
+    assertThat(new Pelias("http://pelias.com/").supportsQuerySpecs()).isTrue();
+  }
+
+  @Test public void search_getSearchWithFocusPoint() throws Exception {
+    when(mock.getSearch(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.search("test", 1.0, 2.0, callback);
+    verify(mock).getSearch(eq("test"), eq(1.0), eq(2.0));
+  }
+
+  @Test public void suggest_getSuggest() throws Exception {
+    when(mock.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.suggest("test", 1.0, 2.0, callback);
+    verify(mock).getSuggest(eq("test"), eq(1.0), eq(2.0));
+  }
+
+  @Test public void suggest_getSuggestWithLocationProvider() throws Exception {
+    when(mock.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.setLocationProvider(new TestLocationProvider());
+    peliasWithMock.suggest("test", callback);
+    verify(mock).getSuggest(eq("test"), eq(1.0), eq(2.0));
+  }
+
+  @Test public void suggest_getSuggestWithLayersCountrySources() throws Exception {
+    when(mock.getSuggest(anyString(), anyDouble(), anyDouble(), anyString(), anyString(),
+        anyString())).thenReturn(new TestCall());
+    peliasWithMock.setLocationProvider(new TestLocationProvider());
+    peliasWithMock.suggest("test", "venue", "us", "wof", callback);
+    verify(mock).getSuggest(eq("test"), eq(1.0), eq(2.0), eq("venue"), eq("us"), eq("wof"));
+  }
+
+  @Test public void reverse_getReverseGeocode() throws Exception {
+    when(mock.getReverse(anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.setLocationProvider(new TestLocationProvider());
+    peliasWithMock.reverse(30.0, 40.0, callback);
+    verify(mock).getReverse(eq(30.0), eq(40.0));
+  }
+
+  @Test public void reverse_getReverseGeocodeWithSources() throws Exception {
+    when(mock.getReverse(anyDouble(), anyDouble(), anyString())).thenReturn(new TestCall());
+    peliasWithMock.setLocationProvider(new TestLocationProvider());
+    peliasWithMock.reverse(30.0, 40.0, "wof", callback);
+    verify(mock).getReverse(eq(30.0), eq(40.0), eq("wof"));
+  }
+
+  @Test public void place_shouldSendSearchRequestToServer() throws Exception {
+    when(mock.getPlace(anyString())).thenReturn(new TestCall());
+    peliasWithMock.place("osm:venue:3669115471", callback);
+    verify(mock).getPlace(eq("osm:venue:3669115471"));
+  }
+
+  @Test public void setEndpoint_shouldChangeServiceEndpoint() throws Exception {
+    final MockWebServer server = new MockWebServer();
+    MockResponse response = new MockResponse();
+    server.enqueue(response);
+    server.start();
+    Pelias pelias = new Pelias(server.url("/").toString());
+    pelias.setRequestHandler(new PeliasRequestHandler() {
+      @Override public Map<String, String> headersForRequest() {
+        HashMap<String, String> headers = new HashMap();
+        headers.put("TEST_HEADER", "TEST_HEADER_VALUE");
+        return headers;
+      }
+
+      @Override public Map<String, String> queryParamsForRequest() {
+        HashMap<String, String> params = new HashMap();
+        params.put("TEST_PARAM", "TEST_PARAM_VALUE");
+        return params;
+      }
+    });
+    pelias.suggest("test", 1.0, 2.0, callback);
+    RecordedRequest request = server.takeRequest();
+    assertThat(request.getPath()).contains("/autocomplete");
+    assertThat(request.getHeader("TEST_HEADER")).isEqualTo("TEST_HEADER_VALUE");
+    assertThat(request.getPath()).contains("TEST_PARAM");
+    server.shutdown();
+  }
+
+  @Test public void setRequestHandler_shouldKeepInjectedService() throws Exception {
+    when(mock.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.setRequestHandler(new PeliasRequestHandler() {
+      @Override public Map<String, String> headersForRequest() {
+        return null;
+      }
+
+      @Override public Map<String, String> queryParamsForRequest() {
+        return null;
+      }
+    });
+    peliasWithMock.suggest("test", 1.0, 2.0, callback);
+    assertThat(peliasWithMock.getService()).isSameAs(mock);
+    verify(mock).getSuggest(eq("test"), eq(1.0), eq(2.0));
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test public void setDebug_shouldChangeLogLevel() {
+    assertThat(peliasWithMock.getDebug()).isFalse();
+    peliasWithMock.setDebug(true);
+    assertThat(peliasWithMock.getDebug()).isTrue();
+  }
+
+  @Test public void setEndpoint_shouldChangeEndpoint() {
+    peliasWithMock.setEndpoint("http://pelias.com/test/");
+    assertThat(peliasWithMock.getEndpoint()).isEqualTo("http://pelias.com/test/");
+  }
+
+  @Test public void setEndpoint_shouldNotAffectIssuedCalls() throws Exception {
+    final MockWebServer first = new MockWebServer();
+    first.enqueue(new MockResponse().setBody("{}").setBodyDelay(200, TimeUnit.MILLISECONDS));
+    first.start();
+    final MockWebServer second = new MockWebServer();
+    second.enqueue(new MockResponse().setBody("{}"));
+    second.start();
+    final Pelias pelias = new Pelias(first.url("/").toString());
+    final Call<Result> issued = pelias.getService().getPlace("first");
+    pelias.setEndpoint(second.url("/").toString());
+    assertThat(issued.execute().isSuccessful()).isTrue();
+    assertThat(pelias.getService().getPlace("second").execute().isSuccessful()).isTrue();
+    assertThat(first.takeRequest().getPath()).contains("first");
+    assertThat(second.takeRequest().getPath()).contains("second");
+    first.shutdown();
+    second.shutdown();
+  }
+
+  @Test public void setRequestHandler_shouldApplyToLaterRequests() throws Exception {
+    final MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+    final Pelias pelias = new Pelias(server.url("/").toString());
+    pelias.getService().getPlace("before").execute();
+    pelias.setRequestHandler(new PeliasRequestHandler() {
+      @Override public Map<String, String> headersForRequest() {
+        return Collections.singletonMap("TEST_HEADER", "TEST_HEADER_VALUE");
+      }
+
+      @Override public Map<String, String> queryParamsForRequest() {
+        return null;
+      }
+    });
+    pelias.getService().getPlace("after").execute();
+    assertThat(server.takeRequest().getHeader("TEST_HEADER")).isNull();
+    assertThat(server.takeRequest().getHeader("TEST_HEADER")).isEqualTo("TEST_HEADER_VALUE");
+    server.shutdown();
+  }
+
+  @Test public void getService_concurrentFirstUse_shouldBuildOnce() throws Exception {
+    final Pelias pelias = new Pelias("http://pelias.com/");
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    final List<Future<PeliasService>> services = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      services.add(executor.submit(new Callable<PeliasService>() {
+        @Override public PeliasService call() throws Exception {
+          start.await();
+          return pelias.getService();
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<PeliasService> service : services) {
+      assertThat(service.get(5, TimeUnit.SECONDS)).isSameAs(pelias.getService());
+    }
+    executor.shutdown();
+  }
+
+  @Test public void setDebug_shouldRebuildService() throws Exception {
+    final Pelias pelias = new Pelias("http://pelias.com/");
+    final PeliasService service = pelias.getService();
+    assertThat(pelias.getService()).isSameAs(service);
+    pelias.setDebug(true);
+    assertThat(pelias.getService()).isNotSameAs(service);
+  }
+
+  @Test public void constructor_withHttpClient_shouldKeepItAcrossConfigurationChanges()
+      throws Exception {
+    final MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(500, TimeUnit.MILLISECONDS));
+    server.start();
+    final OkHttpClient httpClient = new OkHttpClient.Builder()
+        .readTimeout(100, TimeUnit.MILLISECONDS)
+        .build();
+    final Pelias pelias = new Pelias(server.url("/").toString(), httpClient);
+    pelias.setDebug(true);
+    try {
+      pelias.getService().getPlace("osm:venue:1").execute();
+      throw new AssertionError("Expected the http client's read timeout to apply");
+    } catch (InterruptedIOException expected) {
+    }
+    server.shutdown();
+  }
+
+  @Test public void constructor_shouldNotBuildService() throws Exception {
+    new Pelias("not a url");
+  }
+
+  @Test public void warmUp_shouldBuildServiceOnExecutor() throws Exception {
+    final MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.start();
+    final Pelias pelias = new Pelias(server.url("/").toString());
+    final List<Runnable> tasks = new ArrayList<>();
+    pelias.warmUp(new Executor() {
+      @Override public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    });
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    pelias.warmUp(new Executor() {
+      @Override public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    });
+    assertThat(tasks).hasSize(1);
+    pelias.suggest("test", 1.0, 2.0, callback);
+    assertThat(server.takeRequest().getPath()).contains("/autocomplete");
+    server.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void suggest_invalidEndpoint_shouldThrowOnFirstRequest() throws Exception {
+    new Pelias("not a url").suggest("test", 1.0, 2.0, callback);
+  }
+
+  @Test public void setCallbackExecutor_shouldPostCallbacks() throws Exception {
+    when(mock.getReverse(anyDouble(), anyDouble())).thenReturn(new TestCall());
+    final QueueExecutor executor = new QueueExecutor();
+    peliasWithMock.setCallbackExecutor(executor);
+    peliasWithMock.reverse(1.0, 2.0, callback);
+    assertThat(callback.responses).isEqualTo(0);
+    executor.runAll();
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test public void process_shouldProcessBeforePosting() throws Exception {
+    final Result result = new Result();
+    when(mock.getReverse(anyDouble(), anyDouble()))
+        .thenReturn(new TestCall(Response.success(result)));
+    final QueueExecutor executor = new QueueExecutor();
+    peliasWithMock.setCallbackExecutor(executor);
+    final List<Result> processed = new ArrayList<>();
+    final TestProcessedCallback processedCallback = new TestProcessedCallback();
+    peliasWithMock.reverse(1.0, 2.0, peliasWithMock.process(new ResultProcessor<String>() {
+      @Override public String process(Result value) {
+        processed.add(value);
+        return "processed";
+      }
+    }, processedCallback));
+    assertThat(processed).containsExactly(result);
+    assertThat(processedCallback.values).isEmpty();
+    executor.runAll();
+    assertThat(processedCallback.values).containsExactly("processed");
+  }
+
+  @Test public void process_unsuccessfulResponse_shouldFailWithoutProcessing() throws Exception {
+    when(mock.getReverse(anyDouble(), anyDouble())).thenReturn(new TestCall(Response.<Result>error(
+        500, ResponseBody.create(MediaType.parse("application/json"), "{}"))));
+    final TestProcessedCallback processedCallback = new TestProcessedCallback();
+    peliasWithMock.reverse(1.0, 2.0, peliasWithMock.process(new ResultProcessor<String>() {
+      @Override public String process(Result value) {
+        throw new AssertionError("Processed an error response");
+      }
+    }, processedCallback));
+    assertThat(processedCallback.failure).isInstanceOf(HttpException.class);
+  }
+
+  @Test public void process_processorThrows_shouldFail() throws Exception {
+    when(mock.getReverse(anyDouble(), anyDouble())).thenReturn(new TestCall());
+    final TestProcessedCallback processedCallback = new TestProcessedCallback();
+    final RuntimeException error = new IllegalArgumentException();
+    peliasWithMock.reverse(1.0, 2.0, peliasWithMock.process(new ResultProcessor<String>() {
+      @Override public String process(Result value) {
+        throw error;
+      }
+    }, processedCallback));
+    assertThat(processedCallback.failure).isSameAs(error);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void cancelAll_shouldCancelTaggedCalls() throws Exception {
+    final Call<Result> tagged = Mockito.mock(Call.class);
+    final Call<Result> other = Mockito.mock(Call.class);
+    when(mock.getPlace("tagged")).thenReturn(tagged);
+    when(mock.getPlace("other")).thenReturn(other);
+    peliasWithMock.place("tagged", peliasWithMock.tag("screen", callback));
+    peliasWithMock.place("other", peliasWithMock.tag("elsewhere", callback));
+    assertThat(peliasWithMock.getOutstanding("screen")).isEqualTo(1);
+    assertThat(peliasWithMock.getOutstanding()).isEqualTo(2);
+    assertThat(peliasWithMock.cancelAll("screen")).isEqualTo(1);
+    verify(tagged).cancel();
+    verify(other, Mockito.never()).cancel();
+    assertThat(peliasWithMock.getOutstanding("screen")).isEqualTo(0);
+    assertThat(peliasWithMock.getOutstanding()).isEqualTo(1);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void cancelAll_shouldNotInvokeCallbacksOfCanceledCalls() throws Exception {
+    final Call<Result> call = Mockito.mock(Call.class);
+    when(mock.getPlace(anyString())).thenReturn(call);
+    peliasWithMock.place("osm:venue:1", peliasWithMock.tag("screen", callback));
+    verify(call).enqueue(cb.capture());
+    peliasWithMock.cancelAll("screen");
+    cb.getValue().onResponse(call, Response.success(new Result()));
+    assertThat(callback.responses).isEqualTo(0);
+  }
+
+  @Test public void setTimeouts_shouldOnlyApplyToEndpoint() throws Exception {
+    final MockWebServer server = new MockWebServer();
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(500, TimeUnit.MILLISECONDS));
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(500, TimeUnit.MILLISECONDS));
+    server.start();
+    final Pelias pelias = new Pelias(server.url("/").toString());
+    pelias.setTimeouts(PeliasEndpoint.AUTOCOMPLETE, 1000, 100, TimeUnit.MILLISECONDS);
+    try {
+      pelias.getService().getSuggest("test", 1.0, 2.0).execute();
+      throw new AssertionError("Expected the autocomplete request to time out");
+    } catch (InterruptedIOException expected) {
+    }
+    assertThat(pelias.getService().getPlace("osm:venue:1").execute().isSuccessful()).isTrue();
+    server.shutdown();
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void deadline_expired_shouldFailWithoutSending() throws Exception {
+    final Call<Result> call = Mockito.mock(Call.class);
+    when(mock.getPlace(anyString())).thenReturn(call);
+    peliasWithMock.place("osm:venue:1",
+        peliasWithMock.deadline(Deadline.after(0, TimeUnit.MILLISECONDS), callback));
+    verify(call).cancel();
+    verify(call, Mockito.never()).enqueue(Mockito.<Callback<Result>>any());
+    assertThat(callback.failure).isInstanceOf(InterruptedIOException.class);
+    assertThat(peliasWithMock.getNetworkQuality().getTimeoutCount()).isEqualTo(1);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void deadline_passed_shouldCancelCall() throws Exception {
+    final Call<Result> call = Mockito.mock(Call.class);
+    when(mock.getPlace(anyString())).thenReturn(call);
+    peliasWithMock.place("osm:venue:1", peliasWithMock.tag("screen",
+        peliasWithMock.deadline(Deadline.after(50, TimeUnit.MILLISECONDS), callback)));
+    verify(call).enqueue(cb.capture());
+    verify(call, timeout(5000)).cancel();
+    when(call.isCanceled()).thenReturn(true);
+    cb.getValue().onFailure(call, new IOException("Canceled"));
+    assertThat(callback.failure).isInstanceOf(InterruptedIOException.class);
+    assertThat(peliasWithMock.getNetworkQuality().getTimeoutCount()).isEqualTo(1);
+    assertThat(peliasWithMock.getOutstanding("screen")).isEqualTo(0);
+  }
+
+  @Test public void deadline_metByResponse_shouldDeliverIt() throws Exception {
+    when(mock.getPlace(anyString())).thenReturn(new TestCall());
+    peliasWithMock.place("osm:venue:1", peliasWithMock.deadline(
+        Deadline.after(5, TimeUnit.SECONDS), peliasWithMock.tag("screen", callback)));
+    assertThat(callback.responses).isEqualTo(1);
+    assertThat(callback.failure).isNull();
+    assertThat(peliasWithMock.getOutstanding("screen")).isEqualTo(0);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void setRequestScheduler_shouldHoldBackgroundCallsForSuggestions() throws Exception {
+    final Call<Result> background = Mockito.mock(Call.class);
+    when(mock.getReverse(anyDouble(), anyDouble())).thenReturn(background);
+    when(mock.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(new TestCall());
+    peliasWithMock.setRequestScheduler(new RequestScheduler(1));
+    peliasWithMock.reverse(1.0, 2.0,
+        peliasWithMock.priority(RequestPriority.BACKGROUND, callback));
+    peliasWithMock.suggest("test", 1.0, 2.0, callback);
+    verify(background).cancel();
+    assertThat(callback.responses).isEqualTo(0);
+
+    verify(background).enqueue(cb.capture());
+    cb.getValue().onFailure(background, new IOException("Canceled"));
+    assertThat(callback.failure).isInstanceOf(RequestScheduler.PreemptedException.class);
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void setRequestScheduler_shouldNotMeasureTimeInQueue() throws Exception {
+    final Call<Result> running = Mockito.mock(Call.class);
+    when(mock.getPlace("running")).thenReturn(running);
+    when(mock.getPlace("queued")).thenReturn(new TestCall());
+    peliasWithMock.setRequestScheduler(new RequestScheduler(1));
+    peliasWithMock.place("running", callback);
+    peliasWithMock.place("queued", callback);
+    assertThat(callback.responses).isEqualTo(0);
+
+    Thread.sleep(200);
+    verify(running).enqueue(cb.capture());
+    cb.getValue().onResponse(running, Response.success(new Result()));
+    assertThat(callback.responses).isEqualTo(2);
+    final NetworkQuality quality = peliasWithMock.getNetworkQuality();
+    assertThat(quality.getSampleCount()).isEqualTo(2);
+    assertThat(quality.getRoundTripPercentile(1)).isGreaterThanOrEqualTo(200);
+    assertThat(quality.getRoundTripPercentile(0)).isLessThan(200);
+  }
+
+  @Test public void tag_completedCall_shouldNotBeOutstanding() throws Exception {
+    when(mock.getPlace(anyString())).thenReturn(new TestCall());
+    peliasWithMock.place("osm:venue:1", peliasWithMock.tag("screen", callback));
+    assertThat(callback.responses).isEqualTo(1);
+    assertThat(peliasWithMock.getOutstanding("screen")).isEqualTo(0);
+    assertThat(peliasWithMock.cancelAll("screen")).isEqualTo(0);
+  }
+
+  private class TestCallback implements Callback<Result> {
+    private int responses;
+    private Result last;
+    private Throwable failure;
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      responses++;
+      last = response.body();
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      failure = t;
+    }
+  }
+
+  private static class TestProcessedCallback implements ProcessedCallback<String> {
+    private final List<String> values = new ArrayList<>();
+    private Throwable failure;
+
+    @Override public void onResult(String value) {
+      values.add(value);
+    }
+
+    @Override public void onFailure(Throwable t) {
+      failure = t;
+    }
+  }
+
+  private static class QueueExecutor implements Executor {
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    @Override public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+      tasks.clear();
+    }
+  }
+
+  public static class TestLocationProvider implements PeliasLocationProvider {
+    @Override public double getLat() {
+      return 1.0;
+    }
+
+    @Override public double getLon() {
+      return 2.0;
+    }
+
+    @Override public BoundingBox getBoundingBox() {
+      return new BoundingBox(3.0, 4.0, 5.0, 6.0);
+    }
+  }
+
+  private class TestCall implements Call<Result> {
+    private final Response<Result> response;
+
+    TestCall() {
+      this(Response.success(new Result()));
+    }
+
+    TestCall(Response<Result> response) {
+      this.response = response;
+    }
+
+    @Override public Response<Result> execute() throws IOException {
+      return response;
+    }
+
+    @Override public void enqueue(Callback<Result> callback) {
+      callback.onResponse(this, response);
+    }
+
+    @Override public boolean isExecuted() {
+      return false;
+    }
+
+    @Override public void cancel() {
+    }
+
+    @Override public boolean isCanceled() {
+      return false;
+    }
+
+    @Override public Call<Result> clone() {
+      return null;
+    }
+
+    @Override public Request request() {
+      return null;
+    }
+  }
+
+  interface TestService extends PeliasService, PeliasQueryService {
+  }
+}
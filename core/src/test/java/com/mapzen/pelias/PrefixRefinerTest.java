@@ -0,0 +1,83 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.Properties;
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PrefixRefinerTest {
+  private final PrefixRefiner refiner = new PrefixRefiner();
+
+  @Test public void canRefine_shouldRequireLongerTextWithSamePrefix() throws Exception {
+    assertThat(refiner.canRefine("brookl", "brookly")).isTrue();
+    assertThat(refiner.canRefine("brookl", "brookl")).isFalse();
+    assertThat(refiner.canRefine("brookl", "brook")).isFalse();
+    assertThat(refiner.canRefine("brookl", "bronx")).isFalse();
+    assertThat(refiner.canRefine(null, "brookl")).isFalse();
+  }
+
+  @Test public void refine_shouldKeepMatchingFeatures() throws Exception {
+    final Result refined = refiner.refine(result("Brookline", "Brooklyn", "Boston"), "brookly");
+    assertThat(names(refined)).containsExactly("Brooklyn");
+  }
+
+  @Test public void refine_shouldMatchEveryWordAsPrefix() throws Exception {
+    final Result refined = refiner.refine(result("Brooklyn Bridge Park", "Brooklyn Museum"),
+        "brooklyn pa");
+    assertThat(names(refined)).containsExactly("Brooklyn Bridge Park");
+  }
+
+  @Test public void refine_shouldRankNamePrefixFirst() throws Exception {
+    final Result previous = result("Heights Brooklyn", "Brooklyn Heights");
+    previous.getFeatures().add(feature("Cafe", "Cafe, Brooklyn Heights, NY, USA"));
+    final Result refined = refiner.refine(previous, "brooklyn h");
+    assertThat(names(refined)).containsExactly("Brooklyn Heights", "Heights Brooklyn", "Cafe");
+  }
+
+  @Test public void refine_shouldNormalizeNames() throws Exception {
+    final PrefixRefiner folding = new PrefixRefiner(QueryNormalizer.FOLD_DIACRITICS);
+    final Result refined = folding.refine(result("Caf\u00e9 Zo\u00e9", "Cafeteria"), "cafe zo");
+    assertThat(names(refined)).containsExactly("Caf\u00e9 Zo\u00e9");
+  }
+
+  @Test public void refine_noMatch_shouldReturnEmptyResult() throws Exception {
+    final Result previous = result("Brooklyn");
+    previous.setType("FeatureCollection");
+    final Result refined = refiner.refine(previous, "queens");
+    assertThat(refined.getFeatures()).isEmpty();
+    assertThat(refined.getType()).isEqualTo("FeatureCollection");
+    assertThat(previous.getFeatures()).hasSize(1);
+  }
+
+  static Result result(String... names) {
+    final Result result = new Result();
+    final List<Feature> features = new ArrayList<>();
+    for (String name : names) {
+      features.add(feature(name, name + ", NY, USA"));
+    }
+    result.setFeatures(features);
+    return result;
+  }
+
+  private static Feature feature(String name, String label) {
+    final Feature feature = new Feature();
+    feature.properties = new Properties();
+    feature.properties.name = name;
+    feature.properties.label = label;
+    return feature;
+  }
+
+  private static List<String> names(Result result) {
+    final List<String> names = new ArrayList<>();
+    for (Feature feature : result.getFeatures()) {
+      names.add(feature.properties.name);
+    }
+    return names;
+  }
+}
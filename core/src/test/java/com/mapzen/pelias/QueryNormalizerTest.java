@@ -0,0 +1,46 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class QueryNormalizerTest {
+  private final QueryNormalizer normalizer = QueryNormalizer.DEFAULT;
+
+  @Test public void normalize_shouldTrimCollapseAndLowerCase() throws Exception {
+    assertThat(normalizer.normalize("  Main \t St\n")).isEqualTo("main st");
+    assertThat(normalizer.normalize("Main  St")).isEqualTo(normalizer.normalize("main st "));
+  }
+
+  @Test public void normalize_canonicalAscii_shouldReturnSameInstance() throws Exception {
+    final String text = "main st";
+    assertThat(normalizer.normalize(text)).isSameAs(text);
+  }
+
+  @Test public void normalize_null_shouldBeEmpty() throws Exception {
+    assertThat(normalizer.normalize(null)).isEmpty();
+    assertThat(normalizer.normalize("   ")).isEmpty();
+  }
+
+  @Test public void normalize_shouldApplyNfkc() throws Exception {
+    // Full width letters, a ligature and a no-break space.
+    assertThat(normalizer.normalize("\uff2d\uff41\uff49\uff4e\u00a0\ufb01eld"))
+        .isEqualTo("main field");
+  }
+
+  @Test public void normalize_shouldFoldCase() throws Exception {
+    assertThat(normalizer.normalize("Stra\u00dfe")).isEqualTo("strasse");
+    assertThat(normalizer.normalize("\u00c9COLE")).isEqualTo("\u00e9cole");
+  }
+
+  @Test public void normalize_shouldKeepDiacriticsByDefault() throws Exception {
+    assertThat(normalizer.normalize("Caf\u00e9")).isEqualTo("caf\u00e9");
+  }
+
+  @Test public void normalize_foldDiacritics_shouldRemoveMarks() throws Exception {
+    assertThat(QueryNormalizer.FOLD_DIACRITICS.normalize("Caf\u00e9 M\u00fcnchen"))
+        .isEqualTo("cafe munchen");
+    assertThat(QueryNormalizer.FOLD_DIACRITICS.normalize("Cafe\u0301"))
+        .isEqualTo("cafe");
+  }
+}
@@ -0,0 +1,61 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class QuerySpecTest {
+  private final QuerySpec base = QuerySpec.builder()
+      .size(5)
+      .focusPoint(1.5, 2.5)
+      .boundaryRect(new BoundingBox(1, 2, 3, 4))
+      .layers("venue")
+      .build();
+
+  @Test public void getParameters_shouldBeSortedByName() throws Exception {
+    final QuerySpec spec = base.toBuilder().text("cafe").set("zoom", "3").build();
+    assertThat(spec.getParameters().keySet()).containsExactly("boundary.rect.max_lat",
+        "boundary.rect.max_lon", "boundary.rect.min_lat", "boundary.rect.min_lon",
+        "focus.point.lat", "focus.point.lon", "layers", "size", "text", "zoom");
+    assertThat(spec.getParameters().get("size")).isEqualTo("5");
+  }
+
+  @Test public void withText_shouldKeepOtherParameters() throws Exception {
+    final QuerySpec spec = base.withText("cafe");
+    assertThat(spec.getText()).isEqualTo("cafe");
+    assertThat(spec.getParameters()).hasSize(base.getParameters().size() + 1);
+    assertThat(spec.withText("cafe")).isSameAs(spec);
+    assertThat(spec.withText(null)).isEqualTo(base);
+  }
+
+  @Test public void equals_shouldMatchSpecsBuiltInAnyOrder() throws Exception {
+    final QuerySpec spec = QuerySpec.builder()
+        .layers("venue")
+        .text("cafe")
+        .boundaryRect(new BoundingBox(1, 2, 3, 4))
+        .focusPoint(1.5, 2.5)
+        .size(5)
+        .build();
+    assertThat(spec).isEqualTo(base.withText("cafe"));
+    assertThat(spec.hashCode()).isEqualTo(base.withText("cafe").hashCode());
+    assertThat(spec.getCacheKey()).isEqualTo(base.withText("cafe").getCacheKey());
+  }
+
+  @Test public void getCacheKey_shouldNormalizeText() throws Exception {
+    assertThat(base.withText("Cafe ").getCacheKey()).isEqualTo(base.withText("cafe").getCacheKey());
+    assertThat(base.withText("Cafe ")).isNotEqualTo(base.withText("cafe"));
+    assertThat(base.withText("cafe").getCacheKey())
+        .isNotEqualTo(base.toBuilder().size(6).text("cafe").build().getCacheKey());
+  }
+
+  @Test public void set_null_shouldRemoveParameter() throws Exception {
+    final QuerySpec spec = base.toBuilder().layers(null).boundaryRect(null).build();
+    assertThat(spec.getParameters().keySet()).containsExactly("focus.point.lat",
+        "focus.point.lon", "size");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void size_notPositive_shouldThrow() throws Exception {
+    QuerySpec.builder().size(0);
+  }
+}
@@ -0,0 +1,200 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+public class QueryStreamTest {
+  private final List<TestCall> calls = new ArrayList<>();
+  private final List<String> results = new ArrayList<>();
+  private final List<String> errors = new ArrayList<>();
+  private ScheduledExecutorService scheduler;
+  private QueryStream<String> stream;
+
+  @Before public void setUp() throws Exception {
+    final PeliasService service = mock(PeliasService.class);
+    when(service.getSuggest(anyString(), anyDouble(), anyDouble())).thenAnswer(
+        new Answer<Call<Result>>() {
+          @Override public Call<Result> answer(InvocationOnMock invocation) {
+            final TestCall call = new TestCall((String) invocation.getArguments()[0]);
+            synchronized (calls) {
+              calls.add(call);
+            }
+            return call;
+          }
+        });
+    final Pelias pelias = new Pelias(service);
+    pelias.setLocationProvider(new PeliasTest.TestLocationProvider());
+    stream = new QueryStream<>(pelias, new ResultProcessor<String>() {
+      @Override public String process(Result result) {
+        return result.getType();
+      }
+    }, new QueryStream.Listener<String>() {
+      @Override public void onResults(String query, String type) {
+        results.add(query + ":" + type);
+      }
+
+      @Override public void onError(String query, Throwable t) {
+        errors.add(query);
+      }
+    });
+    stream.setDebounce(0, TimeUnit.MILLISECONDS);
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @After public void tearDown() throws Exception {
+    scheduler.shutdownNow();
+  }
+
+  @Test public void onNext_shouldEmitResults() throws Exception {
+    stream.onNext("cafe");
+    calls.get(0).respond("FeatureCollection");
+    assertThat(results).containsExactly("cafe:FeatureCollection");
+    assertThat(stream.getStats().getDelivered()).isEqualTo(1);
+  }
+
+  @Test public void onNext_shortText_shouldNotRequest() throws Exception {
+    stream.onNext("ca");
+    stream.onNext(null);
+    assertThat(calls).isEmpty();
+  }
+
+  @Test public void onNext_sameText_shouldNotRequestAgain() throws Exception {
+    stream.onNext("cafe");
+    stream.onNext("cafe");
+    calls.get(0).respond("a");
+    stream.onNext("cafe");
+    assertThat(calls).hasSize(1);
+  }
+
+  @Test public void onNext_sameKey_shouldNotRequestAgain() throws Exception {
+    stream.onNext("Main St");
+    stream.onNext("main  st ");
+    assertThat(calls).hasSize(1);
+    assertThat(calls.get(0).text).isEqualTo("Main St");
+  }
+
+  @Test public void onNext_sameTextAfterFailure_shouldRequestAgain() throws Exception {
+    stream.onNext("cafe");
+    calls.get(0).fail();
+    stream.onNext("cafe");
+    assertThat(errors).containsExactly("cafe");
+    assertThat(calls).hasSize(2);
+  }
+
+  @Test public void onNext_shouldCancelPreviousCall() throws Exception {
+    stream.onNext("caf");
+    stream.onNext("cafe");
+    assertThat(calls.get(0).isCanceled()).isTrue();
+    assertThat(calls.get(1).isCanceled()).isFalse();
+    calls.get(0).respond("stale");
+    calls.get(1).respond("latest");
+    assertThat(results).containsExactly("cafe:latest");
+    assertThat(stream.getStats().getSuperseded()).isEqualTo(1);
+  }
+
+  @Test public void onNext_shortTextAfterQuery_shouldCancelCall() throws Exception {
+    stream.onNext("cafe");
+    stream.onNext("c");
+    assertThat(calls.get(0).isCanceled()).isTrue();
+    stream.onNext("cafe");
+    assertThat(calls).hasSize(2);
+  }
+
+  @Test public void onNext_debounced_shouldOnlyRequestLatest() throws Exception {
+    final CountDownLatch requested = new CountDownLatch(1);
+    stream.setScheduler(scheduler);
+    stream.setDebounce(100, TimeUnit.MILLISECONDS);
+    stream.onNext("caf");
+    stream.onNext("cafe");
+    stream.onNext("cafes");
+    scheduler.schedule(new Runnable() {
+      @Override public void run() {
+        requested.countDown();
+      }
+    }, 300, TimeUnit.MILLISECONDS);
+    assertThat(requested.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(calls).hasSize(1);
+    assertThat(calls.get(0).text).isEqualTo("cafes");
+  }
+
+  @Test public void close_shouldCancelAndStopEmitting() throws Exception {
+    stream.onNext("cafe");
+    stream.close();
+    assertThat(calls.get(0).isCanceled()).isTrue();
+    calls.get(0).respond("late");
+    stream.onNext("cafes");
+    assertThat(results).isEmpty();
+    assertThat(calls).hasSize(1);
+  }
+
+  private static class TestCall implements Call<Result> {
+    private final String text;
+    private Callback<Result> callback;
+    private volatile boolean canceled;
+
+    TestCall(String text) {
+      this.text = text;
+    }
+
+    void respond(String type) {
+      final Result result = new Result();
+      result.setType(type);
+      callback.onResponse(this, Response.success(result));
+    }
+
+    void fail() {
+      callback.onFailure(this, new IOException());
+    }
+
+    @Override public Response<Result> execute() throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public void enqueue(Callback<Result> callback) {
+      this.callback = callback;
+    }
+
+    @Override public boolean isExecuted() {
+      return callback != null;
+    }
+
+    @Override public void cancel() {
+      canceled = true;
+    }
+
+    @Override public boolean isCanceled() {
+      return canceled;
+    }
+
+    @Override public Call<Result> clone() {
+      return new TestCall(text);
+    }
+
+    @Override public Request request() {
+      return null;
+    }
+  }
+}
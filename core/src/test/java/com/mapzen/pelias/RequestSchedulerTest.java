@@ -0,0 +1,135 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+public class RequestSchedulerTest {
+  @Test public void enqueue_shouldLimitPriorityClass() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler();
+    final Call<Result> first = call();
+    final Call<Result> second = call();
+    final Call<Result> third = call();
+    scheduler.enqueue(first, RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(second, RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(third, RequestPriority.BACKGROUND, callback(), null);
+    assertThat(scheduler.getRunning(RequestPriority.BACKGROUND)).isEqualTo(2);
+    assertThat(scheduler.getQueued(RequestPriority.BACKGROUND)).isEqualTo(1);
+    verify(third, never()).enqueue(Mockito.<Callback<Result>>any());
+
+    respond(first);
+    verify(third).enqueue(Mockito.<Callback<Result>>any());
+    assertThat(scheduler.getQueued(RequestPriority.BACKGROUND)).isEqualTo(0);
+  }
+
+  @Test public void enqueue_shouldStartMostUrgentFirst() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(1);
+    final Call<Result> running = call();
+    final Call<Result> background = call();
+    final Call<Result> submitted = call();
+    scheduler.enqueue(running, RequestPriority.USER_SUBMITTED, callback(), null);
+    scheduler.enqueue(background, RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(submitted, RequestPriority.USER_SUBMITTED, callback(), null);
+
+    respond(running);
+    verify(submitted).enqueue(Mockito.<Callback<Result>>any());
+    verify(background, never()).enqueue(Mockito.<Callback<Result>>any());
+    respond(submitted);
+    verify(background).enqueue(Mockito.<Callback<Result>>any());
+  }
+
+  @Test public void enqueue_interactiveWithoutSlot_shouldPreemptBackground() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(2);
+    final Call<Result> older = call();
+    final Call<Result> newer = call();
+    final Call<Result> interactive = call();
+    final Callback<Result> newerCallback = callback();
+    scheduler.enqueue(older, RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(newer, RequestPriority.BACKGROUND, newerCallback, null);
+    scheduler.enqueue(interactive, RequestPriority.INTERACTIVE, callback(), null);
+    verify(newer).cancel();
+    verify(older, never()).cancel();
+    verify(interactive, never()).enqueue(Mockito.<Callback<Result>>any());
+
+    callbackOf(newer).onFailure(newer, new IOException("Canceled"));
+    verify(newerCallback).onFailure(Mockito.eq(newer),
+        Mockito.isA(RequestScheduler.PreemptedException.class));
+    verify(interactive).enqueue(Mockito.<Callback<Result>>any());
+    assertThat(scheduler.getRunning(RequestPriority.BACKGROUND)).isEqualTo(1);
+  }
+
+  @Test public void enqueue_interactiveWithSlot_shouldNotPreempt() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler();
+    final Call<Result> background = call();
+    final Call<Result> interactive = call();
+    scheduler.enqueue(background, RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(interactive, RequestPriority.INTERACTIVE, callback(), null);
+    verify(background, never()).cancel();
+    verify(interactive).enqueue(Mockito.<Callback<Result>>any());
+  }
+
+  @Test public void setMaxRequests_raised_shouldStartWaitingRequests() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler();
+    scheduler.setMaxRequests(RequestPriority.BACKGROUND, 1);
+    final Call<Result> waiting = call();
+    scheduler.enqueue(call(), RequestPriority.BACKGROUND, callback(), null);
+    scheduler.enqueue(waiting, RequestPriority.BACKGROUND, callback(), null);
+    verify(waiting, never()).enqueue(Mockito.<Callback<Result>>any());
+    scheduler.setMaxRequests(RequestPriority.BACKGROUND, 2);
+    verify(waiting).enqueue(Mockito.<Callback<Result>>any());
+  }
+
+  @Test public void enqueue_canceledWhileQueued_shouldBeDroppedWithoutSlot() throws Exception {
+    final RequestScheduler scheduler = new RequestScheduler(1);
+    final Call<Result> running = call();
+    final Call<Result> canceled = call();
+    final Call<Result> waiting = call();
+    final Callback<Result> canceledCallback = callback();
+    scheduler.enqueue(running, RequestPriority.USER_SUBMITTED, callback(), null);
+    scheduler.enqueue(canceled, RequestPriority.USER_SUBMITTED, canceledCallback, null);
+    scheduler.enqueue(waiting, RequestPriority.USER_SUBMITTED, callback(), null);
+    when(canceled.isCanceled()).thenReturn(true);
+    assertThat(scheduler.getQueued(RequestPriority.USER_SUBMITTED)).isEqualTo(1);
+
+    respond(running);
+    verify(canceled, never()).enqueue(Mockito.<Callback<Result>>any());
+    verify(canceledCallback).onFailure(Mockito.eq(canceled), Mockito.isA(IOException.class));
+    verify(waiting).enqueue(Mockito.<Callback<Result>>any());
+    assertThat(scheduler.getQueued(RequestPriority.USER_SUBMITTED)).isEqualTo(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Call<Result> call() {
+    return Mockito.mock(Call.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Callback<Result> callback() {
+    return Mockito.mock(Callback.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Callback<Result> callbackOf(Call<Result> call) {
+    final ArgumentCaptor<Callback<Result>> captor =
+        (ArgumentCaptor<Callback<Result>>) (ArgumentCaptor<?>) ArgumentCaptor.forClass(
+            Callback.class);
+    verify(call).enqueue(captor.capture());
+    return captor.getValue();
+  }
+
+  private static void respond(Call<Result> call) {
+    callbackOf(call).onResponse(call, Response.success(new Result()));
+  }
+}
@@ -0,0 +1,105 @@
+package com.mapzen.pelias;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.data.Offset.offset;
+
+public class SampledLocationProviderTest {
+  private final MovingLocationProvider device = new MovingLocationProvider(40.712776, -74.005974);
+  private final TestSampledLocationProvider provider = new TestSampledLocationProvider(device);
+
+  @Test public void getLat_shouldQuantizeToGrid() throws Exception {
+    assertThat(provider.getLat()).isEqualTo(40.71);
+    assertThat(provider.getLon()).isEqualTo(-74.01);
+  }
+
+  @Test public void getLat_withinSession_shouldSampleOnce() throws Exception {
+    provider.getLat();
+    device.moveTo(41.0, -73.0);
+    provider.now += 1000;
+    assertThat(provider.getLat()).isEqualTo(40.71);
+    provider.getLon();
+    provider.getBoundingBox();
+    assertThat(provider.getSamples()).isEqualTo(1);
+  }
+
+  @Test public void newSession_smallMove_shouldKeepFocusPoint() throws Exception {
+    provider.getLat();
+    device.moveTo(40.714, -74.004);
+    provider.newSession();
+    assertThat(provider.getLat()).isEqualTo(40.71);
+    assertThat(provider.getLon()).isEqualTo(-74.01);
+    assertThat(provider.getSamples()).isEqualTo(2);
+  }
+
+  @Test public void newSession_largeMove_shouldRefreshFocusPoint() throws Exception {
+    provider.getLat();
+    device.moveTo(40.73, -74.005974);
+    provider.newSession();
+    assertThat(provider.getLat()).isEqualTo(40.73);
+  }
+
+  @Test public void getLat_afterSessionTimeout_shouldSampleAgain() throws Exception {
+    provider.setSessionTimeout(1, TimeUnit.SECONDS);
+    provider.getLat();
+    provider.now += 999;
+    provider.getLat();
+    assertThat(provider.getSamples()).isEqualTo(1);
+    provider.now += 1000;
+    provider.getLat();
+    assertThat(provider.getSamples()).isEqualTo(2);
+  }
+
+  @Test public void setGridDegrees_zero_shouldNotQuantize() throws Exception {
+    provider.setGridDegrees(0);
+    assertThat(provider.getLat()).isEqualTo(40.712776);
+  }
+
+  @Test public void distanceMeters_shouldApproximateDistance() throws Exception {
+    assertThat(SampledLocationProvider.distanceMeters(0, 0, 0.01, 0))
+        .isEqualTo(1113.2, offset(1.0));
+    assertThat(SampledLocationProvider.distanceMeters(60, 0, 60, 0.01))
+        .isEqualTo(556.6, offset(1.0));
+  }
+
+  private static class TestSampledLocationProvider extends SampledLocationProvider {
+    private long now;
+
+    TestSampledLocationProvider(PeliasLocationProvider delegate) {
+      super(delegate);
+    }
+
+    @Override long nowMillis() {
+      return now;
+    }
+  }
+
+  private static class MovingLocationProvider implements PeliasLocationProvider {
+    private double lat;
+    private double lon;
+
+    MovingLocationProvider(double lat, double lon) {
+      moveTo(lat, lon);
+    }
+
+    void moveTo(double lat, double lon) {
+      this.lat = lat;
+      this.lon = lon;
+    }
+
+    @Override public double getLat() {
+      return lat;
+    }
+
+    @Override public double getLon() {
+      return lon;
+    }
+
+    @Override public BoundingBox getBoundingBox() {
+      return new BoundingBox(lat - 1, lon - 1, lat + 1, lon + 1);
+    }
+  }
+}
@@ -0,0 +1,317 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+public class SuggestControllerTest {
+  private Pelias pelias;
+  private SuggestController controller;
+  private TestCallback callback;
+
+  @Before public void setUp() throws Exception {
+    pelias = mock(Pelias.class);
+    when(pelias.process(any(ResultProcessor.class), any(ProcessedCallback.class)))
+        .thenCallRealMethod();
+    when(pelias.supportsQuerySpecs()).thenReturn(true);
+    controller = new SuggestController(pelias);
+    callback = new TestCallback();
+    controller.setCallback(callback);
+  }
+
+  @Test public void onTextChanged_shortText_shouldNotRequest() throws Exception {
+    assertThat(controller.onTextChanged("ca")).isFalse();
+    verify(pelias, never()).suggest(anyString(), any(Callback.class));
+    assertThat(controller.getStats().getTextChanges()).isEqualTo(1);
+    assertThat(controller.getStats().getRequests()).isEqualTo(0);
+  }
+
+  @Test public void onTextChanged_shouldRequest() throws Exception {
+    assertThat(controller.onTextChanged("caf")).isTrue();
+    verify(pelias).suggest(eq("caf"), any(Callback.class));
+  }
+
+  @Test public void onTextChanged_filter_shouldRequestWithFilter() throws Exception {
+    controller.setSuggestFilter(new SuggestFilter() {
+      @Override public String getCountryFilter() {
+        return "US";
+      }
+
+      @Override public String getLayersFilter() {
+        return "venue";
+      }
+
+      @Override public String getSources() {
+        return "osm";
+      }
+    });
+    controller.onTextChanged("cafe");
+    verify(pelias).suggest(eq("cafe"), eq("venue"), eq("US"), eq("osm"), any(Callback.class));
+  }
+
+  @Test public void onResponse_latest_shouldDeliver() throws Exception {
+    controller.onTextChanged("caf");
+    captureCallbacks(1).get(0).onResponse(null, Response.success(new Result()));
+    assertThat(callback.responses).isEqualTo(1);
+    assertThat(controller.getStats().getDelivered()).isEqualTo(1);
+  }
+
+  @Test public void onResponse_superseded_shouldDrop() throws Exception {
+    controller.onTextChanged("caf");
+    controller.onTextChanged("cafe");
+    final List<Callback<Result>> callbacks = captureCallbacks(2);
+    callbacks.get(1).onResponse(null, Response.success(new Result()));
+    callbacks.get(0).onResponse(null, Response.success(new Result()));
+    assertThat(callback.responses).isEqualTo(1);
+    assertThat(controller.getStats().getSuperseded()).isEqualTo(1);
+    assertThat(controller.getStats().getDelivered()).isEqualTo(1);
+  }
+
+  @Test public void onResponse_afterShortText_shouldDrop() throws Exception {
+    controller.onTextChanged("caf");
+    controller.onTextChanged("ca");
+    captureCallbacks(1).get(0).onResponse(null, Response.success(new Result()));
+    assertThat(callback.responses).isEqualTo(0);
+    assertThat(controller.getStats().getSuperseded()).isEqualTo(1);
+  }
+
+  @Test public void onFailure_afterCancel_shouldDrop() throws Exception {
+    controller.onTextChanged("caf");
+    controller.cancel();
+    captureCallbacks(1).get(0).onFailure(null, new Exception());
+    assertThat(callback.failures).isEqualTo(0);
+    assertThat(controller.getStats().getFailures()).isEqualTo(0);
+    assertThat(controller.getStats().getSuperseded()).isEqualTo(1);
+  }
+
+  @Test public void onFailure_latest_shouldDeliver() throws Exception {
+    controller.onTextChanged("caf");
+    captureCallbacks(1).get(0).onFailure(null, new Exception());
+    assertThat(callback.failures).isEqualTo(1);
+    assertThat(controller.getStats().getFailures()).isEqualTo(1);
+  }
+
+  @Test public void onResponse_processed_shouldDeliverProcessedValue() throws Exception {
+    final TestProcessor processor = new TestProcessor();
+    final TestProcessedCallback processedCallback = new TestProcessedCallback();
+    controller.setCallback(processor, processedCallback);
+    controller.onTextChanged("caf");
+    captureCallbacks(1).get(0).onResponse(newCall(), Response.success(new Result()));
+    assertThat(processor.count).isEqualTo(1);
+    assertThat(processedCallback.values).containsExactly("processed");
+    assertThat(callback.responses).isEqualTo(0);
+    assertThat(controller.getStats().getDelivered()).isEqualTo(1);
+  }
+
+  @Test public void onResponse_processedSuperseded_shouldNotProcess() throws Exception {
+    final TestProcessor processor = new TestProcessor();
+    final TestProcessedCallback processedCallback = new TestProcessedCallback();
+    controller.setCallback(processor, processedCallback);
+    controller.onTextChanged("caf");
+    controller.onTextChanged("cafe");
+    captureCallbacks(2).get(0).onResponse(newCall(), Response.success(new Result()));
+    assertThat(processor.count).isEqualTo(0);
+    assertThat(processedCallback.values).isEmpty();
+    assertThat(controller.getStats().getSuperseded()).isEqualTo(1);
+  }
+
+  @Test public void onTextChanged_extendingText_shouldDeliverRefinedResultsFirst()
+      throws Exception {
+    controller.setPrefixRefiner(new PrefixRefiner());
+    controller.onTextChanged("brookl");
+    captureCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brookline", "Brooklyn")));
+    controller.onTextChanged("brookly");
+    assertThat(callback.responses).isEqualTo(2);
+    assertThat(callback.last.getFeatures()).hasSize(1);
+    assertThat(callback.last.getFeatures().get(0).properties.name).isEqualTo("Brooklyn");
+    assertThat(controller.getStats().getRefined()).isEqualTo(1);
+    assertThat(callback.lastCall.request().url().queryParameter("text")).isEqualTo("brookly");
+    captureCallbacks(2).get(1).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn", "Brooklyn Heights")));
+    assertThat(callback.last.getFeatures()).hasSize(2);
+  }
+
+  @Test public void onTextChanged_notExtendingText_shouldNotRefine() throws Exception {
+    controller.setPrefixRefiner(new PrefixRefiner());
+    controller.onTextChanged("brookl");
+    captureCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn")));
+    controller.onTextChanged("brook");
+    controller.onTextChanged("bronx");
+    assertThat(callback.responses).isEqualTo(1);
+    assertThat(controller.getStats().getRefined()).isEqualTo(0);
+  }
+
+  @Test public void onTextChanged_refinerNotSet_shouldNotRefine() throws Exception {
+    controller.onTextChanged("brookl");
+    captureCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn")));
+    controller.onTextChanged("brookly");
+    assertThat(callback.responses).isEqualTo(1);
+  }
+
+  @Test public void onTextChanged_extendsEmptyText_shouldNotRequest() throws Exception {
+    controller.setNegativeCache(new NegativeCache());
+    controller.onTextChanged("zzqx");
+    captureCallbacks(1).get(0).onResponse(null, Response.success(new Result()));
+    assertThat(controller.onTextChanged("zzqxa")).isFalse();
+    captureCallbacks(1);
+    assertThat(callback.responses).isEqualTo(2);
+    assertThat(callback.last.getFeatures()).isEmpty();
+    assertThat(callback.lastCall.request().url().queryParameter("text")).isEqualTo("zzqxa");
+    assertThat(controller.getStats().getSuppressed()).isEqualTo(1);
+    assertThat(controller.onTextChanged("zzq")).isTrue();
+  }
+
+  @Test public void onTextChanged_shouldLookUpNormalizedText() throws Exception {
+    controller.setNegativeCache(new NegativeCache());
+    controller.onTextChanged("Zzqx");
+    captureCallbacks(1).get(0).onResponse(null, Response.success(new Result()));
+    assertThat(controller.onTextChanged(" ZZQX  a")).isFalse();
+  }
+
+  @Test public void onResponse_supersededEmpty_shouldStillBeRecorded() throws Exception {
+    controller.setNegativeCache(new NegativeCache());
+    controller.onTextChanged("zzqx");
+    controller.onTextChanged("zzq");
+    captureCallbacks(2).get(0).onResponse(null, Response.success(new Result()));
+    assertThat(controller.onTextChanged("zzqxa")).isFalse();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Call<Result> newCall() {
+    return mock(Call.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test public void onTextChanged_resultSize_shouldRequestSize() throws Exception {
+    when(pelias.getLocationProvider()).thenReturn(new PeliasTest.TestLocationProvider());
+    controller.setResultSize(6);
+    controller.onTextChanged("cafe");
+    final List<QuerySpec> specs = captureSpecs(1);
+    assertThat(specs.get(0).getParameters().get("size")).isEqualTo("6");
+    assertThat(specs.get(0).getParameters().get("focus.point.lat")).isEqualTo("1.0");
+    assertThat(specs.get(0).getText()).isEqualTo("cafe");
+  }
+
+  @Test public void onTextChanged_resultSizeWithoutQuerySpecs_shouldRequestDefaultSize()
+      throws Exception {
+    when(pelias.supportsQuerySpecs()).thenReturn(false);
+    controller.setResultSize(2);
+    controller.onTextChanged("brooklyn");
+    verify(pelias, never()).suggest(any(QuerySpec.class), any(Callback.class));
+    captureCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn", "Brooklyn Heights")));
+    assertThat(controller.hasMore()).isFalse();
+  }
+
+  @Test public void loadMore_fullResponse_shouldRequestLargerSize() throws Exception {
+    controller.setResultSize(2);
+    controller.onTextChanged("brooklyn");
+    assertThat(controller.loadMore()).isFalse();
+    captureSpecCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn", "Brooklyn Heights")));
+    assertThat(controller.hasMore()).isTrue();
+    assertThat(controller.loadMore()).isTrue();
+    assertThat(controller.loadMore()).isFalse();
+    final List<QuerySpec> specs = captureSpecs(2);
+    assertThat(specs.get(1).getParameters().get("size")).isEqualTo("4");
+    assertThat(specs.get(1).getText()).isEqualTo("brooklyn");
+    assertThat(controller.getStats().getLoadMore()).isEqualTo(1);
+  }
+
+  @Test public void loadMore_partialResponse_shouldNotRequest() throws Exception {
+    controller.setResultSize(2);
+    controller.onTextChanged("brooklyn");
+    captureSpecCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brooklyn")));
+    assertThat(controller.hasMore()).isFalse();
+    assertThat(controller.loadMore()).isFalse();
+  }
+
+  @Test public void onTextChangedLocally_shouldRefineWithoutRequest() throws Exception {
+    controller.setPrefixRefiner(new PrefixRefiner());
+    controller.onTextChanged("brook");
+    captureCallbacks(1).get(0).onResponse(null,
+        Response.success(PrefixRefinerTest.result("Brookline", "Brooklyn")));
+    assertThat(controller.onTextChangedLocally("brookly")).isTrue();
+    assertThat(callback.last.getFeatures()).hasSize(1);
+    assertThat(controller.onTextChangedLocally("queens")).isFalse();
+    captureCallbacks(1);
+    assertThat(controller.getStats().getLocalOnly()).isEqualTo(2);
+  }
+
+  private List<QuerySpec> captureSpecs(int count) {
+    final ArgumentCaptor<QuerySpec> captor = ArgumentCaptor.forClass(QuerySpec.class);
+    verify(pelias, times(count)).suggest(captor.capture(), any(Callback.class));
+    return captor.getAllValues();
+  }
+
+  private List<Callback<Result>> captureSpecCallbacks(int count) {
+    final ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+    verify(pelias, times(count)).suggest(any(QuerySpec.class), captor.capture());
+    return (List) captor.getAllValues();
+  }
+
+  private List<Callback<Result>> captureCallbacks(int count) {
+    final ArgumentCaptor<Callback> captor = ArgumentCaptor.forClass(Callback.class);
+    verify(pelias, times(count)).suggest(anyString(), captor.capture());
+    return (List) captor.getAllValues();
+  }
+
+  private static class TestProcessor implements ResultProcessor<String> {
+    private int count;
+
+    @Override public String process(Result result) {
+      count++;
+      return "processed";
+    }
+  }
+
+  private static class TestProcessedCallback implements ProcessedCallback<String> {
+    private final List<String> values = new ArrayList<>();
+
+    @Override public void onResult(String value) {
+      values.add(value);
+    }
+
+    @Override public void onFailure(Throwable t) {
+    }
+  }
+
+  private static class TestCallback implements Callback<Result> {
+    private int responses;
+    private int failures;
+    private Result last;
+    private Call<Result> lastCall;
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      responses++;
+      last = response.body();
+      lastCall = call;
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      failures++;
+    }
+  }
+}
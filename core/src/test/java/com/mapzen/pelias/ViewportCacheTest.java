@@ -0,0 +1,124 @@
+package com.mapzen.pelias;
+
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.Geometry;
+import com.mapzen.pelias.gson.Properties;
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ViewportCacheTest {
+  private final TestViewportCache cache = new TestViewportCache();
+  private final BoundingBox box = new BoundingBox(40.0, -74.0, 41.0, -73.0);
+
+  @Test public void get_boxInsideCachedBox_shouldReturnFeaturesInsideBox() throws Exception {
+    cache.put("Cafe", box, result(feature("inside", 40.5, -73.5), feature("outside", 40.9, -73.1)));
+    final Result result = cache.get("cafe", new BoundingBox(40.2, -73.8, 40.6, -73.4));
+    assertThat(names(result)).containsExactly("inside");
+    assertThat(cache.getHits()).isEqualTo(1);
+  }
+
+  @Test public void get_mostlyCoveredBox_shouldReturnCachedFeatures() throws Exception {
+    cache.put("cafe", box, result(feature("inside", 40.5, -73.5)));
+    assertThat(cache.get("cafe", new BoundingBox(40.05, -74.0, 41.05, -73.0))).isNotNull();
+    assertThat(cache.get("cafe", new BoundingBox(40.5, -74.0, 41.5, -73.0))).isNull();
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test public void get_otherQuery_shouldReturnNull() throws Exception {
+    cache.put("cafe", box, result(feature("inside", 40.5, -73.5)));
+    assertThat(cache.get("bar", box)).isNull();
+  }
+
+  @Test public void get_afterTimeToLive_shouldReturnNull() throws Exception {
+    cache.setTimeToLive(1, TimeUnit.SECONDS);
+    cache.put("cafe", box, result(feature("inside", 40.5, -73.5)));
+    cache.now = 999;
+    assertThat(cache.get("cafe", box)).isNotNull();
+    cache.now = 1000;
+    assertThat(cache.get("cafe", box)).isNull();
+  }
+
+  @Test public void put_shouldEvictLeastRecentlyUsedQuery() throws Exception {
+    final ViewportCache small = new ViewportCache(2, 1);
+    small.put("one", box, result());
+    small.put("two", box, result());
+    small.get("one", box);
+    small.put("three", box, result());
+    assertThat(small.get("one", box)).isNotNull();
+    assertThat(small.get("two", box)).isNull();
+    assertThat(small.get("three", box)).isNotNull();
+  }
+
+  @Test public void put_shouldKeepMaxAreasPerQuery() throws Exception {
+    final ViewportCache small = new ViewportCache(2, 1);
+    final BoundingBox other = new BoundingBox(10.0, 10.0, 11.0, 11.0);
+    small.put("cafe", box, result());
+    small.put("cafe", other, result());
+    assertThat(small.get("cafe", box)).isNull();
+    assertThat(small.get("cafe", other)).isNotNull();
+  }
+
+  @Test public void get_otherScope_shouldReturnNull() throws Exception {
+    final Object scope = new Object();
+    cache.put(scope, "cafe", box, result(feature("inside", 40.5, -73.5)));
+    assertThat(cache.get(new Object(), "cafe", box)).isNull();
+    assertThat(cache.get("cafe", box)).isNull();
+    assertThat(cache.get(scope, "cafe", box)).isNotNull();
+  }
+
+  @Test public void put_fullPage_shouldNotBeRemembered() throws Exception {
+    final Feature[] features = new Feature[ViewportCache.DEFAULT_PAGE_SIZE];
+    for (int i = 0; i < features.length; i++) {
+      features[i] = feature("cafe " + i, 40.1 + i * 0.05, -73.5);
+    }
+    cache.put("cafe", box, result(features));
+    assertThat(cache.get("cafe", new BoundingBox(40.2, -73.8, 40.6, -73.4))).isNull();
+
+    cache.setPageSize(ViewportCache.DEFAULT_PAGE_SIZE + 1);
+    cache.put("cafe", box, result(features));
+    assertThat(cache.get("cafe", new BoundingBox(40.2, -73.8, 40.6, -73.4))).isNotNull();
+  }
+
+  static Result result(Feature... features) {
+    final Result result = new Result();
+    final List<Feature> list = new ArrayList<>();
+    for (Feature feature : features) {
+      list.add(feature);
+    }
+    result.setFeatures(list);
+    return result;
+  }
+
+  static Feature feature(String name, double lat, double lon) {
+    final Feature feature = new Feature();
+    feature.properties = new Properties();
+    feature.properties.name = name;
+    feature.geometry = new Geometry();
+    feature.geometry.coordinates.add(lon);
+    feature.geometry.coordinates.add(lat);
+    return feature;
+  }
+
+  private static List<String> names(Result result) {
+    final List<String> names = new ArrayList<>();
+    for (Feature feature : result.getFeatures()) {
+      names.add(feature.properties.name);
+    }
+    return names;
+  }
+
+  private static class TestViewportCache extends ViewportCache {
+    long now;
+
+    @Override long nowMillis() {
+      return now;
+    }
+  }
+}
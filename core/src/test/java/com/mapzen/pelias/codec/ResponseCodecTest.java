@@ -0,0 +1,164 @@
+package com.mapzen.pelias.codec;
+
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.MalformedJsonException;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import okhttp3.MediaType;
+import okio.Buffer;
+import okio.ByteString;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ResponseCodecTest {
+  private static final Gson REFLECTIVE = new Gson();
+  private static final Gson STREAMING = PeliasGson.get();
+
+  private static final String FEATURE_COLLECTION = "{\"geocoding\":{\"version\":\"0.1\","
+      + "\"query\":{\"text\":\"cafe\",\"size\":10,\"private\":false}},"
+      + "\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\","
+      + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[-73.99,4.074e1]},"
+      + "\"properties\":{\"id\":\"1\",\"gid\":\"osm:venue:1\",\"layer\":\"venue\","
+      + "\"name\":\"Caf\u00e9 \\\"Z\\u00fcrich\\\"\\n\\\\\\/\",\"confidence\":0.9,"
+      + "\"label\":\"\u6771\u4eac \ud83d\uddfc\",\"category\":[\"food\",\"retail\"],"
+      + "\"distance\":{\"km\":-1.2E-3}}},null],\"bbox\":[-74,40,-73,41]}";
+
+  @Test public void utf8Json_shouldMatchGson() throws Exception {
+    for (String json : Arrays.asList(
+        FEATURE_COLLECTION,
+        " { } ",
+        "{\"features\":null}",
+        "{\"type\":true,\"features\":[{}]}",
+        "{\"features\":[{\"properties\":{\"name\":\"\",\"confidence\":\"0.5\"},"
+            + "\"geometry\":{\"coordinates\":[]}}]}",
+        "{\"features\":[{\"properties\":null,\"geometry\":{\"coordinates\":[1,null]}}]}",
+        "null")) {
+      for (Gson gson : Arrays.asList(REFLECTIVE, STREAMING)) {
+        final Result expected = decode(new GsonResponseCodec(gson), json);
+        final Result actual = decode(new Utf8JsonResponseCodec(gson), json);
+        assertThat(REFLECTIVE.toJson(actual)).isEqualTo(REFLECTIVE.toJson(expected));
+      }
+    }
+  }
+
+  @Test public void utf8Json_shouldDecodeEscapes() throws Exception {
+    final Result result = decode(new Utf8JsonResponseCodec(STREAMING), FEATURE_COLLECTION);
+    assertThat(result.getFeatures().get(0).properties.name)
+        .isEqualTo("Caf\u00e9 \"Z\u00fcrich\"\n\\/");
+    assertThat(result.getFeatures().get(0).properties.label)
+        .isEqualTo("\u6771\u4eac \ud83d\uddfc");
+  }
+
+  @Test(expected = EOFException.class)
+  public void utf8Json_truncated_shouldThrow() throws Exception {
+    decode(new Utf8JsonResponseCodec(STREAMING), "{\"features\":[{\"type\":\"Feature\"");
+  }
+
+  @Test public void utf8Json_malformed_shouldThrow() throws Exception {
+    for (String json : Arrays.asList("{\"features\":[}", "{'type':'x'}", "{\"type\" \"x\"}",
+        "{\"type\":nul}", "{\"features\":[1]}")) {
+      try {
+        decode(new Utf8JsonResponseCodec(STREAMING), json);
+        throw new AssertionError("Expected failure for " + json);
+      } catch (MalformedJsonException | JsonSyntaxException expected) {
+        // Malformed input is rejected like Gson's own reader does.
+      }
+    }
+  }
+
+  @Test public void messagePack_shouldMatchJson() throws Exception {
+    final Buffer msgpack = new Buffer();
+    map(msgpack, 3);
+    string(msgpack, "type").writeByte(0xd9).writeByte(17).writeUtf8("FeatureCollection");
+    string(msgpack, "features").writeByte(0xdc).writeShort(2);
+    map(msgpack, 3);
+    string(string(msgpack, "type"), "Feature");
+    string(msgpack, "geometry");
+    map(msgpack, 2);
+    string(string(msgpack, "type"), "Point");
+    string(msgpack, "coordinates").writeByte(0x92)
+        .writeByte(0xcb).writeLong(Double.doubleToLongBits(-73.5))
+        .writeByte(0xcc).writeByte(200);
+    string(msgpack, "properties").writeByte(0xde).writeShort(6);
+    string(string(msgpack, "name"), "Caf\u00e9");
+    string(msgpack, "confidence").writeByte(0xca).writeInt(Float.floatToIntBits(0.5f));
+    string(msgpack, "label").writeByte(0xc0);
+    string(msgpack, "category").writeByte(0x91).writeByte(0xc3);
+    string(msgpack, "distance");
+    map(msgpack, 2);
+    string(msgpack, "km").writeByte(0xfb);
+    string(msgpack, "m").writeByte(0xd1).writeShort(-3000);
+    string(msgpack, "id").writeByte(0xcd).writeShort(40000);
+    msgpack.writeByte(0xc0);
+    string(msgpack, "bbox").writeByte(0x90);
+
+    final String json = "{\"type\":\"FeatureCollection\",\"features\":[{\"type\":\"Feature\","
+        + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[-73.5,200]},\"properties\":{"
+        + "\"name\":\"Caf\u00e9\",\"confidence\":0.5,\"label\":null,\"category\":[true],"
+        + "\"distance\":{\"km\":-5,\"m\":-3000},\"id\":40000}},null],\"bbox\":[]}";
+    for (Gson gson : Arrays.asList(REFLECTIVE, STREAMING)) {
+      final Result expected = decode(new GsonResponseCodec(gson), json);
+      final Result actual = new MessagePackResponseCodec(gson).decode(msgpack.clone());
+      assertThat(REFLECTIVE.toJson(actual)).isEqualTo(REFLECTIVE.toJson(expected));
+    }
+  }
+
+  @Test(expected = MalformedJsonException.class)
+  public void messagePack_binary_shouldThrow() throws Exception {
+    final Buffer msgpack = new Buffer();
+    string(map(msgpack, 1), "type").writeByte(0xc4).writeByte(1).writeByte(0);
+    new MessagePackResponseCodec(STREAMING).decode(msgpack);
+  }
+
+  @Test(expected = EOFException.class)
+  public void messagePack_truncated_shouldThrow() throws Exception {
+    final Buffer msgpack = new Buffer();
+    string(map(msgpack, 2), "type");
+    new MessagePackResponseCodec(STREAMING).decode(msgpack);
+  }
+
+  @Test public void accept_shouldListCodecsInPreferenceOrder() throws Exception {
+    final ResponseCodec msgpack = new MessagePackResponseCodec(STREAMING);
+    final ResponseCodec json = new Utf8JsonResponseCodec(STREAMING);
+    assertThat(ResponseCodecs.of(json).accept()).isNull();
+    assertThat(ResponseCodecs.of(msgpack, json).accept())
+        .isEqualTo("application/x-msgpack, application/json;q=0.9");
+  }
+
+  @Test public void select_shouldMatchContentType() throws Exception {
+    final ResponseCodec msgpack = new MessagePackResponseCodec(STREAMING);
+    final ResponseCodec json = new Utf8JsonResponseCodec(STREAMING);
+    final ResponseCodecs codecs = ResponseCodecs.of(msgpack, json);
+    assertThat(codecs.select(MediaType.parse("application/x-msgpack"))).isSameAs(msgpack);
+    assertThat(codecs.select(MediaType.parse("application/json; charset=utf-8"))).isSameAs(json);
+    assertThat(codecs.select(MediaType.parse("text/plain"))).isSameAs(json);
+    assertThat(codecs.select(null)).isSameAs(json);
+    assertThat(ResponseCodecs.of(msgpack).select(null)).isSameAs(msgpack);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void of_noCodecs_shouldThrow() throws Exception {
+    ResponseCodecs.of();
+  }
+
+  private static Result decode(ResponseCodec codec, String json) throws IOException {
+    return codec.decode(new Buffer().write(ByteString.encodeUtf8(json)));
+  }
+
+  private static Buffer map(Buffer out, int size) {
+    return out.writeByte(0x80 | size);
+  }
+
+  private static Buffer string(Buffer out, String value) {
+    final ByteString bytes = ByteString.encodeUtf8(value);
+    return out.writeByte(0xa0 | bytes.size()).write(bytes);
+  }
+}
@@ -0,0 +1,75 @@
+package com.mapzen.pelias.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PeliasTypeAdapterFactoryTest {
+  private static final Gson REFLECTIVE = new Gson();
+  private static final Gson STREAMING = PeliasGson.get();
+
+  private static final String FEATURE_COLLECTION = "{\"geocoding\":{\"version\":\"0.1\","
+      + "\"query\":{\"text\":\"cafe\",\"size\":10}},\"type\":\"FeatureCollection\","
+      + "\"features\":[{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\","
+      + "\"coordinates\":[-73.99,40.74]},\"properties\":{\"id\":\"1\","
+      + "\"gid\":\"osm:venue:1\",\"layer\":\"venue\",\"source\":\"osm\",\"name\":\"Cafe\","
+      + "\"country_a\":\"USA\",\"country\":\"United States\",\"region\":\"New York\","
+      + "\"region_a\":\"NY\",\"county\":\"New York County\",\"localadmin\":\"Manhattan\","
+      + "\"locality\":\"New York\",\"neighbourhood\":\"Flatiron\",\"confidence\":0.9,"
+      + "\"label\":\"Cafe, Manhattan, NY\",\"category\":[\"food\",\"retail\"],"
+      + "\"distance\":{\"km\":1.2}}},null],\"bbox\":[-74,40,-73,41]}";
+
+  @Test public void create_shouldOnlyHandlePeliasTypes() throws Exception {
+    final PeliasTypeAdapterFactory factory = new PeliasTypeAdapterFactory();
+    assertThat(factory.create(STREAMING, com.google.gson.reflect.TypeToken.get(Result.class)))
+        .isInstanceOf(ResultTypeAdapter.class);
+    assertThat(factory.create(STREAMING, com.google.gson.reflect.TypeToken.get(String.class)))
+        .isNull();
+  }
+
+  @Test public void fromJson_shouldMatchReflectiveAdapter() throws Exception {
+    for (String json : Arrays.asList(
+        FEATURE_COLLECTION,
+        "{}",
+        "{\"features\":null}",
+        "{\"type\":true,\"features\":[{}]}",
+        "{\"features\":[{\"properties\":{\"name\":null,\"confidence\":\"0.5\"},"
+            + "\"geometry\":{\"coordinates\":null}}]}",
+        "{\"features\":[{\"properties\":null,\"geometry\":{\"coordinates\":[1,null]}}]}",
+        "null")) {
+      assertSameResult(json);
+    }
+  }
+
+  @Test public void fromJson_missingFields_shouldKeepDefaults() throws Exception {
+    final Properties properties = STREAMING.fromJson("{\"name\":\"Cafe\"}", Properties.class);
+    assertThat(properties.name).isEqualTo("Cafe");
+    assertThat(properties.label).isEqualTo("");
+    assertThat(properties.confidence).isEqualTo(-1.0);
+  }
+
+  @Test public void toJson_shouldMatchReflectiveAdapter() throws Exception {
+    final Result result = REFLECTIVE.fromJson(FEATURE_COLLECTION, Result.class);
+    assertThat(STREAMING.toJson(result)).isEqualTo(REFLECTIVE.toJson(result));
+    result.getFeatures().get(0).properties.label = null;
+    result.getFeatures().get(0).geometry.coordinates = null;
+    assertThat(STREAMING.toJson(result)).isEqualTo(REFLECTIVE.toJson(result));
+    assertThat(STREAMING.toJsonTree(result)).isEqualTo(REFLECTIVE.toJsonTree(result));
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void fromJson_wrongShape_shouldThrow() throws Exception {
+    STREAMING.fromJson("{\"features\":{}}", Result.class);
+  }
+
+  private static void assertSameResult(String json) {
+    final Result expected = REFLECTIVE.fromJson(json, Result.class);
+    final Result actual = STREAMING.fromJson(json, Result.class);
+    assertThat(REFLECTIVE.toJson(actual)).isEqualTo(REFLECTIVE.toJson(expected));
+  }
+}
@@ -0,0 +1,208 @@
+package com.mapzen.pelias.http;
+
+import com.mapzen.pelias.PeliasQueryService;
+import com.mapzen.pelias.PeliasService;
+import com.mapzen.pelias.QuerySpec;
+import com.mapzen.pelias.codec.MessagePackResponseCodec;
+import com.mapzen.pelias.codec.ResponseCodecs;
+import com.mapzen.pelias.codec.Utf8JsonResponseCodec;
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DirectPeliasServiceTest {
+  private MockWebServer server;
+  private DirectPeliasService direct;
+  private PeliasService retrofit;
+  private PeliasQueryService retrofitQueries;
+
+  @Before public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    final OkHttpClient client = new OkHttpClient();
+    direct = new DirectPeliasService(server.url("/base/"), client, new Gson(), null);
+    final Retrofit proxies = new Retrofit.Builder()
+        .baseUrl(server.url("/base/"))
+        .client(client)
+        .addConverterFactory(GsonConverterFactory.create())
+        .build();
+    retrofit = proxies.create(PeliasService.class);
+    retrofitQueries = proxies.create(PeliasQueryService.class);
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void requests_shouldMatchRetrofit() throws Exception {
+    assertSameRequest(direct.getSuggest("caf\u00e9 & bar", 1.5, -2.25),
+        retrofit.getSuggest("caf\u00e9 & bar", 1.5, -2.25));
+    assertSameRequest(direct.getSuggest("test", 1, 2, "venue", "USA", "osm,wof"),
+        retrofit.getSuggest("test", 1, 2, "venue", "USA", "osm,wof"));
+    assertSameRequest(direct.getSuggest("test", 1, 2, null, "USA", null),
+        retrofit.getSuggest("test", 1, 2, null, "USA", null));
+    assertSameRequest(direct.search(Collections.singletonMap("text", "a+b")),
+        retrofitQueries.search(Collections.singletonMap("text", "a+b")));
+    assertSameRequest(direct.getSearch("test", 1, 2, 3, 4),
+        retrofit.getSearch("test", 1, 2, 3, 4));
+    assertSameRequest(direct.getSearch("test", 1e-7, 2), retrofit.getSearch("test", 1e-7, 2));
+    assertSameRequest(direct.getReverse(1, 2), retrofit.getReverse(1, 2));
+    assertSameRequest(direct.getReverse(1, 2, "wof"), retrofit.getReverse(1, 2, "wof"));
+    final QuerySpec spec = QuerySpec.builder()
+        .text("caf\u00e9 & bar")
+        .size(5)
+        .boundaryCircle(1, 2, 3.5)
+        .lang("fr")
+        .build();
+    assertSameRequest(direct.autocomplete(spec.getParameters()),
+        retrofitQueries.autocomplete(spec.getParameters()));
+    assertSameRequest(direct.search(spec.getParameters()),
+        retrofitQueries.search(spec.getParameters()));
+    assertSameRequest(direct.reverse(QuerySpec.builder().point(1, 2).build().getParameters()),
+        retrofitQueries.reverse(QuerySpec.builder().point(1, 2).build().getParameters()));
+    assertSameRequest(direct.getPlace("osm:venue:1,osm:venue:2"),
+        retrofit.getPlace("osm:venue:1,osm:venue:2"));
+  }
+
+  @Test public void execute_shouldParseResult() throws Exception {
+    server.enqueue(new MockResponse().setBody("{\"type\":\"FeatureCollection\",\"features\":"
+        + "[{\"type\":\"Feature\",\"properties\":{\"label\":\"Cafe\"}}]}"));
+    final Response<Result> response = direct.getPlace("osm:venue:1").execute();
+    assertThat(response.isSuccessful()).isTrue();
+    assertThat(response.body().getFeatures().get(0).properties.label).isEqualTo("Cafe");
+  }
+
+  @Test public void execute_error_shouldBufferErrorBody() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(400).setBody("{\"error\":\"bad\"}"));
+    final Response<Result> response = direct.getPlace("osm:venue:1").execute();
+    assertThat(response.code()).isEqualTo(400);
+    assertThat(response.body()).isNull();
+    assertThat(response.errorBody().string()).isEqualTo("{\"error\":\"bad\"}");
+  }
+
+  @Test public void execute_noContent_shouldHaveNullBody() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    final Response<Result> response = direct.getPlace("osm:venue:1").execute();
+    assertThat(response.isSuccessful()).isTrue();
+    assertThat(response.body()).isNull();
+  }
+
+  @Test public void execute_multipleCodecs_shouldNegotiate() throws Exception {
+    server.enqueue(new MockResponse()
+        .setHeader("Content-Type", "application/json; charset=utf-8")
+        .setBody("{\"features\":[{\"properties\":{\"label\":\"Cafe\"}}]}"));
+    final PeliasService service = new DirectPeliasService(server.url("/"), new OkHttpClient(),
+        ResponseCodecs.of(new MessagePackResponseCodec(new Gson()),
+            new Utf8JsonResponseCodec(new Gson())), null);
+    final Response<Result> response = service.getPlace("osm:venue:1").execute();
+    assertThat(response.body().getFeatures().get(0).properties.label).isEqualTo("Cafe");
+    assertThat(server.takeRequest().getHeader("Accept"))
+        .isEqualTo("application/x-msgpack, application/json;q=0.9");
+  }
+
+  @Test public void execute_singleCodec_shouldNotSendAccept() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    direct.getPlace("osm:venue:1").execute();
+    assertThat(server.takeRequest().getHeader("Accept")).isNull();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void execute_twice_shouldThrow() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    final Call<Result> call = direct.getPlace("osm:venue:1");
+    call.execute();
+    call.execute();
+  }
+
+  @Test public void enqueue_shouldDeliverOnCallbackExecutor() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    final CountingExecutor executor = new CountingExecutor();
+    final PeliasService service =
+        new DirectPeliasService(server.url("/"), new OkHttpClient(), new Gson(), executor);
+    final TestCallback callback = new TestCallback();
+    service.getReverse(1, 2).enqueue(callback);
+    assertThat(callback.latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(callback.response.isSuccessful()).isTrue();
+    assertThat(executor.count).isEqualTo(1);
+  }
+
+  @Test public void enqueue_malformedBody_shouldFail() throws Exception {
+    server.enqueue(new MockResponse().setBody("{\"features\":"));
+    final TestCallback callback = new TestCallback();
+    direct.getReverse(1, 2).enqueue(callback);
+    assertThat(callback.latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(callback.failure).isNotNull();
+  }
+
+  @Test public void cancel_beforeEnqueue_shouldFail() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    final Call<Result> call = direct.getReverse(1, 2);
+    call.cancel();
+    final TestCallback callback = new TestCallback();
+    call.enqueue(callback);
+    assertThat(callback.latch.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(call.isCanceled()).isTrue();
+    assertThat(callback.failure).isInstanceOf(IOException.class);
+  }
+
+  @Test public void clone_shouldCreateUnexecutedCall() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setBody("{}"));
+    final Call<Result> call = direct.getPlace("osm:venue:1");
+    call.execute();
+    final Call<Result> clone = call.clone();
+    assertThat(clone.isExecuted()).isFalse();
+    assertThat(clone.request().url()).isEqualTo(call.request().url());
+    assertThat(clone.execute().isSuccessful()).isTrue();
+  }
+
+  private static void assertSameRequest(Call<Result> actual, Call<Result> expected) {
+    assertThat(actual.request().method()).isEqualTo(expected.request().method());
+    assertThat(actual.request().url()).isEqualTo(expected.request().url());
+  }
+
+  private static class CountingExecutor implements Executor {
+    private int count;
+
+    @Override public void execute(Runnable command) {
+      count++;
+      command.run();
+    }
+  }
+
+  private static class TestCallback implements Callback<Result> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private Response<Result> response;
+    private Throwable failure;
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      this.response = response;
+      latch.countDown();
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      failure = t;
+      latch.countDown();
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.mapzen.pelias.futures;
+
+import com.mapzen.pelias.BoundingBox;
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PeliasService;
+import com.mapzen.pelias.QuerySpec;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import retrofit2.Call;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * Blocking variants of the {@link Pelias} requests. Each request executes on the calling thread,
+ * without a dispatcher thread or callback, which suits bulk jobs running on their own worker or
+ * virtual threads.
+ *
+ * <p>Unsuccessful status codes throw a {@link HttpException}. A request exceeding the timeout is
+ * canceled and throws an {@link InterruptedIOException}. To cancel requests from another thread
+ * use {@link PeliasFutures} instead.
+ *
+ * <p>Requests are executed on calls created on {@link Pelias#getService()}, so they are not
+ * queued by its request scheduler, measured in its network quality, answered from its viewport
+ * cache or subject to its deadlines. Use {@link PeliasFutures} for requests which should be.
+ */
+public class BlockingPelias {
+  private final Pelias pelias;
+  private volatile long timeoutMillis;
+
+  /**
+   * Constructs a blocking client issuing requests through the given {@link Pelias}.
+   */
+  public BlockingPelias(Pelias pelias) {
+    this.pelias = pelias;
+  }
+
+  /**
+   * Set how long a request may take before it is canceled, or 0 for no timeout beyond the http
+   * client's own. Defaults to 0.
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    timeoutMillis = unit.toMillis(timeout);
+  }
+
+  /**
+   * Requests autocomplete suggestions focused on the lat/lon.
+   */
+  public Result suggest(String query, double lat, double lon) throws IOException {
+    return execute(service().getSuggest(query, lat, lon));
+  }
+
+  /**
+   * Requests autocomplete suggestions focused on the lat/lon and limited to the layers, country
+   * and sources.
+   */
+  public Result suggest(String query, double lat, double lon, String layers, String country,
+      String sources) throws IOException {
+    return execute(service().getSuggest(query, lat, lon, layers, country, sources));
+  }
+
+  /**
+   * Requests search results for the query without a focus. A service injected into
+   * {@link Pelias} must implement {@link com.mapzen.pelias.PeliasQueryService} for this.
+   */
+  public Result search(String query) throws IOException {
+    return execute(pelias.getQueryService()
+        .search(QuerySpec.builder().text(query).build().getParameters()));
+  }
+
+  /**
+   * Requests search results for the query focused on the lat/lon.
+   */
+  public Result search(String query, double lat, double lon) throws IOException {
+    return execute(service().getSearch(query, lat, lon));
+  }
+
+  /**
+   * Requests search results for the query within the bounding box.
+   */
+  public Result search(String query, BoundingBox box) throws IOException {
+    return execute(service().getSearch(query, box.getMinLat(), box.getMinLon(),
+        box.getMaxLat(), box.getMaxLon()));
+  }
+
+  /**
+   * Issues a reverse geocode request for the lat/lon.
+   */
+  public Result reverse(double lat, double lon) throws IOException {
+    return execute(service().getReverse(lat, lon));
+  }
+
+  /**
+   * Issues a reverse geocode request for the lat/lon limited to the sources.
+   */
+  public Result reverse(double lat, double lon, String sources) throws IOException {
+    return execute(service().getReverse(lat, lon, sources));
+  }
+
+  /**
+   * Issues a place request for a global identifier.
+   */
+  public Result place(String gid) throws IOException {
+    return execute(service().getPlace(gid));
+  }
+
+  /**
+   * Executes a call created on {@link Pelias#getService()} and returns its body.
+   */
+  public Result execute(final Call<Result> call) throws IOException {
+    final AtomicBoolean timedOut = new AtomicBoolean();
+    final ScheduledFuture<?> timer = Timeouts.schedule(() -> {
+      timedOut.set(true);
+      call.cancel();
+    }, timeoutMillis);
+    try {
+      final Response<Result> response = call.execute();
+      if (!response.isSuccessful()) {
+        throw new HttpException(response);
+      }
+      return response.body();
+    } catch (IOException e) {
+      if (timedOut.get()) {
+        final InterruptedIOException timeout = new InterruptedIOException("timeout");
+        timeout.initCause(e);
+        throw timeout;
+      }
+      throw e;
+    } finally {
+      if (timer != null) {
+        timer.cancel(false);
+      }
+    }
+  }
+
+  private PeliasService service() {
+    return pelias.getService();
+  }
+}
@@ -0,0 +1,190 @@
+package com.mapzen.pelias.futures;
+
+import com.mapzen.pelias.BoundingBox;
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.QuerySpec;
+import com.mapzen.pelias.gson.Result;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * {@link CompletableFuture} variants of the {@link Pelias} requests, for composing requests on
+ * JVM worker threads without bridging callbacks. Requests are issued through the {@link Pelias}
+ * request methods, so they take part in its request scheduler, network quality measurements and
+ * viewport cache like callback requests do, and futures complete on its callback executor. Calls
+ * created on {@link Pelias#getService()} and passed to {@link #enqueue(Call)} bypass all of
+ * these.
+ *
+ * <p>Unsuccessful status codes complete the future with a {@link HttpException} and timeouts with
+ * a {@link TimeoutException}. Canceling a returned future, or timing out, cancels the underlying
+ * {@link Call}. Futures derived with {@code thenApply} and similar do not propagate cancellation,
+ * so keep a reference to the returned future to cancel it.
+ */
+public class PeliasFutures {
+  private final Pelias pelias;
+  private volatile long timeoutMillis;
+
+  /**
+   * Constructs futures issuing requests through the given {@link Pelias}.
+   */
+  public PeliasFutures(Pelias pelias) {
+    this.pelias = pelias;
+  }
+
+  /**
+   * Set how long a request may take before its future fails with a {@link TimeoutException}, or 0
+   * for no timeout beyond the http client's own. Defaults to 0.
+   */
+  public void setTimeout(long timeout, TimeUnit unit) {
+    timeoutMillis = unit.toMillis(timeout);
+  }
+
+  /**
+   * Requests autocomplete suggestions focused on the lat/lon.
+   */
+  public CompletableFuture<Result> suggest(String query, double lat, double lon) {
+    return request(callback -> pelias.suggest(query, lat, lon, callback));
+  }
+
+  /**
+   * Requests autocomplete suggestions focused on the lat/lon and limited to the layers, country
+   * and sources.
+   */
+  public CompletableFuture<Result> suggest(String query, double lat, double lon, String layers,
+      String country, String sources) {
+    final QuerySpec spec = QuerySpec.builder()
+        .text(query)
+        .focusPoint(lat, lon)
+        .layers(layers)
+        .boundaryCountry(country)
+        .sources(sources)
+        .build();
+    return request(callback -> pelias.suggest(spec, callback));
+  }
+
+  /**
+   * Requests search results for the query without a focus. A service injected into
+   * {@link Pelias} must implement {@link com.mapzen.pelias.PeliasQueryService} for this.
+   */
+  public CompletableFuture<Result> search(String query) {
+    final QuerySpec spec = QuerySpec.builder().text(query).build();
+    return request(callback -> pelias.search(spec, callback));
+  }
+
+  /**
+   * Requests search results for the query focused on the lat/lon.
+   */
+  public CompletableFuture<Result> search(String query, double lat, double lon) {
+    return request(callback -> pelias.search(query, lat, lon, callback));
+  }
+
+  /**
+   * Requests search results for the query within the bounding box.
+   */
+  public CompletableFuture<Result> search(String query, BoundingBox box) {
+    return request(callback -> pelias.search(query, box, callback));
+  }
+
+  /**
+   * Issues a reverse geocode request for the lat/lon.
+   */
+  public CompletableFuture<Result> reverse(double lat, double lon) {
+    return request(callback -> pelias.reverse(lat, lon, callback));
+  }
+
+  /**
+   * Issues a reverse geocode request for the lat/lon limited to the sources.
+   */
+  public CompletableFuture<Result> reverse(double lat, double lon, String sources) {
+    return request(callback -> pelias.reverse(lat, lon, sources, callback));
+  }
+
+  /**
+   * Issues a place request for a global identifier.
+   */
+  public CompletableFuture<Result> place(String gid) {
+    return request(callback -> pelias.place(gid, callback));
+  }
+
+  /**
+   * Enqueues a call created on {@link Pelias#getService()} and returns its future. The call is
+   * sent directly, bypassing the request scheduler, measurements and caches of {@link Pelias}.
+   */
+  public CompletableFuture<Result> enqueue(final Call<Result> call) {
+    return request(callback -> {
+      call.enqueue(callback);
+      return call;
+    });
+  }
+
+  /**
+   * Issues a request with a callback completing the returned future.
+   */
+  private CompletableFuture<Result> request(Function<Callback<Result>, Call<Result>> issue) {
+    final CallFuture future = new CallFuture();
+    future.setCall(issue.apply(new Callback<Result>() {
+      @Override public void onResponse(Call<Result> call, Response<Result> response) {
+        if (response.isSuccessful()) {
+          future.complete(response.body());
+        } else {
+          future.completeExceptionally(new HttpException(response));
+        }
+      }
+
+      @Override public void onFailure(Call<Result> call, Throwable t) {
+        future.completeExceptionally(t);
+      }
+    }));
+
+    final long timeout = timeoutMillis;
+    final ScheduledFuture<?> timer = Timeouts.schedule(() -> {
+      if (future.completeExceptionally(
+          new TimeoutException("No response within " + timeout + " ms"))) {
+        future.cancelCall();
+      }
+    }, timeout);
+    if (timer != null) {
+      future.whenComplete((result, t) -> timer.cancel(false));
+    }
+    return future;
+  }
+
+  /**
+   * Future which cancels its call when canceled. The call is set once issued; a response may
+   * complete the future before that.
+   */
+  private static final class CallFuture extends CompletableFuture<Result> {
+    private volatile Call<Result> call;
+
+    void setCall(Call<Result> call) {
+      this.call = call;
+      if (isCancelled()) {
+        call.cancel();
+      }
+    }
+
+    void cancelCall() {
+      final Call<Result> current = call;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+
+    @Override public boolean cancel(boolean mayInterruptIfRunning) {
+      final boolean canceled = super.cancel(mayInterruptIfRunning);
+      if (canceled) {
+        cancelCall();
+      }
+      return canceled;
+    }
+  }
+}
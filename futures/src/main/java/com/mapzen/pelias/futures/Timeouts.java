@@ -0,0 +1,29 @@
+package com.mapzen.pelias.futures;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared daemon timer which cancels calls that exceed their timeout.
+ */
+final class Timeouts {
+  private static final ScheduledExecutorService TIMER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Pelias timeouts");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private Timeouts() {
+  }
+
+  /**
+   * Runs {@code task} after {@code millis}, or returns null without scheduling anything when
+   * {@code millis} is not positive.
+   */
+  static ScheduledFuture<?> schedule(Runnable task, long millis) {
+    return millis > 0 ? TIMER.schedule(task, millis, TimeUnit.MILLISECONDS) : null;
+  }
+}
@@ -0,0 +1,55 @@
+package com.mapzen.pelias.futures;
+
+import com.mapzen.pelias.Pelias;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import static org.fest.assertions.api.Assertions.assertThat;
+import retrofit2.HttpException;
+
+public class BlockingPeliasTest {
+  private MockWebServer server;
+  private BlockingPelias blocking;
+
+  @Before public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    blocking = new BlockingPelias(new Pelias(server.url("/").toString()));
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void search_shouldReturnResult() throws Exception {
+    server.enqueue(new MockResponse().setBody("{\"type\":\"FeatureCollection\"}"));
+    assertThat(blocking.search("cafe", 1, 2).getType()).isEqualTo("FeatureCollection");
+    assertThat(server.takeRequest().getPath()).startsWith("/v1/search?text=cafe");
+  }
+
+  @Test(expected = HttpException.class)
+  public void reverse_error_shouldThrowHttpException() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(404));
+    blocking.reverse(1, 2, "osm");
+  }
+
+  @Test public void suggest_timeout_shouldThrowAndCancel() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(2, TimeUnit.SECONDS));
+    blocking.setTimeout(100, TimeUnit.MILLISECONDS);
+    final long start = System.nanoTime();
+    try {
+      blocking.suggest("cafe", 1, 2);
+      throw new AssertionError("Expected timeout");
+    } catch (InterruptedIOException expected) {
+      assertThat(expected.getMessage()).isEqualTo("timeout");
+    }
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1500);
+  }
+}
@@ -0,0 +1,117 @@
+package com.mapzen.pelias.futures;
+
+import com.mapzen.pelias.BoundingBox;
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PeliasService;
+import com.mapzen.pelias.ViewportCache;
+import com.mapzen.pelias.gson.Result;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+
+public class PeliasFuturesTest {
+  private MockWebServer server;
+  private PeliasFutures futures;
+
+  private Pelias pelias;
+
+  @Before public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    pelias = new Pelias(server.url("/").toString());
+    futures = new PeliasFutures(pelias);
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void suggest_shouldCompleteWithResult() throws Exception {
+    server.enqueue(new MockResponse().setBody("{\"type\":\"FeatureCollection\"}"));
+    assertThat(futures.suggest("cafe", 1, 2).get(5, TimeUnit.SECONDS).getType())
+        .isEqualTo("FeatureCollection");
+    assertThat(server.takeRequest().getPath()).startsWith("/v1/autocomplete?text=cafe");
+  }
+
+  @Test public void suggest_shouldBeMeasuredByPelias() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    futures.suggest("cafe", 1, 2).get(5, TimeUnit.SECONDS);
+    assertThat(pelias.getNetworkQuality().getSampleCount()).isEqualTo(1);
+  }
+
+  @Test public void suggest_filtered_shouldSendFilters() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    futures.suggest("cafe", 1, 2, "venue", "USA", null).get(5, TimeUnit.SECONDS);
+    final String path = server.takeRequest().getPath();
+    assertThat(path).contains("layers=venue").contains("boundary.country=USA");
+    assertThat(path).doesNotContain("sources");
+  }
+
+  @Test public void search_boundingBox_shouldUseViewportCache() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    final ViewportCache cache = new ViewportCache();
+    pelias.setViewportCache(cache);
+    futures.search("cafe", new BoundingBox(1, 2, 3, 4)).get(5, TimeUnit.SECONDS);
+    futures.search("cafe", new BoundingBox(1.5, 2.5, 2.5, 3.5)).get(5, TimeUnit.SECONDS);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test public void search_boundingBox_shouldRequestBoundary() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}"));
+    futures.search("cafe", new BoundingBox(1, 2, 3, 4)).get(5, TimeUnit.SECONDS);
+    assertThat(server.takeRequest().getPath()).contains("focus.viewport.min_lat=1.0");
+  }
+
+  @Test public void reverse_error_shouldCompleteWithHttpException() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(500));
+    try {
+      futures.reverse(1, 2).get(5, TimeUnit.SECONDS);
+      throw new AssertionError("Expected failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(HttpException.class);
+      assertThat(((HttpException) e.getCause()).code()).isEqualTo(500);
+    }
+  }
+
+  @Test public void place_timeout_shouldCompleteWithTimeoutException() throws Exception {
+    server.enqueue(new MockResponse().setBody("{}").setBodyDelay(2, TimeUnit.SECONDS));
+    futures.setTimeout(100, TimeUnit.MILLISECONDS);
+    final CompletableFuture<Result> future = futures.place("osm:venue:1");
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      throw new AssertionError("Expected failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(TimeoutException.class);
+    }
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void cancel_shouldCancelCall() throws Exception {
+    final PeliasService service = mock(PeliasService.class);
+    final Call<Result> call = mock(Call.class);
+    when(service.getPlace("osm:venue:1")).thenReturn(call);
+    final CompletableFuture<Result> future =
+        new PeliasFutures(new Pelias(service)).place("osm:venue:1");
+    verify(call).enqueue(any(Callback.class));
+    assertThat(future.cancel(true)).isTrue();
+    verify(call).cancel();
+  }
+}
@@ -13,14 +13,18 @@ import android.util.Log;
 
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 
 import static android.provider.BaseColumns._ID;
 
 /**
  * Used by {@link PeliasSearchView} to facilitate storing/retrieving saved search results.
+ *
+ * <p>Safe to share between the UI thread and background threads persisting it. Writers replace an
+ * immutable snapshot of the terms under a lock, and readers work on the snapshot current when they
+ * start without locking, so iteration never sees a concurrent modification.
  */
 public final class SavedSearch {
 
@@ -37,14 +41,15 @@ public final class SavedSearch {
 
   public static final String JSON_STRING_EMPTY_ARRAY = "[]";
 
-  private LinkedList<Member> store = new LinkedList<>();
+  private final Object writeLock = new Object();
+  private volatile Snapshot store = Snapshot.EMPTY;
 
   /**
    * Helps with serializing/deserializing search terms.
    */
   public class Member {
-    private String term;
-    private Parcel payload;
+    private final String term;
+    private final Parcel payload;
 
     /**
      * Constructs a new object with the given term and payload.
@@ -58,7 +63,7 @@ public final class SavedSearch {
      * Constructs a new object from a search term.
      */
     public Member(String term) {
-      this.term = term;
+      this(term, null);
     }
 
     /**
@@ -119,20 +124,28 @@ public final class SavedSearch {
 
   /**
    * Stores the term and payload. Creates a {@link Member} object from the term and payload and
-   * inserts it at the beginning of the linked list. Also truncates the number of stored terms so
-   * that it is not greater than {@link MAX_ENTRIES}
+   * inserts it at the beginning of the list, replacing any member with the same term. Also
+   * truncates the number of stored terms so that it is not greater than {@link MAX_ENTRIES}
    */
   public int store(String term, Parcel payload) {
-    truncate();
-    Member member = new Member(term, payload);
-    store.remove(member);
-    store.addFirst(member);
+    final Member member = new Member(term, payload);
+    synchronized (writeLock) {
+      final List<Member> members = store.members;
+      final List<Member> updated = new ArrayList<>(Math.min(members.size() + 1, MAX_ENTRIES));
+      updated.add(member);
+      for (int i = 0; i < members.size() && updated.size() < MAX_ENTRIES; i++) {
+        if (!members.get(i).equals(member)) {
+          updated.add(members.get(i));
+        }
+      }
+      store = new Snapshot(updated);
+    }
     return 0;
   }
 
   /**
    * Stores the term. Creates a {@link Member} object from the term and inserts it at the beginning
-   * of the linked list. Also truncates the number of stored terms so that it is not greater than
+   * of the list. Also truncates the number of stored terms so that it is not greater than
    * {@link MAX_ENTRIES}
    */
   public int store(String term) {
@@ -143,7 +156,7 @@ public final class SavedSearch {
    * Returns the search term at the given index.
    */
   public Member get(int i) {
-    return store.get(i);
+    return store.members.get(i);
   }
 
   /**
@@ -155,27 +168,31 @@ public final class SavedSearch {
 
   /**
    * Returns the store's iterator if the store's size is smaller than the requested size, otherwise
-   * returns an iterator for a sublist of the store.
+   * returns an iterator for a sublist of the store. The iterator reads a snapshot and does not
+   * support removal.
    */
   public Iterator<Member> getSubIterator(int size) {
-    if (store.size() == 0 || store.size() < size) {
-      return store.iterator();
+    final List<Member> members = store.members;
+    if (members.size() == 0 || members.size() < size) {
+      return members.iterator();
     }
-    return store.subList(0, size).iterator();
+    return members.subList(0, size).iterator();
   }
 
   /**
    * Clears the store.
    */
   public void clear() {
-    store.clear();
+    synchronized (writeLock) {
+      store = Snapshot.EMPTY;
+    }
   }
 
   /**
    * Returns whether or not the store is empty.
    */
   public boolean isEmpty() {
-    return store.size() == 0;
+    return store.members.isEmpty();
   }
 
   /**
@@ -183,7 +200,7 @@ public final class SavedSearch {
    */
   public String serialize() {
     JSONArray jsonArray = new JSONArray();
-    for (Member member : store) {
+    for (Member member : store.members) {
       jsonArray.put(member.toJson());
     }
     return jsonArray.toString();
@@ -202,8 +219,7 @@ public final class SavedSearch {
       return;
     }
 
-    store.clear();
-
+    final List<Member> members = new ArrayList<>();
     JSONArray jsonArray;
     try {
       jsonArray = new JSONArray(serializedSavedSearch);
@@ -218,63 +234,95 @@ public final class SavedSearch {
               rawPayload.getBytes("ISO-8859-1").length);
           payload.setDataPosition(0);
         }
-        store.add(new Member(term, payload));
+        members.add(new Member(term, payload));
       }
     } catch (UnsupportedEncodingException | JSONException e) {
       Log.e(TAG, "Unable to deserialize saved search terms", e);
     }
+
+    synchronized (writeLock) {
+      store = new Snapshot(members);
+    }
   }
 
   /**
    * Returns a {@link Cursor} for the store.
    */
   public Cursor getCursor() {
+    final List<Member> members = store.members;
     final MatrixCursor cursor = new MatrixCursor(COLUMNS);
-    for (int i = 0; i < store.size(); i++) {
-      cursor.addRow(new Object[] { i, store.get(i).getTerm() });
+    for (int i = 0; i < members.size(); i++) {
+      cursor.addRow(new Object[] { i, members.get(i).getTerm() });
     }
 
     return cursor;
   }
 
   /**
-   * Returns a list of saved search terms (text only).
+   * Returns an unmodifiable list of saved search terms (text only).
    */
   public List<String> getTerms() {
-    final ArrayList<String> terms = new ArrayList<>();
-    for (Member member : store) {
-      terms.add(member.getTerm());
-    }
-    return terms;
+    return store.getTerms();
   }
 
   /**
-   * Returns a list of {@link AutoCompleteItem} objects with optional payload.
+   * Returns an unmodifiable list of {@link AutoCompleteItem} objects with optional payload. The
+   * list is built once per change to the store and shared between readers.
    */
   public List<AutoCompleteItem> getItems() {
-    final ArrayList<AutoCompleteItem> items = new ArrayList<>();
-    for (Member member : store) {
-      final String term = member.getTerm();
-      final Parcel parcel = member.getPayload();
-      if (parcel != null) {
-        items.add(new AutoCompleteItem(parcel));
-      } else {
-        items.add(new AutoCompleteItem(term));
-      }
-    }
-    return items;
-  }
-
-  private void truncate() {
-    if (store.size() >= MAX_ENTRIES) {
-      store.removeLast();
-    }
+    return store.getItems();
   }
 
   /**
    * Returns the size of the store.
    */
   public int size() {
-    return store.size();
+    return store.members.size();
+  }
+
+  /**
+   * Immutable list of members, with the views of it readers ask for built on first use.
+   */
+  private static final class Snapshot {
+    static final Snapshot EMPTY = new Snapshot(Collections.<Member>emptyList());
+
+    final List<Member> members;
+    private List<String> terms;
+    private List<AutoCompleteItem> items;
+
+    Snapshot(List<Member> members) {
+      this.members = Collections.unmodifiableList(members);
+    }
+
+    synchronized List<String> getTerms() {
+      if (terms == null) {
+        final ArrayList<String> list = new ArrayList<>(members.size());
+        for (Member member : members) {
+          list.add(member.getTerm());
+        }
+        terms = Collections.unmodifiableList(list);
+      }
+      return terms;
+    }
+
+    /**
+     * Payloads are parcels whose read position is shared, so items are only ever built from them
+     * here, under the snapshot's lock.
+     */
+    synchronized List<AutoCompleteItem> getItems() {
+      if (items == null) {
+        final ArrayList<AutoCompleteItem> list = new ArrayList<>(members.size());
+        for (Member member : members) {
+          final Parcel parcel = member.getPayload();
+          if (parcel != null) {
+            list.add(new AutoCompleteItem(parcel));
+          } else {
+            list.add(new AutoCompleteItem(member.getTerm()));
+          }
+        }
+        items = Collections.unmodifiableList(list);
+      }
+      return items;
+    }
   }
 }
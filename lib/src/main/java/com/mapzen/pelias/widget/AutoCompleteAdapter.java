@@ -6,6 +6,8 @@ import android.view.ViewGroup;
 import android.widget.ArrayAdapter;
 import android.widget.TextView;
 
+import java.util.Collection;
+
 /**
  * Adapter to be used with {@link AutoCompleteListView}.
  */
@@ -26,6 +28,16 @@ public class AutoCompleteAdapter extends ArrayAdapter<AutoCompleteItem> {
     return textView;
   }
 
+  /**
+   * Replaces the items with a single change notification.
+   */
+  public void setItems(Collection<? extends AutoCompleteItem> items) {
+    setNotifyOnChange(false);
+    clear();
+    addAll(items);
+    notifyDataSetChanged();
+  }
+
   public void setIcon(int resId) {
     iconId = resId;
   }
@@ -1,10 +1,18 @@
 package com.mapzen.pelias.widget;
 
+import com.mapzen.pelias.AdaptiveSuggestPolicy;
+import com.mapzen.pelias.NegativeCache;
 import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PrefixRefiner;
+import com.mapzen.pelias.ProcessedCallback;
 import com.mapzen.pelias.R;
+import com.mapzen.pelias.ResultProcessor;
+import com.mapzen.pelias.SampledLocationProvider;
 import com.mapzen.pelias.SavedSearch;
 import com.mapzen.pelias.SimpleFeature;
+import com.mapzen.pelias.SuggestController;
 import com.mapzen.pelias.SuggestFilter;
+import com.mapzen.pelias.SuggestStats;
 import com.mapzen.pelias.gson.Feature;
 import com.mapzen.pelias.gson.Result;
 
@@ -14,6 +22,7 @@ import android.os.ResultReceiver;
 import android.support.v7.widget.SearchView;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.TypedValue;
 import android.view.View;
 import android.view.animation.Animation;
 import android.view.inputmethod.EditorInfo;
@@ -26,10 +35,10 @@ import android.widget.ListView;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static android.view.animation.AnimationUtils.loadAnimation;
-import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
@@ -40,6 +49,11 @@ import retrofit2.Response;
 public class PeliasSearchView extends SearchView implements SearchView.OnQueryTextListener {
   public static final String TAG = PeliasSearchView.class.getSimpleName();
 
+  /**
+   * Rows assumed visible when limiting suggestions before the list has been laid out.
+   */
+  public static final int DEFAULT_VISIBLE_ROWS = 6;
+
   private static final AutoCompleteTextViewReflector HIDDEN_METHOD_INVOKER =
       new AutoCompleteTextViewReflector();
 
@@ -74,6 +88,13 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
     }
   };
 
+  private Runnable suggestRunnable = new Runnable() {
+    @Override public void run() {
+      suggestController.onTextChanged(pendingSuggestText);
+    }
+  };
+  private String pendingSuggestText;
+
   private EditText editText;
   private ListView autoCompleteListView;
   private SavedSearch savedSearch;
@@ -90,38 +111,43 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
   private OnBackPressListener onBackPressListener;
   private boolean cacheSearchResults = true;
   private boolean autoKeyboardShow = true;
-  private SuggestFilter suggestFilter;
+  private final SuggestController suggestController = new SuggestController();
   private boolean checkHideAutocompleteList = false;
 
-  private Callback<Result> suggestCallback = new Callback<Result>() {
-    @Override public void onResponse(Call<Result> call, Response<Result> response) {
-      final ArrayList<AutoCompleteItem> items = new ArrayList<>();
-      if (response != null && response.body() != null) {
-        final List<Feature> features = response.body().getFeatures();
-        if (features != null) {
-          for (Feature feature : features) {
-            items.add(new AutoCompleteItem(SimpleFeature.fromFeature(feature)));
+  /**
+   * Builds autocomplete items from a response. Runs on the background thread the response is read
+   * on, so that the main thread only swaps the finished list into the adapter.
+   */
+  static final ResultProcessor<List<AutoCompleteItem>> SUGGESTION_PROCESSOR =
+      new ResultProcessor<List<AutoCompleteItem>>() {
+        @Override public List<AutoCompleteItem> process(Result result) {
+          final ArrayList<AutoCompleteItem> items = new ArrayList<>();
+          if (result != null && result.getFeatures() != null) {
+            for (Feature feature : result.getFeatures()) {
+              items.add(new AutoCompleteItem(SimpleFeature.fromFeature(feature)));
+            }
           }
+          return Collections.unmodifiableList(items);
         }
-      }
-
-      if (autoCompleteListView == null) {
-        return;
-      }
+      };
 
-      final AutoCompleteAdapter adapter = (AutoCompleteAdapter) autoCompleteListView.getAdapter();
-      adapter.clear();
-      adapter.addAll(items);
-      adapter.notifyDataSetChanged();
-    }
+  private ProcessedCallback<List<AutoCompleteItem>> suggestionsCallback =
+      new ProcessedCallback<List<AutoCompleteItem>>() {
+        @Override public void onResult(List<AutoCompleteItem> items) {
+          showSuggestions(items);
+        }
 
-    @Override public void onFailure(Call<Result> call, Throwable t) {
-      Log.e(TAG, "Unable to fetch autocomplete results", t);
-    }
-  };
+        @Override public void onFailure(Throwable t) {
+          Log.e(TAG, "Unable to fetch autocomplete results", t);
+        }
+      };
 
   private SearchSubmitListener searchSubmitListener;
   private boolean dismissKeyboardOnListScroll = false;
+  private boolean limitSuggestionsToVisibleRows = false;
+  private boolean loadMoreSuggestionsOnScroll = false;
+  private AdaptiveSuggestPolicy adaptiveSuggestPolicy;
+  private NegativeCache negativeCache;
 
   /**
    * Constructs a new search view given a context.
@@ -140,6 +166,8 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
   }
 
   private void setup() {
+    suggestController.setCallback(SUGGESTION_PROCESSOR, suggestionsCallback);
+    suggestController.setTag(this);
     disableAutoComplete = false;
     disableDefaultSoftKeyboardBehaviour();
     setOnQueryTextListener(this);
@@ -163,7 +191,15 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
    * @param suggestFilter
    */
   public void setSuggestFilter(SuggestFilter suggestFilter) {
-    this.suggestFilter = suggestFilter;
+    suggestController.setSuggestFilter(suggestFilter);
+  }
+
+  /**
+   * Returns counters for the autocomplete requests issued by this view, including how many
+   * responses were superseded by further typing before they arrived.
+   */
+  public SuggestStats getSuggestStats() {
+    return suggestController.getStats();
   }
 
   /**
@@ -193,6 +229,10 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
           }
           onFocusChange(PeliasSearchView.this, false);
         }
+        if (loadMoreSuggestionsOnScroll && scrollState != SCROLL_STATE_IDLE && i2 > 0
+            && i + i1 >= i2) {
+          suggestController.loadMore();
+        }
       }
     });
   }
@@ -225,7 +265,107 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
     dismissKeyboardOnListScroll = dismissOnScroll;
   }
 
+  /**
+   * Optionally request only as many autocomplete results as fit in the autocomplete list, which
+   * shrinks responses and the time spent parsing them on slow networks.
+   * @param limit
+   */
+  public void setLimitSuggestionsToVisibleRows(boolean limit) {
+    limitSuggestionsToVisibleRows = limit;
+    if (!limit) {
+      suggestController.setResultSize(0);
+    }
+  }
+
+  /**
+   * Optionally request more autocomplete results when the user scrolls to the end of a list
+   * limited with {@link #setLimitSuggestionsToVisibleRows(boolean)}.
+   * @param loadMore
+   */
+  public void setLoadMoreSuggestionsOnScroll(boolean loadMore) {
+    loadMoreSuggestionsOnScroll = loadMore;
+  }
+
+  /**
+   * Optionally show the last suggestions filtered and re-ranked for longer text while the request
+   * for it is in flight, replaced by the server's results once they arrive. Off by default, so
+   * that only server results are shown.
+   * @param refine
+   */
+  public void setRefineSuggestionsLocally(boolean refine) {
+    suggestController.setPrefixRefiner(refine ? new PrefixRefiner() : null);
+  }
+
+  /**
+   * Optionally skip requests for text extending text the server recently returned no suggestions
+   * for, showing an empty list instead. Entries are rechecked after
+   * {@link NegativeCache#DEFAULT_RECHECK_MILLIS}; until then results added on the server, or
+   * missing because of a server problem, are not shown. Off by default.
+   * @param skip
+   */
+  public void setSkipKnownEmptySuggestions(boolean skip) {
+    negativeCache = skip ? new NegativeCache() : null;
+    suggestController.setNegativeCache(negativeCache);
+  }
+
+  /**
+   * Forgets the text known to have no suggestions, for example after the device reconnected.
+   */
+  public void clearKnownEmptySuggestions() {
+    if (negativeCache != null) {
+      negativeCache.clear();
+    }
+  }
+
+  /**
+   * Optionally adapt autocomplete to the network: on slow networks typing is debounced, longer
+   * text is required, fewer results are requested and, when the latency budget is exceeded,
+   * no requests are sent: suggestions come from saved searches, or from the last results when
+   * {@link #setRefineSuggestionsLocally(boolean)} is on. Set to null to request suggestions for
+   * every change.
+   * @param policy
+   */
+  public void setAdaptiveSuggestPolicy(AdaptiveSuggestPolicy policy) {
+    adaptiveSuggestPolicy = policy;
+    if (policy == null) {
+      suggestController.setMinQueryLength(SuggestController.DEFAULT_MIN_QUERY_LENGTH);
+      if (!limitSuggestionsToVisibleRows) {
+        suggestController.setResultSize(0);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of rows the autocomplete list shows at once, counting a partially visible
+   * last row, or {@link #DEFAULT_VISIBLE_ROWS} if the list has not been laid out.
+   */
+  int getVisibleAutoCompleteRows() {
+    if (autoCompleteListView == null || autoCompleteListView.getHeight() <= 0) {
+      return DEFAULT_VISIBLE_ROWS;
+    }
+    int rowHeight = 0;
+    if (autoCompleteListView.getChildCount() > 0) {
+      rowHeight = autoCompleteListView.getChildAt(0).getHeight();
+    }
+    if (rowHeight <= 0) {
+      final TypedValue value = new TypedValue();
+      if (getContext().getTheme().resolveAttribute(android.R.attr.listPreferredItemHeight, value,
+          true)) {
+        rowHeight = (int) value.getDimension(getResources().getDisplayMetrics());
+      }
+    }
+    if (rowHeight <= 0) {
+      return DEFAULT_VISIBLE_ROWS;
+    }
+    final int height = autoCompleteListView.getHeight();
+    return (height + rowHeight - 1) / rowHeight;
+  }
+
   private void handleSearchGainingFocus() {
+    // Each time the view gains focus a new typing session starts with a fresh position sample.
+    if (pelias != null && pelias.getLocationProvider() instanceof SampledLocationProvider) {
+      ((SampledLocationProvider) pelias.getLocationProvider()).newSession();
+    }
     setAutoCompleteAdapterIcon(recentSearchIconResourceId);
     loadSavedSearches();
     safeShowAutocompleteList();
@@ -300,7 +440,7 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
   @Override public boolean onQueryTextSubmit(String query) {
     if (pelias != null) {
       if (searchSubmitListener == null || searchSubmitListener.searchOnSearchKeySubmit()) {
-        pelias.search(query, callback);
+        pelias.search(query, pelias.tag(this, callback));
       }
     }
 
@@ -319,21 +459,62 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
   }
 
   @Override public boolean onQueryTextChange(String text) {
+    removeCallbacks(suggestRunnable);
     if (text.isEmpty() || disableAutoComplete) {
+      if (!disableAutoComplete) {
+        suggestController.cancel();
+      }
       setAutoCompleteAdapterIcon(autoCompleteIconResourceId);
       disableAutoComplete = false;
       return false;
-    } else if (text.length() < 3) {
+    }
+
+    applySuggestPolicy();
+    if (text.length() < suggestController.getMinQueryLength()) {
+      suggestController.onTextChanged(text);
       setAutoCompleteAdapterIcon(recentSearchIconResourceId);
       loadSavedSearches();
+    } else if (adaptiveSuggestPolicy != null && adaptiveSuggestPolicy.isLocalOnly()) {
+      // Too slow to wait for the server, the last results refined locally or saved searches.
+      if (suggestController.onTextChangedLocally(text)) {
+        setAutoCompleteAdapterIcon(autoCompleteIconResourceId);
+      } else {
+        setAutoCompleteAdapterIcon(recentSearchIconResourceId);
+        loadSavedSearches();
+      }
     } else {
       setAutoCompleteAdapterIcon(autoCompleteIconResourceId);
-      fetchAutoCompleteSuggestions(text);
+      final long debounceMillis =
+          adaptiveSuggestPolicy != null ? adaptiveSuggestPolicy.getDebounceMillis() : 0;
+      if (debounceMillis > 0) {
+        pendingSuggestText = text;
+        postDelayed(suggestRunnable, debounceMillis);
+      } else {
+        suggestController.onTextChanged(text);
+      }
     }
 
     return false;
   }
 
+  /**
+   * Sizes requests to the visible rows and the adaptive policy, and applies the policy's minimum
+   * text length.
+   */
+  private void applySuggestPolicy() {
+    int size = limitSuggestionsToVisibleRows ? getVisibleAutoCompleteRows() : 0;
+    if (adaptiveSuggestPolicy != null) {
+      suggestController.setMinQueryLength(adaptiveSuggestPolicy.getMinQueryLength());
+      final int policySize = adaptiveSuggestPolicy.getResultSize();
+      if (policySize > 0 && (size == 0 || policySize < size)) {
+        size = policySize;
+      }
+    }
+    if (limitSuggestionsToVisibleRows || adaptiveSuggestPolicy != null) {
+      suggestController.setResultSize(size);
+    }
+  }
+
   /**
    * When autocomplete is disabled, autocomplete results will not be fetched on query text changes.
    */
@@ -352,18 +533,6 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
     }
   }
 
-  private void fetchAutoCompleteSuggestions(String text) {
-    if (pelias == null) {
-      return;
-    }
-    if (suggestFilter == null) {
-      pelias.suggest(text, suggestCallback);
-    } else {
-      pelias.suggest(text, suggestFilter.getLayersFilter(), suggestFilter.getCountryFilter(),
-          suggestFilter.getSources(), suggestCallback);
-    }
-  }
-
   /**
    * Sets the saved search to be shown in the autocomplete list.
    */
@@ -392,7 +561,11 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
    * Set the pelias object to be used to query for results.
    */
   public void setPelias(Pelias pelias) {
+    if (this.pelias != null && this.pelias != pelias) {
+      this.pelias.cancelAll(this);
+    }
     this.pelias = pelias;
+    suggestController.setPelias(pelias);
   }
 
   /**
@@ -636,8 +809,31 @@ public class PeliasSearchView extends SearchView implements SearchView.OnQueryTe
     }, 150);
   }
 
-  Callback<Result> getSuggestCallback() {
-    return suggestCallback;
+  /**
+   * Cancels the requests issued by this view and its pending keyboard and focus runnables, so that
+   * nothing is delivered to a detached view and its connections are freed right away.
+   */
+  @Override protected void onDetachedFromWindow() {
+    suggestController.cancel();
+    if (pelias != null) {
+      pelias.cancelAll(this);
+    }
+    removeCallbacks(showImeRunnable);
+    removeCallbacks(hideImeRunnable);
+    removeCallbacks(backPressedRunnable);
+    removeCallbacks(suggestRunnable);
+    super.onDetachedFromWindow();
+  }
+
+  private void showSuggestions(List<AutoCompleteItem> items) {
+    if (autoCompleteListView == null) {
+      return;
+    }
+    ((AutoCompleteAdapter) autoCompleteListView.getAdapter()).setItems(items);
+  }
+
+  ProcessedCallback<List<AutoCompleteItem>> getSuggestionsCallback() {
+    return suggestionsCallback;
   }
 
 }
@@ -226,6 +226,26 @@ public class SavedSearchTest {
     assertThat(items.get(2).getSimpleFeature()).isEqualTo(getTestSimpleFeature());
   }
 
+  @Test public void getIterator_shouldReadSnapshotWhileStoring() throws Exception {
+    savedSearch.store("search1");
+    savedSearch.store("search2");
+    Iterator<SavedSearch.Member> it = savedSearch.getSubIterator(MAX_ENTRIES);
+    savedSearch.store("search3");
+    savedSearch.clear();
+    assertThat(it.next().getTerm()).isEqualTo("search2");
+    assertThat(it.next().getTerm()).isEqualTo("search1");
+    assertThat(it.hasNext()).isFalse();
+  }
+
+  @Test public void getItems_shouldBeSharedUntilStoreChanges() throws Exception {
+    savedSearch.store("term 1", payload);
+    List<AutoCompleteItem> items = savedSearch.getItems();
+    assertThat(savedSearch.getItems()).isSameAs(items);
+    savedSearch.store("term 2");
+    assertThat(savedSearch.getItems()).isNotSameAs(items);
+    assertThat(items).hasSize(1);
+  }
+
   private int countTerms(Iterator<SavedSearch.Member> results) {
     int count = 0;
     while (results.hasNext()) {
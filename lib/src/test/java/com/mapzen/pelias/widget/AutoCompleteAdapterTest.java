@@ -4,6 +4,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.robolectric.RuntimeEnvironment;
 
+import android.database.DataSetObserver;
+
+import java.util.Arrays;
+
 import static org.fest.assertions.api.Assertions.assertThat;
 
 public class AutoCompleteAdapterTest {
@@ -17,4 +21,18 @@ public class AutoCompleteAdapterTest {
   @Test public void shouldNotBeNull() throws Exception {
     assertThat(adapter).isNotNull();
   }
+
+  @Test public void setItems_shouldReplaceItemsWithSingleNotification() throws Exception {
+    final int[] changes = new int[1];
+    adapter.add(new AutoCompleteItem("old"));
+    adapter.registerDataSetObserver(new DataSetObserver() {
+      @Override public void onChanged() {
+        changes[0]++;
+      }
+    });
+    adapter.setItems(Arrays.asList(new AutoCompleteItem("one"), new AutoCompleteItem("two")));
+    assertThat(adapter.getCount()).isEqualTo(2);
+    assertThat(adapter.getItem(0).getText()).isEqualTo("one");
+    assertThat(changes[0]).isEqualTo(1);
+  }
 }
@@ -1,9 +1,12 @@
 package com.mapzen.pelias.widget;
 
+import com.mapzen.pelias.AdaptiveSuggestPolicy;
+import com.mapzen.pelias.BoundingBox;
 import com.mapzen.pelias.BuildConfig;
 import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PeliasLocationProvider;
+import com.mapzen.pelias.PeliasQueryService;
 import com.mapzen.pelias.PeliasService;
-import com.mapzen.pelias.PeliasTest;
 import com.mapzen.pelias.R;
 import com.mapzen.pelias.SavedSearch;
 import com.mapzen.pelias.SimpleFeature;
@@ -16,6 +19,7 @@ import com.mapzen.pelias.gson.Result;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
@@ -31,21 +35,27 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
 import okhttp3.Request;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.robolectric.Shadows.shadowOf;
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 import retrofit2.http.Query;
+import retrofit2.http.QueryMap;
 
 @RunWith(RobolectricTestRunner.class) @Config(constants = BuildConfig.class, sdk = 21,
     shadows = { ShadowInputMethodManager.class })
@@ -204,7 +214,7 @@ public class PeliasSearchViewTest {
   @Test public void onQueryTextSubmit_shouldFetchSearchResults() throws Exception {
     final Pelias pelias = new TestPelias();
     final TestCallback callback = new TestCallback();
-    pelias.setLocationProvider(new PeliasTest.TestLocationProvider());
+    pelias.setLocationProvider(new TestLocationProvider());
     peliasSearchView.setPelias(pelias);
     peliasSearchView.setCallback(callback);
     peliasSearchView.setQuery("query", true);
@@ -212,16 +222,133 @@ public class PeliasSearchViewTest {
     assertThat(callback.error).isNull();
   }
 
+  @Test @SuppressWarnings("unchecked")
+  public void onDetachedFromWindow_shouldCancelOutstandingRequests() throws Exception {
+    final PeliasService service = mock(PeliasService.class);
+    final Call<Result> suggestCall = mock(Call.class);
+    final Call<Result> searchCall = mock(Call.class);
+    when(service.getSuggest(anyString(), anyDouble(), anyDouble())).thenReturn(suggestCall);
+    when(service.getSearch(anyString(), anyDouble(), anyDouble(), anyDouble(), anyDouble()))
+        .thenReturn(searchCall);
+    final Pelias pelias = new Pelias(service);
+    pelias.setLocationProvider(new TestLocationProvider());
+    peliasSearchView.setPelias(pelias);
+    peliasSearchView.setQuery("query", true);
+    assertThat(pelias.getOutstanding(peliasSearchView)).isEqualTo(2);
+    peliasSearchView.onDetachedFromWindow();
+    verify(suggestCall).cancel();
+    verify(searchCall).cancel();
+    assertThat(pelias.getOutstanding(peliasSearchView)).isEqualTo(0);
+  }
+
+  @Test @SuppressWarnings("unchecked")
+  public void setLimitSuggestionsToVisibleRows_shouldRequestVisibleRows() throws Exception {
+    final QueryPeliasService service = mock(QueryPeliasService.class);
+    when(service.autocomplete(any(Map.class))).thenReturn(mock(Call.class));
+    final Pelias pelias = new Pelias(service);
+    pelias.setLocationProvider(new TestLocationProvider());
+    peliasSearchView.setPelias(pelias);
+    peliasSearchView.setAutoCompleteListView(new AutoCompleteListView(ACTIVITY));
+    peliasSearchView.setLimitSuggestionsToVisibleRows(true);
+    peliasSearchView.onQueryTextChange("query");
+    final ArgumentCaptor<Map> parameters = ArgumentCaptor.forClass(Map.class);
+    verify(service).autocomplete(parameters.capture());
+    assertThat(parameters.getValue().get("size"))
+        .isEqualTo(String.valueOf(PeliasSearchView.DEFAULT_VISIBLE_ROWS));
+  }
+
+  @Test public void setAdaptiveSuggestPolicy_overBudget_shouldNotRequest() throws Exception {
+    final QueryPeliasService service = mock(QueryPeliasService.class);
+    final Pelias pelias = new Pelias(service);
+    pelias.setLocationProvider(new TestLocationProvider());
+    for (int i = 0; i < AdaptiveSuggestPolicy.MIN_SAMPLES; i++) {
+      pelias.getNetworkQuality().record(5000, -1);
+    }
+    peliasSearchView.setPelias(pelias);
+    peliasSearchView.setAdaptiveSuggestPolicy(new AdaptiveSuggestPolicy(pelias));
+    peliasSearchView.onQueryTextChange("query");
+    verify(service, never()).getSuggest(anyString(), anyDouble(), anyDouble());
+    verify(service, never()).autocomplete(any(Map.class));
+    assertThat(peliasSearchView.getSuggestStats().getLocalOnly()).isEqualTo(1);
+  }
+
+  @Test public void onQueryTextChange_shouldNotRefineLocallyByDefault() throws Exception {
+    peliasSearchView.setPelias(refinablePelias());
+    peliasSearchView.onQueryTextChange("query");
+    peliasSearchView.onQueryTextChange("query text");
+    assertThat(peliasSearchView.getSuggestStats().getRefined()).isEqualTo(0);
+  }
+
+  @Test public void setRefineSuggestionsLocally_shouldRefineWhileInFlight() throws Exception {
+    peliasSearchView.setPelias(refinablePelias());
+    peliasSearchView.setRefineSuggestionsLocally(true);
+    peliasSearchView.onQueryTextChange("query");
+    peliasSearchView.onQueryTextChange("query text");
+    assertThat(peliasSearchView.getSuggestStats().getRefined()).isEqualTo(1);
+  }
+
+  @Test public void onQueryTextChange_shouldSendTextKnownEmptyByDefault() throws Exception {
+    final TestPelias pelias = new TestPelias();
+    pelias.setLocationProvider(new TestLocationProvider());
+    peliasSearchView.setPelias(pelias);
+    peliasSearchView.onQueryTextChange("query");
+    peliasSearchView.onQueryTextChange("query text");
+    assertThat(peliasSearchView.getSuggestStats().getSuppressed()).isEqualTo(0);
+    assertThat(peliasSearchView.getSuggestStats().getRequests()).isEqualTo(2);
+  }
+
+  @Test public void setSkipKnownEmptySuggestions_shouldSkipUntilCleared() throws Exception {
+    final TestPelias pelias = new TestPelias();
+    pelias.setLocationProvider(new TestLocationProvider());
+    peliasSearchView.setPelias(pelias);
+    peliasSearchView.setSkipKnownEmptySuggestions(true);
+    peliasSearchView.onQueryTextChange("query");
+    peliasSearchView.onQueryTextChange("query text");
+    assertThat(peliasSearchView.getSuggestStats().getSuppressed()).isEqualTo(1);
+    peliasSearchView.clearKnownEmptySuggestions();
+    peliasSearchView.onQueryTextChange("query text more");
+    assertThat(peliasSearchView.getSuggestStats().getRequests()).isEqualTo(2);
+  }
+
+  /**
+   * Returns a Pelias answering "query" with a feature named "query text" and never answering
+   * "query text".
+   */
+  @SuppressWarnings("unchecked")
+  private Pelias refinablePelias() {
+    final Feature feature = new Feature();
+    feature.properties = new Properties();
+    feature.properties.name = "query text";
+    feature.properties.label = "query text";
+    final Result result = new Result();
+    result.getFeatures().add(feature);
+    final PeliasService service = mock(PeliasService.class);
+    when(service.getSuggest(eq("query"), anyDouble(), anyDouble()))
+        .thenReturn(new TestCall(result));
+    when(service.getSuggest(eq("query text"), anyDouble(), anyDouble()))
+        .thenReturn(mock(Call.class));
+    final Pelias pelias = new Pelias(service);
+    pelias.setLocationProvider(new TestLocationProvider());
+    return pelias;
+  }
+
   @Test public void onQueryTextSubmit_shouldHandleNullBody() throws Exception {
     final AutoCompleteListView listView = new AutoCompleteListView(ACTIVITY);
     final TestEmptyAdapter adapter = new TestEmptyAdapter();
     listView.setAdapter(adapter);
     peliasSearchView.setAutoCompleteListView(listView);
     final Pelias pelias = new TestEmptyPelias();
-    final Callback<Result> callback = peliasSearchView.getSuggestCallback();
-    pelias.setLocationProvider(new PeliasTest.TestLocationProvider());
+    pelias.setLocationProvider(new TestLocationProvider());
     peliasSearchView.setPelias(pelias);
-    peliasSearchView.setCallback(callback);
+    peliasSearchView.setCallback(new Callback<Result>() {
+      @Override public void onResponse(Call<Result> call, Response<Result> response) {
+        peliasSearchView.getSuggestionsCallback().onResult(PeliasSearchView.SUGGESTION_PROCESSOR
+            .process(response != null ? response.body() : null));
+      }
+
+      @Override public void onFailure(Call<Result> call, Throwable t) {
+      }
+    });
     peliasSearchView.setQuery("query", true);
     assertThat(adapter.getCount()).isEqualTo(0);
   }
@@ -357,7 +484,7 @@ public class PeliasSearchViewTest {
     }
   }
 
-  private class TestPeliasService implements PeliasService {
+  private class TestPeliasService implements PeliasService, PeliasQueryService {
     @Override public Call<Result> getSuggest(@Query("text") String query,
         @Query("focus.point.lat") double lat, @Query("focus.point.lon") double lon) {
       return new TestCall();
@@ -394,18 +521,40 @@ public class PeliasSearchViewTest {
       return new TestCall();
     }
 
+    @Override public Call<Result> autocomplete(@QueryMap Map<String, String> parameters) {
+      return new TestCall();
+    }
+
+    @Override public Call<Result> search(@QueryMap Map<String, String> parameters) {
+      return new TestCall();
+    }
+
+    @Override public Call<Result> reverse(@QueryMap Map<String, String> parameters) {
+      return new TestCall();
+    }
+
     @Override public Call<Result> getPlace(@Query("ids") String ids) {
       return new TestCall();
     }
   }
 
   private class TestCall implements Call<Result> {
+    private final Result result;
+
+    TestCall() {
+      this(new Result());
+    }
+
+    TestCall(Result result) {
+      this.result = result;
+    }
+
     @Override public Response<Result> execute() throws IOException {
-      return Response.success(new Result());
+      return Response.success(result);
     }
 
     @Override public void enqueue(Callback<Result> callback) {
-      callback.onResponse(null, Response.success(new Result()));
+      callback.onResponse(null, Response.success(result));
     }
 
     @Override public boolean isExecuted() {
@@ -434,7 +583,7 @@ public class PeliasSearchViewTest {
     }
   }
 
-  private class TestEmptyPeliasService implements PeliasService {
+  private class TestEmptyPeliasService implements PeliasService, PeliasQueryService {
     @Override public Call<Result> getSuggest(@Query("text") String query,
         @Query("focus.point.lat") double lat, @Query("focus.point.lon") double lon) {
       return new TestEmptyCall();
@@ -471,6 +620,18 @@ public class PeliasSearchViewTest {
       return new TestEmptyCall();
     }
 
+    @Override public Call<Result> autocomplete(@QueryMap Map<String, String> parameters) {
+      return new TestEmptyCall();
+    }
+
+    @Override public Call<Result> search(@QueryMap Map<String, String> parameters) {
+      return new TestEmptyCall();
+    }
+
+    @Override public Call<Result> reverse(@QueryMap Map<String, String> parameters) {
+      return new TestEmptyCall();
+    }
+
     @Override public Call<Result> getPlace(@Query("ids") String ids) {
       return new TestEmptyCall();
     }
@@ -538,6 +699,20 @@ public class PeliasSearchViewTest {
     }
   }
 
+  private static class TestLocationProvider implements PeliasLocationProvider {
+    @Override public double getLat() {
+      return 1.0;
+    }
+
+    @Override public double getLon() {
+      return 2.0;
+    }
+
+    @Override public BoundingBox getBoundingBox() {
+      return new BoundingBox(3.0, 4.0, 5.0, 6.0);
+    }
+  }
+
   private class TestAdapter extends AutoCompleteAdapter {
     public TestAdapter() {
       super(ACTIVITY, android.R.layout.simple_list_item_1);
@@ -607,4 +782,7 @@ public class PeliasSearchViewTest {
       return false;
     }
   }
+
+  interface QueryPeliasService extends PeliasService, PeliasQueryService {
+  }
 }
@@ -0,0 +1,42 @@
+package com.mapzen.pelias.loadtest;
+
+/**
+ * The full text of a search field after a single edit, at an offset from the start of its
+ * {@link TypingSession}.
+ */
+public final class Keystroke {
+  private final long offsetMillis;
+  private final String text;
+
+  /**
+   * Constructs a new keystroke.
+   */
+  public Keystroke(long offsetMillis, String text) {
+    if (offsetMillis < 0) {
+      throw new IllegalArgumentException("offsetMillis must not be negative");
+    }
+    if (text == null) {
+      throw new IllegalArgumentException("text must not be null");
+    }
+    this.offsetMillis = offsetMillis;
+    this.text = text;
+  }
+
+  /**
+   * Returns the time since the start of the session.
+   */
+  public long getOffsetMillis() {
+    return offsetMillis;
+  }
+
+  /**
+   * Returns the text after this keystroke.
+   */
+  public String getText() {
+    return text;
+  }
+
+  @Override public String toString() {
+    return offsetMillis + ":" + text;
+  }
+}
@@ -0,0 +1,106 @@
+package com.mapzen.pelias.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread safe collector of latency samples which reports exact percentiles. Samples are kept in
+ * memory, roughly eight bytes each, which is fine for the sizes replayed by {@link ReplayHarness}.
+ */
+public class LatencyRecorder {
+  private long[] samples = new long[256];
+  private int count;
+
+  /**
+   * Records a latency in nanoseconds.
+   */
+  public synchronized void record(long nanos) {
+    if (count == samples.length) {
+      samples = Arrays.copyOf(samples, count * 2);
+    }
+    samples[count++] = nanos;
+  }
+
+  /**
+   * Returns the number of samples recorded.
+   */
+  public synchronized int getCount() {
+    return count;
+  }
+
+  /**
+   * Returns an immutable, sorted view of the samples recorded so far.
+   */
+  public synchronized Snapshot snapshot() {
+    final long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    return new Snapshot(sorted);
+  }
+
+  /**
+   * Sorted latency samples.
+   */
+  public static final class Snapshot {
+    private final long[] sorted;
+
+    /**
+     * Creates a snapshot over already sorted samples.
+     */
+    Snapshot(long[] sorted) {
+      this.sorted = sorted;
+    }
+
+    /**
+     * Returns the number of samples.
+     */
+    public int size() {
+      return sorted.length;
+    }
+
+    /**
+     * Returns the nearest-rank percentile, between 0 and 100, in milliseconds or 0 when there
+     * are no samples.
+     */
+    public double getPercentileMillis(double percentile) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+      final int index = Math.min(sorted.length - 1, Math.max(0, rank - 1));
+      return toMillis(sorted[index]);
+    }
+
+    /**
+     * Returns the mean in milliseconds or 0 when there are no samples.
+     */
+    public double getMeanMillis() {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      double total = 0;
+      for (long sample : sorted) {
+        total += sample;
+      }
+      return toMillis(total / sorted.length);
+    }
+
+    /**
+     * Returns the largest sample in milliseconds or 0 when there are no samples.
+     */
+    public double getMaxMillis() {
+      return sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]);
+    }
+
+    @Override public String toString() {
+      return String.format(Locale.US,
+          "n=%d mean=%.1fms p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms", size(),
+          getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90),
+          getPercentileMillis(99), getMaxMillis());
+    }
+
+    private static double toMillis(double nanos) {
+      return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
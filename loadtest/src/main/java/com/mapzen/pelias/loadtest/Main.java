@@ -0,0 +1,184 @@
+package com.mapzen.pelias.loadtest;
+
+import com.mapzen.pelias.SuggestController;
+import com.mapzen.pelias.testserver.LatencyDistribution;
+import com.mapzen.pelias.testserver.PeliasStandInServer;
+import com.mapzen.pelias.testserver.SyntheticGazetteer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Command line entry point for {@link ReplayHarness}.
+ *
+ * <pre>
+ * pelias-replay [--endpoint url] [--sessions file | --generate n] [--save-sessions file]
+ *     [--users n] [--speed x] [--seed n] [--min-length n] [--cache-dir dir] [--cache-mb n]
+ *     [--latency-ms n]
+ * </pre>
+ *
+ * <p>Without {@code --endpoint} a {@link PeliasStandInServer} is started locally with a
+ * log-normal latency around {@code --latency-ms}, marking responses cacheable when
+ * {@code --cache-dir} is given. Without {@code --sessions} sessions are
+ * generated by a {@link TypingModel} typing place names from a {@link SyntheticGazetteer}.
+ */
+public class Main {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final String USAGE = "usage: pelias-replay [--endpoint url] "
+      + "[--sessions file | --generate n] [--save-sessions file] [--users n] [--speed x] "
+      + "[--seed n] [--min-length n] [--cache-dir dir] [--cache-mb n] [--latency-ms n]";
+
+  private static final double CENTER_LAT = 40.7;
+  private static final double CENTER_LON = -74.0;
+
+  private String endpoint;
+  private String sessionsFile;
+  private String saveSessionsFile;
+  private int generate = 200;
+  private int users = ReplayHarness.DEFAULT_USERS;
+  private double speed = 1;
+  private long seed = 1;
+  private int minLength = SuggestController.DEFAULT_MIN_QUERY_LENGTH;
+  private String cacheDir;
+  private long cacheMegabytes = 10;
+  private long latencyMillis = 80;
+
+  /**
+   * Runs a replay as described by the command line arguments and prints the report.
+   */
+  public static void main(String[] args) throws Exception {
+    final Main main = new Main();
+    try {
+      main.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(2);
+    }
+    final ReplayReport report = main.run();
+    System.out.println(report);
+    System.exit(report.getFailures() + report.getUnsettled() == 0 ? 0 : 1);
+  }
+
+  /**
+   * Parses command line arguments.
+   */
+  void parse(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      final String arg = args[i];
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + arg);
+      }
+      final String value = args[++i];
+      switch (arg) {
+        case "--endpoint":
+          endpoint = value.endsWith("/") ? value : value + "/";
+          break;
+        case "--sessions":
+          sessionsFile = value;
+          break;
+        case "--save-sessions":
+          saveSessionsFile = value;
+          break;
+        case "--generate":
+          generate = Integer.parseInt(value);
+          break;
+        case "--users":
+          users = Integer.parseInt(value);
+          break;
+        case "--speed":
+          speed = Double.parseDouble(value);
+          break;
+        case "--seed":
+          seed = Long.parseLong(value);
+          break;
+        case "--min-length":
+          minLength = Integer.parseInt(value);
+          break;
+        case "--cache-dir":
+          cacheDir = value;
+          break;
+        case "--cache-mb":
+          cacheMegabytes = Long.parseLong(value);
+          break;
+        case "--latency-ms":
+          latencyMillis = Long.parseLong(value);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+  }
+
+  /**
+   * Runs the replay described by the parsed arguments.
+   */
+  ReplayReport run() throws IOException, InterruptedException {
+    final SyntheticGazetteer gazetteer =
+        SyntheticGazetteer.generate(seed, 20000, CENTER_LAT, CENTER_LON, 0.3);
+    final List<TypingSession> sessions = loadSessions(gazetteer);
+    if (saveSessionsFile != null) {
+      final Writer writer = new OutputStreamWriter(new FileOutputStream(saveSessionsFile), UTF_8);
+      try {
+        SessionFiles.write(sessions, writer);
+      } finally {
+        writer.close();
+      }
+    }
+
+    PeliasStandInServer server = null;
+    String url = endpoint;
+    if (url == null) {
+      server = new PeliasStandInServer(gazetteer, seed);
+      server.setLatency(LatencyDistribution.logNormal(latencyMillis, 0.5));
+      if (cacheDir != null) {
+        server.setCacheMaxAge(300);
+      }
+      server.start();
+      url = server.url();
+    }
+    try {
+      final ReplayHarness harness = new ReplayHarness(url)
+          .setUsers(users)
+          .setSpeed(speed)
+          .setMinQueryLength(minLength)
+          .setFocus(CENTER_LAT, CENTER_LON);
+      if (cacheDir != null) {
+        harness.setCache(new File(cacheDir), cacheMegabytes * 1024 * 1024);
+      }
+      return harness.run(sessions);
+    } finally {
+      if (server != null) {
+        server.shutdown();
+      }
+    }
+  }
+
+  private List<TypingSession> loadSessions(SyntheticGazetteer gazetteer) throws IOException {
+    if (sessionsFile != null) {
+      final Reader reader = new InputStreamReader(new FileInputStream(sessionsFile), UTF_8);
+      try {
+        return SessionFiles.read(reader);
+      } finally {
+        reader.close();
+      }
+    }
+    final Random random = new Random(seed);
+    final List<String> targets = new ArrayList<>(generate);
+    for (int i = 0; i < generate; i++) {
+      targets.add(gazetteer.get(random.nextInt(gazetteer.size())).getName());
+    }
+    return new TypingModel().generate(targets, generate, seed);
+  }
+}
@@ -0,0 +1,68 @@
+package com.mapzen.pelias.loadtest;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Application interceptor recording the latency of every call, including reading the body, and
+ * whether it was answered from the HTTP cache or the network.
+ */
+public class NetworkRecorder implements Interceptor {
+  private final LatencyRecorder networkLatency = new LatencyRecorder();
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  @Override public Response intercept(Chain chain) throws IOException {
+    final long start = System.nanoTime();
+    calls.incrementAndGet();
+    final Response response;
+    try {
+      response = chain.proceed(chain.request());
+      response.peekBody(Long.MAX_VALUE);
+    } catch (IOException e) {
+      errors.incrementAndGet();
+      throw e;
+    }
+    if (response.networkResponse() == null && response.cacheResponse() != null) {
+      cacheHits.incrementAndGet();
+    } else {
+      networkLatency.record(System.nanoTime() - start);
+    }
+    if (!response.isSuccessful()) {
+      errors.incrementAndGet();
+    }
+    return response;
+  }
+
+  /**
+   * Returns the number of calls made, from cache or network.
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * Returns the number of calls answered entirely from the HTTP cache.
+   */
+  public long getCacheHits() {
+    return cacheHits.get();
+  }
+
+  /**
+   * Returns the number of calls which failed with an exception or an unsuccessful status.
+   */
+  public long getErrors() {
+    return errors.get();
+  }
+
+  /**
+   * Returns the latency of calls which went to the network.
+   */
+  public LatencyRecorder getNetworkLatency() {
+    return networkLatency;
+  }
+}
@@ -0,0 +1,177 @@
+package com.mapzen.pelias.loadtest;
+
+import com.mapzen.pelias.codec.GsonResponseCodec;
+import com.mapzen.pelias.codec.MessagePackResponseCodec;
+import com.mapzen.pelias.codec.ResponseCodec;
+import com.mapzen.pelias.codec.Utf8JsonResponseCodec;
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.gson.PeliasTypeAdapterFactory;
+import com.mapzen.pelias.gson.Result;
+import com.mapzen.pelias.testserver.PeliasStandInServer;
+import com.mapzen.pelias.testserver.SyntheticGazetteer;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Locale;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okio.Buffer;
+
+/**
+ * Compares parsing Pelias responses with Gson's reflective adapter against the streaming adapters
+ * registered by {@link PeliasGson}, on 10 and 40 feature responses served by a
+ * {@link PeliasStandInServer}. The streaming adapters are also measured behind the byte level
+ * {@link Utf8JsonResponseCodec} and, on MessagePack encoded responses, the
+ * {@link MessagePackResponseCodec}.
+ *
+ * <p>Reports the cold cost of the first parse with a new {@link Gson}, which includes adapter
+ * creation, and the steady state time and allocation per parse. Allocation is measured with
+ * {@code com.sun.management.ThreadMXBean} and reported as -1 where it is unavailable.
+ *
+ * <pre>
+ * ./gradlew :loadtest:parseBenchmark
+ * </pre>
+ */
+public final class ParseBenchmark {
+  private static final int COLD_TRIALS = 20;
+
+  private ParseBenchmark() {
+  }
+
+  /**
+   * Runs the benchmark and prints a table to stdout.
+   */
+  public static void main(String[] args) throws Exception {
+    final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    final PeliasStandInServer server =
+        new PeliasStandInServer(SyntheticGazetteer.generate(1, 10000, 40.7, -74.0, 0.3));
+    server.setMessagePackEnabled(true);
+    server.start();
+    try {
+      System.out.println("features  codec       bytes  cold(us)  warm(ns/parse)  alloc(B/parse)");
+      final Gson streaming = PeliasGson.get();
+      for (int features : new int[] {10, 40}) {
+        final byte[] body = fetch(server, features, null);
+        print(features, "reflective", body, measureCold(false, body),
+            measure(new GsonResponseCodec(new Gson()), body, iterations));
+        print(features, "streaming", body, measureCold(true, body),
+            measure(new GsonResponseCodec(streaming), body, iterations));
+        print(features, "utf8-json", body, -1,
+            measure(new Utf8JsonResponseCodec(streaming), body, iterations));
+        final ResponseCodec msgpack = new MessagePackResponseCodec(streaming);
+        final byte[] packed = fetch(server, features, msgpack.mediaType().toString());
+        print(features, "msgpack", packed, -1, measure(msgpack, packed, iterations));
+      }
+    } finally {
+      server.shutdown();
+    }
+  }
+
+  /**
+   * Fetches a reverse geocode response with the given number of features, sending the given
+   * {@code Accept} header unless it is null.
+   */
+  static byte[] fetch(PeliasStandInServer server, int features, String accept)
+      throws IOException {
+    final Request.Builder request = new Request.Builder()
+        .url(server.url() + "v1/reverse?point.lat=40.7&point.lon=-74.0&size=" + features);
+    if (accept != null) {
+      request.header("Accept", accept);
+    }
+    return new OkHttpClient().newCall(request.build()).execute().body().bytes();
+  }
+
+  /**
+   * Decodes the body with the codec, after an equal number of warm up iterations.
+   */
+  static Measurement measure(ResponseCodec codec, byte[] body, int iterations)
+      throws IOException {
+    int features = 0;
+    for (int i = 0; i < iterations; i++) {
+      features += parse(codec, body).getFeatures().size();
+    }
+    final long allocatedBefore = allocatedBytes();
+    final long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      features += parse(codec, body).getFeatures().size();
+    }
+    final long elapsed = System.nanoTime() - start;
+    final long allocatedAfter = allocatedBytes();
+    final long allocated = allocatedBefore < 0 ? -1 : (allocatedAfter - allocatedBefore);
+    return new Measurement(elapsed / iterations, allocated < 0 ? -1 : allocated / iterations,
+        features / (2 * iterations));
+  }
+
+  /**
+   * Returns the mean time in nanoseconds to create a new Gson and parse the body once.
+   */
+  static long measureCold(boolean streaming, byte[] body) throws IOException {
+    long total = 0;
+    for (int i = 0; i < COLD_TRIALS; i++) {
+      final long start = System.nanoTime();
+      final Gson gson = streaming
+          ? new GsonBuilder().registerTypeAdapterFactory(new PeliasTypeAdapterFactory()).create()
+          : new Gson();
+      parse(new GsonResponseCodec(gson), body);
+      total += System.nanoTime() - start;
+    }
+    return total / COLD_TRIALS;
+  }
+
+  private static Result parse(ResponseCodec codec, byte[] body) throws IOException {
+    return codec.decode(new Buffer().write(body));
+  }
+
+  private static void print(int features, String name, byte[] body, long coldNanos,
+      Measurement measurement) {
+    final String cold = coldNanos < 0 ? "-" : String.format(Locale.US, "%.1f", coldNanos / 1000.0);
+    System.out.println(String.format(Locale.US, "%8d  %-10s  %5d  %8s  %14d  %14d", features,
+        name, body.length, cold, measurement.getNanosPerParse(), measurement.getBytesPerParse()));
+  }
+
+  private static long allocatedBytes() {
+    try {
+      final Method method = Class.forName("com.sun.management.ThreadMXBean")
+          .getMethod("getThreadAllocatedBytes", long.class);
+      return (Long) method.invoke(ManagementFactory.getThreadMXBean(),
+          Thread.currentThread().getId());
+    } catch (Exception e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Steady state cost of parsing one response.
+   */
+  static final class Measurement {
+    private final long nanosPerParse;
+    private final long bytesPerParse;
+    private final int features;
+
+    /**
+     * Creates a measurement.
+     */
+    Measurement(long nanosPerParse, long bytesPerParse, int features) {
+      this.nanosPerParse = nanosPerParse;
+      this.bytesPerParse = bytesPerParse;
+      this.features = features;
+    }
+
+    long getNanosPerParse() {
+      return nanosPerParse;
+    }
+
+    long getBytesPerParse() {
+      return bytesPerParse;
+    }
+
+    int getFeatures() {
+      return features;
+    }
+  }
+}
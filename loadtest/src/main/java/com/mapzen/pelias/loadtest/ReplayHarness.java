@@ -0,0 +1,308 @@
+package com.mapzen.pelias.loadtest;
+
+import com.mapzen.pelias.BoundingBox;
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.PeliasLocationProvider;
+import com.mapzen.pelias.SuggestController;
+import com.mapzen.pelias.SuggestStats;
+import com.mapzen.pelias.gson.Result;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Cache;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Replays {@link TypingSession}s against a Pelias endpoint, typically a
+ * {@code com.mapzen.pelias.testserver.PeliasStandInServer}, and reports request volume, wasted
+ * requests, cache hits and latency in a {@link ReplayReport}.
+ *
+ * <p>Every keystroke goes through a {@link SuggestController}, the same policy used by
+ * {@code PeliasSearchView}, so changes to how typing turns into requests show up here. Each
+ * simulated user has its own {@link Pelias}, OkHttp dispatcher and, optionally, HTTP cache, and
+ * replays sessions one after another at the recorded pace; users run concurrently.
+ */
+public class ReplayHarness {
+  public static final int DEFAULT_USERS = 8;
+  public static final long DEFAULT_SETTLE_TIMEOUT_MILLIS = 10000;
+
+  private final String endpoint;
+  private int users = DEFAULT_USERS;
+  private double speed = 1;
+  private int minQueryLength = SuggestController.DEFAULT_MIN_QUERY_LENGTH;
+  private long settleTimeoutMillis = DEFAULT_SETTLE_TIMEOUT_MILLIS;
+  private File cacheDirectory;
+  private long cacheMaxBytes;
+  private double focusLat;
+  private double focusLon;
+
+  /**
+   * Constructs a new harness replaying against the given base url.
+   */
+  public ReplayHarness(String endpoint) {
+    this.endpoint = endpoint;
+  }
+
+  /**
+   * Sets the number of simulated users typing concurrently.
+   */
+  public ReplayHarness setUsers(int users) {
+    if (users < 1) {
+      throw new IllegalArgumentException("users must be at least 1");
+    }
+    this.users = users;
+    return this;
+  }
+
+  /**
+   * Sets how much faster than recorded sessions are replayed, ie 2 halves every delay.
+   */
+  public ReplayHarness setSpeed(double speed) {
+    if (speed <= 0) {
+      throw new IllegalArgumentException("speed must be positive");
+    }
+    this.speed = speed;
+    return this;
+  }
+
+  /**
+   * Sets the minimum query length passed to each {@link SuggestController}.
+   */
+  public ReplayHarness setMinQueryLength(int minQueryLength) {
+    this.minQueryLength = minQueryLength;
+    return this;
+  }
+
+  /**
+   * Sets how long to wait after the last keystroke of a session for its requests to complete.
+   */
+  public ReplayHarness setSettleTimeoutMillis(long settleTimeoutMillis) {
+    this.settleTimeoutMillis = settleTimeoutMillis;
+    return this;
+  }
+
+  /**
+   * Gives every simulated user an HTTP cache of the given size below the directory. Pass null to
+   * disable caching, which is the default.
+   */
+  public ReplayHarness setCache(File directory, long maxBytes) {
+    this.cacheDirectory = directory;
+    this.cacheMaxBytes = maxBytes;
+    return this;
+  }
+
+  /**
+   * Sets the location reported to {@link Pelias} as the focus point of autocomplete requests.
+   */
+  public ReplayHarness setFocus(double lat, double lon) {
+    this.focusLat = lat;
+    this.focusLon = lon;
+    return this;
+  }
+
+  /**
+   * Replays all sessions and blocks until they have settled.
+   */
+  public ReplayReport run(List<TypingSession> sessions) throws IOException, InterruptedException {
+    final NetworkRecorder network = new NetworkRecorder();
+    final ExecutorService httpExecutor = Executors.newCachedThreadPool();
+    final ExecutorService userExecutor = Executors.newFixedThreadPool(users);
+    final OkHttpClient baseClient = new OkHttpClient.Builder().addInterceptor(network).build();
+    final Queue<TypingSession> queue = new ConcurrentLinkedQueue<>(sessions);
+    final Totals totals = new Totals(sessions.size());
+    final List<User> simulated = new ArrayList<>(users);
+    final long start = System.nanoTime();
+    try {
+      for (int i = 0; i < users; i++) {
+        final User user = new User(newClient(baseClient, httpExecutor, i), queue, totals);
+        simulated.add(user);
+        userExecutor.execute(user);
+      }
+      userExecutor.shutdown();
+      while (!userExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+        continue;
+      }
+    } finally {
+      userExecutor.shutdownNow();
+      httpExecutor.shutdownNow();
+      baseClient.connectionPool().evictAll();
+      for (User user : simulated) {
+        user.close();
+      }
+    }
+    final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    return totals.toReport(network, elapsed);
+  }
+
+  private OkHttpClient newClient(OkHttpClient baseClient, ExecutorService httpExecutor,
+      int index) {
+    final Dispatcher dispatcher = new Dispatcher(httpExecutor);
+    final OkHttpClient.Builder builder = baseClient.newBuilder().dispatcher(dispatcher);
+    if (cacheDirectory != null) {
+      builder.cache(new Cache(new File(cacheDirectory, "user" + index), cacheMaxBytes));
+    }
+    return builder.build();
+  }
+
+  /**
+   * One simulated user replaying sessions from the shared queue.
+   */
+  private class User implements Runnable, PeliasLocationProvider {
+    private final OkHttpClient client;
+    private final Pelias pelias;
+    private final Queue<TypingSession> queue;
+    private final Totals totals;
+
+    User(OkHttpClient client, Queue<TypingSession> queue, Totals totals) {
+      this.client = client;
+      this.pelias = new Pelias(endpoint, client);
+      this.pelias.setLocationProvider(this);
+      this.queue = queue;
+      this.totals = totals;
+    }
+
+    @Override public void run() {
+      TypingSession session;
+      while ((session = queue.poll()) != null) {
+        try {
+          replay(session);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+
+    private void replay(TypingSession session) throws InterruptedException {
+      final SuggestStats stats = new SuggestStats();
+      final SuggestController controller = new SuggestController(pelias, stats);
+      final DeliveryCallback delivery = new DeliveryCallback();
+      controller.setMinQueryLength(minQueryLength);
+      controller.setCallback(delivery);
+
+      final long start = System.nanoTime();
+      boolean finalIssued = false;
+      long finalAt = start;
+      for (Keystroke keystroke : session.getKeystrokes()) {
+        final long due = start + (long) (TimeUnit.MILLISECONDS.toNanos(
+            keystroke.getOffsetMillis()) / speed);
+        final long wait = due - System.nanoTime();
+        if (wait > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        finalAt = System.nanoTime();
+        finalIssued = controller.onTextChanged(keystroke.getText());
+      }
+
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleTimeoutMillis);
+      while (outstanding(stats) > 0 && System.nanoTime() < deadline) {
+        Thread.sleep(2);
+      }
+      final long lastDelivery = delivery.getLastDelivery();
+      final long settled = finalIssued && lastDelivery >= finalAt ? lastDelivery - finalAt : -1;
+      totals.add(session, stats, outstanding(stats), settled);
+    }
+
+    private long outstanding(SuggestStats stats) {
+      return stats.getRequests() - stats.getDelivered() - stats.getSuperseded()
+          - stats.getFailures();
+    }
+
+    void close() {
+      final Cache cache = client.cache();
+      if (cache != null) {
+        try {
+          cache.close();
+        } catch (IOException e) {
+          // Closing the cache only releases file handles.
+        }
+      }
+    }
+
+    @Override public double getLat() {
+      return focusLat;
+    }
+
+    @Override public double getLon() {
+      return focusLon;
+    }
+
+    @Override public BoundingBox getBoundingBox() {
+      return new BoundingBox(focusLat - 0.1, focusLon - 0.1, focusLat + 0.1, focusLon + 0.1);
+    }
+  }
+
+  /**
+   * Records when responses are shown to the simulated user.
+   */
+  private static class DeliveryCallback implements Callback<Result> {
+    private final AtomicLong lastDelivery = new AtomicLong();
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      if (response.isSuccessful()) {
+        lastDelivery.set(System.nanoTime());
+      }
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      // Failures are counted by SuggestStats.
+    }
+
+    long getLastDelivery() {
+      return lastDelivery.get();
+    }
+  }
+
+  /**
+   * Aggregates per-session figures across users.
+   */
+  private static class Totals {
+    private final int[] requestsPerSession;
+    private final LatencyRecorder settleLatency = new LatencyRecorder();
+    private int sessions;
+    private long keystrokes;
+    private long requests;
+    private long superseded;
+    private long delivered;
+    private long failures;
+    private long unsettled;
+
+    Totals(int capacity) {
+      requestsPerSession = new int[capacity];
+    }
+
+    synchronized void add(TypingSession session, SuggestStats stats, long outstanding,
+        long settleNanos) {
+      requestsPerSession[sessions++] = (int) stats.getRequests();
+      keystrokes += session.getKeystrokes().size();
+      requests += stats.getRequests();
+      superseded += stats.getSuperseded();
+      delivered += stats.getDelivered();
+      failures += stats.getFailures();
+      unsettled += outstanding;
+      if (settleNanos >= 0) {
+        settleLatency.record(settleNanos);
+      }
+    }
+
+    synchronized ReplayReport toReport(NetworkRecorder network, long elapsedMillis) {
+      final int[] perSession = new int[sessions];
+      System.arraycopy(requestsPerSession, 0, perSession, 0, sessions);
+      return new ReplayReport(sessions, keystrokes, requests, superseded, delivered, failures,
+          unsettled, network, perSession, settleLatency.snapshot(), elapsedMillis);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.mapzen.pelias.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Outcome of a {@link ReplayHarness} run. Request volume figures come from the
+ * {@link com.mapzen.pelias.SuggestController} driving each session, cache and latency figures from
+ * the HTTP layer.
+ */
+public final class ReplayReport {
+  private final int sessions;
+  private final long keystrokes;
+  private final long requests;
+  private final long superseded;
+  private final long delivered;
+  private final long failures;
+  private final long unsettled;
+  private final long calls;
+  private final long cacheHits;
+  private final long httpErrors;
+  private final int[] requestsPerSession;
+  private final LatencyRecorder.Snapshot networkLatency;
+  private final LatencyRecorder.Snapshot settleLatency;
+  private final long elapsedMillis;
+
+  /**
+   * Creates a report.
+   */
+  ReplayReport(int sessions, long keystrokes, long requests, long superseded, long delivered,
+      long failures, long unsettled, NetworkRecorder network, int[] requestsPerSession,
+      LatencyRecorder.Snapshot settleLatency, long elapsedMillis) {
+    this.sessions = sessions;
+    this.keystrokes = keystrokes;
+    this.requests = requests;
+    this.superseded = superseded;
+    this.delivered = delivered;
+    this.failures = failures;
+    this.unsettled = unsettled;
+    this.calls = network.getCalls();
+    this.cacheHits = network.getCacheHits();
+    this.httpErrors = network.getErrors();
+    this.requestsPerSession = requestsPerSession.clone();
+    Arrays.sort(this.requestsPerSession);
+    this.networkLatency = network.getNetworkLatency().snapshot();
+    this.settleLatency = settleLatency;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * Returns the number of sessions replayed.
+   */
+  public int getSessions() {
+    return sessions;
+  }
+
+  /**
+   * Returns the number of keystrokes replayed.
+   */
+  public long getKeystrokes() {
+    return keystrokes;
+  }
+
+  /**
+   * Returns the number of autocomplete requests issued.
+   */
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Returns the number of requests whose response arrived after newer text had been typed.
+   */
+  public long getSuperseded() {
+    return superseded;
+  }
+
+  /**
+   * Returns the number of responses shown to the simulated user.
+   */
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /**
+   * Returns the number of current requests that failed.
+   */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the number of requests still outstanding when their session timed out.
+   */
+  public long getUnsettled() {
+    return unsettled;
+  }
+
+  /**
+   * Returns the fraction of requests that were superseded.
+   */
+  public double getWastedRate() {
+    return requests == 0 ? 0 : (double) superseded / requests;
+  }
+
+  /**
+   * Returns the number of HTTP calls answered from the cache.
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * Returns the fraction of HTTP calls answered from the cache.
+   */
+  public double getCacheHitRate() {
+    return calls == 0 ? 0 : (double) cacheHits / calls;
+  }
+
+  /**
+   * Returns the number of HTTP calls that failed or returned an unsuccessful status.
+   */
+  public long getHttpErrors() {
+    return httpErrors;
+  }
+
+  /**
+   * Returns the mean number of requests issued per session.
+   */
+  public double getMeanRequestsPerSession() {
+    return sessions == 0 ? 0 : (double) requests / sessions;
+  }
+
+  /**
+   * Returns the nearest-rank percentile, between 0 and 100, of requests issued per session.
+   */
+  public int getRequestsPerSessionPercentile(double percentile) {
+    if (requestsPerSession.length == 0) {
+      return 0;
+    }
+    final int rank = (int) Math.ceil(percentile / 100 * requestsPerSession.length);
+    return requestsPerSession[Math.min(requestsPerSession.length - 1, Math.max(0, rank - 1))];
+  }
+
+  /**
+   * Returns the latency of HTTP calls that went to the network.
+   */
+  public LatencyRecorder.Snapshot getNetworkLatency() {
+    return networkLatency;
+  }
+
+  /**
+   * Returns the time from the last keystroke of a session until results for its final text were
+   * shown. Sessions whose final text did not issue a request are excluded.
+   */
+  public LatencyRecorder.Snapshot getSettleLatency() {
+    return settleLatency;
+  }
+
+  /**
+   * Returns the wall clock duration of the run.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override public String toString() {
+    return String.format(Locale.US, "sessions=%d keystrokes=%d elapsed=%dms%n"
+            + "requests=%d per-session mean=%.2f p50=%d p90=%d max=%d%n"
+            + "superseded=%d (%.1f%%) delivered=%d failures=%d unsettled=%d%n"
+            + "http calls=%d cache hits=%d (%.1f%%) errors=%d%n"
+            + "network latency %s%n"
+            + "settle latency  %s",
+        sessions, keystrokes, elapsedMillis,
+        requests, getMeanRequestsPerSession(), getRequestsPerSessionPercentile(50),
+        getRequestsPerSessionPercentile(90), getRequestsPerSessionPercentile(100),
+        superseded, getWastedRate() * 100, delivered, failures, unsettled,
+        calls, cacheHits, getCacheHitRate() * 100, httpErrors,
+        networkLatency, settleLatency);
+  }
+}
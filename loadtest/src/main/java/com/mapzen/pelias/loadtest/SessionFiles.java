@@ -0,0 +1,95 @@
+package com.mapzen.pelias.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes {@link TypingSession}s as newline delimited JSON, one session per line:
+ *
+ * <pre>
+ * {"id":"s1","keystrokes":[{"t":0,"text":"c"},{"t":140,"text":"ca"},{"t":310,"text":"caf"}]}
+ * </pre>
+ *
+ * <p>{@code t} is the offset in milliseconds from the start of the session and {@code text} the
+ * full contents of the search field after the keystroke. Sessions exported from production
+ * analytics only need to be mapped to this shape to be replayed.
+ */
+public final class SessionFiles {
+
+  private SessionFiles() {
+  }
+
+  /**
+   * Reads all sessions. Blank lines are skipped.
+   */
+  public static List<TypingSession> read(Reader reader) throws IOException {
+    final BufferedReader lines = reader instanceof BufferedReader
+        ? (BufferedReader) reader : new BufferedReader(reader);
+    final JsonParser parser = new JsonParser();
+    final List<TypingSession> sessions = new ArrayList<>();
+    int lineNumber = 0;
+    String line;
+    while ((line = lines.readLine()) != null) {
+      lineNumber++;
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      try {
+        sessions.add(parse(parser.parse(line).getAsJsonObject(), lineNumber));
+      } catch (JsonParseException | IllegalStateException | IllegalArgumentException
+          | NullPointerException e) {
+        throw new IOException("Invalid session on line " + lineNumber, e);
+      }
+    }
+    return sessions;
+  }
+
+  /**
+   * Writes all sessions.
+   */
+  public static void write(List<TypingSession> sessions, Writer writer) throws IOException {
+    for (TypingSession session : sessions) {
+      final StringWriter line = new StringWriter();
+      final JsonWriter json = new JsonWriter(line);
+      json.beginObject();
+      json.name("id").value(session.getId());
+      json.name("keystrokes").beginArray();
+      for (Keystroke keystroke : session.getKeystrokes()) {
+        json.beginObject();
+        json.name("t").value(keystroke.getOffsetMillis());
+        json.name("text").value(keystroke.getText());
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+      json.close();
+      writer.write(line.toString());
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  private static TypingSession parse(JsonObject object, int lineNumber) {
+    final JsonElement id = object.get("id");
+    final JsonArray array = object.getAsJsonArray("keystrokes");
+    final List<Keystroke> keystrokes = new ArrayList<>(array.size());
+    for (JsonElement element : array) {
+      final JsonObject keystroke = element.getAsJsonObject();
+      keystrokes.add(new Keystroke(keystroke.get("t").getAsLong(),
+          keystroke.get("text").getAsString()));
+    }
+    return new TypingSession(id != null ? id.getAsString() : "line" + lineNumber, keystrokes);
+  }
+}
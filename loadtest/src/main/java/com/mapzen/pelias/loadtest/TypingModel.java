@@ -0,0 +1,91 @@
+package com.mapzen.pelias.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates {@link TypingSession}s that type a prefix of a target string with randomised
+ * inter-key delays and occasional corrected typos. Users commonly stop typing once the result
+ * they want is shown, so each session types between {@link #setMinTypedLength(int)} characters
+ * and the whole target.
+ */
+public class TypingModel {
+  public static final long DEFAULT_MEAN_INTERVAL_MILLIS = 180;
+  public static final double DEFAULT_TYPO_RATE = 0.03;
+  public static final int DEFAULT_MIN_TYPED_LENGTH = 4;
+
+  private static final String TYPO_CHARACTERS = "abcdefghijklmnopqrstuvwxyz";
+
+  private long meanIntervalMillis = DEFAULT_MEAN_INTERVAL_MILLIS;
+  private double typoRate = DEFAULT_TYPO_RATE;
+  private int minTypedLength = DEFAULT_MIN_TYPED_LENGTH;
+
+  /**
+   * Sets the mean delay between keystrokes. Delays are exponentially distributed around a floor
+   * of a third of the mean, which roughly matches measured touch keyboard typing.
+   */
+  public TypingModel setMeanIntervalMillis(long meanIntervalMillis) {
+    this.meanIntervalMillis = meanIntervalMillis;
+    return this;
+  }
+
+  /**
+   * Sets the probability, between 0 and 1, that a keystroke is a typo followed by a backspace.
+   */
+  public TypingModel setTypoRate(double typoRate) {
+    this.typoRate = typoRate;
+    return this;
+  }
+
+  /**
+   * Sets the shortest prefix of the target a session types.
+   */
+  public TypingModel setMinTypedLength(int minTypedLength) {
+    this.minTypedLength = minTypedLength;
+    return this;
+  }
+
+  /**
+   * Generates a session typing a prefix of the target.
+   */
+  public TypingSession generate(String id, String target, Random random) {
+    final int min = Math.min(minTypedLength, target.length());
+    final int length = min + random.nextInt(target.length() - min + 1);
+    final List<Keystroke> keystrokes = new ArrayList<>(length * 2);
+    final StringBuilder text = new StringBuilder(length + 1);
+    long offset = 0;
+    for (int i = 0; i < length; i++) {
+      if (i > 0 && random.nextDouble() < typoRate) {
+        text.append(TYPO_CHARACTERS.charAt(random.nextInt(TYPO_CHARACTERS.length())));
+        keystrokes.add(new Keystroke(offset, text.toString()));
+        offset += nextInterval(random) * 2;
+        text.setLength(text.length() - 1);
+        keystrokes.add(new Keystroke(offset, text.toString()));
+        offset += nextInterval(random);
+      }
+      text.append(target.charAt(i));
+      keystrokes.add(new Keystroke(offset, text.toString()));
+      offset += nextInterval(random);
+    }
+    return new TypingSession(id, keystrokes);
+  }
+
+  /**
+   * Generates one session per target, drawing targets in order and cycling as needed.
+   */
+  public List<TypingSession> generate(List<String> targets, int count, long seed) {
+    final Random random = new Random(seed);
+    final List<TypingSession> sessions = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      sessions.add(generate("s" + i, targets.get(i % targets.size()), random));
+    }
+    return sessions;
+  }
+
+  private long nextInterval(Random random) {
+    final long floor = meanIntervalMillis / 3;
+    final double exponential = -Math.log(1 - random.nextDouble()) * (meanIntervalMillis - floor);
+    return floor + Math.round(exponential);
+  }
+}
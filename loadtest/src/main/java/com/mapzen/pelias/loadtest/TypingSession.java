@@ -0,0 +1,60 @@
+package com.mapzen.pelias.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded or generated sequence of {@link Keystroke}s made by one user in one search field.
+ */
+public final class TypingSession {
+  private final String id;
+  private final List<Keystroke> keystrokes;
+
+  /**
+   * Constructs a new session. Keystrokes must be ordered by offset.
+   */
+  public TypingSession(String id, List<Keystroke> keystrokes) {
+    long previous = 0;
+    for (Keystroke keystroke : keystrokes) {
+      if (keystroke.getOffsetMillis() < previous) {
+        throw new IllegalArgumentException("Keystrokes out of order in session " + id);
+      }
+      previous = keystroke.getOffsetMillis();
+    }
+    this.id = id;
+    this.keystrokes = Collections.unmodifiableList(new ArrayList<>(keystrokes));
+  }
+
+  /**
+   * Returns the session id.
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Returns the keystrokes in order.
+   */
+  public List<Keystroke> getKeystrokes() {
+    return keystrokes;
+  }
+
+  /**
+   * Returns the text after the last keystroke, or an empty string for an empty session.
+   */
+  public String getFinalText() {
+    return keystrokes.isEmpty() ? "" : keystrokes.get(keystrokes.size() - 1).getText();
+  }
+
+  /**
+   * Returns the offset of the last keystroke.
+   */
+  public long getDurationMillis() {
+    return keystrokes.isEmpty() ? 0 : keystrokes.get(keystrokes.size() - 1).getOffsetMillis();
+  }
+
+  @Override public String toString() {
+    return id + keystrokes;
+  }
+}
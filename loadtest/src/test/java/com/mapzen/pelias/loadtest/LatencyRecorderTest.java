@@ -0,0 +1,31 @@
+package com.mapzen.pelias.loadtest;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class LatencyRecorderTest {
+
+  @Test public void snapshot_shouldReportNearestRankPercentiles() throws Exception {
+    final LatencyRecorder recorder = new LatencyRecorder();
+    for (int i = 1000; i >= 1; i--) {
+      recorder.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    final LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+    assertThat(snapshot.size()).isEqualTo(1000);
+    assertThat(snapshot.getPercentileMillis(50)).isEqualTo(500.0);
+    assertThat(snapshot.getPercentileMillis(99)).isEqualTo(990.0);
+    assertThat(snapshot.getPercentileMillis(100)).isEqualTo(1000.0);
+    assertThat(snapshot.getPercentileMillis(0)).isEqualTo(1.0);
+    assertThat(snapshot.getMeanMillis()).isEqualTo(500.5);
+    assertThat(snapshot.getMaxMillis()).isEqualTo(1000.0);
+  }
+
+  @Test public void snapshot_empty_shouldReportZero() throws Exception {
+    final LatencyRecorder.Snapshot snapshot = new LatencyRecorder().snapshot();
+    assertThat(snapshot.getPercentileMillis(50)).isEqualTo(0.0);
+    assertThat(snapshot.getMeanMillis()).isEqualTo(0.0);
+  }
+}
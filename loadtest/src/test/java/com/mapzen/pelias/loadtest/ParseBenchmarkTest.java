@@ -0,0 +1,40 @@
+package com.mapzen.pelias.loadtest;
+
+import com.mapzen.pelias.codec.GsonResponseCodec;
+import com.mapzen.pelias.codec.MessagePackResponseCodec;
+import com.mapzen.pelias.codec.Utf8JsonResponseCodec;
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.testserver.PeliasStandInServer;
+import com.mapzen.pelias.testserver.SyntheticGazetteer;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ParseBenchmarkTest {
+
+  @Test public void measure_shouldParseRequestedFeatureCount() throws Exception {
+    final PeliasStandInServer server =
+        new PeliasStandInServer(SyntheticGazetteer.generate(1, 1000, 40.7, -74.0, 0.3));
+    server.setMessagePackEnabled(true);
+    server.start();
+    try {
+      final byte[] body = ParseBenchmark.fetch(server, 40, null);
+      assertThat(ParseBenchmark.measure(new GsonResponseCodec(new Gson()), body, 5)
+          .getFeatures()).isEqualTo(40);
+      assertThat(ParseBenchmark.measure(new GsonResponseCodec(PeliasGson.get()), body, 5)
+          .getFeatures()).isEqualTo(40);
+      assertThat(ParseBenchmark.measure(new Utf8JsonResponseCodec(PeliasGson.get()), body, 5)
+          .getFeatures()).isEqualTo(40);
+      final byte[] packed = ParseBenchmark.fetch(server, 40, PeliasStandInServer.MESSAGE_PACK);
+      assertThat(packed.length).isLessThan(body.length);
+      assertThat(ParseBenchmark.measure(new MessagePackResponseCodec(PeliasGson.get()), packed, 5)
+          .getFeatures()).isEqualTo(40);
+      assertThat(ParseBenchmark.measureCold(true, body)).isGreaterThan(0);
+    } finally {
+      server.shutdown();
+    }
+  }
+}
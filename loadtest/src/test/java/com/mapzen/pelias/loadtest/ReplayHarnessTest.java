@@ -0,0 +1,89 @@
+package com.mapzen.pelias.loadtest;
+
+import com.mapzen.pelias.testserver.LatencyDistribution;
+import com.mapzen.pelias.testserver.PeliasStandInServer;
+import com.mapzen.pelias.testserver.SyntheticGazetteer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ReplayHarnessTest {
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private PeliasStandInServer server;
+
+  @Before public void setUp() throws Exception {
+    server = new PeliasStandInServer(SyntheticGazetteer.generate(2, 2000, 40.7, -74.0, 0.2));
+    server.start();
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void run_shouldIssueOneRequestPerLongEnoughKeystroke() throws Exception {
+    final List<TypingSession> sessions = Arrays.asList(
+        session("a", 0, "c", 10, "ca", 20, "caf", 30, "cafe"),
+        session("b", 0, "m", 10, "ma", 20, "mai", 30, "main"));
+    final ReplayReport report = new ReplayHarness(server.url()).setUsers(2).run(sessions);
+    assertThat(report.getSessions()).isEqualTo(2);
+    assertThat(report.getKeystrokes()).isEqualTo(8);
+    assertThat(report.getRequests()).isEqualTo(4);
+    assertThat(report.getRequestsPerSessionPercentile(100)).isEqualTo(2);
+    assertThat(report.getDelivered() + report.getSuperseded()).isEqualTo(4);
+    assertThat(report.getSettleLatency().size()).isEqualTo(2);
+    assertThat(server.getRequestCount(PeliasStandInServer.AUTOCOMPLETE)).isEqualTo(4);
+  }
+
+  @Test public void run_slowServer_shouldReportSupersededRequests() throws Exception {
+    server.setLatency(LatencyDistribution.constant(100));
+    final ReplayReport report = new ReplayHarness(server.url())
+        .run(Arrays.asList(session("a", 0, "cafe", 10, "cafes", 20, "cafes ")));
+    assertThat(report.getRequests()).isEqualTo(3);
+    assertThat(report.getSuperseded()).isEqualTo(2);
+    assertThat(report.getDelivered()).isEqualTo(1);
+    assertThat(report.getWastedRate()).isGreaterThan(0.6);
+    assertThat(report.getNetworkLatency().getPercentileMillis(50)).isGreaterThanOrEqualTo(100.0);
+    assertThat(report.getSettleLatency().getPercentileMillis(50)).isGreaterThanOrEqualTo(100.0);
+  }
+
+  @Test public void run_cache_shouldReportCacheHits() throws Exception {
+    server.setCacheMaxAge(60);
+    final List<TypingSession> sessions = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      sessions.add(session("s" + i, 0, "cafe"));
+    }
+    final ReplayReport report = new ReplayHarness(server.url())
+        .setUsers(1)
+        .setCache(folder.newFolder(), 1024 * 1024)
+        .run(sessions);
+    assertThat(report.getRequests()).isEqualTo(3);
+    assertThat(report.getCacheHits()).isEqualTo(2);
+    assertThat(server.getRequestCount(PeliasStandInServer.AUTOCOMPLETE)).isEqualTo(1);
+  }
+
+  @Test public void run_speed_shouldCompressRecordedDelays() throws Exception {
+    final ReplayReport report = new ReplayHarness(server.url())
+        .setSpeed(100)
+        .run(Arrays.asList(session("a", 0, "cafe", 5000, "cafes")));
+    assertThat(report.getElapsedMillis()).isLessThan(2000);
+    assertThat(report.getRequests()).isEqualTo(2);
+  }
+
+  private static TypingSession session(String id, Object... offsetsAndText) {
+    final List<Keystroke> keystrokes = new ArrayList<>();
+    for (int i = 0; i < offsetsAndText.length; i += 2) {
+      keystrokes.add(new Keystroke((Integer) offsetsAndText[i], (String) offsetsAndText[i + 1]));
+    }
+    return new TypingSession(id, keystrokes);
+  }
+}
@@ -0,0 +1,72 @@
+package com.mapzen.pelias.loadtest;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TypingModelTest {
+
+  @Test public void generate_shouldTypePrefixOfTarget() throws Exception {
+    final TypingModel model = new TypingModel().setTypoRate(0.5).setMinTypedLength(4);
+    final Random random = new Random(7);
+    for (int i = 0; i < 50; i++) {
+      final TypingSession session = model.generate("s" + i, "Blue Bottle Cafe", random);
+      assertThat(session.getFinalText().length()).isGreaterThanOrEqualTo(4);
+      assertThat("Blue Bottle Cafe").startsWith(session.getFinalText());
+      long previous = 0;
+      for (Keystroke keystroke : session.getKeystrokes()) {
+        assertThat(keystroke.getOffsetMillis()).isGreaterThanOrEqualTo(previous);
+        previous = keystroke.getOffsetMillis();
+      }
+    }
+  }
+
+  @Test public void generate_noTypos_shouldAddOneCharacterPerKeystroke() throws Exception {
+    final TypingSession session =
+        new TypingModel().setTypoRate(0).generate("s", "abc", new Random(1));
+    final List<Keystroke> keystrokes = session.getKeystrokes();
+    for (int i = 0; i < keystrokes.size(); i++) {
+      assertThat(keystrokes.get(i).getText()).isEqualTo("abc".substring(0, i + 1));
+    }
+  }
+
+  @Test public void generate_sameSeed_shouldBeDeterministic() throws Exception {
+    final List<String> targets = Arrays.asList("Main Street", "Union Square");
+    final TypingModel model = new TypingModel();
+    assertThat(model.generate(targets, 10, 3).toString())
+        .isEqualTo(model.generate(targets, 10, 3).toString());
+  }
+
+  @Test public void sessionFiles_shouldRoundTrip() throws Exception {
+    final List<TypingSession> sessions =
+        new TypingModel().generate(Arrays.asList("Caf\u00e9 \"Lune\""), 3, 5);
+    final StringWriter writer = new StringWriter();
+    SessionFiles.write(sessions, writer);
+    final List<TypingSession> read = SessionFiles.read(new StringReader(writer.toString()));
+    assertThat(read.toString()).isEqualTo(sessions.toString());
+  }
+
+  @Test public void sessionFiles_shouldReadRecordedSessions() throws Exception {
+    final List<TypingSession> sessions = SessionFiles.read(new StringReader(
+        "{\"id\":\"a\",\"keystrokes\":[{\"t\":0,\"text\":\"p\"},{\"t\":90,\"text\":\"pi\"}]}\n"
+            + "\n"
+            + "{\"keystrokes\":[{\"t\":0,\"text\":\"x\"}]}\n"));
+    assertThat(sessions).hasSize(2);
+    assertThat(sessions.get(0).getId()).isEqualTo("a");
+    assertThat(sessions.get(0).getDurationMillis()).isEqualTo(90);
+    assertThat(sessions.get(0).getFinalText()).isEqualTo("pi");
+    assertThat(sessions.get(1).getId()).isEqualTo("line3");
+  }
+
+  @Test(expected = java.io.IOException.class)
+  public void sessionFiles_outOfOrder_shouldThrow() throws Exception {
+    SessionFiles.read(new StringReader(
+        "{\"id\":\"a\",\"keystrokes\":[{\"t\":50,\"text\":\"p\"},{\"t\":10,\"text\":\"pi\"}]}"));
+  }
+}
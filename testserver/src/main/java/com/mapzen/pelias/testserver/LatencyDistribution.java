@@ -0,0 +1,48 @@
+package com.mapzen.pelias.testserver;
+
+import java.util.Random;
+
+/**
+ * Samples the artificial latency added by {@link PeliasStandInServer} before each response.
+ */
+public abstract class LatencyDistribution {
+
+  /**
+   * Returns a latency in milliseconds.
+   */
+  public abstract long sampleMillis(Random random);
+
+  /**
+   * Returns a distribution which always yields the same latency.
+   */
+  public static LatencyDistribution constant(final long millis) {
+    return new LatencyDistribution() {
+      @Override public long sampleMillis(Random random) {
+        return millis;
+      }
+    };
+  }
+
+  /**
+   * Returns a distribution uniformly spread between min and max inclusive.
+   */
+  public static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+    return new LatencyDistribution() {
+      @Override public long sampleMillis(Random random) {
+        return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis + 1));
+      }
+    };
+  }
+
+  /**
+   * Returns a long tailed log-normal distribution with the given median. A sigma of 0.5 gives a
+   * p99 of roughly three times the median, typical of mobile networks.
+   */
+  public static LatencyDistribution logNormal(final long medianMillis, final double sigma) {
+    return new LatencyDistribution() {
+      @Override public long sampleMillis(Random random) {
+        return Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+      }
+    };
+  }
+}
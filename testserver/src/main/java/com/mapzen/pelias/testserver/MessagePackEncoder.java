@@ -0,0 +1,111 @@
+package com.mapzen.pelias.testserver;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.util.Map;
+
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Re-encodes json documents as MessagePack, the way a Pelias proxy serving
+ * {@code application/x-msgpack} would. Integral numbers become integers and all other numbers
+ * 64 bit floats.
+ */
+final class MessagePackEncoder {
+
+  private MessagePackEncoder() {
+  }
+
+  /**
+   * Returns the MessagePack encoding of a json document.
+   */
+  static Buffer encode(String json) {
+    final Buffer buffer = new Buffer();
+    write(buffer, new JsonParser().parse(json));
+    return buffer;
+  }
+
+  private static void write(Buffer out, JsonElement element) {
+    if (element.isJsonNull()) {
+      out.writeByte(0xc0);
+    } else if (element.isJsonObject()) {
+      final JsonObject object = element.getAsJsonObject();
+      writeHeader(out, object.entrySet().size(), 0x80, 0xde);
+      for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeString(out, entry.getKey());
+        write(out, entry.getValue());
+      }
+    } else if (element.isJsonArray()) {
+      final JsonArray array = element.getAsJsonArray();
+      writeHeader(out, array.size(), 0x90, 0xdc);
+      for (JsonElement item : array) {
+        write(out, item);
+      }
+    } else {
+      writePrimitive(out, element.getAsJsonPrimitive());
+    }
+  }
+
+  private static void writePrimitive(Buffer out, JsonPrimitive primitive) {
+    if (primitive.isBoolean()) {
+      out.writeByte(primitive.getAsBoolean() ? 0xc3 : 0xc2);
+    } else if (primitive.isString()) {
+      writeString(out, primitive.getAsString());
+    } else {
+      final double value = primitive.getAsDouble();
+      final long integer = (long) value;
+      if (integer == value && Math.abs(value) < 1L << 53) {
+        writeInteger(out, integer);
+      } else {
+        out.writeByte(0xcb).writeLong(Double.doubleToLongBits(value));
+      }
+    }
+  }
+
+  private static void writeInteger(Buffer out, long value) {
+    if (value >= -32 && value < 128) {
+      out.writeByte((int) value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      out.writeByte(0xd0).writeByte((int) value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      out.writeByte(0xd1).writeShort((int) value);
+    } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+      out.writeByte(0xd2).writeInt((int) value);
+    } else {
+      out.writeByte(0xd3).writeLong(value);
+    }
+  }
+
+  private static void writeString(Buffer out, String value) {
+    final ByteString bytes = ByteString.encodeUtf8(value);
+    if (bytes.size() < 32) {
+      out.writeByte(0xa0 | bytes.size());
+    } else if (bytes.size() < 1 << 8) {
+      out.writeByte(0xd9).writeByte(bytes.size());
+    } else if (bytes.size() < 1 << 16) {
+      out.writeByte(0xda).writeShort(bytes.size());
+    } else {
+      out.writeByte(0xdb).writeInt(bytes.size());
+    }
+    out.write(bytes);
+  }
+
+  /**
+   * Writes a map or array header using the fix format for up to 15 items and the 16 or 32 bit
+   * format otherwise. The 32 bit format always directly follows the 16 bit one.
+   */
+  private static void writeHeader(Buffer out, int size, int fixFormat, int format16) {
+    if (size < 16) {
+      out.writeByte(fixFormat | size);
+    } else if (size < 1 << 16) {
+      out.writeByte(format16).writeShort(size);
+    } else {
+      out.writeByte(format16 + 1).writeInt(size);
+    }
+  }
+}
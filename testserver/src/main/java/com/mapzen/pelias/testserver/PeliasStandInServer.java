@@ -0,0 +1,489 @@
+package com.mapzen.pelias.testserver;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Local stand-in for a Pelias instance backed by a {@link SyntheticGazetteer}. Implements
+ * {@code /v1/autocomplete}, {@code /v1/search}, {@code /v1/reverse} and {@code /v1/place} with
+ * configurable latency, error rate, rate limiting (429 responses), response padding and bandwidth,
+ * so that client behaviour can be measured deterministically in unit tests and benchmarks.
+ *
+ * <pre>
+ * PeliasStandInServer server = new PeliasStandInServer(
+ *     SyntheticGazetteer.generate(1, 10000, 40.7, -74.0, 0.5));
+ * server.setLatency(LatencyDistribution.logNormal(80, 0.5));
+ * server.start();
+ * Pelias pelias = new Pelias(server.url());
+ * </pre>
+ */
+public class PeliasStandInServer implements Closeable {
+  public static final String AUTOCOMPLETE = "/v1/autocomplete";
+  public static final String SEARCH = "/v1/search";
+  public static final String REVERSE = "/v1/reverse";
+  public static final String PLACE = "/v1/place";
+
+  public static final String MESSAGE_PACK = "application/x-msgpack";
+
+  public static final int DEFAULT_SIZE = 10;
+
+  private final SyntheticGazetteer gazetteer;
+  private final MockWebServer server = new MockWebServer();
+  private final Random random;
+  private final Map<String, LatencyDistribution> latencies = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  private final AtomicInteger throttledCount = new AtomicInteger();
+  private final AtomicInteger errorCount = new AtomicInteger();
+  private volatile LatencyDistribution latency = LatencyDistribution.constant(0);
+  private volatile double errorRate;
+  private volatile int maxRequestsPerSecond;
+  private volatile int paddingBytes;
+  private volatile long bytesPerSecond;
+  private volatile boolean recordRequests;
+  private volatile boolean messagePackEnabled;
+  private volatile int cacheMaxAgeSeconds;
+  private long rateWindowStart;
+  private int rateWindowCount;
+
+  /**
+   * Constructs a new server answering from the given gazetteer.
+   */
+  public PeliasStandInServer(SyntheticGazetteer gazetteer) {
+    this(gazetteer, 0);
+  }
+
+  /**
+   * Constructs a new server answering from the given gazetteer. The seed controls latency and
+   * error sampling.
+   */
+  public PeliasStandInServer(SyntheticGazetteer gazetteer, long seed) {
+    this.gazetteer = gazetteer;
+    this.random = new Random(seed);
+    for (String path : Arrays.asList(AUTOCOMPLETE, SEARCH, REVERSE, PLACE)) {
+      requestCounts.put(path, new AtomicInteger());
+    }
+  }
+
+  /**
+   * Starts listening on a free local port.
+   */
+  public void start() throws IOException {
+    Logger.getLogger(MockWebServer.class.getName()).setLevel(Level.WARNING);
+    server.setDispatcher(new StandInDispatcher());
+    server.start();
+  }
+
+  /**
+   * Returns the base url to pass to {@code new Pelias(String)}.
+   */
+  public String url() {
+    return server.url("/").toString();
+  }
+
+  /**
+   * Stops the server.
+   */
+  public void shutdown() throws IOException {
+    server.shutdown();
+  }
+
+  @Override public void close() throws IOException {
+    shutdown();
+  }
+
+  /**
+   * Returns the gazetteer answering queries.
+   */
+  public SyntheticGazetteer getGazetteer() {
+    return gazetteer;
+  }
+
+  /**
+   * Sets the latency added before every response.
+   */
+  public void setLatency(LatencyDistribution latency) {
+    this.latency = latency;
+  }
+
+  /**
+   * Sets the latency added before responses for a single endpoint, ie {@link #AUTOCOMPLETE}.
+   */
+  public void setLatency(String path, LatencyDistribution latency) {
+    latencies.put(path, latency);
+  }
+
+  /**
+   * Sets the fraction of requests, between 0 and 1, answered with a 500 error.
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Sets the number of requests accepted per second before answering with 429, or 0 for no limit.
+   */
+  public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+    this.maxRequestsPerSecond = maxRequestsPerSecond;
+  }
+
+  /**
+   * Sets the number of filler bytes added to every feature to simulate large payloads.
+   */
+  public void setPaddingBytes(int paddingBytes) {
+    this.paddingBytes = paddingBytes;
+  }
+
+  /**
+   * Limits the rate at which response bodies are written, or 0 for no limit.
+   */
+  public void setBytesPerSecond(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Marks successful responses as cacheable for the given number of seconds, or 0 to send no
+   * {@code Cache-Control} header.
+   */
+  public void setCacheMaxAge(int seconds) {
+    this.cacheMaxAgeSeconds = seconds;
+  }
+
+  /**
+   * Serves successful responses as MessagePack to requests which list {@link #MESSAGE_PACK} in
+   * their {@code Accept} header, like a proxy in front of Pelias would. Disabled by default, in
+   * which case json is always served as Pelias does.
+   */
+  public void setMessagePackEnabled(boolean enabled) {
+    this.messagePackEnabled = enabled;
+  }
+
+  /**
+   * Retains every request for {@link #takeRequest()}. Disabled by default so that long running
+   * benchmarks do not accumulate memory.
+   */
+  public void setRecordRequests(boolean recordRequests) {
+    this.recordRequests = recordRequests;
+  }
+
+  /**
+   * Returns the next recorded request, waiting if necessary. Requires
+   * {@link #setRecordRequests(boolean)}.
+   */
+  public RecordedRequest takeRequest() throws InterruptedException {
+    return server.takeRequest();
+  }
+
+  /**
+   * Returns the total number of requests received.
+   */
+  public int getRequestCount() {
+    int count = 0;
+    for (AtomicInteger value : requestCounts.values()) {
+      count += value.get();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of requests received for a path, ie {@link #AUTOCOMPLETE}.
+   */
+  public int getRequestCount(String path) {
+    final AtomicInteger count = requestCounts.get(path);
+    return count != null ? count.get() : 0;
+  }
+
+  /**
+   * Returns the number of requests answered with 429.
+   */
+  public int getThrottledCount() {
+    return throttledCount.get();
+  }
+
+  /**
+   * Returns the number of requests answered with an injected 500.
+   */
+  public int getErrorCount() {
+    return errorCount.get();
+  }
+
+  /**
+   * Resets all request counters.
+   */
+  public void resetCounts() {
+    for (AtomicInteger value : requestCounts.values()) {
+      value.set(0);
+    }
+    throttledCount.set(0);
+    errorCount.set(0);
+  }
+
+  private synchronized boolean isRateLimited() {
+    if (maxRequestsPerSecond <= 0) {
+      return false;
+    }
+    final long now = System.nanoTime();
+    if (now - rateWindowStart >= TimeUnit.SECONDS.toNanos(1)) {
+      rateWindowStart = now;
+      rateWindowCount = 0;
+    }
+    return ++rateWindowCount > maxRequestsPerSecond;
+  }
+
+  private long sampleLatency(String path) {
+    final LatencyDistribution distribution = latencies.containsKey(path)
+        ? latencies.get(path) : latency;
+    synchronized (random) {
+      return Math.max(0, distribution.sampleMillis(random));
+    }
+  }
+
+  private boolean shouldFail() {
+    if (errorRate <= 0) {
+      return false;
+    }
+    synchronized (random) {
+      return random.nextDouble() < errorRate;
+    }
+  }
+
+  /**
+   * Routes requests to the gazetteer.
+   */
+  private class StandInDispatcher extends Dispatcher {
+    @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+      if (!recordRequests) {
+        server.takeRequest(0, TimeUnit.MILLISECONDS);
+      }
+
+      final HttpUrl url = request.getRequestUrl();
+      final String path = url.encodedPath();
+      final AtomicInteger count = requestCounts.get(path);
+      if (count == null) {
+        return new MockResponse().setResponseCode(404);
+      }
+      count.incrementAndGet();
+
+      if (isRateLimited()) {
+        throttledCount.incrementAndGet();
+        return new MockResponse().setResponseCode(429).setHeader("Retry-After", "1");
+      }
+
+      final long delay = sampleLatency(path);
+      if (delay > 0) {
+        Thread.sleep(delay);
+      }
+
+      if (shouldFail()) {
+        errorCount.incrementAndGet();
+        return new MockResponse().setResponseCode(500)
+            .setBody("{\"error\":\"synthetic failure\"}");
+      }
+
+      final List<Place> places;
+      double distanceLat = Double.NaN;
+      double distanceLon = Double.NaN;
+      final int size = intParam(url, "size", DEFAULT_SIZE);
+      switch (path) {
+        case REVERSE:
+          distanceLat = doubleParam(url, "point.lat");
+          distanceLon = doubleParam(url, "point.lon");
+          if (Double.isNaN(distanceLat) || Double.isNaN(distanceLon)) {
+            return badRequest("point.lat and point.lon are required");
+          }
+          places = filterLayers(gazetteer.nearest(distanceLat, distanceLon, size), url, size);
+          break;
+        case PLACE:
+          places = findPlaces(url.queryParameter("ids"));
+          break;
+        default:
+          final String text = url.queryParameter("text");
+          if (text == null || text.trim().isEmpty()) {
+            return badRequest("text is required");
+          }
+          distanceLat = focusLat(url);
+          distanceLon = focusLon(url);
+          places = filterLayers(gazetteer.query(text, distanceLat, distanceLon, Integer.MAX_VALUE),
+              url, size);
+          break;
+      }
+
+      final String json = toJson(places, distanceLat, distanceLon);
+      final MockResponse response = new MockResponse();
+      if (messagePackEnabled && acceptsMessagePack(request.getHeader("Accept"))) {
+        response.setHeader("Content-Type", MESSAGE_PACK).setBody(MessagePackEncoder.encode(json));
+      } else {
+        response.setHeader("Content-Type", "application/json; charset=utf-8").setBody(json);
+      }
+      if (cacheMaxAgeSeconds > 0) {
+        response.setHeader("Cache-Control", "max-age=" + cacheMaxAgeSeconds);
+      }
+      if (bytesPerSecond > 0) {
+        response.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+      }
+      return response;
+    }
+
+    private boolean acceptsMessagePack(String accept) {
+      return accept != null && accept.toLowerCase(Locale.US).contains(MESSAGE_PACK);
+    }
+
+    private MockResponse badRequest(String message) {
+      return new MockResponse().setResponseCode(400)
+          .setBody("{\"error\":\"" + message + "\"}");
+    }
+
+    private List<Place> findPlaces(String ids) {
+      if (ids == null) {
+        return Collections.emptyList();
+      }
+      final List<Place> places = new ArrayList<>();
+      for (String gid : ids.split(",")) {
+        final Place place = gazetteer.findByGid(gid.trim());
+        if (place != null) {
+          places.add(place);
+        }
+      }
+      return places;
+    }
+
+    private List<Place> filterLayers(List<Place> places, HttpUrl url, int size) {
+      final String layers = url.queryParameter("layers");
+      if (layers == null || layers.isEmpty()) {
+        return places.size() > size ? places.subList(0, size) : places;
+      }
+      final List<String> allowed = Arrays.asList(layers.split(","));
+      final List<Place> filtered = new ArrayList<>(size);
+      for (Place place : places) {
+        if (allowed.contains(place.layer)) {
+          filtered.add(place);
+          if (filtered.size() == size) {
+            break;
+          }
+        }
+      }
+      return filtered;
+    }
+
+    private double focusLat(HttpUrl url) {
+      final double lat = doubleParam(url, "focus.point.lat");
+      if (!Double.isNaN(lat)) {
+        return lat;
+      }
+      return (doubleParam(url, "focus.viewport.min_lat")
+          + doubleParam(url, "focus.viewport.max_lat")) / 2;
+    }
+
+    private double focusLon(HttpUrl url) {
+      final double lon = doubleParam(url, "focus.point.lon");
+      if (!Double.isNaN(lon)) {
+        return lon;
+      }
+      return (doubleParam(url, "focus.viewport.min_lon")
+          + doubleParam(url, "focus.viewport.max_lon")) / 2;
+    }
+  }
+
+  private String toJson(List<Place> places, double lat, double lon) {
+    final StringWriter out = new StringWriter();
+    final JsonWriter writer = new JsonWriter(out);
+    try {
+      writer.beginObject();
+      writer.name("type").value("FeatureCollection");
+      writer.name("features").beginArray();
+      for (int i = 0; i < places.size(); i++) {
+        final Place place = places.get(i);
+        writer.beginObject();
+        writer.name("type").value("Feature");
+        writer.name("geometry").beginObject();
+        writer.name("type").value("Point");
+        writer.name("coordinates").beginArray().value(place.lon).value(place.lat).endArray();
+        writer.endObject();
+        writer.name("properties").beginObject();
+        writer.name("id").value(String.valueOf(place.index));
+        writer.name("gid").value(place.gid);
+        writer.name("layer").value(place.layer);
+        writer.name("source").value("synthetic");
+        writer.name("name").value(place.name);
+        if (place.housenumber != null) {
+          writer.name("housenumber").value(place.housenumber);
+        }
+        if (place.street != null) {
+          writer.name("street").value(place.street);
+        }
+        writer.name("confidence").value(Math.max(0.1, 1.0 - i * 0.05));
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+          writer.name("distance").value(
+              SyntheticGazetteer.distanceKm(lat, lon, place.lat, place.lon));
+        }
+        writer.name("country").value("United States");
+        writer.name("country_a").value("USA");
+        writer.name("region").value(place.region);
+        writer.name("region_a").value(place.regionAbbr);
+        writer.name("locality").value(place.locality);
+        writer.name("label").value(place.label);
+        if (paddingBytes > 0) {
+          writer.name("padding").value(padding(paddingBytes));
+        }
+        writer.endObject();
+        writer.endObject();
+      }
+      writer.endArray();
+      writer.endObject();
+      writer.close();
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return out.toString();
+  }
+
+  private static String padding(int bytes) {
+    final char[] chars = new char[bytes];
+    Arrays.fill(chars, 'x');
+    return new String(chars);
+  }
+
+  private static double doubleParam(HttpUrl url, String name) {
+    final String value = url.queryParameter(name);
+    if (value == null) {
+      return Double.NaN;
+    }
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  private static int intParam(HttpUrl url, String name, int defaultValue) {
+    final String value = url.queryParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
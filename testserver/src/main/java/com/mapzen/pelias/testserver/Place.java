@@ -0,0 +1,84 @@
+package com.mapzen.pelias.testserver;
+
+/**
+ * A single entry of a {@link SyntheticGazetteer}.
+ */
+public final class Place {
+  final int index;
+  final String gid;
+  final String layer;
+  final String name;
+  final String housenumber;
+  final String street;
+  final String locality;
+  final String region;
+  final String regionAbbr;
+  final String label;
+  final double lat;
+  final double lon;
+  final double popularity;
+
+  /**
+   * Creates a place.
+   */
+  Place(int index, String layer, String name, String housenumber, String street, String locality,
+      String region, String regionAbbr, double lat, double lon, double popularity) {
+    this.index = index;
+    this.gid = "synthetic:" + layer + ":" + index;
+    this.layer = layer;
+    this.name = name;
+    this.housenumber = housenumber;
+    this.street = street;
+    this.locality = locality;
+    this.region = region;
+    this.regionAbbr = regionAbbr;
+    this.label = SyntheticGazetteer.LAYER_LOCALITY.equals(layer)
+        ? name + ", " + regionAbbr + ", USA"
+        : name + ", " + locality + ", " + regionAbbr + ", USA";
+    this.lat = lat;
+    this.lon = lon;
+    this.popularity = popularity;
+  }
+
+  /**
+   * Returns the global identifier, ie "synthetic:venue:42".
+   */
+  public String getGid() {
+    return gid;
+  }
+
+  /**
+   * Returns the layer, ie "address", "venue", "street" or "locality".
+   */
+  public String getLayer() {
+    return layer;
+  }
+
+  /**
+   * Returns the name, ie "123 Main St".
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the label, ie "123 Main St, Ashford, CO, USA".
+   */
+  public String getLabel() {
+    return label;
+  }
+
+  /**
+   * Returns the latitude.
+   */
+  public double getLat() {
+    return lat;
+  }
+
+  /**
+   * Returns the longitude.
+   */
+  public double getLon() {
+    return lon;
+  }
+}
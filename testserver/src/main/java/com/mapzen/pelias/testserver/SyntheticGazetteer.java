@@ -0,0 +1,322 @@
+package com.mapzen.pelias.testserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministically generated set of {@link Place}s with the indexes needed to answer Pelias
+ * queries: a sorted token index for prefix matching and a uniform grid for nearest neighbour
+ * lookups. The same seed always produces the same places.
+ */
+public final class SyntheticGazetteer {
+  public static final String LAYER_ADDRESS = "address";
+  public static final String LAYER_VENUE = "venue";
+  public static final String LAYER_STREET = "street";
+  public static final String LAYER_LOCALITY = "locality";
+
+  private static final String[] STREET_NAMES = {
+      "Main", "Oak", "Maple", "Cedar", "Pine", "Elm", "Washington", "Lake", "Hill", "Park",
+      "Broadway", "Church", "Spring", "Center", "Union", "Market", "River", "Highland", "Sunset",
+      "Franklin", "Jefferson", "Madison", "Walnut", "Chestnut", "Willow", "Meadow", "Forest",
+      "Valley", "Prospect", "Pearl"
+  };
+  private static final String[] STREET_TYPES = {
+      "St", "Ave", "Blvd", "Rd", "Ln", "Way", "Pl", "Dr"
+  };
+  private static final String[] VENUE_WORDS = {
+      "Blue", "Golden", "Corner", "Union", "Harbor", "Summit", "Green", "Old Town", "Liberty",
+      "Northside", "Riverside", "Copper", "Silver", "Lucky", "Little", "Grand"
+  };
+  private static final String[] VENUE_KINDS = {
+      "Cafe", "Bakery", "Library", "Park", "Museum", "Market", "Pharmacy", "Hotel", "School",
+      "Diner", "Pizza", "Books", "Hardware", "Gym"
+  };
+  private static final String[] SYLLABLES = {
+      "brook", "lyn", "ash", "ford", "field", "wood", "ridge", "port", "ham", "ton", "vale",
+      "dale", "mill", "haven", "stone", "bridge", "water", "bury", "glen", "crest"
+  };
+  private static final String[][] REGIONS = {
+      { "Colorado", "CO" }, { "New York", "NY" }, { "California", "CA" }, { "Oregon", "OR" }
+  };
+  private static final double KM_PER_DEGREE = 111.32;
+
+  private final Place[] places;
+  private final String[] tokens;
+  private final int[][] postings;
+  private final Map<String, Place> byGid = new HashMap<>();
+  private final double cellSize;
+  private final Map<Long, int[]> grid = new HashMap<>();
+
+  private SyntheticGazetteer(Place[] places, double cellSize) {
+    this.places = places;
+    this.cellSize = cellSize;
+
+    final Map<String, List<Integer>> tokenPlaces = new HashMap<>();
+    final Map<Long, List<Integer>> cellPlaces = new HashMap<>();
+    for (Place place : places) {
+      byGid.put(place.gid, place);
+      for (String token : tokenize(place.label)) {
+        List<Integer> ids = tokenPlaces.get(token);
+        if (ids == null) {
+          ids = new ArrayList<>();
+          tokenPlaces.put(token, ids);
+        }
+        if (ids.isEmpty() || ids.get(ids.size() - 1) != place.index) {
+          ids.add(place.index);
+        }
+      }
+      final long cell = cell(row(place.lat), column(place.lon));
+      List<Integer> ids = cellPlaces.get(cell);
+      if (ids == null) {
+        ids = new ArrayList<>();
+        cellPlaces.put(cell, ids);
+      }
+      ids.add(place.index);
+    }
+
+    tokens = tokenPlaces.keySet().toArray(new String[tokenPlaces.size()]);
+    Arrays.sort(tokens);
+    postings = new int[tokens.length][];
+    for (int i = 0; i < tokens.length; i++) {
+      postings[i] = toArray(tokenPlaces.get(tokens[i]));
+    }
+    for (Map.Entry<Long, List<Integer>> entry : cellPlaces.entrySet()) {
+      grid.put(entry.getKey(), toArray(entry.getValue()));
+    }
+  }
+
+  /**
+   * Generates a gazetteer of roughly {@code size} places scattered around the center point.
+   */
+  public static SyntheticGazetteer generate(long seed, int size, double centerLat,
+      double centerLon, double radiusDegrees) {
+    final Random random = new Random(seed);
+    final int localityCount = Math.max(1, Math.min(200, size / 500));
+    final List<Place> places = new ArrayList<>(size + localityCount);
+    for (int i = 0; i < localityCount; i++) {
+      final String[] region = REGIONS[i % REGIONS.length];
+      final String name = capitalize(pick(random, SYLLABLES) + pick(random, SYLLABLES));
+      places.add(new Place(places.size(), LAYER_LOCALITY, name, null, null, name, region[0],
+          region[1], centerLat + (random.nextDouble() * 2 - 1) * radiusDegrees,
+          centerLon + (random.nextDouble() * 2 - 1) * radiusDegrees, 1 + random.nextDouble()));
+    }
+
+    while (places.size() < size) {
+      final Place locality = places.get(random.nextInt(localityCount));
+      final double lat = locality.lat + random.nextGaussian() * radiusDegrees / 20;
+      final double lon = locality.lon + random.nextGaussian() * radiusDegrees / 20;
+      final String street = pick(random, STREET_NAMES) + " " + pick(random, STREET_TYPES);
+      final double kind = random.nextDouble();
+      final String layer;
+      final String name;
+      String housenumber = null;
+      if (kind < 0.6) {
+        layer = LAYER_ADDRESS;
+        housenumber = String.valueOf(1 + random.nextInt(2000));
+        name = housenumber + " " + street;
+      } else if (kind < 0.9) {
+        layer = LAYER_VENUE;
+        name = pick(random, VENUE_WORDS) + " " + pick(random, VENUE_KINDS);
+      } else {
+        layer = LAYER_STREET;
+        name = street;
+      }
+      places.add(new Place(places.size(), layer, name, housenumber, street, locality.name,
+          locality.region, locality.regionAbbr, lat, lon, random.nextDouble()));
+    }
+
+    return new SyntheticGazetteer(places.toArray(new Place[places.size()]),
+        Math.max(radiusDegrees / 50, 1e-4));
+  }
+
+  /**
+   * Returns the number of places.
+   */
+  public int size() {
+    return places.length;
+  }
+
+  /**
+   * Returns the place at the given position.
+   */
+  public Place get(int index) {
+    return places[index];
+  }
+
+  /**
+   * Returns the place with the given global identifier or null.
+   */
+  public Place findByGid(String gid) {
+    return byGid.get(gid);
+  }
+
+  /**
+   * Returns places whose label contains every query token, the last token matching as a prefix.
+   * Results are ordered by distance from the focus point, or by popularity when the focus is
+   * {@link Double#NaN}.
+   */
+  public List<Place> query(String text, final double focusLat, final double focusLon, int size) {
+    final List<String> queryTokens = tokenize(text);
+    if (queryTokens.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    BitSet matches = null;
+    for (int i = 0; i < queryTokens.size(); i++) {
+      final BitSet tokenMatches = match(queryTokens.get(i), i == queryTokens.size() - 1);
+      if (matches == null) {
+        matches = tokenMatches;
+      } else {
+        matches.and(tokenMatches);
+      }
+      if (matches.isEmpty()) {
+        return Collections.emptyList();
+      }
+    }
+
+    final List<Place> results = new ArrayList<>(matches.cardinality());
+    for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+      results.add(places[i]);
+    }
+    if (Double.isNaN(focusLat) || Double.isNaN(focusLon)) {
+      Collections.sort(results, new Comparator<Place>() {
+        @Override public int compare(Place a, Place b) {
+          return Double.compare(b.popularity, a.popularity);
+        }
+      });
+    } else {
+      sortByDistance(results, focusLat, focusLon);
+    }
+    return results.size() > size ? results.subList(0, size) : results;
+  }
+
+  /**
+   * Returns the places closest to the point using the grid index.
+   */
+  public List<Place> nearest(double lat, double lon, int size) {
+    final int row = row(lat);
+    final int column = column(lon);
+    final List<Place> results = new ArrayList<>();
+    final int maxRing = 500;
+    boolean filled = false;
+    for (int ring = 0; ring <= maxRing; ring++) {
+      for (int r = row - ring; r <= row + ring; r++) {
+        for (int c = column - ring; c <= column + ring; c++) {
+          if (Math.abs(r - row) != ring && Math.abs(c - column) != ring) {
+            continue;
+          }
+          final int[] ids = grid.get(cell(r, c));
+          if (ids != null) {
+            for (int id : ids) {
+              results.add(places[id]);
+            }
+          }
+        }
+      }
+      // Scan one more ring after reaching the requested size, since a neighbouring cell may hold
+      // a closer place than the far corner of the current ring.
+      if (filled) {
+        break;
+      }
+      filled = results.size() >= size;
+    }
+    sortByDistance(results, lat, lon);
+    return results.size() > size ? results.subList(0, size) : results;
+  }
+
+  /**
+   * Returns the approximate distance between the points in kilometers.
+   */
+  public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+    final double dx = (lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+    final double dy = lat2 - lat1;
+    return Math.sqrt(dx * dx + dy * dy) * KM_PER_DEGREE;
+  }
+
+  private BitSet match(String token, boolean prefix) {
+    final BitSet result = new BitSet(places.length);
+    int i = Arrays.binarySearch(tokens, token);
+    if (i < 0) {
+      if (!prefix) {
+        return result;
+      }
+      i = -i - 1;
+    }
+    for (; i < tokens.length && tokens[i].startsWith(token); i++) {
+      for (int id : postings[i]) {
+        result.set(id);
+      }
+      if (!prefix) {
+        break;
+      }
+    }
+    return result;
+  }
+
+  private static void sortByDistance(List<Place> results, final double lat, final double lon) {
+    Collections.sort(results, new Comparator<Place>() {
+      @Override public int compare(Place a, Place b) {
+        return Double.compare(distanceKm(lat, lon, a.lat, a.lon),
+            distanceKm(lat, lon, b.lat, b.lon));
+      }
+    });
+  }
+
+  /**
+   * Splits text into lower case alphanumeric tokens.
+   */
+  static List<String> tokenize(String text) {
+    final List<String> result = new ArrayList<>();
+    final StringBuilder token = new StringBuilder();
+    final String lower = text.toLowerCase(Locale.ROOT);
+    for (int i = 0; i < lower.length(); i++) {
+      final char c = lower.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        token.append(c);
+      } else if (token.length() > 0) {
+        result.add(token.toString());
+        token.setLength(0);
+      }
+    }
+    if (token.length() > 0) {
+      result.add(token.toString());
+    }
+    return result;
+  }
+
+  private int row(double lat) {
+    return (int) Math.floor(lat / cellSize);
+  }
+
+  private int column(double lon) {
+    return (int) Math.floor(lon / cellSize);
+  }
+
+  private static long cell(int row, int column) {
+    return ((long) row << 32) | (column & 0xffffffffL);
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    final int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = values.get(i);
+    }
+    return array;
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static String capitalize(String value) {
+    return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+  }
+}
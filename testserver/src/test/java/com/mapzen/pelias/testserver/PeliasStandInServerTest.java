@@ -0,0 +1,164 @@
+package com.mapzen.pelias.testserver;
+
+import com.mapzen.pelias.Pelias;
+import com.mapzen.pelias.codec.MessagePackResponseCodec;
+import com.mapzen.pelias.codec.Utf8JsonResponseCodec;
+import com.mapzen.pelias.gson.Feature;
+import com.mapzen.pelias.gson.PeliasGson;
+import com.mapzen.pelias.gson.Result;
+
+import com.google.gson.Gson;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PeliasStandInServerTest {
+  private PeliasStandInServer server;
+  private Pelias pelias;
+
+  @Before public void setUp() throws Exception {
+    server = new PeliasStandInServer(SyntheticGazetteer.generate(3, 2000, 40.7, -74.0, 0.2));
+    server.start();
+    pelias = new Pelias(server.url());
+  }
+
+  @After public void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test public void suggest_shouldReturnPrefixMatches() throws Exception {
+    final TestCallback callback = new TestCallback();
+    pelias.suggest("cafe", 40.7, -74.0, callback);
+    final Response<Result> response = callback.await();
+    assertThat(response.code()).isEqualTo(200);
+    assertThat(response.body().getFeatures()).isNotEmpty();
+    for (Feature feature : response.body().getFeatures()) {
+      assertThat(feature.properties.label).contains("Cafe");
+      assertThat(feature.geometry.coordinates).hasSize(2);
+    }
+    assertThat(server.getRequestCount(PeliasStandInServer.AUTOCOMPLETE)).isEqualTo(1);
+  }
+
+  @Test public void reverse_shouldReturnNearestPlace() throws Exception {
+    final Place place = server.getGazetteer().get(100);
+    final TestCallback callback = new TestCallback();
+    pelias.reverse(place.getLat(), place.getLon(), callback);
+    assertThat(callback.await().body().getFeatures().get(0).properties.gid)
+        .isEqualTo(place.getGid());
+  }
+
+  @Test public void place_shouldReturnPlaceByGid() throws Exception {
+    final Place place = server.getGazetteer().get(5);
+    final TestCallback callback = new TestCallback();
+    pelias.place(place.getGid(), callback);
+    assertThat(callback.await().body().getFeatures().get(0).properties.label)
+        .isEqualTo(place.getLabel());
+  }
+
+  @Test public void setErrorRate_shouldFailRequests() throws Exception {
+    server.setErrorRate(1.0);
+    final TestCallback callback = new TestCallback();
+    pelias.search("main", 40.7, -74.0, callback);
+    assertThat(callback.await().code()).isEqualTo(500);
+    assertThat(server.getErrorCount()).isEqualTo(1);
+  }
+
+  @Test public void setMaxRequestsPerSecond_shouldThrottle() throws Exception {
+    server.setMaxRequestsPerSecond(1);
+    final TestCallback first = new TestCallback();
+    pelias.search("main", 40.7, -74.0, first);
+    assertThat(first.await().code()).isEqualTo(200);
+    final TestCallback second = new TestCallback();
+    pelias.search("main", 40.7, -74.0, second);
+    assertThat(second.await().code()).isEqualTo(429);
+    assertThat(server.getThrottledCount()).isEqualTo(1);
+  }
+
+  @Test public void setLatency_shouldDelayResponses() throws Exception {
+    server.setLatency(PeliasStandInServer.REVERSE, LatencyDistribution.constant(150));
+    final long start = System.nanoTime();
+    final TestCallback callback = new TestCallback();
+    pelias.reverse(40.7, -74.0, callback);
+    callback.await();
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+        .isGreaterThanOrEqualTo(150);
+  }
+
+  @Test public void setPaddingBytes_shouldGrowPayload() throws Exception {
+    final OkHttpClient client = new OkHttpClient();
+    final Request request = new Request.Builder()
+        .url(server.url() + "v1/autocomplete?text=cafe&size=5")
+        .build();
+    final int plain = client.newCall(request).execute().body().string().length();
+    server.setPaddingBytes(1000);
+    final int padded = client.newCall(request).execute().body().string().length();
+    assertThat(padded - plain).isGreaterThanOrEqualTo(5 * 1000);
+  }
+
+  @Test public void setCacheMaxAge_shouldSendCacheControl() throws Exception {
+    final OkHttpClient client = new OkHttpClient();
+    final Request request = new Request.Builder()
+        .url(server.url() + "v1/autocomplete?text=cafe")
+        .build();
+    assertThat(client.newCall(request).execute().header("Cache-Control")).isNull();
+    server.setCacheMaxAge(60);
+    assertThat(client.newCall(request).execute().header("Cache-Control")).isEqualTo("max-age=60");
+  }
+
+  @Test public void setMessagePackEnabled_shouldServeAcceptedFormat() throws Exception {
+    final OkHttpClient client = new OkHttpClient();
+    final Request request = new Request.Builder()
+        .url(server.url() + "v1/autocomplete?text=cafe")
+        .header("Accept", "application/x-msgpack, application/json;q=0.9")
+        .build();
+    assertThat(client.newCall(request).execute().header("Content-Type"))
+        .startsWith("application/json");
+    server.setMessagePackEnabled(true);
+    assertThat(client.newCall(request).execute().header("Content-Type"))
+        .isEqualTo(PeliasStandInServer.MESSAGE_PACK);
+  }
+
+  @Test public void messagePack_shouldDecodeToSameResult() throws Exception {
+    server.setMessagePackEnabled(true);
+    final TestCallback json = new TestCallback();
+    pelias.search("main", 40.7, -74.0, json);
+    final Pelias negotiating = new Pelias(server.url());
+    negotiating.setResponseCodecs(new MessagePackResponseCodec(PeliasGson.get()),
+        new Utf8JsonResponseCodec(PeliasGson.get()));
+    final TestCallback msgpack = new TestCallback();
+    negotiating.search("main", 40.7, -74.0, msgpack);
+    final Gson gson = new Gson();
+    assertThat(gson.toJson(msgpack.await().body())).isEqualTo(gson.toJson(json.await().body()));
+    assertThat(msgpack.response.body().getFeatures()).isNotEmpty();
+  }
+
+  private static class TestCallback implements Callback<Result> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private Response<Result> response;
+
+    @Override public void onResponse(Call<Result> call, Response<Result> response) {
+      this.response = response;
+      latch.countDown();
+    }
+
+    @Override public void onFailure(Call<Result> call, Throwable t) {
+      latch.countDown();
+    }
+
+    Response<Result> await() throws InterruptedException {
+      assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+      return response;
+    }
+  }
+}
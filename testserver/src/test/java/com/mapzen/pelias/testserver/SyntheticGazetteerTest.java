@@ -0,0 +1,67 @@
+package com.mapzen.pelias.testserver;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SyntheticGazetteerTest {
+  private final SyntheticGazetteer gazetteer =
+      SyntheticGazetteer.generate(7, 5000, 40.7, -74.0, 0.5);
+
+  @Test public void generate_shouldBeDeterministic() throws Exception {
+    final SyntheticGazetteer other = SyntheticGazetteer.generate(7, 5000, 40.7, -74.0, 0.5);
+    assertThat(other.size()).isEqualTo(gazetteer.size());
+    for (int i = 0; i < gazetteer.size(); i += 97) {
+      assertThat(other.get(i).getLabel()).isEqualTo(gazetteer.get(i).getLabel());
+      assertThat(other.get(i).getLat()).isEqualTo(gazetteer.get(i).getLat());
+    }
+  }
+
+  @Test public void query_shouldMatchLastTokenAsPrefix() throws Exception {
+    final List<Place> places = gazetteer.query("main s", Double.NaN, Double.NaN, 20);
+    assertThat(places).isNotEmpty();
+    for (Place place : places) {
+      assertThat(place.getLabel()).contains("Main S");
+    }
+  }
+
+  @Test public void query_shouldOrderByFocusDistance() throws Exception {
+    final List<Place> places = gazetteer.query("cafe", 40.7, -74.0, 10);
+    assertThat(places).hasSize(10);
+    for (int i = 1; i < places.size(); i++) {
+      assertThat(distance(places.get(i), 40.7, -74.0))
+          .isGreaterThanOrEqualTo(distance(places.get(i - 1), 40.7, -74.0));
+    }
+  }
+
+  @Test public void query_shouldReturnEmptyForUnknownText() throws Exception {
+    assertThat(gazetteer.query("zzqx", Double.NaN, Double.NaN, 10)).isEmpty();
+  }
+
+  @Test public void nearest_shouldMatchBruteForce() throws Exception {
+    final Place target = gazetteer.get(1234);
+    final List<Place> nearest = gazetteer.nearest(target.getLat(), target.getLon(), 5);
+    assertThat(nearest).hasSize(5);
+    assertThat(nearest.get(0)).isSameAs(target);
+
+    double fifth = distance(nearest.get(4), target.getLat(), target.getLon());
+    int closer = 0;
+    for (int i = 0; i < gazetteer.size(); i++) {
+      if (distance(gazetteer.get(i), target.getLat(), target.getLon()) < fifth) {
+        closer++;
+      }
+    }
+    assertThat(closer).isLessThanOrEqualTo(4);
+  }
+
+  @Test public void findByGid_shouldReturnPlace() throws Exception {
+    final Place place = gazetteer.get(42);
+    assertThat(gazetteer.findByGid(place.getGid())).isSameAs(place);
+  }
+
+  private static double distance(Place place, double lat, double lon) {
+    return SyntheticGazetteer.distanceKm(lat, lon, place.getLat(), place.getLon());
+  }
+}